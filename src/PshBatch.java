@@ -0,0 +1,84 @@
+/*
+ * Copyright 2009-2010 Jon Klein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.*;
+import java.util.*;
+
+import org.spiderland.Psh.*;
+
+/**
+ * PshBatch carries out a batch of runs for each of the given parameter files,
+ * or for each parameter file in the given directories, several runs at a
+ * time in one JVM. More information about batches of runs can be found in
+ * the README.
+ */
+public class PshBatch {
+	public static void main(String args[]) throws Exception {
+
+		int jobs = Runtime.getRuntime().availableProcessors();
+		long seeds[] = null;
+		HashMap<String, String> overrides = new HashMap<String, String>();
+
+		int arg = 0;
+		while (arg < args.length - 1 && args[arg].startsWith("-")) {
+			String option = args[arg++];
+			String value = args[arg++];
+
+			if (option.equals("-jobs")) {
+				jobs = Integer.parseInt(value);
+			} else if (option.equals("-seeds")) {
+				String list[] = value.split(",");
+				seeds = new long[list.length];
+				for (int i = 0; i < list.length; i++)
+					seeds[i] = Long.parseLong(list[i].trim());
+			} else if (option.equals("-set") && value.indexOf('=') != -1) {
+				int split = value.indexOf('=');
+				overrides.put(value.substring(0, split).trim(), value.substring(split + 1).trim());
+			} else {
+				arg = args.length;
+			}
+		}
+
+		if (args.length - arg < 2) {
+			System.out.println("Usage: PshBatch [-jobs n] [-seeds seed,seed,...] [-set name=value]... repeats paramfile|directory...");
+			System.exit(0);
+		}
+
+		int repeats = Integer.parseInt(args[arg++]);
+		BatchRunner runner = new BatchRunner(overrides, seeds);
+
+		for (; arg < args.length; arg++) {
+			File file = new File(args[arg]);
+
+			if (file.isDirectory()) {
+				// As with runpshs.sh, the batches go in the directory
+				File paramsFiles[] = file.listFiles(new FilenameFilter() {
+					public boolean accept(File inDirectory, String inName) {
+						return inName.endsWith(".pushgp");
+					}
+				});
+				Arrays.sort(paramsFiles);
+
+				for (File paramsFile : paramsFiles)
+					runner.AddBatch(paramsFile, repeats, file);
+			} else {
+				runner.AddBatch(file, repeats, new File("."));
+			}
+		}
+
+		System.exit(runner.Run(jobs) == 0 ? 0 : 1);
+	}
+}
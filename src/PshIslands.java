@@ -0,0 +1,41 @@
+/*
+ * Copyright 2009-2010 Jon Klein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import java.io.*;
+
+import org.spiderland.Psh.*;
+
+/**
+ * PshIslands executes an island model genetic programming run, in which
+ * several populations evolve side by side, using the given parameter file.
+ */
+public class PshIslands {
+	public static void main(String args[]) throws Exception {
+
+		if (args.length != 1) {
+			System.out.println("Usage: PshIslands paramfile|checkpointfile.gz");
+			System.exit(0);
+		}
+
+		IslandModel islands = null;
+		if (args[0].endsWith(".gz"))
+			islands = IslandModel.WithCheckpoint(args[0]);
+		else
+			islands = IslandModel.WithParameters(Params.ReadFromFile(new File(args[0])));
+
+		islands.Run();
+	}
+}
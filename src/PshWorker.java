@@ -0,0 +1,36 @@
+/*
+ * Copyright 2009-2010 Jon Klein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+import org.spiderland.Psh.*;
+
+/**
+ * PshWorker evaluates individuals for a PshGP run which was given an
+ * evaluation-port, connecting to it on the given host and port.
+ */
+public class PshWorker {
+	public static void main(String args[]) throws Exception {
+
+		if (args.length < 2 || args.length > 3) {
+			System.out.println("Usage: PshWorker host port [retry-seconds]");
+			System.exit(0);
+		}
+
+		int retry = (args.length > 2) ? Integer.parseInt(args[2]) : 5;
+
+		RemoteWorker.Run(args[0], Integer.parseInt(args[1]), retry);
+		System.exit(0);
+	}
+}
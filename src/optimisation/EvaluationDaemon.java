@@ -0,0 +1,110 @@
+/*
+ * Copyright 2021 Michael Lones
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package optimisation;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+
+import org.spiderland.Psh.ThreadOutput;
+
+/**
+ * Reevaluates programs as PopulationOptimisation's main() does, for clients
+ * on the same machine, so that scripts which reevaluate one program after
+ * another don't each start a JVM. The JVM stays warmed up, and the problems'
+ * data stays loaded, between requests.
+ *
+ * A client connects to the daemon's port on the loopback address, and sends
+ * its working directory and then the arguments it would give main(), a line
+ * each, followed by an empty line. The daemon carries out the request in
+ * that directory, sending back what main() would print, and closes the
+ * connection. The script psheval.sh is such a client. Requests are carried
+ * out at the same time, each on a thread of its own.
+ */
+public class EvaluationDaemon {
+
+	static final int DEFAULT_PORT = 7341;
+
+	/**
+	 * Carries out one client's request.
+	 */
+	public static void serve(Socket socket) {
+		try {
+			BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+			OutputStream out = socket.getOutputStream();
+
+			File directory = new File(in.readLine());
+			ArrayList<String> args = new ArrayList<String>();
+			String line;
+			while((line = in.readLine()) != null && !line.isEmpty())
+				args.add(line);
+
+			// what the request prints goes to the client
+			ThreadOutput.Set(out);
+			try {
+				if(args.size() < 2)
+					System.out.println("Usage: psheval.sh parametersfile inputfile [coconame]");
+				else
+					PopulationOptimisation.reevaluate(args.toArray(new String[args.size()]), directory);
+			} catch (Exception e) {
+				e.printStackTrace(System.out);
+			} finally {
+				System.out.flush();
+				ThreadOutput.Set(null);
+			}
+		} catch (Exception e) {
+			System.err.println("Failed to serve " + socket.getRemoteSocketAddress() + ": " + e);
+		} finally {
+			try {
+				socket.close();
+			} catch (Exception e) {
+			}
+		}
+	}
+
+	/**
+	 * Listens for requests.
+	 * @param args [port]
+	 */
+	public static void main(String args[]) throws Exception {
+		int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+
+		ThreadOutput.Install();
+		PrintStream stdout = ThreadOutput.Original();
+
+		ServerSocket server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+		stdout.println("Waiting for requests on port " + server.getLocalPort());
+
+		while(true) {
+			final Socket socket = server.accept();
+
+			Thread request = new Thread("evaluation-request") {
+				public void run() {
+					serve(socket);
+				}
+			};
+			request.setDaemon(true);
+			request.start();
+		}
+	}
+}
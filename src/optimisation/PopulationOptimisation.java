@@ -26,9 +26,17 @@ import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Random;
 import java.util.StringTokenizer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
+import org.spiderland.Psh.CompiledProgram;
+import org.spiderland.Psh.GA;
 import org.spiderland.Psh.GAIndividual;
 import org.spiderland.Psh.GATestCase;
 import org.spiderland.Psh.InspectorInput;
@@ -38,6 +46,7 @@ import org.spiderland.Psh.Params;
 import org.spiderland.Psh.Program;
 import org.spiderland.Psh.PushGP;
 import org.spiderland.Psh.PushGPIndividual;
+import org.spiderland.Psh.Randoms;
 import org.spiderland.Psh.booleanStack;
 import org.spiderland.Psh.floatStack;
 import org.spiderland.Psh.intStack;
@@ -51,8 +60,10 @@ import optimisation.coco.Timing;
 import optimisation.problems.ModifiedOriginalCEC2005Problem;
 import optimisation.problems.OriginalCEC2005Problem;
 import optimisation.problems.Problem;
+import optimisation.problems.SearchPoint;
+import optimisation.problems.cec2005.benchmark;
 
-public class PopulationOptimisation extends PushGPWithMoreStandardEAs {
+public class PopulationOptimisation extends PushGPWithSteadyStateEA {
 
 	Problem[] _problems;	// Optimisation problems used for evaluation
 	boolean modifyProblems;	// Whether to add transformations to the optimisation problems
@@ -60,6 +71,8 @@ public class PopulationOptimisation extends PushGPWithMoreStandardEAs {
 	int maxEvaluations;		// Maximum solution evaluations per run
 	int numRuns;			// Number of optimisation runs to average over
 	int popSize;			// Swarm size used by evolved optimisers
+	int runThreads;			// Number of threads to share an evaluation's runs between
+	int maxStackDepth;		// Most entries a swarm member's stacks keep, or 0 for no limit
 	
 	Process[] population;	// Swarm
 	int currPopSize;		// Swarm size
@@ -70,6 +83,12 @@ public class PopulationOptimisation extends PushGPWithMoreStandardEAs {
 	float[][][][] _starts;		// Stating points, if using fixed starts
 
 	String _report = "";
+	File directory;				// Where files are read and written, if not the working directory
+	
+	long _evaluationSeed;		// Seeds the starting points and ensemble choices, if the GA is seeded
+	
+	transient ForkJoinPool runPool;		// Carries out the runs of an evaluation, if there is more than one thread
+	transient ConcurrentLinkedQueue<PopulationOptimisation> runners;	// Copies of the GA that are free to carry out runs
 	
 	@Override
 	protected void InitFromParameters() throws Exception {
@@ -94,6 +113,10 @@ public class PopulationOptimisation extends PushGPWithMoreStandardEAs {
 		maxMoves = (int) GetFloatParam("optimisation.moves");
 		numRuns = (int) GetFloatParam("optimisation.runs");
 		popSize = (int) GetFloatParam("optimisation.popsize");
+		float threads = GetFloatParam("optimisation.threads", true);
+		runThreads = Float.isNaN(threads) ? 1 : Math.max(1, (int) threads);
+		float depth = GetFloatParam("optimisation.maxstackdepth", true);
+		maxStackDepth = Float.isNaN(depth) ? 0 : Math.max(0, (int) depth);
 		
 		String problemstring = GetParam("optimisation.problems");
 		
@@ -107,7 +130,7 @@ public class PopulationOptimisation extends PushGPWithMoreStandardEAs {
 			_problems = new Problem[ps.length];
 			modifyProblems = this.GetBooleanParamWithDefault("optimisation.modifyproblems", false);
 		
-			_interpreter.vectorStack().setDimensionality(dims);
+			_interpreter.setVectorDimensionality(dims);
 			
 			for(int p=0; p<ps.length; p++) {
 				
@@ -140,7 +163,7 @@ public class PopulationOptimisation extends PushGPWithMoreStandardEAs {
 				// re-load an existing set of starting points
 				if(fstarts.equalsIgnoreCase("share")) {
 					// look for saved list in working directory
-					File saved = new File("starts.txt");
+					File saved = new File(directory, "starts.txt");
 					if(saved.exists()) {
 						generate = false;
 						BufferedReader reader = new BufferedReader(new FileReader(saved));
@@ -165,7 +188,7 @@ public class PopulationOptimisation extends PushGPWithMoreStandardEAs {
 				// or generate fixed starting points randomly within bounds
 				if(generate) {
 					_starts = new float[ps.length][numRuns][popSize][];
-					Random rand = new Random();
+					Random rand = _seeded ? Randoms.Make(_randomGenerator, _evaluationSeed) : Randoms.Make(_randomGenerator);
 					for(int p=0; p<ps.length; p++) {
 						for(int s=0; s<numRuns; s++) {
 							for(int n=0; n<popSize; n++) {
@@ -181,7 +204,7 @@ public class PopulationOptimisation extends PushGPWithMoreStandardEAs {
 					
 					// and save them to a file, if required
 					if(fstarts.equalsIgnoreCase("share")) {
-						PrintWriter writer = new PrintWriter("starts.txt");
+						PrintWriter writer = new PrintWriter(new File(directory, "starts.txt"));
 						for(int p=0; p<ps.length; p++) {
 							for(int s=0; s<numRuns; s++) {
 								for(int n=0; n<popSize; n++) {
@@ -238,6 +261,33 @@ public class PopulationOptimisation extends PushGPWithMoreStandardEAs {
 		
 	}
 
+	/**
+	 * Gives the worker its own copy of each problem, and an interpreter
+	 * that looks up search points in the worker's own swarm.
+	 */
+	@Override
+	protected GA EvaluationWorker() throws Exception {
+		PopulationOptimisation worker = (PopulationOptimisation) super.EvaluationWorker();
+		
+		worker._problems = new Problem[_problems.length];
+		for(int p=0; p<_problems.length; p++)
+			worker._problems[p] = _problems[p].copy();
+		
+		// main() reads the interpreter in with the program, so copy this GA's
+		worker._interpreter = _interpreter.Sibling();
+		worker._interpreter.setPopulation(worker);
+		worker.runPool = null;
+		worker.runners = null;
+		
+		return worker;
+	}
+	
+	@Override
+	protected void SeedRandom(long inSeed) {
+		super.SeedRandom(inSeed);
+		_evaluationSeed = inSeed;
+	}
+	
 	@Override
 	protected void EvaluateIndividual(GAIndividual inIndividual,
 			boolean duringSimplify) {
@@ -248,17 +298,15 @@ public class PopulationOptimisation extends PushGPWithMoreStandardEAs {
 	protected void EvaluateIndividual(GAIndividual inIndividual,
 			boolean duringSimplify, boolean describe, boolean verbose) {
 		ArrayList<Float> errors = new ArrayList<Float>();
+		PushGPIndividual individual = (PushGPIndividual) inIndividual;
 		
 		if (!duringSimplify && !(inIndividual instanceof PushGPEnsemble))
-			_averageSize += ((PushGPIndividual) inIndividual)._program
-					.programsize();
-
-		long t = System.currentTimeMillis();
+			_averageSize += individual._program.programsize();
 
-		for (int n = 0; n < _problems.length; n++) {
-			float e = evaluate((PushGPIndividual) inIndividual, errors, _problems[n], n, describe, verbose);
-		}
-		t = System.currentTimeMillis() - t;
+		float[][] results = optimiseAll(individual, describe, verbose);
+		
+		for (int n = 0; n < _problems.length; n++)
+			summarise(errors, _problems[n], results[n], describe);
 
 		float fitness = 0;
 		for(float error : errors)
@@ -269,6 +317,34 @@ public class PopulationOptimisation extends PushGPWithMoreStandardEAs {
 		inIndividual.SetErrors(errors);
 	}
 	
+	/**
+	 * Carries out every run of every problem, returning the best objective
+	 * value found by each run on each problem.
+	 */
+	float[][] optimiseAll(PushGPIndividual individual, boolean describe, boolean verbose) {
+		float[][] results = new float[_problems.length][numRuns];
+		
+		// the runs reseed whichever interpreter carries them out, so that this
+		// one carries on from the same state however the runs were shared out
+		long resume = _seeded ? _interpreter.getRNG().nextLong() : 0;
+		
+		if(runThreads > 1 && !verbose) {
+			optimiseInParallel(individual, results, describe);
+		}
+		else {
+			for (int n = 0; n < _problems.length; n++)
+				for (int run = 0; run < numRuns; run++)
+					results[n][run] = optimise(individual, _problems[n], n, run, 
+							runRandom(_interpreter, n, run), run==0 && n==_problems.length-1, 
+							describe, verbose);
+		}
+		
+		if(_seeded)
+			_interpreter.setSeed(resume);
+		
+		return results;
+	}
+	
 	/**
 	 * Evaluate optimiser on COCO benchmark suite (experimental)
 	 * @param inIndividual
@@ -304,7 +380,7 @@ public class PopulationOptimisation extends PushGPWithMoreStandardEAs {
 			while ((rawproblem = benchmark.getNextProblem()) != null) {
 				
 				int dimension = rawproblem.getDimension();
-				_interpreter.vectorStack().setDimensionality(dimension);
+				_interpreter.setVectorDimensionality(dimension);
 	
 				CocoProblem problem = new CocoProblem(rawproblem);
 				System.out.println("\n"+problem.getName()+"["+problem.getDimensionality()+"]");
@@ -346,22 +422,27 @@ public class PopulationOptimisation extends PushGPWithMoreStandardEAs {
 	}
 	
 	/**
-	 * Contains the state for a particular swarm member.
+	 * Contains the state for a particular swarm member. The search points
+	 * can't be changed, so they are shared with the vector stacks.
 	 */
 	class Process implements Comparable {
-		float[] bestPoint;				// personal best search point
-		float[] currentPoint;			// current search point
+		SearchPoint bestPoint;			// personal best search point
+		SearchPoint currentPoint;		// current search point
 		float bestValue;				// objective value of personal best
 		float currentValue;				// objective value of current search point
 		Interpreter.StackFrame stacks;	// stack states
 		
-		Process(float[] initPoint, float value, Interpreter ip) {
+		Process(SearchPoint initPoint, float value, Interpreter ip) {
 			this.bestPoint = initPoint;
-			this.currentPoint = Arrays.copyOf(initPoint, initPoint.length);
+			this.currentPoint = initPoint;
 			this.bestValue = value;
 			this.currentValue = value;
 			this.stacks = ip.new StackFrame();
 			this.stacks.init(ip);
+			// the stacks persist over the moves, so they can be bounded,
+			// dropping their oldest entries
+			if(maxStackDepth > 0)
+				this.stacks.setBound(maxStackDepth);
 		}
 
 		@Override
@@ -403,9 +484,9 @@ public class PopulationOptimisation extends PushGPWithMoreStandardEAs {
 	 * @param best	if true, returns personal best rather than current search point
 	 * @return
 	 */
-	public float[] getPosition(int i, boolean best) {
+	public SearchPoint getPosition(int i, boolean best) {
 		int pos = i;
-		float[] point;
+		SearchPoint point;
 		if(pos<0) // this can happen if i was Integer.MIN_VALUE due to overflow
 			pos = currPopSize - 1;
 		else {
@@ -424,246 +505,348 @@ public class PopulationOptimisation extends PushGPWithMoreStandardEAs {
 	private float evaluate(PushGPIndividual inIndividual, ArrayList<Float> errors, 
 			Problem problem, int problemid, boolean describe, boolean verbose) {
 		
+		float[] results = new float[numRuns];
+		Random rand = _seeded ? Randoms.Make(_randomGenerator, Randoms.Derive(_evaluationSeed, problemid)) : Randoms.Make(_randomGenerator);
+		
+		for(int run=0; run<numRuns; run++)
+			results[run] = optimise(inIndividual, problem, problemid, run, rand, run==0, describe, verbose);
+		
+		return summarise(errors, problem, results, describe);
+	}
+	
+	/**
+	 * Adds the mean of the runs' results on a problem to the errors, and
+	 * the results themselves to the report if describing.
+	 */
+	private float summarise(ArrayList<Float> errors, Problem problem, float[] results, boolean describe) {
+		float mean = 0;
+		
+		if(describe) {
+			_report += "\n"+problem.getName()+": ";
+		}
+		
+		for(int run=0; run<numRuns; run++) {
+			if(describe) {
+				_report += results[run] + " ";
+			}
+			mean += results[run];
+		}
+		
+		mean /= numRuns; // mean error of the optimisation runs
+		if(errors != null)
+			errors.add(mean); // adds each problem as a fitness case
+		
+		if(describe) {
+			_report += "(" + mean + ")";
+		}
+		
+		return mean;
+	}
+	
+	/**
+	 * Returns the random numbers for one run of a problem, and seeds the
+	 * interpreter that carries it out and the problem's noise on this thread.
+	 * If the GA is seeded, every run has numbers of its own, so it gives the
+	 * same result on any thread.
+	 */
+	private Random runRandom(Interpreter ip, int problemid, int run) {
+		if(!_seeded)
+			return Randoms.Make(_randomGenerator);
+		
+		Random rand = Randoms.Make(_randomGenerator, Randoms.Derive(Randoms.Derive(_evaluationSeed, problemid), run));
+		ip.setSeed(rand.nextLong());
+		benchmark.random.Use(Randoms.Make(_randomGenerator, rand.nextLong()));
+		return rand;
+	}
+	
+	/**
+	 * Carries out the runs of every problem as separate tasks in the
+	 * fork/join pool. Each task borrows a runner, a copy of this GA with its
+	 * own interpreter, swarm and problems, so tasks share nothing but the
+	 * individual and the array of results.
+	 */
+	private void optimiseInParallel(final PushGPIndividual inIndividual, final float[][] results, 
+			final boolean describe) {
+		ArrayList<Callable<Void>> tasks = new ArrayList<Callable<Void>>();
+		final int last = _problems.length - 1;
+		
+		if(runPool == null) {
+			runPool = new ForkJoinPool(runThreads);
+			runners = new ConcurrentLinkedQueue<PopulationOptimisation>();
+		}
+		
+		for(int n=0; n<_problems.length; n++) {
+			for(int run=0; run<numRuns; run++) {
+				final int problemid = n;
+				final int r = run;
+				
+				tasks.add(new Callable<Void>() {
+					public Void call() throws Exception {
+						PopulationOptimisation runner = runners.poll();
+						if(runner == null)
+							runner = (PopulationOptimisation) EvaluationWorker();
+						
+						results[problemid][r] = runner.optimise(inIndividual, runner._problems[problemid], 
+								problemid, r, runRandom(runner._interpreter, problemid, r), 
+								r==0 && problemid==last, describe, false);
+						
+						runners.offer(runner);
+						return null;
+					}
+				});
+			}
+		}
+		
+		try {
+			for(Future<Void> task : runPool.invokeAll(tasks))
+				task.get();
+		} catch (InterruptedException e) {
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException("Optimisation run failed", e.getCause());
+		}
+		
+		// count the runners' steps in this GA's statistics
+		for(PopulationOptimisation runner : runners)
+			_interpreter.MergeStatistics(runner._interpreter);
+	}
+	
+	/**
+	 * Carries out one optimisation run of a problem, using this GA's
+	 * interpreter and swarm.
+	 * @param rand		random numbers for starting points and ensemble choices
+	 * @param record	whether to keep the trajectories, when doing crowding
+	 * @return the objective value of the best point found
+	 */
+	private float optimise(PushGPIndividual inIndividual, Problem problem, int problemid, int run,
+			Random rand, boolean record, boolean describe, boolean verbose) {
+		
 		PopulationOptimiser optimiser = (PopulationOptimiser) inIndividual;
 		Problem currentproblem;
 		
-		float[] current;
-		float mean = 0;
+		SearchPoint current;
 
 		int popBest = -1;
 		float popBestValue = Float.MAX_VALUE;
 		float[][][] trajectories = null;
 		
 		PrintWriter out = null;
-		Random rand = new Random();
 		
 		currPopSize = evolvePopSize ? optimiser.popSize : popSize;
 		int moves = this.evolvePopSize ? Math.floorDiv(this.maxEvaluations,currPopSize) : maxMoves;
-	
+		
+		// when doing crowding, the trajectories  
+		// for the first run need to be saved
+		if(record && reproductionType!=null && reproductionType.contains("crowding"))
+			trajectories = new float[popSize][moves][problem.getDimensionality()];
+		
 		if(describe) {
-			_report += "\n"+problem.getName()+": ";
+			try {
+				out = new PrintWriter(new File(directory, problem.getName()+"_run"+run+".txt"));
+			} catch (FileNotFoundException e) {
+				e.printStackTrace();
+			}
 		}
 		
-		for(int run=0; run<numRuns; run++) {
+		if(verbose) {
+			System.out.println("\n\n### "+problem.getName()+" run "+run);
+		}
+		
+		_interpreter.ClearStacks(); // probably redundant
+		
+		population = new Process[currPopSize];
+		
+		// set limits
+		float lower = problem.getLowerBound(0);
+		float upper = problem.getUpperBound(0);
+		_interpreter.setVectorLimits(lower, upper); // needed for random vector instructions
+		
+		currentproblem = problem;
+		
+		// iterate through swarm
+		for(int i=0; i< currPopSize; i++) {
+			float[] point = new float[problem.getDimensionality()];
 			
-			// when doing crowding, the trajectories  
-			// for the first run need to be saved
-			if(reproductionType!=null) {
-				if(run==0 && reproductionType.contains("crowding"))
-					trajectories = new float[popSize][moves][problem.getDimensionality()];
-				else
-					trajectories = null;
+			// set starting point for swarm member
+			if(fixedStarts) {
+				point = Arrays.copyOf(_starts[problemid][run][i], currentproblem.getDimensionality());
 			}
-			else
-				trajectories = null;
+			else {
+				for(int d=0; d<currentproblem.getDimensionality(); d++) {
+					point[d] = rand.nextFloat() * 
+								(currentproblem.getUpperBound(d)-currentproblem.getLowerBound(d))
+								+ currentproblem.getLowerBound(d);
+				}
+			}
+			
+			SearchPoint start = SearchPoint.Wrap(point);
+			float value = start.getError(currentproblem, false);
+			if(value<popBestValue)
+				popBestValue = value;
+			
+			population[i] = new Process(start, value, _interpreter);
 			
-			popBestValue = Float.MAX_VALUE;
+			// push the current search point and its value onto the interpreter's stacks
+			population[i].stacks._vectorStack.pushPoint(population[i].currentPoint);
+			population[i].stacks._floatStack.push(value);
+			population[i].stacks._boolStack.push(true);
 			
 			if(describe) {
-				try {
-					out = new PrintWriter(problem.getName()+"_run"+run+".txt");
-				} catch (FileNotFoundException e) {
-					e.printStackTrace();
-				}
+				for(int j=0; j<point.length; j++)
+					out.print(point[j]+"\t");
+				out.print(value+"\t");
 			}
 			
-			if(verbose) {
-				System.out.println("\n\n### "+problem.getName()+" run "+run);
+			if(trajectories!=null) {
+				for(int j=0; j<point.length; j++)
+					trajectories[i][0][j] = point[j];
 			}
+		}
+		
+		if(describe) {
+			out.println(popBestValue);
+		}
+		
+		// is this a hybrid optimiser?
+		boolean isEnsemble = inIndividual instanceof PushGPEnsemble;
+		PushGPEnsemble inEnsemble = isEnsemble ? (PushGPEnsemble) inIndividual : null;
+		
+		// compile the program(s) once, rather than on every execution
+		CompiledProgram program = null;
+		CompiledProgram[] ensemblePrograms = null;
+		if(isEnsemble) {
+			ensemblePrograms = new CompiledProgram[inEnsemble._programs.length];
+			for(int i=0; i<ensemblePrograms.length; i++)
+				ensemblePrograms[i] = _interpreter.Compile(inEnsemble._programs[i]);
+		}
+		else {
+			program = inIndividual.GetCompiledProgram(_interpreter);
+		}
+		
+		// generate a trajectory for each swarm member
+		for(int move=0; move<moves; move++) {
 			
-			_interpreter.ClearStacks(); // probably redundant
-			
-			population = new Process[currPopSize];
-			
-			// set limits
-			float lower = problem.getLowerBound(0);
-			float upper = problem.getUpperBound(0);
-			_interpreter.setVectorLimits(lower, upper); // needed for random vector instructions
+			if(verbose) {
+				System.out.println("\n# Move "+move);
+			}
 			
-			currentproblem = problem;
+			int bestIndividual = getBest();
 			
-			// iterate through swarm
-			for(int i=0; i< currPopSize; i++) {
-				float[] point = new float[problem.getDimensionality()];
+			Process ind;
+			for(int p=0; p<currPopSize; p++) {
 				
-				// set starting point for swarm member
-				if(fixedStarts) {
-					point = Arrays.copyOf(_starts[problemid][run][i], currentproblem.getDimensionality());
-				}
-				else {
-					for(int d=0; d<currentproblem.getDimensionality(); d++) {
-						point[d] = rand.nextFloat() * 
-									(currentproblem.getUpperBound(d)-currentproblem.getLowerBound(d))
-									+ currentproblem.getLowerBound(d);
-					}
+				if(verbose) {
+					System.out.println("\n--- Individual "+p);
 				}
 				
-				float value = currentproblem.getError(point, false);
-				if(value<popBestValue)
-					popBestValue = value;
+				ind = population[p];
 				
-				population[i] = new Process(point, value, _interpreter);
+				// switch swarm member's stack states into interpreter
+				population[p].stacks.switchIn(_interpreter);
+				_interpreter.setCurrent(p);
 				
-				// push the current search point and its value onto the interpreter's stacks
-				population[i].stacks._vectorStack.push(population[i].currentPoint);
-				population[i].stacks._floatStack.push(value);
-				population[i].stacks._boolStack.push(true);
+				// make bounds available on input stack
+				_interpreter.inputStack().clear();
+				_interpreter.inputStack().push(lower);
+				_interpreter.inputStack().push(upper);
 				
-				if(describe) {
-					for(int j=0; j<point.length; j++)
-						out.print(point[j]+"\t");
-					out.print(value+"\t");
-				}
+				// place move number, current index and population best index on int stack
+				_interpreter.intStack().push(move);
+				_interpreter.intStack().push(p);
+				_interpreter.intStack().push(bestIndividual);
 				
-				if(trajectories!=null) {
-					for(int j=0; j<point.length; j++)
-						trajectories[i][0][j] = point[j];
-				}
-			}
-			
-			if(describe) {
-				out.println(popBestValue);
-			}
-			
-			// is this a hybrid optimiser?
-			boolean isEnsemble = inIndividual instanceof PushGPEnsemble;
-			PushGPEnsemble inEnsemble = isEnsemble ? (PushGPEnsemble) inIndividual : null;
-			
-			// generate a trajectory for each swarm member
-			for(int move=0; move<moves; move++) {
+				// execute push program
 				
-				if(verbose) {
-					System.out.println("\n# Move "+move);
+				if(isEnsemble) {
+					// if it's a hybrid, choose a program randomly from the pool
+					_interpreter.Execute(
+							ensemblePrograms[rand.nextInt(ensemblePrograms.length)],
+							_executionLimit, verbose);
+				}
+				else {
+					_interpreter.Execute(program,
+							_executionLimit, verbose);
 				}
 				
-				int bestIndividual = getBest();
+				// retrieve next search point from the top of the vector stack,
+				// which is the point pushed, with its objective value, if the
+				// program left it as it was
 				
-				Process ind;
-				for(int p=0; p<currPopSize; p++) {
-					
-					if(verbose) {
-						System.out.println("\n--- Individual "+p);
-					}
-					
-					ind = population[p];
-					
-					// switch swarm member's stack states into interpreter
-					population[p].stacks.switchIn(_interpreter);
-					_interpreter.setCurrent(p);
-					
-					// make bounds available on input stack
-					_interpreter.inputStack().clear();
-					_interpreter.inputStack().push(lower);
-					_interpreter.inputStack().push(upper);
-					
-					// place move number, current index and population best index on int stack
-					_interpreter.intStack().push(move);
-					_interpreter.intStack().push(p);
-					_interpreter.intStack().push(bestIndividual);
-					
-					// execute push program
-					
-					if(isEnsemble) {
-						// if it's a hybrid, choose a program randomly from the pool
-						_interpreter.Execute(
-								inEnsemble._programs[rand.nextInt(inEnsemble._programs.length)],
-								_executionLimit, verbose);
-					}
-					else {
-						_interpreter.Execute(inIndividual._program,
-								_executionLimit, verbose);
-					}
-					
-					// retrieve next search point from the top of the vector stack
-					// no need to clone, since vectors are invariant
-					
-					current = _interpreter.vectorStack().top();
-					if(current != null)
-						ind.currentPoint = current;
+				current = _interpreter.vectorStack().topPoint();
+				if(current != null)
+					ind.currentPoint = current;
+				
+				_interpreter.inputStack().clear();
+				_interpreter.inputStack().push(lower);
+				_interpreter.inputStack().push(upper);
+				
+				if(ind.currentPoint.isWithinBounds(currentproblem)) {
 					
-					_interpreter.inputStack().clear();
-					_interpreter.inputStack().push(lower);
-					_interpreter.inputStack().push(upper);
+					// if a valid point, add its objective value to the float stack
+					ind.currentValue = ind.currentPoint.getError(currentproblem, false);
 					
-					if(currentproblem.isWithinBounds(ind.currentPoint)) {
-						
-						// if a valid point, add its objective value to the float stack
-						ind.currentValue = currentproblem.getError(ind.currentPoint, false);
-						
-						if(ind.currentValue <= ind.bestValue) {
-							// indicate it was an improving move
-							_interpreter.floatStack().push(ind.currentValue);
-							_interpreter.boolStack().push(true);
-							ind.bestPoint = ind.currentPoint;
-							ind.bestValue = ind.currentValue;
-						}
-						else {
-							// indicate it wasn't an improving move
-							_interpreter.floatStack().push(ind.currentValue);
-							_interpreter.boolStack().push(false);
-							// and put its previous best position back on the vector stack
-							_interpreter.vectorStack().push(Arrays.copyOf(ind.bestPoint, ind.bestPoint.length));
-						}
-						
-						if(ind.currentValue < popBestValue) {
-							popBestValue = ind.currentValue;
-							popBest = p;
-						}
+					if(ind.currentValue <= ind.bestValue) {
+						// indicate it was an improving move
+						_interpreter.floatStack().push(ind.currentValue);
+						_interpreter.boolStack().push(true);
+						ind.bestPoint = ind.currentPoint;
+						ind.bestValue = ind.currentValue;
 					}
 					else {
-						// indicate that the search point was out of bounds
-						_interpreter.floatStack().push(Float.MAX_VALUE);
+						// indicate it wasn't an improving move
+						_interpreter.floatStack().push(ind.currentValue);
 						_interpreter.boolStack().push(false);
 						// and put its previous best position back on the vector stack
-						_interpreter.vectorStack().push(Arrays.copyOf(ind.bestPoint, ind.bestPoint.length));
-					}
-					
-					_interpreter.inputStack().push(p);
-					
-					if(describe) {
-						for(int i=0; i<ind.currentPoint.length; i++)
-							out.print(ind.currentPoint[i]+"\t");
-						out.print(ind.currentValue+"\t");
+						_interpreter.vectorStack().pushPoint(ind.bestPoint);
 					}
 					
-					if(trajectories!=null) {
-						for(int i=0; i<ind.currentPoint.length; i++)
-							trajectories[p][move][i] = ind.currentPoint[i];
+					if(ind.currentValue < popBestValue) {
+						popBestValue = ind.currentValue;
+						popBest = p;
 					}
 				}
+				else {
+					// indicate that the search point was out of bounds
+					_interpreter.floatStack().push(Float.MAX_VALUE);
+					_interpreter.boolStack().push(false);
+					// and put its previous best position back on the vector stack
+					_interpreter.vectorStack().pushPoint(ind.bestPoint);
+				}
+				
+				_interpreter.inputStack().push(p);
 				
 				if(describe) {
-					out.println(popBestValue);
+					for(int i=0; i<ind.currentPoint.length(); i++)
+						out.print(ind.currentPoint.get(i)+"\t");
+					out.print(ind.currentValue+"\t");
 				}
 				
-			}
-			if(describe) {
-				_report += popBestValue + " ";
-				out.close();
+				if(trajectories!=null) {
+					for(int i=0; i<ind.currentPoint.length(); i++)
+						trajectories[p][move][i] = ind.currentPoint.get(i);
+				}
 			}
 			
-			if(trajectories != null) {
-				((PopulationOptimiser)inIndividual)
-					.trajectories = trajectories;
+			if(describe) {
+				out.println(popBestValue);
 			}
 			
-			if(verbose) System.out.println();
-			
-			if(verbose)
-				System.out.println(popBestValue);
-			mean += popBestValue;
-			
 		}
-		
-		mean /= numRuns; // mean error of the optimisation runs
-		if(errors != null)
-			errors.add(mean); // adds each problem as a fitness case
-		
 		if(describe) {
-			_report += "(" + mean + ")";
+			out.close();
 		}
 		
-		return mean;
+		if(trajectories != null) {
+			((PopulationOptimiser)inIndividual)
+				.trajectories = trajectories;
+		}
+		
+		if(verbose) System.out.println();
+		
+		if(verbose)
+			System.out.println(popBestValue);
+		
+		return popBestValue;
 	}
 	
 	
@@ -692,7 +875,6 @@ public class PopulationOptimisation extends PushGPWithMoreStandardEAs {
 			PushGPEnsemble inde = new PushGPEnsemble();
 			ind = inde;
 			BufferedReader reader = new BufferedReader(new FileReader(path));
-			File tempfile = new File("program_temp.txt");
 			String maxRead = this.GetParam("ensembleSize", true);
 			int numToRead = (int) lines;
 			if(maxRead!=null)
@@ -702,33 +884,34 @@ public class PopulationOptimisation extends PushGPWithMoreStandardEAs {
 			
 			String line;
 			for(int i=0; i<numToRead; i++) {
-				PrintWriter writer = new PrintWriter(tempfile);
 				line = reader.readLine();
 				line = line.substring(line.indexOf(' ')+1); // remove fitness
-				writer.println(line);
-				writer.println(100);
-				writer.flush();
-				writer.close();
-				InspectorInput input = new InspectorInput(tempfile);
+				InspectorInput input = InspectorInput.FromString(line+"\n100\n");
 				Program program = input.getProgram();
 				inde._programs[i] = program;
-				tempfile.delete();
 				_interpreter = input.getInterpreter();
 			}
 		} else {
 			// load a single program
-			InspectorInput input = new InspectorInput(path);
-			_interpreter = input.getInterpreter();
-			Program program = input.getProgram();
-			ind = new PopulationOptimiser();
-			ind._program = program;
-			if(this.evolvePopSize)
-				ind.popSize = Integer.parseInt(input.getExtras().get("p"));
+			ind = loadProgram(new InspectorInput(path));
 		}
 		
 		return ind;
 	}
 	
+	/**
+	 * Makes an optimiser from a single program, and uses the interpreter it
+	 * was read into.
+	 */
+	PopulationOptimiser loadProgram(InspectorInput input) {
+		_interpreter = input.getInterpreter();
+		PopulationOptimiser ind = new PopulationOptimiser();
+		ind._program = input.getProgram();
+		if(this.evolvePopSize)
+			ind.popSize = Integer.parseInt(input.getExtras().get("p"));
+		return ind;
+	}
+	
 	protected GAIndividual ReproduceByMutation(GAIndividual p) {
 		PopulationOptimiser o = (PopulationOptimiser) super.ReproduceByMutation(p);
 		
@@ -741,6 +924,31 @@ public class PopulationOptimisation extends PushGPWithMoreStandardEAs {
 	}
 	
 	
+	/**
+	 * Makes a GA for reevaluating an existing program, which is loaded
+	 * before calling startReevaluation().
+	 */
+	static PopulationOptimisation forReevaluation(HashMap<String, String> params) throws Exception {
+		PopulationOptimisation opt = new PopulationOptimisation();
+		opt._executionLimit = 100; // TODO: handle this more elegantly
+		opt.SetParams(params);
+		return opt;
+	}
+	
+	/**
+	 * Sets up the problems for the program which has been loaded.
+	 */
+	void startReevaluation() throws Exception {
+		init();
+		
+		// the program's interpreter was made before the parameters were read
+		_interpreter.SetRandomGenerator(_randomGenerator);
+		if(GetBooleanParamWithDefault("use-random-seed", false)) {
+			long seed = Long.parseLong(GetParam("random-seed"));
+			_interpreter.setSeed(seed);
+		}
+	}
+	
 	/**
 	 * Reevaluates an existing Push program (or pool of programs)
 	 * @param args parametersfile inputfile [coconame]
@@ -754,18 +962,20 @@ public class PopulationOptimisation extends PushGPWithMoreStandardEAs {
 			System.exit(0);
 		}
 		
-		PopulationOptimisation opt = new PopulationOptimisation();
-		opt._executionLimit = 100; // TODO: handle this more elegantly
-		opt.SetParams(Params.ReadFromFile(new File(args[0])));
-		
-		PushGPIndividual ind = opt.loadProgram(args[1]);
-		Interpreter interpreter = opt._interpreter;
-		opt.init();
+		reevaluate(args, null);
+	}
+	
+	/**
+	 * Reevaluates a program as main() does, with the files given by relative
+	 * paths, and the files it writes, in the given directory, or in the
+	 * working directory if it is null.
+	 */
+	static void reevaluate(String args[], File directory) throws Exception {
+		PopulationOptimisation opt = forReevaluation(Params.ReadFromFile(resolve(directory, args[0])));
+		opt.directory = directory;
 		
-		if(opt.GetBooleanParamWithDefault("use-random-seed", false)) {
-			long seed = Long.parseLong(opt.GetParam("random-seed"));
-			interpreter.setSeed(seed);
-		}
+		PushGPIndividual ind = opt.loadProgram(resolve(directory, args[1]).getPath());
+		opt.startReevaluation();
 		
 		String problemstring = opt.GetParam("optimisation.problems");
 		if(!problemstring.equalsIgnoreCase("COCO")) {
@@ -788,7 +998,11 @@ public class PopulationOptimisation extends PushGPWithMoreStandardEAs {
 			// change third parameter for multiple restarts (0 = just run once for each problem)
 			opt.EvaluateIndividualUsingCoco(ind, "bbob", 0, name);
 		}
-		
+	}
+	
+	private static File resolve(File directory, String path) {
+		File file = new File(path);
+		return file.isAbsolute() ? file : new File(directory, path);
 	}
 
 	
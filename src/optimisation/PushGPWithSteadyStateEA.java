@@ -0,0 +1,284 @@
+/*
+ * Copyright 2021 Michael Lones
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package optimisation;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+
+import org.spiderland.Psh.GA;
+import org.spiderland.Psh.GAIndividual;
+
+/**
+ * Adds a steady-state EA, in which each offspring is inserted into the
+ * population as soon as it has been evaluated, rather than a whole new
+ * population being made each generation.
+ * Set the "reproduction" parameter to "steadystate" to use it.
+ *
+ * Each of the evaluation-threads threads always has an offspring to evaluate,
+ * so threads don't sit waiting for the slowest individual of a generation.
+ * An offspring replaces the least fit individual of a tournament, which is
+ * never the best individual. Reports and checkpoints are made each time as
+ * many offspring have been inserted as there are individuals in the
+ * population, which counts as a generation. With more than one thread, the
+ * order in which offspring are inserted depends on how long they take to
+ * evaluate, so runs are only repeatable with a single thread. Offspring are
+ * always evaluated on these threads, so the steady-state EA can't be used
+ * with evaluation-port. Once the run is over, offspring still being
+ * evaluated are cancelled and the threads are stopped.
+ */
+public abstract class PushGPWithSteadyStateEA extends PushGPWithMoreStandardEAs {
+
+	protected boolean steadyState;		// Whether the steady-state EA is in use
+	protected int inserted;				// Offspring inserted during the current generation
+
+	// the offspring each evaluation thread is evaluating, and their results
+	protected transient GAIndividual[] offspring;
+	protected transient CompletionService<Integer> completions;
+	protected transient Future<?>[] evaluations;
+
+
+	@Override
+	protected void InitFromParameters() throws Exception {
+		super.InitFromParameters();
+
+		steadyState = reproductionType.equals("steadystate");
+
+		if(steadyState && _evaluationPort >= 0)
+			throw new Exception("The steadystate reproduction evaluates offspring on "
+					+ "threads of its own, so it can't be used with evaluation-port");
+	}
+
+
+	@Override
+	public boolean Run(int inGenerations) throws Exception {
+		if(!steadyState)
+			return super.Run(inGenerations);
+
+		// as GA.Run, but the population is evaluated once at the start, and
+		// after that each generation is a population's worth of insertions
+		while (!Terminate() && inGenerations != 0) {
+			BeginGeneration();
+
+			if(_generationCount > 0)
+				InsertOffspring();
+			Evaluate();
+
+			EndGeneration();
+
+			Print(Report());
+
+			Checkpoint();
+
+			System.gc();
+
+			_generationCount++;
+			inGenerations--;
+		}
+
+		if(Terminate()) {
+			Print(FinalReport());
+			StopEvaluation();
+		}
+
+		return (_generationCount < _maxGenerations);
+	}
+
+
+	/**
+	 * Cancels the offspring still being evaluated and stops the evaluation
+	 * threads, which are made again if the run is continued.
+	 */
+	protected void StopEvaluation() {
+		if(completions != null) {
+			for(Future<?> evaluation : evaluations)
+				evaluation.cancel(true);
+			completions = null;
+			evaluations = null;
+			offspring = null;
+		}
+
+		if(_evaluationPool != null) {
+			_evaluationPool.shutdown();
+			_evaluationPool = null;
+			_evaluators = null;
+		}
+	}
+
+
+	/**
+	 * Leaves the population as it is after the first generation, since by
+	 * then its fitnesses have been found as the offspring were inserted.
+	 */
+	@Override
+	protected void EvaluatePopulation() {
+		if(!steadyState || _generationCount == 0)
+			super.EvaluatePopulation();
+	}
+
+
+	/**
+	 * Inserts offspring into the population as the evaluation threads finish
+	 * them, until a generation's worth have been inserted or the problem is
+	 * solved, and gives each thread a new offspring as soon as it's done.
+	 * Offspring still being evaluated at the end of the generation go into
+	 * the next one.
+	 */
+	protected void InsertOffspring() throws Exception {
+		GA[] evaluators = Evaluators();
+		int popsize = _populations[_currentPopulation].length;
+
+		if(completions == null) {
+			offspring = new GAIndividual[evaluators.length];
+			evaluations = new Future<?>[evaluators.length];
+			completions = new ExecutorCompletionService<Integer>(_evaluationPool);
+			for(int t=0; t<evaluators.length; t++)
+				Submit(evaluators, t);
+		}
+
+		inserted = 0;
+		while(inserted < popsize && !Success()) {
+			int t;
+			try {
+				t = completions.take().get();
+			} catch (ExecutionException e) {
+				throw new RuntimeException("Evaluation failed", e.getCause());
+			}
+
+			MergeEvaluation(evaluators[t]);
+
+			int replaced = ReplacementIndex();
+			_populations[_currentPopulation][replaced] = offspring[t];
+			if(offspring[t].GetFitness() < _bestMeanFitness) {
+				_bestMeanFitness = offspring[t].GetFitness();
+				_bestIndividual = replaced;
+			}
+			inserted++;
+
+			Submit(evaluators, t);
+		}
+	}
+
+
+	/**
+	 * The steady-state EA has just the one population.
+	 */
+	@Override
+	protected int EvaluatedPopulation() {
+		return steadyState ? _currentPopulation : super.EvaluatedPopulation();
+	}
+
+
+	/**
+	 * Inserts immigrants as if they were offspring, keeping the fitness they
+	 * were given by the GA they came from.
+	 */
+	@Override
+	protected void Immigrate(GAIndividual[] inImmigrants) {
+		if(!steadyState) {
+			super.Immigrate(inImmigrants);
+			return;
+		}
+
+		for(GAIndividual immigrant : inImmigrants) {
+			int replaced = ReplacementIndex();
+			_populations[_currentPopulation][replaced] = immigrant;
+			if(immigrant.GetFitness() < _bestMeanFitness) {
+				_bestMeanFitness = immigrant.GetFitness();
+				_bestIndividual = replaced;
+			}
+		}
+	}
+
+
+	/**
+	 * Breeds an offspring and starts evaluation thread t evaluating it.
+	 */
+	private void Submit(GA[] evaluators, final int t) {
+		final PushGPWithSteadyStateEA evaluator = (PushGPWithSteadyStateEA) evaluators[t];
+		final GAIndividual child = BreedOffspring();
+
+		if(_seeded)
+			evaluator.SeedRandom(_RNG.nextLong());
+
+		offspring[t] = child;
+		evaluations[t] = completions.submit(new Callable<Integer>() {
+			public Integer call() {
+				evaluator.EvaluateIndividual(child);
+				return t;
+			}
+		});
+	}
+
+
+	/**
+	 * Makes an offspring by mutating or recombining parents chosen by
+	 * tournament, as the standard EA does for each child.
+	 */
+	protected GAIndividual BreedOffspring() {
+		int popsize = _populations[_currentPopulation].length;
+		float psum = _crossoverPercent + _mutationPercent;
+		GAIndividual next;
+
+		if (_RNG.nextFloat() < _mutationPercent/psum) {
+			next = ReproduceByMutation(Select(_tournamentSize, _RNG.nextInt(popsize)));
+		} else {
+			// crossover changes the first parent, so both are copied in case
+			// either is returned as it is
+			GAIndividual a = Select(_tournamentSize, _RNG.nextInt(popsize)).clone();
+			GAIndividual b = Select(_tournamentSize, _RNG.nextInt(popsize)).clone();
+			next = ReproduceByCrossover(a, b);
+		}
+
+		// and then maybe simplify the child
+		if(_RNG.nextFloat() < _simplificationPercent/100f) {
+			next = ReproduceBySimplification(next);
+		}
+
+		return next;
+	}
+
+
+	/**
+	 * Chooses the individual an offspring replaces, which is the least fit
+	 * of a tournament that never includes the best individual.
+	 */
+	protected int ReplacementIndex() {
+		int popsize = _populations[_currentPopulation].length;
+		int worst = -1;
+		float worstFitness = 0;
+
+		for(int n=0; n<Math.max(1, _tournamentSize); n++) {
+			int candidate;
+			do {
+				candidate = _RNG.nextInt(popsize);
+			} while(candidate == _bestIndividual && popsize > 1);
+
+			// an individual whose fitness is NaN counts as less fit than any other
+			float fitness = _populations[_currentPopulation][candidate].GetFitness();
+			if(worst == -1 || !(fitness <= worstFitness)) {
+				worst = candidate;
+				worstFitness = fitness;
+			}
+		}
+
+		return worst;
+	}
+
+}
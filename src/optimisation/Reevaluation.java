@@ -0,0 +1,233 @@
+/*
+ * Copyright 2021 Michael Lones
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package optimisation;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.spiderland.Psh.InspectorInput;
+import org.spiderland.Psh.Params;
+
+/**
+ * Reevaluates the best-of-run programs in one or more batches of runs, as
+ * processruns_reevaluate.sh does, but several at a time in one JVM, and
+ * writes the results to one tab-separated file, with a line for each
+ * program, number of dimensions and problem:
+ *
+ *   directory file dimensions problem mean stddev errors
+ *
+ * where errors are the best objective values found by each run.
+ *
+ * As with the script, the parameters are those in each batch's
+ * _params.pushgp, with optimisation.modifyproblems and
+ * optimisation.fixedstarts set to false, optimisation.runs set to 25, and
+ * then any settings in additions.pushgp in the working directory. The
+ * problems, dimensions and number of runs can also be given on the command
+ * line, along with any other settings.
+ */
+public class Reevaluation {
+
+	/**
+	 * The reevaluation of a program with a number of dimensions.
+	 */
+	public static class Task implements Callable<String> {
+		final String directory;
+		final String file;
+		final String program;
+		final HashMap<String, String> params;
+
+		public Task(String directory, String file, String program, HashMap<String, String> params) {
+			this.directory = directory;
+			this.file = file;
+			this.program = program;
+			this.params = params;
+		}
+
+		/**
+		 * Reevaluates the program, returning its lines of the results.
+		 */
+		public String call() throws Exception {
+			PopulationOptimisation opt = PopulationOptimisation.forReevaluation(params);
+			PopulationOptimiser ind = opt.loadProgram(InspectorInput.FromString(program + "\n100\n"));
+			opt.startReevaluation();
+
+			float[][] results = opt.optimiseAll(ind, false, false);
+
+			StringBuilder lines = new StringBuilder();
+			for(int n=0; n<results.length; n++) {
+				// the mean is worked out as the GA works out errors
+				float mean = 0;
+				for(float result : results[n])
+					mean += result;
+				mean /= results[n].length;
+
+				double sumsq = 0;
+				for(float result : results[n])
+					sumsq += (result - mean) * (result - mean);
+				float stddev = (float) Math.sqrt(sumsq / results[n].length);
+
+				lines.append(directory + "\t" + file + "\t" + params.get("optimisation.dimensions") + "\t"
+						+ opt._problems[n].getName() + "\t" + mean + "\t" + stddev + "\t");
+				for(int run=0; run<results[n].length; run++)
+					lines.append((run > 0 ? " " : "") + results[n][run]);
+				lines.append("\n");
+			}
+
+			return lines.toString();
+		}
+	}
+
+	/**
+	 * Returns the best program from an output file, or null if the run
+	 * didn't finish. This is the last one reported, which has been
+	 * simplified.
+	 */
+	public static String bestProgram(File output) throws IOException {
+		final String marker = ">> Best Program:";
+		String program = null;
+
+		BufferedReader reader = new BufferedReader(new FileReader(output));
+		String line;
+		while((line = reader.readLine()) != null) {
+			if(line.startsWith(marker))
+				program = line.substring(marker.length()).trim();
+		}
+		reader.close();
+
+		return program;
+	}
+
+	/**
+	 * Reevaluates the best-of-run programs in the given directories.
+	 * @param args [-threads n] [-problems p,p,...] [-dimensions d,d,...] [-runs n] [-set name=value]... [-out file] directories
+	 */
+	public static void main(String args[]) throws Exception {
+		int threads = Runtime.getRuntime().availableProcessors();
+		String problems = null;
+		String[] dimensions = null;
+		String runs = "25";
+		String out = "reevaluated.tsv";
+		HashMap<String, String> overrides = new HashMap<String, String>();
+
+		int arg = 0;
+		while(arg < args.length - 1 && args[arg].startsWith("-")) {
+			String option = args[arg++];
+			String value = args[arg++];
+
+			if(option.equals("-threads"))
+				threads = Integer.parseInt(value);
+			else if(option.equals("-problems"))
+				problems = value;
+			else if(option.equals("-dimensions"))
+				dimensions = value.split(",");
+			else if(option.equals("-runs"))
+				runs = value;
+			else if(option.equals("-out"))
+				out = value;
+			else if(option.equals("-set") && value.indexOf('=') != -1)
+				overrides.putAll(Params.Read(value));
+			else
+				arg = args.length;
+		}
+
+		if(arg >= args.length) {
+			System.out.println("Usage: Reevaluation [-threads n] [-problems p,p,...] [-dimensions d,d,...] [-runs n] [-set name=value]... [-out file] directories");
+			System.exit(0);
+		}
+
+		File additions = new File("additions.pushgp");
+
+		ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads));
+		ArrayList<Task> tasks = new ArrayList<Task>();
+		ArrayList<Future<String>> results = new ArrayList<Future<String>>();
+
+		for(; arg<args.length; arg++) {
+			File directory = new File(args[arg]);
+
+			HashMap<String, String> params = Params.ReadFromFile(new File(directory, "_params.pushgp"));
+			params.put("optimisation.modifyproblems", "false");
+			params.put("optimisation.fixedstarts", "false");
+			params.put("optimisation.runs", runs);
+			if(additions.exists())
+				params.putAll(Params.ReadFromFile(additions));
+			params.putAll(overrides);
+			if(problems != null)
+				params.put("optimisation.problems", problems);
+
+			// each program has a thread of its own, and no output of its own
+			params.put("optimisation.threads", "1");
+			params.remove("output-file");
+			params.remove("checkpoint-prefix");
+
+			File[] outputs = directory.listFiles(new FilenameFilter() {
+				public boolean accept(File dir, String name) {
+					return name.startsWith("output") && name.endsWith(".txt");
+				}
+			});
+			Arrays.sort(outputs);
+
+			for(File output : outputs) {
+				String program = bestProgram(output);
+				if(program == null) {
+					System.err.println("No best program in " + output + ", skipping");
+					continue;
+				}
+
+				String[] dims = dimensions != null ? dimensions : new String[] { params.get("optimisation.dimensions") };
+				for(String d : dims) {
+					HashMap<String, String> taskParams = new HashMap<String, String>(params);
+					taskParams.put("optimisation.dimensions", d.trim());
+					Task task = new Task(directory.getCanonicalFile().getName(), output.getName(), program, taskParams);
+					tasks.add(task);
+					results.add(pool.submit(task));
+				}
+			}
+		}
+
+		// the lines are written in order, as soon as they are ready
+		PrintWriter writer = new PrintWriter(out);
+		try {
+			writer.println("directory\tfile\tdimensions\tproblem\tmean\tstddev\terrors");
+			writer.flush();
+			for(int n=0; n<results.size(); n++) {
+				Task task = tasks.get(n);
+				try {
+					writer.print(results.get(n).get());
+					writer.flush();
+				} catch(ExecutionException e) {
+					System.err.println("Reevaluating " + task.file + " in " + task.directory + " with "
+							+ task.params.get("optimisation.dimensions") + " dimensions failed (" + e.getCause() + "), skipping");
+				}
+			}
+		} finally {
+			writer.close();
+			pool.shutdown();
+		}
+	}
+}
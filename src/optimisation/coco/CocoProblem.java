@@ -56,5 +56,30 @@ public class CocoProblem implements Problem {
 		double[] val = problem.evaluateFunction(dinputs);
 		return (float) val[0];
 	}
+	
+	/**
+	 * The errors are the objective values.
+	 */
+	@Override
+	public float getOptimum() {
+		return 0;
+	}
+	
+	/**
+	 * COCO logs every evaluation, so points are evaluated every time.
+	 */
+	@Override
+	public boolean isCacheable() {
+		return false;
+	}
+	
+	/**
+	 * COCO problems are only evaluated by the thread running the
+	 * benchmark, and the suite has one instance of each.
+	 */
+	@Override
+	public Problem copy() {
+		return this;
+	}
 
 }
@@ -33,6 +33,7 @@ public class ModifiedOriginalCEC2005Problem implements Problem {
 	float[] offsets;		// offsets for all dimensions (proportional to range)
 	float[] scales;			// scaling factors for all dimensions
 	boolean[] flips;		// whether to flip each dimension
+	float[] modified = new float[0];	// the inputs, transformed
 	
 	public ModifiedOriginalCEC2005Problem() {
 		
@@ -95,7 +96,8 @@ public class ModifiedOriginalCEC2005Problem implements Problem {
 
 	@Override
 	public float evaluate(float[] inputs, boolean rescale) {
-		float[] modified = new float[inputs.length];
+		if(modified.length != inputs.length)
+			modified = new float[inputs.length];
 		for(int i=0; i<modified.length; i++) {
 			if(flips[i]) {
 				modified[i] = lowerBounds[i] + (upperBounds[i] - modified[i]);
@@ -128,5 +130,27 @@ public class ModifiedOriginalCEC2005Problem implements Problem {
 	public float getError(float[] inputs, boolean rescale) {
 		return evaluate(inputs, rescale) - original._optimum;
 	}
+	
+	@Override
+	public float getOptimum() {
+		return original.getOptimum();
+	}
+	
+	@Override
+	public boolean isCacheable() {
+		return original.isCacheable();
+	}
+	
+	@Override
+	public Problem copy() {
+		ModifiedOriginalCEC2005Problem copy = new ModifiedOriginalCEC2005Problem();
+		copy.original = (OriginalCEC2005Problem) original.copy();
+		copy.lowerBounds = lowerBounds;
+		copy.upperBounds = upperBounds;
+		copy.offsets = offsets;
+		copy.scales = scales;
+		copy.flips = flips;
+		return copy;
+	}
 
 }
@@ -26,15 +26,18 @@ import optimisation.problems.cec2005.*;
 public class OriginalCEC2005Problem implements Problem {
 
 	test_func _testFunction;
+	int _number;
 	int _dims;
 	float _ulimit;
     float _llimit;
     float _optimum;
     String _name;
+    double[] _x = new double[0];	// the inputs, as the test function takes them
     static final float[] optima = new float[] {-450f, -450f, -450f, -450f, -310f, 390f, -180f, -140f, -330f, -330f, 90f, -460f, -130f, -300f, 120f, 120f, 120f, 10f, 10f, 10f, 360f, 360f, 360f, 260f, 260f};
 	
 	public OriginalCEC2005Problem(int problemnumber, int dimensionality) {
 		_name = "cecF"+problemnumber;
+		_number = problemnumber;
 		_dims = dimensionality;
 		_optimum = optima[problemnumber-1];
 		benchmark cec2005ProblemFactory = new benchmark();
@@ -98,7 +101,9 @@ public class OriginalCEC2005Problem implements Problem {
 
 	@Override
 	public float evaluate(float[] inputs, boolean rescale) {
-		double[] x = new double[inputs.length];
+		if(_x.length != inputs.length)
+			_x = new double[inputs.length];
+		double[] x = _x;
 		for(int i=0; i<inputs.length; i++) {
 			x[i] = inputs[i];
 			if(rescale) x[i] = (x[i] * (getUpperBound(i)-getLowerBound(i)))
@@ -117,6 +122,20 @@ public class OriginalCEC2005Problem implements Problem {
 	public float getError(float[] inputs, boolean rescale) {
 		return evaluate(inputs, rescale) - _optimum;
 	}
+	
+	@Override
+	public float getOptimum() {
+		return _optimum;
+	}
+	
+	/**
+	 * F4 and F17 add noise to the value, as do F24 and F25 in some regions,
+	 * so their points are evaluated every time.
+	 */
+	@Override
+	public boolean isCacheable() {
+		return _number != 4 && _number != 17 && _number != 24 && _number != 25;
+	}
 
 	@Override
 	public boolean isWithinBounds(float[] inputs) {
@@ -141,4 +160,13 @@ public class OriginalCEC2005Problem implements Problem {
 	public String getName() {
 		return _name;
 	}
+	
+	/**
+	 * The test functions keep their working in fields, so a copy
+	 * has a test function of its own.
+	 */
+	@Override
+	public Problem copy() {
+		return new OriginalCEC2005Problem(_number, _dims);
+	}
 }
@@ -31,4 +31,23 @@ public interface Problem {
 	public boolean isWithinBounds(float[] inputs);
 	
 	public float getError(float[] inputs, boolean rescale);
+	
+	/**
+	 * Returns the objective value of the optimum, which getError()
+	 * subtracts from that of a point.
+	 */
+	public float getOptimum();
+	
+	/**
+	 * Returns whether evaluating a point always gives the same value, and
+	 * has no other effect, so that the value can be kept with the point
+	 * (see SearchPoint) rather than evaluating it again.
+	 */
+	public boolean isCacheable();
+	
+	/**
+	 * Returns a problem which is the same as this one, but which can be
+	 * evaluated on another thread at the same time.
+	 */
+	public Problem copy();
 }
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2021 Michael Lones
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package optimisation.problems;
+
+/**
+ * A search point which can't be changed, so that the swarm, the vector stack
+ * and the problems can share it rather than copying it. A changed point is
+ * a new point.
+ *
+ * The objective value of the point is kept with it, for the last problem it
+ * was evaluated on, and is used again if the problem is cacheable. A point
+ * belongs to one optimisation run, so the value isn't synchronised.
+ *
+ * @author michaellones
+ */
+public final class SearchPoint {
+
+	private final float[] _coordinates;
+
+	// the problem the point was last evaluated on, whether it was
+	// rescaled, and the objective value
+	private Problem _problem;
+	private boolean _rescale;
+	private float _value;
+
+	private SearchPoint(float[] coordinates) {
+		_coordinates = coordinates;
+	}
+
+	/**
+	 * Makes a point at a copy of the given coordinates.
+	 */
+	public static SearchPoint Copy(float[] coordinates) {
+		return new SearchPoint(coordinates.clone());
+	}
+
+	/**
+	 * Makes a point at the given coordinates, without copying them. The
+	 * caller mustn't change the array afterwards.
+	 */
+	public static SearchPoint Wrap(float[] coordinates) {
+		return new SearchPoint(coordinates);
+	}
+
+	public int length() {
+		return _coordinates.length;
+	}
+
+	public float get(int i) {
+		return _coordinates[i];
+	}
+
+	/**
+	 * Copies the coordinates into an array, from the given offset.
+	 */
+	public void copyTo(float[] dest, int offset) {
+		System.arraycopy(_coordinates, 0, dest, offset, _coordinates.length);
+	}
+
+	/**
+	 * Returns a copy of the coordinates, which can be changed.
+	 */
+	public float[] toArray() {
+		return _coordinates.clone();
+	}
+
+	/**
+	 * Returns the objective value of the point, evaluating it only if it
+	 * hasn't been on this problem, or the problem isn't cacheable.
+	 */
+	public float evaluate(Problem problem, boolean rescale) {
+		if(problem != _problem || rescale != _rescale || !problem.isCacheable()) {
+			_value = problem.evaluate(_coordinates, rescale);
+			_problem = problem;
+			_rescale = rescale;
+		}
+		return _value;
+	}
+
+	/**
+	 * Returns the difference between the objective value of the point and
+	 * the optimum, as Problem.getError() does.
+	 */
+	public float getError(Problem problem, boolean rescale) {
+		if(!problem.isCacheable())
+			return problem.getError(_coordinates, rescale);
+		return evaluate(problem, rescale) - problem.getOptimum();
+	}
+
+	public boolean isWithinBounds(Problem problem) {
+		return problem.isWithinBounds(_coordinates);
+	}
+}
@@ -50,6 +50,9 @@ import java.io.*;
 import java.util.*;
 import java.text.*;
 import java.lang.reflect.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.spiderland.Psh.Randoms;
 
 public class benchmark {
 
@@ -96,15 +99,26 @@ public class benchmark {
 	static final public DecimalFormat percentageFormatter = new DecimalFormat("0.0000000000");
 
 	// Random number generator
-	// If you want to plan a specific seed, do it here.
-	static final public Random random = new Random();
+	// Each thread has numbers of its own, so that runs on different threads
+	// can each be seeded.
+	static final public Randoms.PerThreadRandom random = Randoms.PerThread();
 
 	// Class loader & reflection
 	static final public ClassLoader loader = ClassLoader.getSystemClassLoader();
 	static final Class[] test_func_arg_types = { int.class, double.class };
 
 	// Class variables
-	static private double[] m_iSqrt;
+	static final private double[] m_iSqrt = new double[MAX_SUPPORT_DIM];
+	static {
+		for (int i = 0 ; i < MAX_SUPPORT_DIM ; i ++) {
+			m_iSqrt[i] = Math.sqrt(((double )i) + 1.0);
+		}
+	}
+
+	// The numbers on each line of each data file which has been loaded, so
+	//	that each file is only read once, however many test functions in
+	//	however many threads are made from it. Test functions get copies.
+	static final private ConcurrentHashMap<String, double[][]> m_dataFiles = new ConcurrentHashMap<String, double[][]>();
 
 	// Instance variables
 	private double[] m_biases;
@@ -125,13 +139,8 @@ public class benchmark {
 	}
 	benchmark (String file_bias) {
 		m_biases = new double[NUM_TEST_FUNC];
-		m_iSqrt = new double[MAX_SUPPORT_DIM];
 
 		loadRowVectorFromFile(file_bias, NUM_TEST_FUNC, m_biases);
-
-		for (int i = 0 ; i < MAX_SUPPORT_DIM ; i ++) {
-			m_iSqrt[i] = Math.sqrt(((double )i) + 1.0);
-		}
 	}
 
 	//
@@ -559,10 +568,9 @@ public class benchmark {
 	//
 	static public void loadTestDataFromFile(String file, int num_test_points, int test_dimension, double[][] x, double[] f) {
 		try {
-			BufferedReader brSrc = new BufferedReader(new FileReader(benchmark.class.getResource(file).getFile()));
-			loadMatrix(brSrc, num_test_points, test_dimension, x);
-			loadColumnVector(brSrc, num_test_points, f);
-			brSrc.close();
+			double[][] lines = loadDataFile(file);
+			loadMatrix(lines, 0, num_test_points, test_dimension, x);
+			loadColumnVector(lines, num_test_points, num_test_points, f);
 		}
 		catch (Exception e) {
 			e.printStackTrace();
@@ -572,9 +580,7 @@ public class benchmark {
 
 	static public void loadRowVectorFromFile(String file, int columns, double[] row) {
 		try {
-			BufferedReader brSrc = new BufferedReader(new FileReader(benchmark.class.getResource(file).getFile()));
-			loadRowVector(brSrc, columns, row);
-			brSrc.close();
+			loadRowVector(loadDataFile(file)[0], columns, row);
 		}
 		catch (Exception e) {
 			e.printStackTrace();
@@ -593,9 +599,7 @@ public class benchmark {
 
 	static public void loadColumnVectorFromFile(String file, int rows, double[] column) {
 		try {
-			BufferedReader brSrc = new BufferedReader(new FileReader(benchmark.class.getResource(file).getFile()));
-			loadColumnVector(brSrc, rows, column);
-			brSrc.close();
+			loadColumnVector(loadDataFile(file), 0, rows, column);
 		}
 		catch (Exception e) {
 			e.printStackTrace();
@@ -614,11 +618,10 @@ public class benchmark {
 
 	static public void loadNMatrixFromFile(String file, int N, int rows, int columns, double[][][] matrix) {
 		try {
-			BufferedReader brSrc = new BufferedReader(new FileReader(benchmark.class.getResource(file).getFile()));
+			double[][] lines = loadDataFile(file);
 			for (int i = 0 ; i < N ; i ++) {
-				loadMatrix(brSrc, rows, columns, matrix[i]);
+				loadMatrix(lines, i * rows, rows, columns, matrix[i]);
 			}
-			brSrc.close();
 		}
 		catch (Exception e) {
 			e.printStackTrace();
@@ -628,10 +631,7 @@ public class benchmark {
 
 	static public void loadMatrixFromFile(String file, int rows, int columns, double[][] matrix) {
 		try {
-			System.out.println(file);
-			BufferedReader brSrc = new BufferedReader(new FileReader(benchmark.class.getResource(file).getFile()));
-			loadMatrix(brSrc, rows, columns, matrix);
-			brSrc.close();
+			loadMatrix(loadDataFile(file), 0, rows, columns, matrix);
 		}
 		catch (Exception e) {
 			e.printStackTrace();
@@ -644,4 +644,57 @@ public class benchmark {
 			loadRowVector(brSrc, columns, matrix[i]);
 		}
 	}
+
+	//
+	// Loading from the numbers read from a data file
+	//
+	static private double[][] loadDataFile(String file) throws Exception {
+		double[][] lines = m_dataFiles.get(file);
+		if (lines == null) {
+			lines = readDataFile(file);
+			double[][] loaded = m_dataFiles.putIfAbsent(file, lines);
+			if (loaded != null) {
+				lines = loaded;
+			}
+		}
+		return lines;
+	}
+
+	static private double[][] readDataFile(String file) throws Exception {
+		ArrayList<double[]> lines = new ArrayList<double[]>();
+		BufferedReader brSrc = new BufferedReader(new FileReader(benchmark.class.getResource(file).getFile()));
+		String stLine;
+		while ((stLine = brSrc.readLine()) != null) {
+			StringTokenizer stTokenizer = new StringTokenizer(stLine);
+			double[] line = new double[stTokenizer.countTokens()];
+			for (int i = 0 ; i < line.length ; i ++) {
+				line[i] = Double.parseDouble(stTokenizer.nextToken());
+			}
+			lines.add(line);
+		}
+		brSrc.close();
+		return lines.toArray(new double[lines.size()][]);
+	}
+
+	static private void loadRowVector(double[] line, int columns, double[] row) {
+		if (line.length < columns) {
+			throw new NoSuchElementException();
+		}
+		System.arraycopy(line, 0, row, 0, columns);
+	}
+
+	static private void loadColumnVector(double[][] lines, int first, int rows, double[] column) {
+		for (int i = 0 ; i < rows ; i ++) {
+			if (lines[first + i].length < 1) {
+				throw new NoSuchElementException();
+			}
+			column[i] = lines[first + i][0];
+		}
+	}
+
+	static private void loadMatrix(double[][] lines, int first, int rows, int columns, double[][] matrix) {
+		for (int i = 0 ; i < rows ; i ++) {
+			loadRowVector(lines[first + i], columns, matrix[i]);
+		}
+	}
 }
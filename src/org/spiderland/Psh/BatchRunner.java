@@ -0,0 +1,225 @@
+/*
+ * Copyright 2009-2010 Jon Klein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spiderland.Psh;
+
+import java.io.*;
+import java.text.SimpleDateFormat;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Carries out batches of GA runs several at a time in one JVM, rather than
+ * in a JVM for each run as the runpsh.sh and runpshs.sh scripts do, so that
+ * the runs share the JVM's compiled code and the data which problems load.
+ *
+ * As with runpsh.sh, each batch of runs of a parameters file is put in a
+ * directory named after the file and the date, with a copy of the
+ * parameters, and an output file for each run, which has what the run
+ * printed between the dates it started and finished. Runs whose output file
+ * already exists are skipped, and the output files of runs which are
+ * interrupted are deleted, so that running the batches again carries on
+ * where they left off.
+ */
+
+public class BatchRunner {
+
+	/**
+	 * A run of a batch, and the file its output goes to.
+	 */
+	private static class BatchRun {
+		final String name;
+		final HashMap<String, String> parameters;
+		final File output;
+
+		BatchRun(String inName, HashMap<String, String> inParameters, File inOutput) {
+			name = inName;
+			parameters = inParameters;
+			output = inOutput;
+		}
+	}
+
+	private final HashMap<String, String> _overrides;
+	private final long _seeds[];
+
+	private final ArrayList<BatchRun> _runs = new ArrayList<BatchRun>();
+	private final Set<BatchRun> _running = Collections.synchronizedSet(new HashSet<BatchRun>());
+
+	private PrintStream _stdout;
+
+	/**
+	 * Makes a runner whose runs have the given parameters in place of those
+	 * in their parameters files. Given seeds, the nth run of each batch is
+	 * seeded with the nth seed.
+	 */
+	public BatchRunner(HashMap<String, String> inOverrides, long inSeeds[]) {
+		_overrides = new HashMap<String, String>(inOverrides);
+		_seeds = inSeeds;
+	}
+
+	/**
+	 * Adds a batch of inRepeats runs of a parameters file, in a directory in
+	 * inDirectory. Makes the directory and the copy of the parameters.
+	 */
+	public void AddBatch(File inParamsFile, int inRepeats, File inDirectory) throws Exception {
+		if (_seeds != null && _seeds.length < inRepeats)
+			throw new Exception("There are fewer seeds than runs");
+
+		HashMap<String, String> params = Params.ReadFromFile(inParamsFile);
+		params.putAll(_overrides);
+
+		// The output goes to the output files, and there is no output-file
+		// for all the runs to write over
+		params.remove("output-file");
+
+		String base = inParamsFile.getName();
+		if (base.indexOf('.') != -1)
+			base = base.substring(0, base.indexOf('.'));
+
+		File directory = new File(inDirectory, base
+				+ new SimpleDateFormat("ddMMyyyy").format(new Date()));
+		directory.mkdirs();
+		WriteParams(inParamsFile, new File(directory, "_params.pushgp"));
+
+		for (int i = 1; i <= inRepeats; i++) {
+			HashMap<String, String> runParams = new HashMap<String, String>(params);
+
+			if (_seeds != null) {
+				runParams.put("use-random-seed", "true");
+				runParams.put("random-seed", String.valueOf(_seeds[i - 1]));
+			}
+
+			_runs.add(new BatchRun(base + " run " + i, runParams,
+					new File(directory, "output" + i + ".txt")));
+		}
+	}
+
+	/**
+	 * Copies the parameters file, adding the overrides and the seeds.
+	 */
+	private void WriteParams(File inParamsFile, File inCopy) throws Exception {
+		PrintStream copy = new PrintStream(new FileOutputStream(inCopy));
+		copy.print(Params.ReadFileString(inParamsFile));
+
+		if (!_overrides.isEmpty() || _seeds != null) {
+			copy.println();
+			copy.println("# PshBatch");
+
+			for (Map.Entry<String, String> override : _overrides.entrySet())
+				copy.println(override.getKey() + " = " + override.getValue());
+
+			if (_seeds != null)
+				copy.println("# seeds " + Arrays.toString(_seeds));
+		}
+
+		copy.close();
+	}
+
+	/**
+	 * Carries out the runs which haven't been already, inJobs at a time,
+	 * returning the number which failed.
+	 */
+	public int Run(int inJobs) throws Exception {
+		// What each run prints goes to its output file
+		ThreadOutput.Install();
+		_stdout = ThreadOutput.Original();
+
+		Thread cleanup = new Thread() {
+			public void run() {
+				synchronized (_running) {
+					for (BatchRun run : _running)
+						run.output.delete();
+				}
+			}
+		};
+		Runtime.getRuntime().addShutdownHook(cleanup);
+
+		ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, inJobs),
+				new ThreadFactory() {
+					public Thread newThread(Runnable inRunnable) {
+						return new Thread(inRunnable, "run");
+					}
+				});
+
+		ArrayList<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+
+		try {
+			for (final BatchRun run : _runs) {
+				results.add(pool.submit(new Callable<Boolean>() {
+					public Boolean call() {
+						return Run(run);
+					}
+				}));
+			}
+
+			int failed = 0;
+			for (Future<Boolean> result : results)
+				if (!result.get())
+					failed++;
+
+			return failed;
+		} finally {
+			pool.shutdown();
+			Runtime.getRuntime().removeShutdownHook(cleanup);
+		}
+	}
+
+	/**
+	 * Carries out a run, unless it has been already. Returns false if it
+	 * failed.
+	 */
+	private boolean Run(BatchRun inRun) {
+		if (inRun.output.exists()) {
+			_stdout.println(inRun.name + " already completed");
+			return true;
+		}
+
+		GA ga = null;
+		boolean succeeded = false;
+
+		try {
+			OutputStream output = new BufferedOutputStream(new FileOutputStream(inRun.output));
+			_running.add(inRun);
+			ThreadOutput.Set(output);
+
+			try {
+				output.write((new Date() + "\n").getBytes());
+
+				ga = (GA) Class.forName(inRun.parameters.get("problem-class")).newInstance();
+				ga._outputStream = output;
+				ga.SetParams(inRun.parameters);
+				ga.InitFromParameters();
+				ga.Run();
+
+				output.write((new Date() + "\n").getBytes());
+				succeeded = true;
+			} finally {
+				ThreadOutput.Set(null);
+				output.close();
+
+				if (ga != null && ga._evaluationPool != null)
+					ga._evaluationPool.shutdown();
+			}
+		} catch (Throwable e) {
+			System.err.println(inRun.name + " failed:");
+			e.printStackTrace();
+		}
+
+		_running.remove(inRun);
+		_stdout.println(inRun.name + (succeeded ? " completed" : " failed"));
+		return succeeded;
+	}
+}
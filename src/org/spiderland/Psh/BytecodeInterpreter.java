@@ -0,0 +1,98 @@
+/*
+ * Copyright 2009-2010 Jon Klein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spiderland.Psh;
+
+/**
+ * An OpcodeInterpreter which also compiles programs ahead of time to JVM
+ * bytecode.
+ *
+ * Each run of atoms which OpcodeInterpreter would carry out itself is compiled
+ * to a hidden class of its own (see SegmentCompiler), and is run with a single
+ * call whenever it is reached from its first atom with enough steps left to
+ * finish it. Everything else, including code.*, exec.y and exec.s, is run as
+ * by OpcodeInterpreter, so the results and step counts are the same as for the
+ * Interpreter.
+ *
+ * A program is only compiled once it has been run a number of times (see
+ * SetCompileThreshold), as compiling, and the JVM's own compiling of the new
+ * classes, only pays off for programs which are run many times, as when
+ * re-evaluating finished optimisers. Select it with
+ *
+ * interpreter-class = org.spiderland.Psh.BytecodeInterpreter
+ *
+ * Hidden classes need JDK 15 or later, and the org.spiderland.Psh.hidden
+ * package. Without them, this runs programs just as OpcodeInterpreter does.
+ */
+
+public class BytecodeInterpreter extends OpcodeInterpreter {
+	private static final long serialVersionUID = 1L;
+
+	// Runs of a program before it is compiled to bytecode
+	protected int _compileThreshold = 1000;
+
+	// Segments compiled so far
+	protected int _compiledSegments;
+
+	public CompiledProgram Compile(Program inProgram) {
+		return new BytecodeProgram(inProgram, this);
+	}
+
+	/**
+	 * Sets how many times a program is run, as by OpcodeInterpreter, before it
+	 * is compiled to bytecode. Newly defined classes run slowly until the JVM
+	 * has compiled them in turn, so only programs which are run many times
+	 * are worth compiling.
+	 */
+
+	public void SetCompileThreshold(int inRuns) {
+		_compileThreshold = inRuns;
+	}
+
+	/**
+	 * Returns the number of program segments compiled so far, which is 0 if
+	 * programs can't be compiled here.
+	 */
+
+	public int GetCompiledSegmentCount() {
+		return _compiledSegments;
+	}
+
+	protected int Run(OpcodeProgram inProgram, int inStart, int inEnd) {
+		SegmentCompiler compiler = SegmentCompiler.COMPILER;
+
+		if (compiler == null)
+			return super.Run(inProgram, inStart, inEnd);
+
+		BytecodeProgram p = (BytecodeProgram) inProgram;
+
+		if (p._segments == null && inStart == 0
+				&& p._runs++ >= _compileThreshold)
+			_compiledSegments += p.CompileSegments(compiler);
+
+		if (p._segments != null) {
+			CompiledSegment segment = p._segments[inStart];
+			int end = inStart + p._segmentLengths[inStart];
+
+			if (segment != null && end <= inEnd) {
+				segment.Run(this, p);
+				return end;
+			}
+		}
+
+		return super.Run(inProgram, inStart, inEnd);
+	}
+}
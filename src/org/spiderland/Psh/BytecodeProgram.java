@@ -0,0 +1,72 @@
+/*
+ * Copyright 2009-2010 Jon Klein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spiderland.Psh;
+
+/**
+ * An OpcodeProgram whose runs of compilable opcodes have also been compiled
+ * to JVM bytecode, as run by BytecodeInterpreter.
+ */
+
+class BytecodeProgram extends OpcodeProgram {
+	private static final long serialVersionUID = 1L;
+
+	// Shortest run worth compiling
+	static final int MIN_LENGTH = 3;
+
+	// For the first atom of each compiled run, the run and its length. Null
+	// until the program has been compiled.
+	transient CompiledSegment _segments[];
+	int _segmentLengths[];
+
+	// Times the program has been run from the start before being compiled
+	int _runs;
+
+	BytecodeProgram(Program inSource, Interpreter inInterpreter) {
+		super(inSource, inInterpreter);
+	}
+
+	/**
+	 * Compiles the program's runs of compilable opcodes to CompiledSegments.
+	 *
+	 * @return The number of segments compiled.
+	 */
+
+	int CompileSegments(SegmentCompiler inCompiler) {
+		_segments = new CompiledSegment[_size];
+		_segmentLengths = new int[_size];
+
+		int compiled = 0;
+		int n = 0;
+
+		while (n < _size) {
+			int end = n;
+			while (end < _size && end - n < SegmentCompiler.MAX_LENGTH
+					&& SegmentCompiler.IsCompilable(_ops[end]))
+				end++;
+
+			if (end - n >= MIN_LENGTH) {
+				_segments[n] = inCompiler.Compile(this, n, end);
+				_segmentLengths[n] = end - n;
+				compiled++;
+			}
+
+			n = (end > n) ? end : n + 1;
+		}
+
+		return compiled;
+	}
+}
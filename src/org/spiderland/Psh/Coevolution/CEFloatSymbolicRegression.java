@@ -153,7 +153,8 @@ public class CEFloatSymbolicRegression extends PushGP {
 		// Must be included in order to use the input stack.
 		_interpreter.inputStack().push(_currentInput);
 
-		_interpreter.Execute(((PushGPIndividual) inIndividual)._program,
+		_interpreter.Execute(
+				((PushGPIndividual) inIndividual).GetCompiledProgram(_interpreter),
 				_executionLimit);
 		
 		float result = fstack.top();
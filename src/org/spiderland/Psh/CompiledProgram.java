@@ -0,0 +1,160 @@
+/*
+ * Copyright 2009-2010 Jon Klein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spiderland.Psh;
+
+/**
+ * A Push program whose atoms have been resolved against the instruction set of
+ * an interpreter.
+ *
+ * A CompiledProgram holds the same atoms as the program it was compiled from,
+ * so it prints and compares exactly like that program, but alongside each atom
+ * it also records what executing the atom does: the Instruction it names, its
+ * unboxed integer or float value, or its parsed vector. The interpreter uses
+ * these when running the program, so no instruction names are looked up during
+ * execution.
+ *
+ * A CompiledProgram cannot be edited.
+ */
+
+public class CompiledProgram extends Program {
+	private static final long serialVersionUID = 1L;
+
+	// What executing each atom does
+	static final byte OTHER = 0; // anything else, passed to ExecuteInstruction
+	static final byte INSTRUCTION = 1;
+	static final byte INTEGER = 2;
+	static final byte FLOAT = 3;
+	static final byte VECTOR = 4;
+	static final byte NAME = 5;
+	static final byte PROGRAM = 6;
+
+	byte _kinds[];
+	Instruction _instructions[];
+	int _ints[];
+	float _floats[];
+	float _vectors[][];
+
+	// The program this was compiled from, and its version at the time
+	Program _source;
+	int _sourceVersion;
+
+	// The trace recorded when running the program, and the number of times it
+	// has been run before that
+	transient Trace _trace;
+	int _traceRuns;
+
+	/**
+	 * Compiles a program for an interpreter.
+	 *
+	 * @param inSource
+	 *            The program to compile.
+	 * @param inInterpreter
+	 *            The interpreter whose instructions the atoms refer to.
+	 */
+
+	public CompiledProgram(Program inSource, Interpreter inInterpreter) {
+		super(inInterpreter);
+
+		_source = inSource;
+		_sourceVersion = inSource._version;
+
+		int size = inSource._size;
+
+		resize(size + 1);
+		_kinds = new byte[size];
+		_instructions = new Instruction[size];
+		_ints = new int[size];
+		_floats = new float[size];
+		_vectors = new float[size][];
+
+		for (int n = 0; n < size; n++) {
+			Object atom = inSource._stack[n];
+
+			// Resolve the atom the same way Interpreter.ExecuteInstruction
+			// would if it were on the exec stack
+
+			if (atom instanceof Program) {
+				if (!(atom instanceof CompiledProgram)
+						|| ((CompiledProgram) atom)._interpreter != inInterpreter)
+					atom = inInterpreter.Compile((Program) atom);
+				_kinds[n] = PROGRAM;
+			} else if (atom instanceof Integer) {
+				_kinds[n] = INTEGER;
+				_ints[n] = (Integer) atom;
+			} else if (atom instanceof Number) {
+				_kinds[n] = FLOAT;
+				_floats[n] = ((Number) atom).floatValue();
+			} else if (atom instanceof float[]) {
+				_kinds[n] = VECTOR;
+				_vectors[n] = (float[]) atom;
+			} else if (atom instanceof String) {
+				Instruction i = inInterpreter._instructions.get(atom);
+
+				if (i != null) {
+					_kinds[n] = INSTRUCTION;
+					_instructions[n] = i;
+				} else if (((String) atom).startsWith("<")) {
+					try {
+						_vectors[n] = ParseVector((String) atom);
+						_kinds[n] = VECTOR;
+					} catch (RuntimeException e) {
+						// leave a malformed vector to fail when it is executed
+						_kinds[n] = OTHER;
+					}
+				} else {
+					_kinds[n] = NAME;
+				}
+			} else {
+				_kinds[n] = OTHER;
+			}
+
+			_stack[n] = atom;
+		}
+
+		_size = size;
+	}
+
+	/**
+	 * Returns true if this is an up to date compilation of a program for an
+	 * interpreter.
+	 */
+
+	public boolean IsCompiledFrom(Program inSource, Interpreter inInterpreter) {
+		return _source == inSource && _sourceVersion == inSource._version
+				&& _interpreter == inInterpreter;
+	}
+
+	public int Parse(String inString) throws Exception {
+		throw new UnsupportedOperationException("CompiledProgram cannot be edited");
+	}
+
+	public void push(Object inValue) {
+		throw new UnsupportedOperationException("CompiledProgram cannot be edited");
+	}
+
+	public void shove(Object obj, int n) {
+		throw new UnsupportedOperationException("CompiledProgram cannot be edited");
+	}
+
+	public boolean ReplaceSubtree(int inIndex, Object inReplacement) {
+		throw new UnsupportedOperationException("CompiledProgram cannot be edited");
+	}
+
+	public void Flatten(int inIndex) {
+		throw new UnsupportedOperationException("CompiledProgram cannot be edited");
+	}
+}
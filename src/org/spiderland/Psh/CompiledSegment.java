@@ -0,0 +1,38 @@
+/*
+ * Copyright 2009-2010 Jon Klein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spiderland.Psh;
+
+/**
+ * A run of atoms of a compiled program, compiled to JVM bytecode by
+ * SegmentCompiler. Running it has the same effect as executing each of the
+ * atoms in turn.
+ */
+
+abstract class CompiledSegment {
+
+	/**
+	 * Runs the atoms.
+	 * 
+	 * @param inI
+	 *            The interpreter to run them on.
+	 * @param inProgram
+	 *            The program the atoms belong to, which holds their
+	 *            non-numeric constants.
+	 */
+
+	public abstract void Run(Interpreter inI, CompiledProgram inProgram);
+}
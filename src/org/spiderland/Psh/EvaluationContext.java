@@ -0,0 +1,117 @@
+/*
+ * Copyright 2009-2010 Jon Klein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spiderland.Psh;
+
+import java.io.Serializable;
+
+import optimisation.PopulationOptimisation;
+import optimisation.problems.Problem;
+
+/**
+ * The state of an optimisation run which the optimisation instructions use:
+ * the problem that evaluate applies to search points, the moves made so far,
+ * the search bounds for vector.lrand, and the swarm that vector.best and
+ * vector.current look into.
+ *
+ * Each interpreter has a context of its own, so interpreters in different
+ * threads can run optimisations at the same time.
+ */
+
+public class EvaluationContext implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	// The problem which evaluate is applied to, and the number of evaluations
+	// after which execution halts
+	Problem _problem;
+	int _maxMoves;
+
+	int _evaluationCount;
+	float _bestValue;
+
+	// The dimensionality of the problem, which is the length of the vectors
+	// which the vector instructions make
+	int _dims = 3;
+
+	// The search bounds which vector.lrand samples components from
+	float _lowerLimit;
+	float _upperLimit;
+
+	// The swarm, and the member whose program is running
+	PopulationOptimisation _population;
+	int _current;
+
+	public void setProblem(Problem problem, int moveLimit) {
+		_problem = problem;
+		_maxMoves = moveLimit;
+	}
+
+	public void resetEvaluation() {
+		_bestValue = Float.MAX_VALUE;
+		_evaluationCount = 0;
+	}
+
+	public void setDimensionality(int dimensions) {
+		_dims = dimensions;
+	}
+
+	public void setVectorLimits(float lower, float upper) {
+		_lowerLimit = lower;
+		_upperLimit = upper;
+	}
+
+	public void setPopulation(PopulationOptimisation p) {
+		_population = p;
+	}
+
+	public void setCurrent(int i) {
+		_current = i;
+	}
+
+	public int evaluationCount() {
+		return _evaluationCount;
+	}
+
+	public float bestValue() {
+		return _bestValue;
+	}
+
+	public int dimensionality() {
+		return _dims;
+	}
+
+	/**
+	 * Returns a context with the same problem, dimensionality and search
+	 * bounds as this one, but with counts and a swarm of its own.
+	 */
+
+	EvaluationContext copy() {
+		EvaluationContext copy = new EvaluationContext();
+		copy.setProblem(_problem, _maxMoves);
+		copy.setDimensionality(_dims);
+		copy.setVectorLimits(_lowerLimit, _upperLimit);
+		return copy;
+	}
+
+	/**
+	 * Returns true once evaluate has been run as many times as the move
+	 * limit allows.
+	 */
+
+	boolean MovesUsed() {
+		return _evaluationCount >= _maxMoves;
+	}
+}
@@ -0,0 +1,432 @@
+/*
+ * Copyright 2009-2010 Jon Klein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spiderland.Psh;
+
+import java.util.Arrays;
+
+/**
+ * The Push exec stack.
+ *
+ * As well as ordinary items, an entry in the exec stack may be a cursor into a
+ * program, standing for the atoms of the program from the cursor onwards with
+ * the atom at the cursor on top. Unrolling a program is then a single push
+ * which allocates nothing, and the interpreter executes its atoms in place.
+ * This relies on programs not being edited once pushed, as for ObjectStack.
+ *
+ * size(), pop(), peek() and the other stack operations see the atoms one at a
+ * time, exactly as if the program had been pushed item by item; operations
+ * which rearrange items below the top first turn the cursors involved back
+ * into ordinary items.
+ *
+ * An entry may also be a LoopFrame, which is a single item, the program for
+ * the next iteration of a do*range loop. pop(), peek() and the rest give out
+ * that program, so the loop itself is only seen by the interpreter.
+ */
+
+public class ExecStack extends ObjectStack {
+	private static final long serialVersionUID = 1L;
+
+	// For each entry in _stack, -1 for an ordinary item, LOOP for a
+	// LoopFrame, or otherwise the index of the next atom of the Program held
+	// in that entry.
+	// _size counts items, _entries counts entries.
+	protected int _cursors[];
+	protected int _entries;
+
+	static final int LOOP = -2;
+
+	void resize(int inSize) {
+		Object newstack[] = new Object[inSize];
+		int newcursors[] = new int[inSize];
+
+		if (_stack != null) {
+			System.arraycopy(_stack, 0, newstack, 0, _entries);
+			System.arraycopy(_cursors, 0, newcursors, 0, _entries);
+		}
+
+		_stack = newstack;
+		_cursors = newcursors;
+		_maxsize = inSize;
+	}
+
+	private void pushEntry(Object inValue, int inCursor) {
+		_stack[_entries] = inValue;
+		_cursors[_entries] = inCursor;
+		_entries++;
+
+		if (_entries >= _maxsize)
+			resize(_maxsize + _blocksize);
+	}
+
+	/**
+	 * Pushes the atoms of a program, so that its first atom is on top.
+	 */
+
+	public void PushCursor(Program inProgram) {
+		if (inProgram._size > 0) {
+			pushEntry(inProgram, 0);
+			_size += inProgram._size;
+		}
+	}
+
+	/**
+	 * Pushes a loop, which must not be in the stack already.
+	 */
+
+	void PushLoop(LoopFrame inLoop) {
+		pushEntry(inLoop, LOOP);
+		_size++;
+	}
+
+	/**
+	 * Returns the index of the atom on top of the stack within the program
+	 * returned by TopProgram(), -1 if the top item is an ordinary one, or
+	 * LOOP if it is a loop.
+	 */
+
+	int TopCursor() {
+		return _entries > 0 ? _cursors[_entries - 1] : -1;
+	}
+
+	Program TopProgram() {
+		return (Program) _stack[_entries - 1];
+	}
+
+	LoopFrame TopLoop() {
+		return (LoopFrame) _stack[_entries - 1];
+	}
+
+	/**
+	 * Pops the loop on top of the stack, without turning it into a program.
+	 */
+
+	LoopFrame PopLoop() {
+		_entries--;
+		_size--;
+		return (LoopFrame) _stack[_entries];
+	}
+
+	/**
+	 * Discards the next inCount atoms of the program on top of the stack, which
+	 * must have at least that many atoms left.
+	 */
+
+	void AdvanceTop(int inCount) {
+		int top = _entries - 1;
+		int cursor = _cursors[top] + inCount;
+
+		_size -= inCount;
+
+		if (cursor == ((Program) _stack[top])._size)
+			_entries--;
+		else
+			_cursors[top] = cursor;
+	}
+
+	/**
+	 * Returns the number of entries, where a program under a cursor is a
+	 * single entry.
+	 */
+
+	int Entries() {
+		return _entries;
+	}
+
+	/**
+	 * Returns a copy of the entries above the first inBase.
+	 */
+
+	Object[] CopyEntries(int inBase) {
+		Object entries[] = new Object[_entries - inBase];
+		System.arraycopy(_stack, inBase, entries, 0, entries.length);
+		return entries;
+	}
+
+	/**
+	 * Returns a copy of the cursors of the entries above the first inBase.
+	 */
+
+	int[] CopyCursors(int inBase) {
+		int cursors[] = new int[_entries - inBase];
+		System.arraycopy(_cursors, inBase, cursors, 0, cursors.length);
+		return cursors;
+	}
+
+	/**
+	 * Replaces the entries above the first inBase, which hold inBaseSize
+	 * items, with copies of inEntries and inCursors, which hold inItems.
+	 */
+
+	void RestoreEntries(int inBase, int inBaseSize, Object inEntries[],
+			int inCursors[], int inItems) {
+		int entries = inBase + inEntries.length;
+
+		if (entries >= _maxsize)
+			resize(entries + _blocksize);
+
+		System.arraycopy(inEntries, 0, _stack, inBase, inEntries.length);
+		System.arraycopy(inCursors, 0, _cursors, inBase, inCursors.length);
+
+		_entries = entries;
+		_size = inBaseSize + inItems;
+	}
+
+	public void push(Object inValue) {
+		pushEntry(inValue, -1);
+		_size++;
+	}
+
+	public Object pop() {
+		if (_entries == 0)
+			return null;
+
+		int top = _entries - 1;
+		int cursor = _cursors[top];
+
+		_size--;
+
+		if (cursor < 0) {
+			_entries--;
+			return cursor == LOOP ? ((LoopFrame) _stack[top]).ToProgram() : _stack[top];
+		}
+
+		Program p = (Program) _stack[top];
+
+		if (cursor + 1 == p._size)
+			_entries--;
+		else
+			_cursors[top] = cursor + 1;
+
+		return p._stack[cursor];
+	}
+
+	public void popdiscard() {
+		pop();
+	}
+
+	public void clear() {
+		_entries = 0;
+		_size = 0;
+	}
+
+	public Object peek(int inIndex) {
+		if (inIndex < 0 || inIndex >= _size)
+			return null;
+
+		int depth = _size - 1 - inIndex;
+
+		for (int e = _entries - 1; e >= 0; e--) {
+			int cursor = _cursors[e];
+
+			if (cursor < 0) {
+				if (depth == 0)
+					return cursor == LOOP ? ((LoopFrame) _stack[e]).ToProgram() : _stack[e];
+				depth--;
+			} else {
+				Program p = (Program) _stack[e];
+				int remaining = p._size - cursor;
+
+				if (depth < remaining)
+					return p._stack[cursor + depth];
+				depth -= remaining;
+			}
+		}
+
+		return null;
+	}
+
+	/**
+	 * Makes sure that the top inCount items are held as ordinary entries.
+	 */
+
+	void expand(int inCount) {
+		if (inCount > _size)
+			inCount = _size;
+
+		int plain = 0;
+
+		while (plain < inCount && _cursors[_entries - 1 - plain] == -1)
+			plain++;
+
+		if (plain == inCount)
+			return;
+
+		Object items[] = new Object[inCount];
+
+		for (int n = 0; n < inCount; n++)
+			items[n] = pop();
+
+		for (int n = inCount - 1; n >= 0; n--)
+			pushEntry(items[n], -1);
+
+		_size += inCount;
+	}
+
+	public void dup() {
+		if (_size > 0)
+			push(top());
+	}
+
+	public void shove(Object obj, int n) {
+		if (n > _size)
+			n = _size;
+
+		expand(n);
+
+		n = _entries - n;
+
+		pushEntry(null, -1);
+		for (int i = _entries - 1; i > n; i--)
+			_stack[i] = _stack[i - 1];
+		_stack[n] = obj;
+		_size++;
+	}
+
+	public void shove(int inIndex) {
+		if (_size > 0) {
+			if(inIndex < 0){
+				inIndex = 0;
+			}
+			if(inIndex > _size - 1){
+				inIndex = _size - 1;
+			}
+
+			expand(inIndex + 1);
+
+			Object toShove = _stack[_entries - 1];
+			int shovedIndex = _entries - inIndex - 1;
+
+			for (int i = _entries - 1; i > shovedIndex; i--) {
+				_stack[i] = _stack[i - 1];
+			}
+			_stack[shovedIndex] = toShove;
+		}
+	}
+
+	public void swap() {
+		if (_size > 1) {
+			expand(2);
+
+			Object tmp = _stack[_entries - 2];
+			_stack[_entries - 2] = _stack[_entries - 1];
+			_stack[_entries - 1] = tmp;
+		}
+	}
+
+	public void rot() {
+		if (_size > 2) {
+			expand(3);
+
+			Object tmp = _stack[_entries - 3];
+			_stack[_entries - 3] = _stack[_entries - 2];
+			_stack[_entries - 2] = _stack[_entries - 1];
+			_stack[_entries - 1] = tmp;
+		}
+	}
+
+	public void yank(int inIndex) {
+		if (_size > 0) {
+			if(inIndex < 0){
+				inIndex = 0;
+			}
+			if(inIndex > _size - 1){
+				inIndex = _size - 1;
+			}
+
+			expand(inIndex + 1);
+
+			int yankedIndex = _entries - inIndex - 1;
+			Object toYank = _stack[yankedIndex];
+
+			for (int i = yankedIndex; i < _entries - 1; i++) {
+				_stack[i] = _stack[i + 1];
+			}
+			_stack[_entries - 1] = toYank;
+		}
+	}
+
+	public void PushAllReverse(ObjectStack inOther) {
+		for (int n = _size - 1; n >= 0; n--)
+			inOther.push(peek(n));
+	}
+
+	public boolean equals(Object inOther) {
+		if (this == inOther)
+			return true;
+
+		if (!(inOther instanceof ObjectStack))
+			return false;
+
+		expand(_size);
+
+		return ((ObjectStack) inOther).comparestack(_stack, _size);
+	}
+
+	/**
+	 * Agrees with equals(), which compares programs and vectors by their
+	 * contents: programs count by their size, and vectors by their
+	 * components.
+	 */
+	public int hashCode() {
+		expand(_size);
+
+		int hash = 7;
+		for (int n = 0; n < _size; n++) {
+			Object item = _stack[n];
+			int h;
+			if (item instanceof float[])
+				h = Arrays.hashCode((float[]) item);
+			else if (item instanceof ObjectStack)
+				h = ((ObjectStack) item).size();
+			else
+				h = item.hashCode();
+			hash = 41 * hash + h;
+		}
+		return hash;
+	}
+
+	boolean comparestack(Object inOther[], int inOtherSize) {
+		expand(_size);
+
+		return super.comparestack(inOther, inOtherSize);
+	}
+
+	public String toString() {
+		String result = "[";
+		boolean first = true;
+
+		for (int e = _entries - 1; e >= 0; e--) {
+			int cursor = _cursors[e];
+
+			if (cursor < 0) {
+				Object item = cursor == LOOP ? ((LoopFrame) _stack[e]).ToProgram() : _stack[e];
+				result += (first ? "" : " ") + Program.AtomString(item);
+				first = false;
+			} else {
+				Program p = (Program) _stack[e];
+
+				for (int n = cursor; n < p._size; n++) {
+					result += (first ? "" : " ") + Program.AtomString(p._stack[n]);
+					first = false;
+				}
+			}
+		}
+		result += "]";
+
+		return result;
+	}
+}
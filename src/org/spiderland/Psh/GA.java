@@ -17,6 +17,7 @@
 package org.spiderland.Psh;
 
 import java.util.*;
+import java.util.concurrent.*;
 import java.io.*;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
@@ -25,7 +26,7 @@ import java.util.zip.GZIPOutputStream;
  * An abstract class for running genetic algorithms.
  */
 
-public abstract class GA implements Serializable {
+public abstract class GA implements Serializable, Cloneable {
 	private static final long serialVersionUID = 1L;
 
 	protected GAIndividual _populations[][];
@@ -49,6 +50,32 @@ public abstract class GA implements Serializable {
 
 	protected Random _RNG;
 
+	// The kind of generator, from the random-generator parameter, which the
+	// GA, its workers and its interpreters use
+	protected String _randomGenerator = Randoms.JAVA;
+
+	// Whether a random seed was given, in which case each individual is
+	// evaluated with random numbers seeded for it from _RNG
+	protected boolean _seeded;
+
+	// The number of threads evaluating the population, and the copies of the
+	// GA which they evaluate individuals with
+	protected int _evaluationThreads;
+	protected transient GA _evaluators[];
+	protected transient ExecutorService _evaluationPool;
+
+	// The port which worker JVMs connect to in order to evaluate individuals,
+	// or -1 if they are evaluated in this JVM, the address it is on, or null
+	// for the loopback address, how many seconds a worker may take over an
+	// individual, how many individuals a worker is sent at a time, and how
+	// many workers to start on this machine
+	protected int _evaluationPort;
+	protected String _evaluationAddress;
+	protected int _evaluationTimeout;
+	protected int _evaluationBatchSize;
+	protected int _localWorkers;
+	private transient RemoteEvaluation _remoteEvaluation;
+
 	protected HashMap<String, String> _parameters;
 	public ArrayList<GATestCase> _testCases;
 
@@ -112,7 +139,7 @@ public abstract class GA implements Serializable {
 	}
 
 	protected GA() {
-		_RNG = new Random();
+		_RNG = Randoms.Make(_randomGenerator);
 		_testCases = new ArrayList<GATestCase>();
 		_bestMeanFitness = Float.MAX_VALUE;
 		_outputStream = System.out;
@@ -122,8 +149,13 @@ public abstract class GA implements Serializable {
 	 * Sets the parameters dictionary for this GA run.
 	 */
 
-	protected void SetParams(HashMap<String, String> inParams) {
+	protected void SetParams(HashMap<String, String> inParams) throws Exception {
 		_parameters = inParams;
+
+		// random-generator is an optional parameter, which is needed before
+		// the interpreter and its generator are made
+		_randomGenerator = Randoms.Generator(inParams);
+		_RNG = Randoms.Make(_randomGenerator);
 	}
 	
 	/**
@@ -259,6 +291,30 @@ public abstract class GA implements Serializable {
 			_trivialGeographyRadius = (int) GetFloatParam("trivial-geography-radius", true);
 		}
 		
+		// evaluation-threads is an optional parameter
+		float evaluationThreads = GetFloatParam("evaluation-threads", true);
+		_evaluationThreads = Float.isNaN(evaluationThreads) ? 1
+				: Math.max(1, (int) evaluationThreads);
+
+		// evaluation-port, evaluation-bind-address, evaluation-timeout,
+		// evaluation-batch-size and evaluation-local-workers are optional
+		// parameters, for evaluating individuals on worker JVMs
+		String evaluationPort = GetParam("evaluation-port", true);
+		_evaluationPort = (evaluationPort == null) ? -1 : Integer.parseInt(evaluationPort);
+		_evaluationAddress = GetParam("evaluation-bind-address", true);
+		float evaluationTimeout = GetFloatParam("evaluation-timeout", true);
+		_evaluationTimeout = Float.isNaN(evaluationTimeout) ? 600 : (int) evaluationTimeout;
+		float batchSize = GetFloatParam("evaluation-batch-size", true);
+		_evaluationBatchSize = Float.isNaN(batchSize) ? 10 : (int) batchSize;
+		float localWorkers = GetFloatParam("evaluation-local-workers", true);
+		_localWorkers = Float.isNaN(localWorkers) ? 0 : (int) localWorkers;
+
+		if (GetBooleanParamWithDefault("use-random-seed", false)) {
+			_RNG.setSeed(Long.parseLong(GetParam("random-seed")));
+			_seeded = true;
+			SeedRandom(_RNG.nextLong());
+		}
+
 		_checkpointPrefix = GetParam("checkpoint-prefix", true);
 		_checkpoint = new Checkpoint(this);
 
@@ -378,10 +434,10 @@ public abstract class GA implements Serializable {
 		double totalFitness = 0;
 		_bestMeanFitness = Float.MAX_VALUE;
 
+		EvaluatePopulation();
+
 		for (int n = 0; n < _populations[_currentPopulation].length; n++) {
 			GAIndividual i = _populations[_currentPopulation][n];
-			
-			EvaluateIndividual(i);
 
 			totalFitness += i.GetFitness();
 
@@ -395,6 +451,208 @@ public abstract class GA implements Serializable {
 		_populationMeanFitness = totalFitness / _populations[_currentPopulation].length;
 	}
 
+	/**
+	 * Evaluates every individual in the current population, on
+	 * evaluation-threads threads, or on worker JVMs if evaluation-port is
+	 * given. Given a random seed, each individual is evaluated with random
+	 * numbers seeded for it alone, so the results are the same with any
+	 * number of threads or workers.
+	 */
+	protected void EvaluatePopulation() {
+		final GAIndividual population[] = _populations[_currentPopulation];
+		final long seed = _seeded ? _RNG.nextLong() : 0;
+
+		if (_evaluationPort >= 0) {
+			try {
+				if (_remoteEvaluation == null)
+					_remoteEvaluation = new RemoteEvaluation(this, _evaluationPort,
+							_evaluationAddress, _evaluationTimeout, _evaluationBatchSize,
+							_localWorkers);
+
+				_remoteEvaluation.Evaluate(population, seed);
+			} catch (Exception e) {
+				throw new RuntimeException("Remote evaluation failed", e);
+			}
+		} else if (_evaluationThreads <= 1) {
+			for (int n = 0; n < population.length; n++)
+				EvaluateWith(this, population, n, seed);
+		} else {
+			final int threads = Math.min(_evaluationThreads, population.length);
+			GA evaluators[] = Evaluators();
+			ArrayList<Future<?>> runs = new ArrayList<Future<?>>();
+
+			for (int t = 0; t < threads; t++) {
+				final GA evaluator = evaluators[t];
+				final int first = t;
+
+				// Thread t evaluates individuals t, t + threads, t + 2 * threads...
+				runs.add(_evaluationPool.submit(new Runnable() {
+					public void run() {
+						for (int n = first; n < population.length; n += threads)
+							EvaluateWith(evaluator, population, n, seed);
+					}
+				}));
+			}
+
+			try {
+				for (Future<?> run : runs)
+					run.get();
+			} catch (InterruptedException e) {
+				throw new RuntimeException(e);
+			} catch (ExecutionException e) {
+				throw new RuntimeException("Evaluation failed", e.getCause());
+			}
+
+			for (int t = 0; t < threads; t++)
+				MergeEvaluation(evaluators[t]);
+		}
+
+		// Reseed the GA's own generators, so that they are in the same state
+		// whichever GA evaluated the individuals
+		if (_seeded)
+			SeedRandom(_RNG.nextLong());
+	}
+
+	private void EvaluateWith(GA inEvaluator, GAIndividual inPopulation[],
+			int inIndex, long inSeed) {
+		if (_seeded)
+			inEvaluator.SeedRandom(Randoms.Derive(inSeed, inIndex));
+
+		inEvaluator.EvaluateIndividual(inPopulation[inIndex]);
+	}
+
+	/**
+	 * Returns the GAs which the evaluation threads use, making them and the
+	 * threads the first time.
+	 */
+	protected GA[] Evaluators() {
+		if (_evaluators == null) {
+			GA evaluators[] = new GA[_evaluationThreads];
+
+			try {
+				for (int t = 0; t < evaluators.length; t++)
+					evaluators[t] = EvaluationWorker();
+			} catch (Exception e) {
+				throw new RuntimeException("Failed to make an evaluation worker", e);
+			}
+
+			_evaluators = evaluators;
+			_evaluationPool = Executors.newFixedThreadPool(_evaluationThreads,
+					new ThreadFactory() {
+						public Thread newThread(Runnable inRunnable) {
+							Thread thread = new Thread(inRunnable, "evaluation");
+							thread.setDaemon(true);
+							return thread;
+						}
+					});
+		}
+
+		return _evaluators;
+	}
+
+	/**
+	 * Returns a copy of this GA which can evaluate individuals on another
+	 * thread at the same time as this GA and its other workers. The copy
+	 * shares the population and parameters, so anything that evaluating an
+	 * individual changes must be replaced by a copy of its own. This method
+	 * may be overridden by subclasses to customize GA behavior.
+	 */
+	protected GA EvaluationWorker() throws Exception {
+		GA worker = (GA) clone();
+		worker._RNG = Randoms.Make(_randomGenerator);
+		worker._evaluators = null;
+		worker._evaluationPool = null;
+		worker._remoteEvaluation = null;
+		return worker;
+	}
+
+	/**
+	 * Adds what an evaluation worker has counted while evaluating
+	 * individuals, such as statistics, to this GA's counts. This method may be
+	 * overridden by subclasses to customize GA behavior.
+	 */
+	protected void MergeEvaluation(GA inWorker) {
+	}
+
+	/**
+	 * Returns what this GA has counted while evaluating individuals since it
+	 * was last asked, as MergeEvaluation() would take it, so that a worker
+	 * JVM can send it to the GA it evaluates for. This method may be
+	 * overridden by subclasses to customize GA behavior.
+	 */
+	protected Serializable TakeEvaluationCounts() {
+		return null;
+	}
+
+	/**
+	 * Adds counts returned by a worker JVM's TakeEvaluationCounts() to this
+	 * GA's counts. This method may be overridden by subclasses to customize
+	 * GA behavior.
+	 */
+	protected void MergeEvaluationCounts(Serializable inCounts) {
+	}
+
+	/**
+	 * Seeds the random number generators other than _RNG which the GA uses to
+	 * make and evaluate individuals. This method may be overridden by
+	 * subclasses to customize GA behavior.
+	 */
+	protected void SeedRandom(long inSeed) {
+	}
+
+	/**
+	 * Returns the index of the population which was evaluated last. Between
+	 * calls to Run(), this is the population which the current one was bred
+	 * from. This method may be overridden by subclasses to customize GA
+	 * behavior.
+	 */
+	protected int EvaluatedPopulation() {
+		return _currentPopulation == 0 ? 1 : 0;
+	}
+
+	/**
+	 * Returns copies of the fittest individuals of the population which was
+	 * evaluated last, fittest first, to migrate to another GA's population.
+	 * The copies keep their fitness values.
+	 */
+	protected GAIndividual[] Emigrants(int inCount) {
+		final GAIndividual population[] = _populations[EvaluatedPopulation()];
+		Integer order[] = new Integer[population.length];
+
+		for (int n = 0; n < order.length; n++)
+			order[n] = n;
+
+		Arrays.sort(order, new Comparator<Integer>() {
+			public int compare(Integer a, Integer b) {
+				return Float.compare(population[a].GetFitness(), population[b].GetFitness());
+			}
+		});
+
+		GAIndividual emigrants[] = new GAIndividual[Math.min(inCount, order.length)];
+
+		for (int n = 0; n < emigrants.length; n++) {
+			GAIndividual individual = population[order[n]];
+			emigrants[n] = individual.clone();
+			emigrants[n].SetFitness(individual.GetFitness());
+			emigrants[n].SetErrors(individual.GetErrors());
+		}
+
+		return emigrants;
+	}
+
+	/**
+	 * Puts individuals which have migrated from another GA into the
+	 * population which is to be evaluated next, in place of its last
+	 * individuals. This method may be overridden by subclasses to customize
+	 * GA behavior.
+	 */
+	protected void Immigrate(GAIndividual inImmigrants[]) {
+		GAIndividual population[] = _populations[_currentPopulation];
+
+		for (int n = 0; n < inImmigrants.length && n < population.length; n++)
+			population[population.length - 1 - n] = inImmigrants[n];
+	}
+
 	/**
 	 * Reproduces the current population into the next population slot. This
 	 * method may be overridden by subclasses to customize GA behavior.
@@ -532,7 +790,7 @@ public abstract class GA implements Serializable {
 		for(int i=0; i<cases; i++)
 			order.add(i);
 		Arrays.asList(order);
-		Collections.shuffle(order);
+		Collections.shuffle(order, _RNG);
 		
 		List<GAIndividual> prev = Arrays.asList(_populations[_currentPopulation]);
 		List<GAIndividual> best;
@@ -562,7 +820,7 @@ public abstract class GA implements Serializable {
 		}
 		
 		// randomly select one from the remaining bunch
-		GAIndividual selected = prev.get(new Random().nextInt(prev.size()));
+		GAIndividual selected = prev.get(_RNG.nextInt(prev.size()));
 		
 		//System.out.println(selected.hashCode()+" "+selected._fitness);
 		return selected;
@@ -583,13 +841,13 @@ public abstract class GA implements Serializable {
 		for(int i=0; i<cases; i++)
 			order.add(i);
 		Arrays.asList(order);
-		Collections.shuffle(order);
+		Collections.shuffle(order, _RNG);
 		
 		List<GAIndividual> prev = Arrays.asList(_populations[_currentPopulation]);
 		List<GAIndividual> best;
 		GAIndividual tbest = null;
 		float fbest, curr;
-		Random rnd = new Random();
+		Random rnd = _RNG;
 		
 		int NMAX = prev.size() / 10;
 		for(int fcase : order) {
@@ -636,7 +894,7 @@ public abstract class GA implements Serializable {
 		}
 		
 		// randomly select one from the remaining bunch
-		GAIndividual selected = prev.get(new Random().nextInt(prev.size()));
+		GAIndividual selected = prev.get(_RNG.nextInt(prev.size()));
 		
 		//System.out.println(selected.hashCode()+" "+selected._fitness);
 		return selected;
@@ -710,8 +968,7 @@ public abstract class GA implements Serializable {
 		if(Terminate()){
 			return _populations[_currentPopulation][_bestIndividual];
 		}
-		int oldpop = (_currentPopulation == 0 ? 1 : 0);
-		return _populations[oldpop][_bestIndividual];
+		return _populations[EvaluatedPopulation()][_bestIndividual];
 	}
 	
 	/**
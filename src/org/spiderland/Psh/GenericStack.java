@@ -20,6 +20,8 @@ import java.util.Arrays;
 
 /**
  * The Push stack type for generic data (Strings, Programs, etc.)
+ * 
+ * As with ObjectStack, Programs are pushed by reference, not copied.
  */
 
 public class GenericStack<T> extends Stack {
@@ -84,6 +86,11 @@ public class GenericStack<T> extends Stack {
 		_maxsize = inSize;
 	}
 
+	@Override
+	public void setBound(int inBound) {
+		throw new UnsupportedOperationException("GenericStack cannot be bounded");
+	}
+
 	public T peek(int inIndex) {
 		if (inIndex >= 0 && inIndex < _size)
 			return _stack[inIndex];
@@ -106,11 +113,7 @@ public class GenericStack<T> extends Stack {
 		return result;
 	}
 
-	@SuppressWarnings("unchecked")
 	public void push(T inValue) {
-		if (inValue instanceof Program)
-			inValue = (T) new Program((Program) inValue);
-
 		_stack[_size] = inValue;
 		_size++;
 
@@ -51,6 +51,22 @@ public class InspectorInput {
 		InitInspectorInput(inFile);
 	}
 
+	private InspectorInput() {
+	}
+
+	/**
+	 * Constructs an InspectorInput from the contents an input file would
+	 * have.
+	 * 
+	 * @param inInput
+	 *            The input, organized as an input file is.
+	 */
+	public static InspectorInput FromString(String inInput) throws Exception {
+		InspectorInput input = new InspectorInput();
+		input.InitInspectorInput(inInput);
+		return input;
+	}
+
 	/**
 	 * Initializes an InspectorInput. The file should be organized as follows:
 	 * 
@@ -64,10 +80,12 @@ public class InspectorInput {
 	 *            The file to input from.
 	 */
 	private void InitInspectorInput(File inFile) throws Exception {
-		_interpreter = new Interpreter();
-
 		// Read fileString
-		String fileString = Params.ReadFileString(inFile);
+		InitInspectorInput(Params.ReadFileString(inFile));
+	}
+
+	private void InitInspectorInput(String fileString) throws Exception {
+		_interpreter = new Interpreter();
 
 		// Get programString
 		int indexNewline = fileString.indexOf("\n");
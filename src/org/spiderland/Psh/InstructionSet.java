@@ -0,0 +1,397 @@
+/*
+ * Copyright 2009-2010 Jon Klein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spiderland.Psh;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import org.spiderland.Psh.Interpreter.AtomGenerator;
+import org.spiderland.Psh.Interpreter.FloatAtomGenerator;
+import org.spiderland.Psh.Interpreter.InstructionAtomGenerator;
+import org.spiderland.Psh.Interpreter.IntAtomGenerator;
+import org.spiderland.Psh.Interpreter.StackFrame;
+import org.spiderland.Psh.Interpreter.VectorAtomGenerator;
+
+/**
+ * A set of named instructions, and the generators of atoms for random code.
+ *
+ * Instructions keep no state of their own, and act on the stacks of the
+ * interpreter executing them, so one instruction set can be shared by any
+ * number of interpreters, which then only hold their stacks and the state of
+ * a run. Builtin() is the set every interpreter starts with. ForRandomCode()
+ * gives the set with the random code generators for an instruction-set list,
+ * which is made once for each list and then shared too.
+ *
+ * A shared set must not be changed. Interpreter.DefineInstruction() and
+ * Interpreter.AddInstruction() first give the interpreter a Copy() of its own.
+ */
+
+public final class InstructionSet implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	final HashMap<String, Instruction> _instructions;
+	final HashMap<String, AtomGenerator> _generators;
+	final ArrayList<AtomGenerator> _randomGenerators;
+
+	// The instruction names in the order they were defined, so that a copy
+	// lists them in the same order
+	private final ArrayList<String> _names;
+
+	// The set whose maps this set shares, which differs from this one only
+	// in its random code generators
+	private final InstructionSet _base;
+
+	// Sets made from this one by ForRandomCode(), by instruction list
+	private transient HashMap<String, InstructionSet> _derived;
+
+	private static final InstructionSet _builtin = new InstructionSet();
+
+	/**
+	 * Returns the built-in instructions, which have no random code generators.
+	 */
+
+	public static InstructionSet Builtin() {
+		return _builtin;
+	}
+
+	private InstructionSet() {
+		_instructions = new HashMap<String, Instruction>();
+		_generators = new HashMap<String, AtomGenerator>();
+		_randomGenerators = new ArrayList<AtomGenerator>();
+		_names = new ArrayList<String>();
+		_base = this;
+
+		Define("integer.+", new IntegerAdd());
+		Define("integer.-", new IntegerSub());
+		Define("integer./", new IntegerDiv());
+		Define("integer.%", new IntegerMod());
+		Define("integer.*", new IntegerMul());
+		Define("integer.pow", new IntegerPow());
+		Define("integer.log", new IntegerLog());
+		Define("integer.=", new IntegerEquals());
+		Define("integer.>", new IntegerGreaterThan());
+		Define("integer.<", new IntegerLessThan());
+		Define("integer.min", new IntegerMin());
+		Define("integer.max", new IntegerMax());
+		Define("integer.abs", new IntegerAbs());
+		Define("integer.neg", new IntegerNeg());
+		Define("integer.ln", new IntegerLn());
+		Define("integer.fromfloat", new IntegerFromFloat());
+		Define("integer.fromboolean", new IntegerFromBoolean());
+		Define("integer.rand", new IntegerRand());
+
+		Define("float.+", new FloatAdd());
+		Define("float.-", new FloatSub());
+		Define("float./", new FloatDiv());
+		Define("float.%", new FloatMod());
+		Define("float.*", new FloatMul());
+		Define("float.pow", new FloatPow());
+		Define("float.log", new FloatLog());
+		Define("float.=", new FloatEquals());
+		Define("float.>", new FloatGreaterThan());
+		Define("float.<", new FloatLessThan());
+		Define("float.min", new FloatMin());
+		Define("float.max", new FloatMax());
+		Define("float.sin", new FloatSin());
+		Define("float.cos", new FloatCos());
+		Define("float.tan", new FloatTan());
+		Define("float.exp", new FloatExp());
+		Define("float.abs", new FloatAbs());
+		Define("float.neg", new FloatNeg());
+		Define("float.ln", new FloatLn());
+		Define("float.frominteger", new FloatFromInteger());
+		Define("float.fromboolean", new FloatFromBoolean());
+		Define("float.rand", new FloatRand());
+		
+		Define("boolean.=", new BoolEquals());
+		Define("boolean.not", new BoolNot());
+		Define("boolean.and", new BoolAnd());
+		Define("boolean.or", new BoolOr());
+		Define("boolean.xor", new BoolXor());
+		Define("boolean.frominteger", new BooleanFromInteger());
+		Define("boolean.fromfloat", new BooleanFromFloat());
+		Define("boolean.rand", new BoolRand());
+		
+		Define("vector.+", new VectorAdd());
+		Define("vector.-", new VectorSub());
+		Define("vector.*", new VectorMul());
+		Define("vector./", new VectorDiv());
+		Define("vector.scale", new VectorMulScalar());
+		Define("vector.dprod", new VectorDotProduct());
+		Define("vector.mag", new VectorMag());
+		Define("vector.dim+", new VectorDimAdd());
+		Define("vector.dim*", new VectorDimMul());
+		Define("vector.rand", new VectorRand());
+		Define("vector.lrand", new VectorRandWithLimits());
+		Define("vector.wrand", new VectorRandWithWidth());
+		Define("vector.urand", new UnitVectorRand());
+		Define("vector.zip", new VectorZip());
+		Define("vector.apply", new VectorApply());
+		Define("vector.between", new VectorBetween());
+		Define("vector.getcomponent", new VectorGetComponent());
+		Define("vector.setcomponent", new VectorSetComponent());
+		Define("vector.tofloats", new VectorToFloats());
+		Define("vector.fromfloats", new VectorFromFloats());
+		
+		Define("vector.best", new VectorBest());
+		Define("vector.current", new VectorCurrent());
+
+		Define("code.quote", new Quote());
+		Define("code.fromboolean", new CodeFromBoolean());
+		Define("code.frominteger", new CodeFromInteger());
+		Define("code.fromfloat", new CodeFromFloat());
+		Define("code.noop", new ExecNoop());
+		
+		Define("exec.k", new ExecK(StackFrame.EXEC));
+		// exec.s was made when _maxPointsInProgram was still 0
+		Define("exec.s", new ExecS(StackFrame.EXEC, 0));
+		Define("exec.y", new ExecY(StackFrame.EXEC));
+		Define("exec.noop", new ExecNoop());
+
+		Define("exec.do*times", new ExecDoTimes());
+		Define("code.do*times", new CodeDoTimes());
+		Define("exec.do*count", new ExecDoCount());
+		Define("code.do*count", new CodeDoCount());
+		Define("exec.do*range", new ExecDoRange());
+		Define("code.do*range", new CodeDoRange());
+		Define("code.=", new ObjectEquals(StackFrame.CODE));
+		Define("exec.=", new ObjectEquals(StackFrame.EXEC));
+		Define("code.if", new If(StackFrame.CODE));
+		Define("exec.if", new If(StackFrame.EXEC));
+		Define("exec.iflt", new IfLessThan(StackFrame.EXEC));
+		Define("code.rand", new RandomPushCode(StackFrame.CODE));
+		Define("exec.rand", new RandomPushCode(StackFrame.EXEC));
+		
+		Define("true", new BooleanConstant(true));
+		Define("false", new BooleanConstant(false));
+
+		Define("input.index", new InputIndex());
+		Define("input.inall", new InputInAll());
+		Define("input.inallrev", new InputInRev());
+		Define("input.stackdepth", new InputStackDepth());
+		
+		Define("evaluate", new EvaluateSolution());
+
+		DefineStackInstructions("integer", StackFrame.INTEGER);
+		DefineStackInstructions("float", StackFrame.FLOAT);
+		DefineStackInstructions("boolean", StackFrame.BOOLEAN);
+		DefineStackInstructions("vector", StackFrame.VECTOR);
+		DefineStackInstructions("name", StackFrame.NAME);
+		DefineStackInstructions("code", StackFrame.CODE);
+		DefineStackInstructions("exec", StackFrame.EXEC);
+
+		Define("frame.push", new PushFrame());
+		Define("frame.pop", new PopFrame());
+
+		_generators.put("float.erc", new FloatAtomGenerator());
+		_generators.put("integer.erc", new IntAtomGenerator());
+		_generators.put("vector.erc", new VectorAtomGenerator());
+	}
+
+	/**
+	 * Makes a set with the instructions of inSet. The instructions are shared,
+	 * and the maps holding them too unless inCopyMaps.
+	 */
+
+	private InstructionSet(InstructionSet inSet, boolean inCopyMaps) {
+		if (inCopyMaps) {
+			// Defining the names in the same order gives maps which iterate
+			// in the same order
+			_instructions = new HashMap<String, Instruction>();
+			for (String name : inSet._names)
+				_instructions.put(name, inSet._instructions.get(name));
+			_generators = new HashMap<String, AtomGenerator>(inSet._generators);
+			_names = new ArrayList<String>(inSet._names);
+			_base = this;
+		} else {
+			_instructions = inSet._instructions;
+			_generators = inSet._generators;
+			_names = inSet._names;
+			_base = inSet._base;
+		}
+
+		_randomGenerators = new ArrayList<AtomGenerator>();
+	}
+
+	/**
+	 * Returns a copy of this set, which may be changed.
+	 */
+
+	InstructionSet Copy() {
+		InstructionSet copy = new InstructionSet(this, true);
+		copy._randomGenerators.addAll(_randomGenerators);
+		return copy;
+	}
+
+	void Define(String inName, Instruction inInstruction) {
+		_instructions.put(inName, inInstruction);
+		_generators.put(inName, new InstructionAtomGenerator(inName));
+		_names.add(inName);
+	}
+
+	private void DefineStackInstructions(String inTypeName, int inStackType) {
+		Define(inTypeName + ".pop", new Pop(inStackType));
+		Define(inTypeName + ".swap", new Swap(inStackType));
+		Define(inTypeName + ".rot", new Rot(inStackType));
+		Define(inTypeName + ".flush", new Flush(inStackType));
+		Define(inTypeName + ".dup", new Dup(inStackType));
+		Define(inTypeName + ".stackdepth", new Depth(inStackType));
+		Define(inTypeName + ".shove", new Shove(inStackType));
+		Define(inTypeName + ".yank", new Yank(inStackType));
+		Define(inTypeName + ".yankdup", new YankDup(inStackType));
+	}
+
+	/**
+	 * Returns the set with this set's instructions, and the random code
+	 * generators for an instruction list.
+	 * 
+	 * @param inInstructionList
+	 *            A program consisting of a list of string instruction names to
+	 *            be placed in the instruction set.
+	 */
+
+	public InstructionSet ForRandomCode(Program inInstructionList)
+			throws RuntimeException {
+		if (_base != this)
+			return _base.ForRandomCode(inInstructionList);
+
+		boolean names = true;
+		for (int n = 0; n < inInstructionList.size(); n++)
+			names &= inInstructionList.peek(n) instanceof String;
+
+		if (!names)
+			return new InstructionSet(this, inInstructionList);
+
+		String key = inInstructionList.toString();
+
+		synchronized (this) {
+			if (_derived == null)
+				_derived = new HashMap<String, InstructionSet>();
+
+			InstructionSet set = _derived.get(key);
+
+			if (set == null) {
+				set = new InstructionSet(this, inInstructionList);
+				_derived.put(key, set);
+			}
+
+			return set;
+		}
+	}
+
+	private InstructionSet(InstructionSet inSet, Program inInstructionList) {
+		this(inSet, MakesInputs(inInstructionList));
+
+		for (int n = 0; n < inInstructionList.size(); n++) {
+			Object o = inInstructionList.peek(n);
+			String name = null;
+
+			if (o instanceof Instruction) {
+				String keys[] = _instructions.keySet().toArray(
+						new String[_instructions.size()]);
+
+				for (String key : keys)
+					if (_instructions.get(key) == o) {
+						name = key;
+						break;
+					}
+			} else if (o instanceof String){
+				name = (String) o;
+			} else
+				throw new RuntimeException(
+						"Instruction list must contain a list of Push instruction names only");
+
+			// Check for registered
+			if (name.indexOf("registered.") == 0) {
+				String registeredType = name.substring(11);
+
+				if (!registeredType.equals("integer")
+						&& !registeredType.equals("float")
+						&& !registeredType.equals("boolean")
+						&& !registeredType.equals("exec")
+						&& !registeredType.equals("code")
+						&& !registeredType.equals("name")
+						&& !registeredType.equals("input")
+						&& !registeredType.equals("frame")) {
+					System.err.println("Unknown instruction \"" + name
+							+ "\" in instruction set");
+				} else {
+					// Legal stack type, so add all generators matching
+					// registeredType to _randomGenerators.
+					Object keys[] = _instructions.keySet().toArray();
+
+					for (int i = 0; i < keys.length; i++) {
+						String key = (String) keys[i];
+						if (key.indexOf(registeredType) == 0) {
+							AtomGenerator g = _generators.get(key);
+							_randomGenerators.add(g);
+						}
+					}
+
+					if (registeredType.equals("boolean")) {
+						AtomGenerator t = _generators.get("true");
+						_randomGenerators.add(t);
+						AtomGenerator f = _generators.get("false");
+						_randomGenerators.add(f);
+					}
+					if (registeredType.equals("integer")) {
+						AtomGenerator g = _generators.get("integer.erc");
+						_randomGenerators.add(g);
+					}
+					if (registeredType.equals("float")) {
+						AtomGenerator g = _generators.get("float.erc");
+						_randomGenerators.add(g);
+					}
+
+				}
+			} else if (name.indexOf("input.makeinputs") == 0) {
+				String strnum = name.substring(16);
+				int num = Integer.parseInt(strnum);
+
+				for (int i = 0; i < num; i++) {
+					Define("input.in" + i, new InputInN(i));
+					AtomGenerator g = _generators.get("input.in" + i);
+					_randomGenerators.add(g);
+				}
+			} else {
+				AtomGenerator g = _generators.get(name);
+
+				if (g == null) {
+					throw new RuntimeException("Unknown instruction \"" + name
+							+ "\" in instruction set");
+				} else {
+					_randomGenerators.add(g);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns whether an instruction list defines instructions.
+	 */
+
+	private static boolean MakesInputs(Program inInstructionList) {
+		for (int n = 0; n < inInstructionList.size(); n++) {
+			Object o = inInstructionList.peek(n);
+			if (o instanceof String && ((String) o).indexOf("input.makeinputs") == 0)
+				return true;
+		}
+
+		return false;
+	}
+}
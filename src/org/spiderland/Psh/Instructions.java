@@ -18,7 +18,7 @@ package org.spiderland.Psh;
 
 import java.util.Random;
 
-import optimisation.problems.Problem;
+import optimisation.problems.SearchPoint;
 
 //
 // All instructions 
@@ -32,26 +32,55 @@ import optimisation.problems.Problem;
 abstract class StackInstruction extends Instruction {
 	private static final long serialVersionUID = 1L;
 
+	// Either a fixed stack, or null and the type of stack to use from the
+	// interpreter's active StackFrame
 	protected Stack _stack;
+	protected int _stackType;
 
 	StackInstruction(Stack inStack) {
 		_stack = inStack;
 	}
+
+	StackInstruction(int inStackType) {
+		_stackType = inStackType;
+	}
+
+	protected Stack targetStack(Interpreter inI) {
+		if (_stack != null)
+			return _stack;
+
+		return inI._activeFrame.getStack(_stackType);
+	}
 }
 
 /**
  * Abstract instruction class for instructions which operate on one of the
- * standard ObjectStacks (code & exec).
+ * standard ObjectStacks (code & exec). Unlike the stack instructions, these
+ * act on the stack the interpreter started with, whichever frame is active.
  */
 
 abstract class ObjectStackInstruction extends Instruction {
 	private static final long serialVersionUID = 1L;
 
+	// Either a fixed stack, or null and the type of stack to use from the
+	// interpreter's base StackFrame
 	protected ObjectStack _stack;
+	protected int _stackType;
 
 	ObjectStackInstruction(ObjectStack inStack) {
 		_stack = inStack;
 	}
+
+	ObjectStackInstruction(int inStackType) {
+		_stackType = inStackType;
+	}
+
+	protected ObjectStack targetStack(Interpreter inI) {
+		if (_stack != null)
+			return _stack;
+
+		return (ObjectStack) inI._baseFrame.getStack(_stackType);
+	}
 }
 
 class Quote extends Instruction {
@@ -77,10 +106,15 @@ class Pop extends StackInstruction {
 		super(inStack);
 	}
 
+	Pop(int inStackType) {
+		super(inStackType);
+	}
+
 	@Override
 	public void Execute(Interpreter inI) {
-		if (_stack.size() > 0)
-			_stack.popdiscard();
+		Stack stack = targetStack(inI);
+		if (stack.size() > 0)
+			stack.popdiscard();
 	}
 }
 
@@ -91,9 +125,14 @@ class Flush extends StackInstruction {
 		super(inStack);
 	}
 
+	Flush(int inStackType) {
+		super(inStackType);
+	}
+
 	@Override
 	public void Execute(Interpreter inI) {
-		_stack.clear();
+		Stack stack = targetStack(inI);
+		stack.clear();
 	}
 }
 
@@ -104,9 +143,14 @@ class Dup extends StackInstruction {
 		super(inStack);
 	}
 
+	Dup(int inStackType) {
+		super(inStackType);
+	}
+
 	@Override
 	public void Execute(Interpreter inI) {
-		_stack.dup();
+		Stack stack = targetStack(inI);
+		stack.dup();
 	}
 }
 
@@ -117,10 +161,15 @@ class Rot extends StackInstruction {
 		super(inStack);
 	}
 
+	Rot(int inStackType) {
+		super(inStackType);
+	}
+
 	@Override
 	public void Execute(Interpreter inI) {
-		if (_stack.size() > 2)
-			_stack.rot();
+		Stack stack = targetStack(inI);
+		if (stack.size() > 2)
+			stack.rot();
 	}
 }
 
@@ -131,14 +180,19 @@ class Shove extends StackInstruction {
 		super(inStack);
 	}
 
+	Shove(int inStackType) {
+		super(inStackType);
+	}
+
 	@Override
 	public void Execute(Interpreter inI) {
+		Stack stack = targetStack(inI);
 		intStack iStack = inI.intStack();
 		
 		if (iStack.size() > 0) {
 			int index = iStack.pop();
-			if (_stack.size() > 0) {
-				_stack.shove(index);
+			if (stack.size() > 0) {
+				stack.shove(index);
 			}
 			else {
 				iStack.push(index);
@@ -154,10 +208,15 @@ class Swap extends StackInstruction {
 		super(inStack);
 	}
 
+	Swap(int inStackType) {
+		super(inStackType);
+	}
+
 	@Override
 	public void Execute(Interpreter inI) {
-		if (_stack.size() > 1)
-			_stack.swap();
+		Stack stack = targetStack(inI);
+		if (stack.size() > 1)
+			stack.swap();
 	}
 }
 
@@ -168,14 +227,19 @@ class Yank extends StackInstruction {
 		super(inStack);
 	}
 
+	Yank(int inStackType) {
+		super(inStackType);
+	}
+
 	@Override
 	public void Execute(Interpreter inI) {
+		Stack stack = targetStack(inI);
 		intStack iStack = inI.intStack();
 		
 		if (iStack.size() > 0) {
 			int index = iStack.pop();
-			if (_stack.size() > 0) {
-				_stack.yank(index);
+			if (stack.size() > 0) {
+				stack.yank(index);
 			}
 			else {
 				iStack.push(index);
@@ -191,14 +255,19 @@ class YankDup extends StackInstruction {
 		super(inStack);
 	}
 
+	YankDup(int inStackType) {
+		super(inStackType);
+	}
+
 	@Override
 	public void Execute(Interpreter inI) {
+		Stack stack = targetStack(inI);
 		intStack iStack = inI.intStack();
 		
 		if (iStack.size() > 0) {
 			int index = iStack.pop();
-			if (_stack.size() > 0) {
-				_stack.yankdup(index);
+			if (stack.size() > 0) {
+				stack.yankdup(index);
 			}
 			else {
 				iStack.push(index);
@@ -214,10 +283,14 @@ class Depth extends StackInstruction {
 		super(inStack);
 	}
 
+	Depth(int inStackType) {
+		super(inStackType);
+	}
+
 	@Override
 	public void Execute(Interpreter inI) {
-		intStack stack = inI.intStack();
-		stack.push(_stack.size());
+		intStack iStack = inI.intStack();
+		iStack.push(targetStack(inI).size());
 	}
 }
 
@@ -278,7 +351,8 @@ class ObjectConstant extends ObjectStackInstruction {
 
 	@Override
 	public void Execute(Interpreter inI) {
-		_stack.push(_value);
+		ObjectStack stack = targetStack(inI);
+		stack.push(_value);
 	}
 }
 
@@ -310,6 +384,10 @@ class IntegerAdd extends BinaryIntegerInstruction {
 	
 	@Override
 	int BinaryOperator(int inA, int inB) {
+		return Apply(inA, inB);
+	}
+
+	static int Apply(int inA, int inB) {
 		// Test for overflow
 		if((Math.abs(inA) > Integer.MAX_VALUE / 10) ||
 				(Math.abs(inB) > Integer.MAX_VALUE / 10)){
@@ -334,6 +412,10 @@ class IntegerSub extends BinaryIntegerInstruction {
 	
 	@Override
 	int BinaryOperator(int inA, int inB) {
+		return Apply(inA, inB);
+	}
+
+	static int Apply(int inA, int inB) {
 		// Test for overflow
 		if((Math.abs(inA) > Integer.MAX_VALUE / 10) ||
 				(Math.abs(inB) > Integer.MAX_VALUE / 10)){
@@ -367,6 +449,10 @@ class IntegerMul extends BinaryIntegerInstruction {
 	
 	@Override
 	int BinaryOperator(int inA, int inB) {
+		return Apply(inA, inB);
+	}
+
+	static int Apply(int inA, int inB) {
 		// Test for overflow
 		if((Math.abs(inA) > Math.sqrt(Integer.MAX_VALUE - 1)) ||
 				(Math.abs(inB) > Math.sqrt(Integer.MAX_VALUE - 1))){
@@ -518,16 +604,14 @@ class IntegerLn extends UnaryIntInstruction {
 
 class IntegerRand extends Instruction {
 	private static final long serialVersionUID = 1L;
-	
-	Random _RNG;
 
 	@Override
 	public void Execute(Interpreter inI) {
-		if(_RNG==null) _RNG=inI._RNG;
+		Random rng = inI._RNG;
 		
 		int range = (inI._maxRandomInt - inI._minRandomInt)
 				/ inI._randomIntResolution;
-		int randInt = (_RNG.nextInt(range) * inI._randomIntResolution)
+		int randInt = (rng.nextInt(range) * inI._randomIntResolution)
 				+ inI._minRandomInt;
 		inI.intStack().push(randInt);
 	}
@@ -647,6 +731,10 @@ class FloatAdd extends BinaryFloatInstruction {
 	
 	@Override
 	float BinaryOperator(float inA, float inB) {
+		return Apply(inA, inB);
+	}
+
+	static float Apply(float inA, float inB) {
 		// Test for overflow
 		float result = inA + inB;
 		if(Float.isInfinite(result) && result > 0){
@@ -665,6 +753,10 @@ class FloatSub extends BinaryFloatInstruction {
 	
 	@Override
 	float BinaryOperator(float inA, float inB) {
+		return Apply(inA, inB);
+	}
+
+	static float Apply(float inA, float inB) {
 		// Test for overflow
 		float result = inA - inB;
 		if(Float.isInfinite(result) && result > 0){
@@ -683,6 +775,10 @@ class FloatMul extends BinaryFloatInstruction {
 	
 	@Override
 	float BinaryOperator(float inA, float inB) {
+		return Apply(inA, inB);
+	}
+
+	static float Apply(float inA, float inB) {
 		// Test for overflow
 		float result = inA * inB;
 		if(Float.isInfinite(result) && result > 0){
@@ -704,6 +800,10 @@ class FloatDiv extends BinaryFloatInstruction {
 	
 	@Override
 	float BinaryOperator(float inA, float inB) {
+		return Apply(inA, inB);
+	}
+
+	static float Apply(float inA, float inB) {
 		// Test for overflow
 		float result = inA / inB;
 		if(Float.isInfinite(result) && result > 0){
@@ -909,16 +1009,14 @@ class FloatLn extends UnaryFloatInstruction {
 
 class FloatRand extends Instruction {
 	private static final long serialVersionUID = 1L;
-	
-	Random _RNG;
 
 	@Override
 	public void Execute(Interpreter inI) {
-		if(_RNG==null) _RNG=inI._RNG;
+		Random rng = inI._RNG;
 		
 		float range = (inI._maxRandomFloat - inI._minRandomFloat)
 				/ inI._randomFloatResolution;
-		float randFloat = (_RNG.nextFloat() * range * inI._randomFloatResolution)
+		float randFloat = (rng.nextFloat() * range * inI._randomFloatResolution)
 				+ inI._minRandomFloat;
 		inI.floatStack().push(randFloat);
 	}
@@ -1082,13 +1180,11 @@ class BoolNot extends Instruction {
 
 class BoolRand extends Instruction {
 	private static final long serialVersionUID = 1L;
-	
-	Random _RNG;
 
 	@Override
 	public void Execute(Interpreter inI) {
-		if(_RNG==null) _RNG=inI._RNG;
-		inI.boolStack().push(_RNG.nextBoolean());
+		Random rng = inI._RNG;
+		inI.boolStack().push(rng.nextBoolean());
 	}
 }
 
@@ -1143,66 +1239,66 @@ class InputInN extends Instruction {
 	}
 }
 
-class InputInAll extends ObjectStackInstruction {
+class InputInAll extends Instruction {
 	private static final long serialVersionUID = 1L;
-	
-	InputInAll(ObjectStack inStack) {
-		super(inStack);
-	}
 
 	@Override
 	public void Execute(Interpreter inI) {
+		ObjectStack stack = inI.inputStack();
 
-		if (_stack.size() > 0) {
-			for (int index = 0; index < _stack.size(); index++) {
+		if (stack.size() > 0) {
+			for (int index = 0; index < stack.size(); index++) {
 				inI.getInputPusher().pushInput(inI, index);
 			}
 		}
 	}
 }
 
-class InputInRev extends ObjectStackInstruction {
+class InputInRev extends Instruction {
 	private static final long serialVersionUID = 1L;
-	
-	InputInRev(ObjectStack inStack) {
-		super(inStack);
-	}
 
 	@Override
 	public void Execute(Interpreter inI) {
+		ObjectStack stack = inI.inputStack();
 
-		if (_stack.size() > 0) {
-			for (int index = _stack.size() - 1; index >= 0; index--) {
+		if (stack.size() > 0) {
+			for (int index = stack.size() - 1; index >= 0; index--) {
 				inI.getInputPusher().pushInput(inI, index);
 			}
 		}
 	}
 }
 
-class InputIndex extends ObjectStackInstruction {
+class InputIndex extends Instruction {
 	private static final long serialVersionUID = 1L;
-	
-	InputIndex(ObjectStack inStack) {
-		super(inStack);
-	}
 
 	@Override
 	public void Execute(Interpreter inI) {
 		intStack istack = inI.intStack();
+		ObjectStack stack = inI.inputStack();
 
-		if (istack.size() > 0 && _stack.size() > 0) {
+		if (istack.size() > 0 && stack.size() > 0) {
 			int index = istack.pop();
 
 			if (index < 0)
 				index = 0;
-			if (index >= _stack.size())
-				index = _stack.size() - 1;
+			if (index >= stack.size())
+				index = stack.size() - 1;
 
 			inI.getInputPusher().pushInput(inI, index);
 		}
 	}
 }
 
+class InputStackDepth extends Instruction {
+	private static final long serialVersionUID = 1L;
+
+	@Override
+	public void Execute(Interpreter inI) {
+		inI.intStack().push(inI.inputStack().size());
+	}
+}
+
 //
 // Instructions for code and exec stack
 //
@@ -1214,19 +1310,20 @@ class InputIndex extends ObjectStackInstruction {
 class CodeDoRange extends ObjectStackInstruction {
 	private static final long serialVersionUID = 1L;
 	
-	CodeDoRange(Interpreter inI) {
-		super(inI.codeStack());
+	CodeDoRange() {
+		super(Interpreter.StackFrame.CODE);
 	}
 
 	@Override
 	public void Execute(Interpreter inI) {
+		ObjectStack stack = targetStack(inI);
 		intStack istack = inI.intStack();
-		ObjectStack estack = inI.execStack();
+		ExecStack estack = inI.execStack();
 
-		if (_stack.size() > 0 && istack.size() > 1) {
+		if (stack.size() > 0 && istack.size() > 1) {
 			int stop = istack.pop();
 			int start = istack.pop();
-			Object code = _stack.pop();
+			Object code = stack.pop();
 
 			if (start == stop) {
 				istack.push(start);
@@ -1235,17 +1332,7 @@ class CodeDoRange extends ObjectStackInstruction {
 				istack.push(start);
 				start = (start < stop) ? (start + 1) : (start - 1);
 
-				try {
-					Program recursiveCallProgram = new Program(inI);
-					recursiveCallProgram.push(Integer.valueOf(start));
-					recursiveCallProgram.push(Integer.valueOf(stop));
-					recursiveCallProgram.push("code.quote");
-					recursiveCallProgram.push(code);
-					recursiveCallProgram.push("code.do*range");
-					estack.push(recursiveCallProgram);
-				} catch (Exception e) {
-					System.err.println("Error while initializing a program.");
-				}
+				estack.PushLoop(new LoopFrame(inI, true, start, stop, code));
 
 				estack.push(code);
 			}
@@ -1256,22 +1343,27 @@ class CodeDoRange extends ObjectStackInstruction {
 class CodeDoTimes extends ObjectStackInstruction {
 	private static final long serialVersionUID = 1L;
 	
-	CodeDoTimes(Interpreter inI) {
-		super(inI.codeStack());
+	CodeDoTimes() {
+		super(Interpreter.StackFrame.CODE);
 	}
 
 	@Override
 	public void Execute(Interpreter inI) {
+		ObjectStack stack = targetStack(inI);
 		intStack istack = inI.intStack();
-		ObjectStack estack = inI.execStack();
+		ExecStack estack = inI.execStack();
 
-		if (_stack.size() > 0 && istack.size() > 0) {
+		if (stack.size() > 0 && istack.size() > 0) {
 			if (istack.top() > 0) {
-				Object bodyObj = _stack.pop();
+				Object bodyObj = stack.pop();
 
 				if (bodyObj instanceof Program) {
-					// insert integer.pop in front of program
-					((Program) bodyObj).shove("integer.pop", ((Program) bodyObj)._size);
+					// create a copy of the program with integer.pop in
+					// front, since the popped program may be shared
+					Program newProgram = new Program(inI);
+					newProgram.push("integer.pop");
+					((Program) bodyObj).CopyTo(newProgram);
+					bodyObj = newProgram;
 				} else {
 					// create a new program with integer.pop in front of
 					// the popped object
@@ -1283,17 +1375,7 @@ class CodeDoTimes extends ObjectStackInstruction {
 
 				int stop = istack.pop() - 1;
 
-				try {
-					Program doRangeMacroProgram = new Program(inI);
-					doRangeMacroProgram.push(Integer.valueOf(0));
-					doRangeMacroProgram.push(Integer.valueOf(stop));
-					doRangeMacroProgram.push("code.quote");
-					doRangeMacroProgram.push(bodyObj);
-					doRangeMacroProgram.push("code.do*range");
-					estack.push(doRangeMacroProgram);
-				} catch (Exception e) {
-					System.err.println("Error while initializing a program.");
-				}
+				estack.PushLoop(new LoopFrame(inI, true, 0, stop, bodyObj));
 
 			}
 		}
@@ -1304,31 +1386,22 @@ class CodeDoTimes extends ObjectStackInstruction {
 class CodeDoCount extends ObjectStackInstruction {
 	private static final long serialVersionUID = 1L;
 	
-	CodeDoCount(Interpreter inI) {
-		super(inI.codeStack());
+	CodeDoCount() {
+		super(Interpreter.StackFrame.CODE);
 	}
 
 	@Override
 	public void Execute(Interpreter inI) {
+		ObjectStack stack = targetStack(inI);
 		intStack istack = inI.intStack();
-		ObjectStack estack = inI.execStack();
+		ExecStack estack = inI.execStack();
 
-		if (_stack.size() > 0 && istack.size() > 0) {
+		if (stack.size() > 0 && istack.size() > 0) {
 			if (istack.top() > 0) {
 				int stop = istack.pop() - 1;
-				Object bodyObj = _stack.pop();
-
-				try {
-					Program doRangeMacroProgram = new Program(inI);
-					doRangeMacroProgram.push(Integer.valueOf(0));
-					doRangeMacroProgram.push(Integer.valueOf(stop));
-					doRangeMacroProgram.push("code.quote");
-					doRangeMacroProgram.push(bodyObj);
-					doRangeMacroProgram.push("code.do*range");
-					estack.push(doRangeMacroProgram);
-				} catch (Exception e) {
-					System.err.println("Error while initializing a program.");
-				}
+				Object bodyObj = stack.pop();
+
+				estack.PushLoop(new LoopFrame(inI, true, 0, stop, bodyObj));
 
 			}
 		}
@@ -1391,19 +1464,20 @@ class CodeFromFloat extends Instruction {
 class ExecDoRange extends ObjectStackInstruction {
 	private static final long serialVersionUID = 1L;
 	
-	ExecDoRange(Interpreter inI) {
-		super(inI.execStack());
+	ExecDoRange() {
+		super(Interpreter.StackFrame.EXEC);
 	}
 
 	@Override
 	public void Execute(Interpreter inI) {
+		ObjectStack stack = targetStack(inI);
 		intStack istack = inI.intStack();
-		ObjectStack estack = inI.execStack();
+		ExecStack estack = inI.execStack();
 
-		if (_stack.size() > 0 && istack.size() > 1) {
+		if (stack.size() > 0 && istack.size() > 1) {
 			int stop = istack.pop();
 			int start = istack.pop();
-			Object code = _stack.pop();
+			Object code = stack.pop();
 
 			if (start == stop) {
 				istack.push(start);
@@ -1414,16 +1488,7 @@ class ExecDoRange extends ObjectStackInstruction {
 
 				// trh//Made changes to correct errors with code.do*range
 
-				try {
-					Program recursiveCallProgram = new Program(inI);
-					recursiveCallProgram.push(Integer.valueOf(start));
-					recursiveCallProgram.push(Integer.valueOf(stop));
-					recursiveCallProgram.push("exec.do*range");
-					recursiveCallProgram.push(code);
-					estack.push(recursiveCallProgram);
-				} catch (Exception e) {
-					System.err.println("Error while initializing a program.");
-				}
+				estack.PushLoop(new LoopFrame(inI, false, start, stop, code));
 
 				estack.push(code);
 			}
@@ -1434,22 +1499,27 @@ class ExecDoRange extends ObjectStackInstruction {
 class ExecDoTimes extends ObjectStackInstruction {
 	private static final long serialVersionUID = 1L;
 	
-	ExecDoTimes(Interpreter inI) {
-		super(inI.execStack());
+	ExecDoTimes() {
+		super(Interpreter.StackFrame.EXEC);
 	}
 
 	@Override
 	public void Execute(Interpreter inI) {
+		ObjectStack stack = targetStack(inI);
 		intStack istack = inI.intStack();
-		ObjectStack estack = inI.execStack();
+		ExecStack estack = inI.execStack();
 
-		if (_stack.size() > 0 && istack.size() > 0) {
+		if (stack.size() > 0 && istack.size() > 0) {
 			if (istack.top() > 0) {
-				Object bodyObj = _stack.pop();
+				Object bodyObj = stack.pop();
 
 				if (bodyObj instanceof Program) {
-					// insert integer.pop in front of program
-					((Program) bodyObj).shove("integer.pop", ((Program) bodyObj)._size);
+					// create a copy of the program with integer.pop in
+					// front, since the popped program may be shared
+					Program newProgram = new Program(inI);
+					newProgram.push("integer.pop");
+					((Program) bodyObj).CopyTo(newProgram);
+					bodyObj = newProgram;
 				} else {
 					// create a new program with integer.pop in front of
 					// the popped object
@@ -1461,16 +1531,7 @@ class ExecDoTimes extends ObjectStackInstruction {
 
 				int stop = istack.pop() - 1;
 
-				try {
-					Program doRangeMacroProgram = new Program(inI);
-					doRangeMacroProgram.push(Integer.valueOf(0));
-					doRangeMacroProgram.push(Integer.valueOf(stop));
-					doRangeMacroProgram.push("exec.do*range");
-					doRangeMacroProgram.push(bodyObj);
-					estack.push(doRangeMacroProgram);
-				} catch (Exception e) {
-					System.err.println("Error while initializing a program.");
-				}
+				estack.PushLoop(new LoopFrame(inI, false, 0, stop, bodyObj));
 
 			}
 		}
@@ -1481,30 +1542,22 @@ class ExecDoTimes extends ObjectStackInstruction {
 class ExecDoCount extends ObjectStackInstruction {
 	private static final long serialVersionUID = 1L;
 	
-	ExecDoCount(Interpreter inI) {
-		super(inI.execStack());
+	ExecDoCount() {
+		super(Interpreter.StackFrame.EXEC);
 	}
 
 	@Override
 	public void Execute(Interpreter inI) {
+		ObjectStack stack = targetStack(inI);
 		intStack istack = inI.intStack();
-		ObjectStack estack = inI.execStack();
+		ExecStack estack = inI.execStack();
 
-		if (_stack.size() > 0 && istack.size() > 0) {
+		if (stack.size() > 0 && istack.size() > 0) {
 			if (istack.top() > 0) {
 				int stop = istack.pop() - 1;
-				Object bodyObj = _stack.pop();
-
-				try {
-					Program doRangeMacroProgram = new Program(inI);
-					doRangeMacroProgram.push(Integer.valueOf(0));
-					doRangeMacroProgram.push(Integer.valueOf(stop));
-					doRangeMacroProgram.push("exec.do*range");
-					doRangeMacroProgram.push(bodyObj);
-					estack.push(doRangeMacroProgram);
-				} catch (Exception e) {
-					System.err.println("Error while initializing a program.");
-				}
+				Object bodyObj = stack.pop();
+
+				estack.PushLoop(new LoopFrame(inI, false, 0, stop, bodyObj));
 
 			}
 		}
@@ -1516,16 +1569,17 @@ class ExecDoCount extends ObjectStackInstruction {
 class ExecK extends ObjectStackInstruction {
 	private static final long serialVersionUID = 1L;
 	
-	ExecK(ObjectStack inStack) {
-		super(inStack);
+	ExecK(int inStackType) {
+		super(inStackType);
 	}
 	
 	@Override
 	public void Execute(Interpreter inI) {
+		ObjectStack stack = targetStack(inI);
 		// Removes the second item on the stack
-		if(_stack.size() > 1){
-			_stack.swap();
-			_stack.popdiscard();
+		if(stack.size() > 1){
+			stack.swap();
+			stack.popdiscard();
 		}
 	}
 }
@@ -1535,18 +1589,19 @@ class ExecS extends ObjectStackInstruction {
 	
 	int _maxPointsInProgram;
 	
-	ExecS(ObjectStack inStack, int inMaxPointsInProgram) {
-		super(inStack);
+	ExecS(int inStackType, int inMaxPointsInProgram) {
+		super(inStackType);
 		_maxPointsInProgram = inMaxPointsInProgram;
 	}
 	
 	@Override
 	public void Execute(Interpreter inI) {
+		ObjectStack stack = targetStack(inI);
 		// Removes the second item on the stack
-		if(_stack.size() > 2){
-			Object a = _stack.pop();
-			Object b = _stack.pop();
-			Object c = _stack.pop();
+		if(stack.size() > 2){
+			Object a = stack.pop();
+			Object b = stack.pop();
+			Object c = stack.pop();
 			Program listBC = new Program(inI);
 
 			listBC.push(b);
@@ -1555,15 +1610,15 @@ class ExecS extends ObjectStackInstruction {
 			if(listBC.programsize() > _maxPointsInProgram){
 				// If the new list is too large, turn into a noop by re-pushing
 				// the popped instructions
-				_stack.push(c);
-				_stack.push(b);
-				_stack.push(a);
+				stack.push(c);
+				stack.push(b);
+				stack.push(a);
 			}
 			else {
 				// If not too big, continue as planned
-				_stack.push(listBC);
-				_stack.push(c);
-				_stack.push(a);
+				stack.push(listBC);
+				stack.push(c);
+				stack.push(a);
 			}
 		}
 	}
@@ -1572,22 +1627,23 @@ class ExecS extends ObjectStackInstruction {
 class ExecY extends ObjectStackInstruction {
 	private static final long serialVersionUID = 1L;
 	
-	ExecY(ObjectStack inStack) {
-		super(inStack);
+	ExecY(int inStackType) {
+		super(inStackType);
 	}
 	
 	@Override
 	public void Execute(Interpreter inI) {
+		ObjectStack stack = targetStack(inI);
 		// Removes the second item on the stack
-		if(_stack.size() > 0){
-			Object a = _stack.pop();
+		if(stack.size() > 0){
+			Object a = stack.pop();
 			Program listExecYA = new Program(inI);
 
 			listExecYA.push("exec.y");
 			listExecYA.push(a);
 			
-			_stack.push(listExecYA);
-			_stack.push(a);
+			stack.push(listExecYA);
+			stack.push(a);
 		}
 	}
 }
@@ -1604,15 +1660,13 @@ class ExecNoop extends Instruction {
 class RandomPushCode extends ObjectStackInstruction {
 	private static final long serialVersionUID = 1L;
 	
-	Random _RNG;
-	
-	RandomPushCode(ObjectStack inStack) {
-		super(inStack);
-		_RNG = new Random();
+	RandomPushCode(int inStackType) {
+		super(inStackType);
 	}
 	
 	@Override
 	public void Execute(Interpreter inI) {
+		ObjectStack stack = targetStack(inI);
 		int randCodeMaxPoints = 0;
 		
 		if (inI.intStack().size() > 0) {
@@ -1622,13 +1676,13 @@ class RandomPushCode extends ObjectStackInstruction {
 
 			int randomCodeSize;
 			if (randCodeMaxPoints > 0) {
-				randomCodeSize = _RNG.nextInt(randCodeMaxPoints) + 2;
+				randomCodeSize = inI._RNG.nextInt(randCodeMaxPoints) + 2;
 			} else {
 				randomCodeSize = 2;
 			}
 			Program p = inI.RandomCode(randomCodeSize);
 
-			_stack.push(p);
+			stack.push(p);
 		}
 	}
 }
@@ -1637,78 +1691,135 @@ class RandomPushCode extends ObjectStackInstruction {
 class ObjectEquals extends ObjectStackInstruction {
 	private static final long serialVersionUID = 1L;
 	
-	ObjectEquals(ObjectStack inStack) {
-		super(inStack);
+	ObjectEquals(int inStackType) {
+		super(inStackType);
 	}
 
 	@Override
 	public void Execute(Interpreter inI) {
+		ObjectStack stack = targetStack(inI);
 		booleanStack bstack = inI.boolStack();
 
-		if (_stack.size() > 1) {
-			Object o1 = _stack.pop();
-			Object o2 = _stack.pop();
+		if (stack.size() > 1) {
+			Object o1 = stack.pop();
+			Object o2 = stack.pop();
 
-			bstack.push(o1.equals(o2));
+			bstack.push(Program.AtomEquals(o1, o2));
 		}
 	}
 }
 
-class If extends ObjectStackInstruction {
+/**
+ * Abstract instruction class for instructions which pop a condition, and then
+ * items from one of the standard ObjectStacks, pushing the branch taken onto the
+ * exec stack. Execution is split into the two halves so that a Trace can guard
+ * on which branch is taken.
+ */
+
+abstract class BranchInstruction extends ObjectStackInstruction {
 	private static final long serialVersionUID = 1L;
-	
-	If(ObjectStack inStack) {
-		super(inStack);
+
+	BranchInstruction(int inStackType) {
+		super(inStackType);
 	}
 
 	@Override
 	public void Execute(Interpreter inI) {
+		Branch(inI, Test(inI, targetStack(inI).size()));
+	}
+
+	/**
+	 * Pops the condition, if there is one and the stack holds enough items.
+	 * 
+	 * @param inStackSize
+	 *            The number of items on the stack.
+	 * @return 1 or 0 for the branch to take, or -1 if there is none.
+	 */
+
+	abstract int Test(Interpreter inI, int inStackSize);
+
+	/**
+	 * Pops the items to branch between, and pushes the one taken.
+	 * 
+	 * @param inBranch
+	 *            The result of Test.
+	 */
+
+	abstract void Branch(Interpreter inI, int inBranch);
+}
+
+class If extends BranchInstruction {
+	private static final long serialVersionUID = 1L;
+	
+	If(int inStackType) {
+		super(inStackType);
+	}
+
+	@Override
+	int Test(Interpreter inI, int inStackSize) {
 		booleanStack bstack = inI.boolStack();
-		ObjectStack estack = inI.execStack();
 
-		if (_stack.size() > 1 && bstack.size() > 0) {
-			boolean istrue = bstack.pop();
+		if (inStackSize > 1 && bstack.size() > 0)
+			return bstack.pop() ? 1 : 0;
 
-			Object iftrue = _stack.pop();
-			Object iffalse = _stack.pop();
+		return -1;
+	}
 
-			if (istrue)
-				estack.push(iftrue);
-			else
-				estack.push(iffalse);
-		}
+	@Override
+	void Branch(Interpreter inI, int inBranch) {
+		ObjectStack stack = targetStack(inI);
+		if (inBranch < 0)
+			return;
+
+		ObjectStack estack = inI.execStack();
+
+		Object iftrue = stack.pop();
+		Object iffalse = stack.pop();
+
+		if (inBranch == 1)
+			estack.push(iftrue);
+		else
+			estack.push(iffalse);
 	}
 }
 
-class IfLessThan extends ObjectStackInstruction {
+class IfLessThan extends BranchInstruction {
 	private static final long serialVersionUID = 1L;
 	
-	IfLessThan(ObjectStack inStack) {
-		super(inStack);
+	IfLessThan(int inStackType) {
+		super(inStackType);
 	}
 
 	@Override
-	public void Execute(Interpreter inI) {
+	int Test(Interpreter inI, int inStackSize) {
 		floatStack fstack = inI.floatStack();
-		ObjectStack estack = inI.execStack();
 
-		if (_stack.size() > 1 && fstack.size() > 0) {
+		if (inStackSize > 1 && fstack.size() > 0) {
 			float fval = fstack.pop();
 
-			Object iftrue = _stack.pop();
-
-			if (fval < inI.getRNG().nextFloat())
-				estack.push(iftrue);
+			return (fval < inI.getRNG().nextFloat()) ? 1 : 0;
 		}
+
+		return -1;
+	}
+
+	@Override
+	void Branch(Interpreter inI, int inBranch) {
+		ObjectStack stack = targetStack(inI);
+		if (inBranch < 0)
+			return;
+
+		ObjectStack estack = inI.execStack();
+
+		Object iftrue = stack.pop();
+
+		if (inBranch == 1)
+			estack.push(iftrue);
 	}
 }
 
 class EvaluateSolution extends Instruction {
 	private static final long serialVersionUID = 1L;
-	static int evaluationCount;
-	static Problem problem;
-	static int maxMoves;
-	static float bestValue;
 
 	@Override
 	public void Execute(Interpreter inI) {
@@ -1716,12 +1827,15 @@ class EvaluateSolution extends Instruction {
 		floatStack fStack = inI.floatStack();
 		
 		if(vStack.size() > 0) {
-			float[] solution = vStack.top();
-			float value = problem.evaluate(solution, false);
+			EvaluationContext context = inI._context;
+			// a point which was pushed and hasn't changed may already
+			// have been evaluated
+			SearchPoint solution = vStack.topPoint();
+			float value = solution.evaluate(context._problem, false);
 			fStack.push(value);
 			
-			evaluationCount++;
-			if(value < bestValue) bestValue = value;
+			context._evaluationCount++;
+			if(value < context._bestValue) context._bestValue = value;
 		}
 	}
 }
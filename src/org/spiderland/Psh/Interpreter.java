@@ -21,6 +21,7 @@ import java.util.*;
 
 import optimisation.PopulationOptimisation;
 import optimisation.problems.Problem;
+import optimisation.problems.SearchPoint;
 
 /**
  * The Push language interpreter.
@@ -31,12 +32,17 @@ import optimisation.problems.Problem;
 public class Interpreter implements Serializable {
 	private static final long serialVersionUID = 1L;
 
-	protected HashMap<String, Instruction> _instructions = new HashMap<String, Instruction>();
+	// The instruction set, usually shared with other interpreters, unless
+	// _ownInstructionSet; and its instructions and generators
+	protected InstructionSet _instructionSet;
+	protected boolean _ownInstructionSet;
+
+	protected HashMap<String, Instruction> _instructions;
 
 	// All generators
 
-	protected HashMap<String, AtomGenerator> _generators = new HashMap<String, AtomGenerator>();
-	protected ArrayList<AtomGenerator> _randomGenerators = new ArrayList<AtomGenerator>();
+	protected HashMap<String, AtomGenerator> _generators;
+	protected ArrayList<AtomGenerator> _randomGenerators;
 
 	// Create the stacks.
 	protected intStack _intStack;
@@ -45,9 +51,17 @@ public class Interpreter implements Serializable {
 	protected vectorStack _vectorStack;
 	protected ObjectStack _codeStack;
 	protected ObjectStack _nameStack;
-	protected ObjectStack _execStack = new ObjectStack();
+	protected ExecStack _execStack = new ExecStack();
 
 	protected ObjectStack _inputStack = new ObjectStack();
+
+	// The stacks which the stack instructions (integer.pop, exec.swap, etc.)
+	// act on. Initially the interpreter's own stacks; see StackFrame.switchIn.
+	protected StackFrame _activeFrame;
+
+	// The interpreter's own stacks, which the code and exec instructions
+	// (code.if, exec.do*range, etc.) act on whichever frame is active
+	protected StackFrame _baseFrame;
 	
 	// This arraylist will hold all custom stacks that can be created by the
 	// problem classes
@@ -65,6 +79,18 @@ public class Interpreter implements Serializable {
 
 	protected boolean _useFrames;
 
+	// Whether compiled programs are traced; see Trace
+	protected boolean _useTraces = true;
+
+	// The number of operations which vector stacks defer; see vectorStack
+	protected int _lazyVectorDepth;
+
+	// Exec and code stacks for running code on the side, kept for reuse: a
+	// pair for each level of nesting
+	protected transient ExecStack _sideExecStacks[];
+	protected transient ObjectStack _sideCodeStacks[];
+	protected transient int _sideDepth;
+
 	protected int _totalStepsTaken;
 	protected long _evaluationExecutions = 0;
 	
@@ -79,30 +105,51 @@ public class Interpreter implements Serializable {
 	protected int _maxRandomCodeSize;
 	protected int _maxPointsInProgram;
 
-	protected Random _RNG = new Random();
+	protected String _randomGenerator = Randoms.JAVA;
+	protected Random _RNG = Randoms.Make(_randomGenerator);
 
 	protected InputPusher _inputPusher = new InputPusher();
 	
 	protected boolean haltExecution;
 	
-	protected int current;
+	// The state of the optimisation run which the program is part of
+	protected EvaluationContext _context = new EvaluationContext();
 	
 	public void setProblem(Problem problem, int moveLimit) {
-		EvaluateSolution.problem = problem;
-		EvaluateSolution.maxMoves = moveLimit;
+		_context.setProblem(problem, moveLimit);
 	}
 	
 	public void setSeed(long seed) {
 		_RNG.setSeed(seed);
 	}
 	
+	/**
+	 * Gives the interpreter a new, unseeded generator of the given kind, as
+	 * named by the random-generator parameter.
+	 */
+	public void SetRandomGenerator(String inGenerator) {
+		_randomGenerator = inGenerator;
+		_RNG = Randoms.Make(inGenerator);
+	}
+	
 	public void resetEvalation() {
-		EvaluateSolution.bestValue = Float.MAX_VALUE;
-		EvaluateSolution.evaluationCount = 0;
+		_context.resetEvaluation();
 	}
 	
 	public float bestSolution() {
-		return EvaluateSolution.bestValue;
+		return _context.bestValue();
+	}
+	
+	public EvaluationContext getContext() {
+		return _context;
+	}
+	
+	/**
+	 * Makes the interpreter use another context, such as one shared by the
+	 * interpreters evaluating the same optimisation run.
+	 */
+	public void setContext(EvaluationContext context) {
+		_context = context;
 	}
 
 	public Interpreter() {
@@ -110,130 +157,11 @@ public class Interpreter implements Serializable {
 		_useFrames = false;
 		PushStacks();
 
-		DefineInstruction("integer.+", new IntegerAdd());
-		DefineInstruction("integer.-", new IntegerSub());
-		DefineInstruction("integer./", new IntegerDiv());
-		DefineInstruction("integer.%", new IntegerMod());
-		DefineInstruction("integer.*", new IntegerMul());
-		DefineInstruction("integer.pow", new IntegerPow());
-		DefineInstruction("integer.log", new IntegerLog());
-		DefineInstruction("integer.=", new IntegerEquals());
-		DefineInstruction("integer.>", new IntegerGreaterThan());
-		DefineInstruction("integer.<", new IntegerLessThan());
-		DefineInstruction("integer.min", new IntegerMin());
-		DefineInstruction("integer.max", new IntegerMax());
-		DefineInstruction("integer.abs", new IntegerAbs());
-		DefineInstruction("integer.neg", new IntegerNeg());
-		DefineInstruction("integer.ln", new IntegerLn());
-		DefineInstruction("integer.fromfloat", new IntegerFromFloat());
-		DefineInstruction("integer.fromboolean", new IntegerFromBoolean());
-		DefineInstruction("integer.rand", new IntegerRand());
-
-		DefineInstruction("float.+", new FloatAdd());
-		DefineInstruction("float.-", new FloatSub());
-		DefineInstruction("float./", new FloatDiv());
-		DefineInstruction("float.%", new FloatMod());
-		DefineInstruction("float.*", new FloatMul());
-		DefineInstruction("float.pow", new FloatPow());
-		DefineInstruction("float.log", new FloatLog());
-		DefineInstruction("float.=", new FloatEquals());
-		DefineInstruction("float.>", new FloatGreaterThan());
-		DefineInstruction("float.<", new FloatLessThan());
-		DefineInstruction("float.min", new FloatMin());
-		DefineInstruction("float.max", new FloatMax());
-		DefineInstruction("float.sin", new FloatSin());
-		DefineInstruction("float.cos", new FloatCos());
-		DefineInstruction("float.tan", new FloatTan());
-		DefineInstruction("float.exp", new FloatExp());
-		DefineInstruction("float.abs", new FloatAbs());
-		DefineInstruction("float.neg", new FloatNeg());
-		DefineInstruction("float.ln", new FloatLn());
-		DefineInstruction("float.frominteger", new FloatFromInteger());
-		DefineInstruction("float.fromboolean", new FloatFromBoolean());
-		DefineInstruction("float.rand", new FloatRand());
-		
-		DefineInstruction("boolean.=", new BoolEquals());
-		DefineInstruction("boolean.not", new BoolNot());
-		DefineInstruction("boolean.and", new BoolAnd());
-		DefineInstruction("boolean.or", new BoolOr());
-		DefineInstruction("boolean.xor", new BoolXor());
-		DefineInstruction("boolean.frominteger", new BooleanFromInteger());
-		DefineInstruction("boolean.fromfloat", new BooleanFromFloat());
-		DefineInstruction("boolean.rand", new BoolRand());
-		
-		DefineInstruction("vector.+", new VectorAdd());
-		DefineInstruction("vector.-", new VectorSub());
-		DefineInstruction("vector.*", new VectorMul());
-		DefineInstruction("vector./", new VectorDiv());
-		DefineInstruction("vector.scale", new VectorMulScalar());
-		DefineInstruction("vector.dprod", new VectorDotProduct());
-		DefineInstruction("vector.mag", new VectorMag());
-		DefineInstruction("vector.dim+", new VectorDimAdd());
-		DefineInstruction("vector.dim*", new VectorDimMul());
-		DefineInstruction("vector.rand", new VectorRand());
-		DefineInstruction("vector.lrand", new VectorRandWithLimits());
-		DefineInstruction("vector.wrand", new VectorRandWithWidth());
-		DefineInstruction("vector.urand", new UnitVectorRand());
-		DefineInstruction("vector.zip", new VectorZip());
-		DefineInstruction("vector.apply", new VectorApply());
-		DefineInstruction("vector.between", new VectorBetween());
-		DefineInstruction("vector.getcomponent", new VectorGetComponent());
-		DefineInstruction("vector.setcomponent", new VectorSetComponent());
-		DefineInstruction("vector.tofloats", new VectorToFloats());
-		DefineInstruction("vector.fromfloats", new VectorFromFloats());
-		
-		DefineInstruction("vector.best", new VectorBest());
-		DefineInstruction("vector.current", new VectorCurrent());
-
-		DefineInstruction("code.quote", new Quote());
-		DefineInstruction("code.fromboolean", new CodeFromBoolean());
-		DefineInstruction("code.frominteger", new CodeFromInteger());
-		DefineInstruction("code.fromfloat", new CodeFromFloat());
-		DefineInstruction("code.noop", new ExecNoop());
-		
-		DefineInstruction("exec.k", new ExecK(_execStack));
-		DefineInstruction("exec.s", new ExecS(_execStack, _maxPointsInProgram));
-		DefineInstruction("exec.y", new ExecY(_execStack));
-		DefineInstruction("exec.noop", new ExecNoop());
-
-		DefineInstruction("exec.do*times", new ExecDoTimes(this));
-		DefineInstruction("code.do*times", new CodeDoTimes(this));
-		DefineInstruction("exec.do*count", new ExecDoCount(this));
-		DefineInstruction("code.do*count", new CodeDoCount(this));
-		DefineInstruction("exec.do*range", new ExecDoRange(this));
-		DefineInstruction("code.do*range", new CodeDoRange(this));
-		DefineInstruction("code.=", new ObjectEquals(_codeStack));
-		DefineInstruction("exec.=", new ObjectEquals(_execStack));
-		DefineInstruction("code.if", new If(_codeStack));
-		DefineInstruction("exec.if", new If(_execStack));
-		DefineInstruction("exec.iflt", new IfLessThan(_execStack));
-		DefineInstruction("code.rand", new RandomPushCode(_codeStack));
-		DefineInstruction("exec.rand", new RandomPushCode(_execStack));
-		
-		DefineInstruction("true", new BooleanConstant(true));
-		DefineInstruction("false", new BooleanConstant(false));
-
-		DefineInstruction("input.index", new InputIndex(_inputStack));
-		DefineInstruction("input.inall", new InputInAll(_inputStack));
-		DefineInstruction("input.inallrev", new InputInRev(_inputStack));
-		DefineInstruction("input.stackdepth", new Depth(_inputStack));
-		
-		DefineInstruction("evaluate", new EvaluateSolution());
-
-		DefineStackInstructions("integer", _intStack);
-		DefineStackInstructions("float", _floatStack);
-		DefineStackInstructions("boolean", _boolStack);
-		DefineStackInstructions("vector", _vectorStack);
-		DefineStackInstructions("name", _nameStack);
-		DefineStackInstructions("code", _codeStack);
-		DefineStackInstructions("exec", _execStack);
-
-		DefineInstruction("frame.push", new PushFrame());
-		DefineInstruction("frame.pop", new PopFrame());
+		_activeFrame = new StackFrame();
+		_activeFrame.capture(this);
+		_baseFrame = _activeFrame;
 
-		_generators.put("float.erc", new FloatAtomGenerator());
-		_generators.put("integer.erc", new IntAtomGenerator());
-		_generators.put("vector.erc", new VectorAtomGenerator());
+		UseInstructionSet(InstructionSet.Builtin());
 	}
 	
 	public Random getRNG() {
@@ -253,6 +181,32 @@ public class Interpreter implements Serializable {
 		_useFrames = inUseFrames;
 	}
 
+	/**
+	 * Enables or disables tracing, which is on by default.
+	 * 
+	 * When tracing is enabled, the interpreter records the atoms executed from
+	 * the start of a compiled program, and replays them on later runs of the
+	 * program for as long as its branches go the same way (see Trace). This
+	 * gives the same results as executing the program atom by atom.
+	 */
+
+	public void SetUseTraces(boolean inUseTraces) {
+		_useTraces = inUseTraces;
+	}
+
+	/**
+	 * Sets the number of operations of a vector and a scalar, such as
+	 * vector.scale, which the vector stacks defer for each vector, so as to
+	 * carry them out in one pass over the vector when it is next used. With
+	 * 0, the default, they are carried out straight away. Either way, the
+	 * results are the same.
+	 */
+
+	public void SetLazyVectorDepth(int inDepth) {
+		_lazyVectorDepth = inDepth;
+		_vectorStack.setLazyDepth(inDepth);
+	}
+
 	/**
 	 * Defines the instruction set used for random code generation in this Push
 	 * interpreter.
@@ -264,102 +218,43 @@ public class Interpreter implements Serializable {
 
 	public void SetInstructions(Program inInstructionList)
 			throws RuntimeException {
-		_randomGenerators.clear();
-
-		for (int n = 0; n < inInstructionList.size(); n++) {
-			Object o = inInstructionList.peek(n);
-			String name = null;
-
-			if (o instanceof Instruction) {
-				String keys[] = _instructions.keySet().toArray(
-						new String[_instructions.size()]);
+		UseInstructionSet(_instructionSet.ForRandomCode(inInstructionList));
+	}
 
-				for (String key : keys)
-					if (_instructions.get(key) == o) {
-						name = key;
-						break;
-					}
-			} else if (o instanceof String){
-				name = (String) o;
-			} else
-				throw new RuntimeException(
-						"Instruction list must contain a list of Push instruction names only");
-
-			// Check for registered
-			if (name.indexOf("registered.") == 0) {
-				String registeredType = name.substring(11);
-
-				if (!registeredType.equals("integer")
-						&& !registeredType.equals("float")
-						&& !registeredType.equals("boolean")
-						&& !registeredType.equals("exec")
-						&& !registeredType.equals("code")
-						&& !registeredType.equals("name")
-						&& !registeredType.equals("input")
-						&& !registeredType.equals("frame")) {
-					System.err.println("Unknown instruction \"" + name
-							+ "\" in instruction set");
-				} else {
-					// Legal stack type, so add all generators matching
-					// registeredType to _randomGenerators.
-					Object keys[] = _instructions.keySet().toArray();
-
-					for (int i = 0; i < keys.length; i++) {
-						String key = (String) keys[i];
-						if (key.indexOf(registeredType) == 0) {
-							AtomGenerator g = _generators.get(key);
-							_randomGenerators.add(g);
-						}
-					}
+	/**
+	 * Makes the interpreter use an instruction set, which may be shared with
+	 * other interpreters.
+	 */
 
-					if (registeredType.equals("boolean")) {
-						AtomGenerator t = _generators.get("true");
-						_randomGenerators.add(t);
-						AtomGenerator f = _generators.get("false");
-						_randomGenerators.add(f);
-					}
-					if (registeredType.equals("integer")) {
-						AtomGenerator g = _generators.get("integer.erc");
-						_randomGenerators.add(g);
-					}
-					if (registeredType.equals("float")) {
-						AtomGenerator g = _generators.get("float.erc");
-						_randomGenerators.add(g);
-					}
+	public void UseInstructionSet(InstructionSet inSet) {
+		_instructionSet = inSet;
+		_ownInstructionSet = false;
+		_instructions = inSet._instructions;
+		_generators = inSet._generators;
+		_randomGenerators = inSet._randomGenerators;
+	}
 
-				}
-			} else if (name.indexOf("input.makeinputs") == 0) {
-				String strnum = name.substring(16);
-				int num = Integer.parseInt(strnum);
-
-				for (int i = 0; i < num; i++) {
-					DefineInstruction("input.in" + i, new InputInN(i));
-					AtomGenerator g = _generators.get("input.in" + i);
-					_randomGenerators.add(g);
-				}
-			} else {
-				AtomGenerator g = _generators.get(name);
+	public InstructionSet GetInstructionSet() {
+		return _instructionSet;
+	}
 
-				if (g == null) {
-					throw new RuntimeException("Unknown instruction \"" + name
-							+ "\" in instruction set");
-				} else {
-					_randomGenerators.add(g);
-				}
-			}
+	// Gives the interpreter its own copy of its instruction set to change
+	private void OwnInstructionSet() {
+		if (!_ownInstructionSet) {
+			UseInstructionSet(_instructionSet.Copy());
+			_ownInstructionSet = true;
 		}
 	}
 
 	public void AddInstruction(String inName, Instruction inInstruction) {
-		InstructionAtomGenerator iag = new InstructionAtomGenerator(inName);
-		_instructions.put(inName, inInstruction);
-		_generators.put(inName, iag);
-		_randomGenerators.add(iag);
+		OwnInstructionSet();
+		_instructionSet.Define(inName, inInstruction);
+		_randomGenerators.add(_generators.get(inName));
 	}
 
 	protected void DefineInstruction(String inName, Instruction inInstruction) {
-		_instructions.put(inName, inInstruction);
-		_generators.put(inName, new InstructionAtomGenerator(inName));
+		OwnInstructionSet();
+		_instructionSet.Define(inName, inInstruction);
 	}
 
 	protected void DefineStackInstructions(String inTypeName, Stack inStack) {
@@ -373,6 +268,22 @@ public class Interpreter implements Serializable {
 		DefineInstruction(inTypeName + ".yank", new Yank(inStack));
 		DefineInstruction(inTypeName + ".yankdup", new YankDup(inStack));
 	}
+
+	/**
+	 * Defines the stack instructions for one of the types of stack in a
+	 * StackFrame. These act on the stack of that type in the active frame.
+	 */
+	protected void DefineStackInstructions(String inTypeName, int inStackType) {
+		DefineInstruction(inTypeName + ".pop", new Pop(inStackType));
+		DefineInstruction(inTypeName + ".swap", new Swap(inStackType));
+		DefineInstruction(inTypeName + ".rot", new Rot(inStackType));
+		DefineInstruction(inTypeName + ".flush", new Flush(inStackType));
+		DefineInstruction(inTypeName + ".dup", new Dup(inStackType));
+		DefineInstruction(inTypeName + ".stackdepth", new Depth(inStackType));
+		DefineInstruction(inTypeName + ".shove", new Shove(inStackType));
+		DefineInstruction(inTypeName + ".yank", new Yank(inStackType));
+		DefineInstruction(inTypeName + ".yankdup", new YankDup(inStackType));
+	}
 	
 	/**
 	 * Sets the parameters for the ERCs.
@@ -430,13 +341,32 @@ public class Interpreter implements Serializable {
 	}
 
 	/**
-	 * Loads a Push program into the interpreter's exec and code stacks.
+	 * Compiles a Push program for this interpreter. Interpreters which run
+	 * programs in a different form override this to produce that form.
+	 * 
+	 * @param inProgram
+	 *            The program to compile.
+	 * @return The compiled program.
+	 */
+
+	public CompiledProgram Compile(Program inProgram) {
+		return new CompiledProgram(inProgram, this);
+	}
+
+	/**
+	 * Loads a Push program into the interpreter's exec and code stacks. The
+	 * program is compiled for this interpreter first, unless it already has
+	 * been.
 	 * 
 	 * @param inProgram
 	 *            The program to load.
 	 */
 
 	public void LoadProgram(Program inProgram) {
+		if (!(inProgram instanceof CompiledProgram)
+				|| inProgram._interpreter != this)
+			inProgram = Compile(inProgram);
+
 		_codeStack.push(inProgram);
 		_execStack.push(inProgram);
 	}
@@ -459,8 +389,40 @@ public class Interpreter implements Serializable {
 	public int Step(int inMaxSteps, boolean verbose) {
 		int executed = 0;
 		while (inMaxSteps != 0 && _execStack.size() > 0) {
-			Object inObject = _execStack.pop();
-			ExecuteInstruction(inObject);
+			Object inObject;
+			int cursor = _execStack.TopCursor();
+			if (cursor == 0 && _useTraces && !verbose) {
+				// the start of a program, which may have a trace
+				int traced = RunTrace(inMaxSteps);
+				if (traced > 0) {
+					inMaxSteps -= traced;
+					executed += traced;
+					if (haltExecution) break;
+					continue;
+				}
+			}
+			if (cursor == ExecStack.LOOP && !verbose) {
+				// the next iteration of a loop
+				int looped = RunLoop(inMaxSteps);
+				if (looped > 0) {
+					inMaxSteps -= looped;
+					executed += looped;
+					continue;
+				}
+			}
+			if (cursor >= 0) {
+				// an atom of a program being run in place
+				Program p = _execStack.TopProgram();
+				_execStack.popdiscard();
+				inObject = p._stack[cursor];
+				if (p instanceof CompiledProgram && p._interpreter == this)
+					ExecuteAtom((CompiledProgram) p, cursor);
+				else
+					ExecuteInstruction(inObject);
+			} else {
+				inObject = _execStack.pop();
+				ExecuteInstruction(inObject);
+			}
 			if(verbose) {
 				//System.out.println(inObject.getClass());
 				//System.out.println(" "+inObject);
@@ -492,7 +454,7 @@ public class Interpreter implements Serializable {
 				_execStack.push("frame.pop");
 			}
 
-			p.PushAllReverse(_execStack);
+			_execStack.PushCursor(p);
 
 			if (_useFrames) {
 				_execStack.push("frame.push");
@@ -516,9 +478,14 @@ public class Interpreter implements Serializable {
 			return 0;
 		}
 
+		if (inObject instanceof SearchPoint) {
+			_vectorStack.pushPoint((SearchPoint) inObject);
+			return 0;
+		}
+
 		if (inObject instanceof Instruction) {
 			((Instruction) inObject).Execute(this);
-			if(EvaluateSolution.evaluationCount >= EvaluateSolution.maxMoves)
+			if(_context.MovesUsed())
 				haltExecution = true;
 			return 0;
 		}
@@ -530,13 +497,7 @@ public class Interpreter implements Serializable {
 				i.Execute(this);
 			} else if(((String) inObject).startsWith("<")) {
 				// a vector
-				String token = (String) inObject;
-				String[] cs = token.substring(1, token.length()-2).split(",");
-				float[] fs = new float[cs.length];
-				for(int f=0; f<cs.length; f++) {
-					fs[f] = Float.parseFloat(cs[f]);
-				}
-				_vectorStack.push(fs);
+				_vectorStack.push(Program.ParseVector((String) inObject));
 			} else {
 				_nameStack.push(inObject);
 			}
@@ -547,6 +508,156 @@ public class Interpreter implements Serializable {
 		return -1;
 	}
 
+	/**
+	 * Switches to an empty exec stack and code stack, for running code on the
+	 * side as vector.zip and vector.apply do. The stacks are reused once
+	 * EndSideExecution() has switched back from them.
+	 */
+
+	void BeginSideExecution() {
+		if (_sideExecStacks == null) {
+			_sideExecStacks = new ExecStack[0];
+			_sideCodeStacks = new ObjectStack[0];
+			_sideDepth = 0;
+		}
+
+		if (_sideDepth == _sideExecStacks.length) {
+			_sideExecStacks = Arrays.copyOf(_sideExecStacks, _sideDepth + 1);
+			_sideCodeStacks = Arrays.copyOf(_sideCodeStacks, _sideDepth + 1);
+			_sideExecStacks[_sideDepth] = new ExecStack();
+			_sideCodeStacks[_sideDepth] = new ObjectStack();
+		}
+
+		_execStack = _sideExecStacks[_sideDepth];
+		_codeStack = _sideCodeStacks[_sideDepth];
+		_execStack.clear();
+		_codeStack.clear();
+		_sideDepth++;
+	}
+
+	/**
+	 * Switches back to the exec stack and code stack which were in use before
+	 * the matching BeginSideExecution().
+	 */
+
+	void EndSideExecution(ExecStack inExecStack, ObjectStack inCodeStack) {
+		_sideDepth--;
+		_execStack = inExecStack;
+		_codeStack = inCodeStack;
+	}
+
+	/**
+	 * Runs the steps to the next iteration of the loop on top of the exec stack
+	 * directly, if they are all within the step limit.
+	 * 
+	 * @param inMaxSteps
+	 *            The maximum number of steps to execute.
+	 * @return The number of steps executed, which is 0 if the loop has to be
+	 *         run as a program instead.
+	 */
+
+	protected int RunLoop(int inMaxSteps) {
+		LoopFrame loop = _execStack.TopLoop();
+		int steps = loop.Steps();
+
+		if (haltExecution || _useFrames || (inMaxSteps > 0 && inMaxSteps < steps)
+				|| !loop.CanIterate(this))
+			return 0;
+
+		_execStack.PopLoop();
+		loop.Iterate(this);
+
+		return steps;
+	}
+
+	/**
+	 * Records or replays the trace of the compiled program on top of the exec
+	 * stack, whose cursor must be at its first atom.
+	 * 
+	 * @param inMaxSteps
+	 *            The maximum number of steps to execute.
+	 * @return The number of steps executed, which is 0 if there is no trace
+	 *         to replay yet.
+	 */
+
+	protected int RunTrace(int inMaxSteps) {
+		if (haltExecution || _useFrames)
+			return 0;
+
+		Program p = _execStack.TopProgram();
+
+		if (!(p instanceof CompiledProgram) || p._interpreter != this)
+			return 0;
+
+		CompiledProgram cp = (CompiledProgram) p;
+
+		if (cp._trace == null) {
+			if (++cp._traceRuns < Trace.RECORD_AFTER)
+				return 0;
+
+			Trace trace = new Trace(cp);
+			int steps = trace.Record(this, inMaxSteps);
+			cp._trace = trace;
+			return steps;
+		}
+
+		int steps = cp._trace.Replay(this, inMaxSteps);
+
+		if (cp._trace.IsStale()) {
+			cp._trace = null;
+			cp._traceRuns = 0;
+		}
+
+		return steps;
+	}
+
+	/**
+	 * Executes a run of atoms of a compiled program, from inStart up to inEnd,
+	 * as ExecuteAtom would, without them being on the exec stack. The atoms
+	 * must not be subprograms.
+	 */
+
+	protected void RunAtoms(CompiledProgram inProgram, int inStart, int inEnd) {
+		for (int n = inStart; n < inEnd; n++)
+			ExecuteAtom(inProgram, n);
+	}
+
+	/**
+	 * Executes one atom of a compiled program. This has the same effect as
+	 * passing the atom to ExecuteInstruction, but uses the form resolved when
+	 * the program was compiled.
+	 * 
+	 * @param inProgram
+	 *            The compiled program.
+	 * @param inIndex
+	 *            The index of the atom within the program.
+	 */
+
+	public void ExecuteAtom(CompiledProgram inProgram, int inIndex) {
+
+		if(haltExecution) return;
+
+		switch (inProgram._kinds[inIndex]) {
+		case CompiledProgram.INSTRUCTION:
+			inProgram._instructions[inIndex].Execute(this);
+			break;
+		case CompiledProgram.INTEGER:
+			_intStack.push(inProgram._ints[inIndex]);
+			break;
+		case CompiledProgram.FLOAT:
+			_floatStack.push(inProgram._floats[inIndex]);
+			break;
+		case CompiledProgram.VECTOR:
+			_vectorStack.push(inProgram._vectors[inIndex]);
+			break;
+		case CompiledProgram.NAME:
+			_nameStack.push(inProgram._stack[inIndex]);
+			break;
+		default:
+			ExecuteInstruction(inProgram._stack[inIndex]);
+		}
+	}
+
 	/**
 	 * Fetch the active integer stack.
 	 */
@@ -580,7 +691,7 @@ public class Interpreter implements Serializable {
 	 * to the optimisation problem's dimensionality
 	 */
 	public void setVectorDimensionality(int dimensions) {
-		_vectorStack._dims = dimensions;
+		_context.setDimensionality(dimensions);
 	}
 	
 	/**
@@ -588,7 +699,7 @@ public class Interpreter implements Serializable {
 	 * to the optimisation problem's search bounds
 	 */
 	public void setVectorLimits(float lower, float upper) {
-		VectorRandWithLimits.setLimits(lower, upper);
+		_context.setVectorLimits(lower, upper);
 	}
 	
 	/**
@@ -596,8 +707,7 @@ public class Interpreter implements Serializable {
 	 * points in other swarm members
 	 */
 	public void setPopulation(PopulationOptimisation p) {
-		VectorBest.setPopulation(p);
-		VectorCurrent.setPopulation(p);
+		_context.setPopulation(p);
 	}
 	
 	/**
@@ -606,14 +716,14 @@ public class Interpreter implements Serializable {
 	 * will be required to make this more elegant. 
 	 */
 	public void setCurrent(int i) {
-		current = i;
+		_context.setCurrent(i);
 	}
 
 	/**
 	 * Fetch the active exec stack.
 	 */
 
-	public ObjectStack execStack() {
+	public ExecStack execStack() {
 		return _execStack;
 	}
 
@@ -677,7 +787,7 @@ public class Interpreter implements Serializable {
 		_floatFrameStack.push(new floatStack());
 		_intFrameStack.push(new intStack());
 		_boolFrameStack.push(new booleanStack());
-		_vectorFrameStack.push(new vectorStack());
+		_vectorFrameStack.push(new vectorStack(_lazyVectorDepth));
 		_codeFrameStack.push(new ObjectStack());
 		_nameFrameStack.push(new ObjectStack());
 
@@ -851,6 +961,41 @@ public class Interpreter implements Serializable {
 	public long GetEvaluationExecutions(){
 		return _evaluationExecutions;
 	}
+
+	/**
+	 * Adds the steps and evaluation executions counted by another interpreter,
+	 * such as one evaluating programs on another thread, to this one's, and
+	 * resets the other's counts.
+	 */
+	public void MergeStatistics(Interpreter inOther) {
+		_totalStepsTaken += inOther._totalStepsTaken;
+		_evaluationExecutions += inOther._evaluationExecutions;
+		inOther._totalStepsTaken = 0;
+		inOther._evaluationExecutions = 0;
+	}
+
+	/**
+	 * Makes an interpreter of the same class, which shares this one's
+	 * instruction set and has the same settings, but has stacks, a random
+	 * number generator and an evaluation context of its own. Custom stacks
+	 * are not copied.
+	 */
+	public Interpreter Sibling() throws Exception {
+		Interpreter sibling = getClass().newInstance();
+
+		sibling.UseInstructionSet(_instructionSet);
+		sibling.SetRandomGenerator(_randomGenerator);
+		sibling.SetRandomParameters(_minRandomInt, _maxRandomInt,
+				_randomIntResolution, _minRandomFloat, _maxRandomFloat,
+				_randomFloatResolution, _maxRandomCodeSize, _maxPointsInProgram);
+		sibling._useFrames = _useFrames;
+		sibling._useTraces = _useTraces;
+		sibling.SetLazyVectorDepth(_lazyVectorDepth);
+		sibling._inputPusher = _inputPusher;
+		sibling._context = _context.copy();
+
+		return sibling;
+	}
 	
 	public InputPusher getInputPusher() {
 		return _inputPusher;
@@ -919,7 +1064,7 @@ public class Interpreter implements Serializable {
 
 		RandomCodeDistribution(result, inCount, inMaxElements);
 
-		Collections.shuffle(result);
+		Collections.shuffle(result, _RNG);
 
 		return result;
 	}
@@ -947,13 +1092,13 @@ public class Interpreter implements Serializable {
 		RandomCodeDistribution(ioList, inCount - thisSize, inMaxElements - 1);
 	}
 
-	abstract class AtomGenerator implements Serializable {
+	abstract static class AtomGenerator implements Serializable {
 		private static final long serialVersionUID = 1L;
 
 		abstract Object Generate(Interpreter inInterpreter);
 	}
 
-	private class InstructionAtomGenerator extends AtomGenerator {
+	static class InstructionAtomGenerator extends AtomGenerator {
 		private static final long serialVersionUID = 1L;
 
 		String _instruction;
@@ -967,65 +1112,96 @@ public class Interpreter implements Serializable {
 		}
 	}
 
-	private class FloatAtomGenerator extends AtomGenerator {
+	static class FloatAtomGenerator extends AtomGenerator {
 		private static final long serialVersionUID = 1L;
 
 		Object Generate(Interpreter inInterpreter) {
-			float r = _RNG.nextFloat() * (_maxRandomFloat - _minRandomFloat);
+			Interpreter i = inInterpreter;
+			float r = i._RNG.nextFloat() * (i._maxRandomFloat - i._minRandomFloat);
 
-			r -= (r % _randomFloatResolution);
+			r -= (r % i._randomFloatResolution);
 
-			return r + _minRandomFloat;
+			return r + i._minRandomFloat;
 		}
 	}
 
-	private class IntAtomGenerator extends AtomGenerator {
+	static class IntAtomGenerator extends AtomGenerator {
 		private static final long serialVersionUID = 1L;
 
 		Object Generate(Interpreter inInterpreter) {
-			int r = _RNG.nextInt(_maxRandomInt - _minRandomInt);
+			Interpreter i = inInterpreter;
+			int r = i._RNG.nextInt(i._maxRandomInt - i._minRandomInt);
 
-			r -= (r % _randomIntResolution);
+			r -= (r % i._randomIntResolution);
 
-			return r + _minRandomInt;
+			return r + i._minRandomInt;
 		}
 	}
 	
-	private class VectorAtomGenerator extends AtomGenerator {
+	static class VectorAtomGenerator extends AtomGenerator {
 		private static final long serialVersionUID = 1L;
 
 		Object Generate(Interpreter inInterpreter) {
-			float[] v = new float[_vectorStack._dims];
+			Interpreter in = inInterpreter;
+			float[] v = new float[in._context._dims];
 			float r;
 			
 			for(int i=0; i<v.length; i++) {
-				r = _RNG.nextFloat() * (_maxRandomFloat - _minRandomFloat);
-				r -= (r % _randomFloatResolution);
-				v[i] = r + _minRandomFloat;
+				r = in._RNG.nextFloat() * (in._maxRandomFloat - in._minRandomFloat);
+				r -= (r % in._randomFloatResolution);
+				v[i] = r + in._minRandomFloat;
 			}
 			
 			return v;
 		}
 	}
 
-	public class StackFrame {
+	/**
+	 * A set of stacks which can be switched into the interpreter, for example
+	 * one per swarm member. The stack instructions act on the stacks of the
+	 * frame most recently switched in.
+	 */
+	public class StackFrame implements Serializable {
+		private static final long serialVersionUID = 1L;
+
+		// Stack types, for stack instructions
+		public static final int INTEGER = 0;
+		public static final int FLOAT = 1;
+		public static final int BOOLEAN = 2;
+		public static final int VECTOR = 3;
+		public static final int CODE = 4;
+		public static final int NAME = 5;
+		public static final int EXEC = 6;
+
 		public intStack _intStack;
 		public floatStack _floatStack;
 		public booleanStack _boolStack;
 		public vectorStack _vectorStack;
 		public ObjectStack _codeStack;
 		public ObjectStack _nameStack;
-		public ObjectStack _execStack;
+		public ExecStack _execStack;
 		
 		public void init(Interpreter ip) {
 			_intStack = new intStack();
 			_floatStack = new floatStack();
 			_boolStack = new booleanStack();
-			_vectorStack = new vectorStack();
-			_vectorStack._dims = ip._vectorStack._dims;
+			_vectorStack = new vectorStack(ip._lazyVectorDepth);
 			_codeStack = new ObjectStack();
 			_nameStack = new ObjectStack();
-			_execStack = new ObjectStack();
+			_execStack = new ExecStack();
+		}
+		
+		/**
+		 * Makes the int, float, boolean and vector stacks keep at most the
+		 * given number of entries, dropping the oldest, so that stacks which
+		 * are kept from one execution to the next stay the same size. 0
+		 * means no limit.
+		 */
+		public void setBound(int inBound) {
+			_intStack.setBound(inBound);
+			_floatStack.setBound(inBound);
+			_boolStack.setBound(inBound);
+			_vectorStack.setBound(inBound);
 		}
 		
 		public void switchIn(Interpreter ip) {
@@ -1037,24 +1213,39 @@ public class Interpreter implements Serializable {
 			ip._nameStack = _nameStack;
 			ip._execStack = _execStack;
 			
-			// the tricky bit: replace references in stack instructions
-			for(Map.Entry<String, Instruction> entry : ip._instructions.entrySet()) {
-				if(entry.getValue() instanceof StackInstruction) {
-					if(entry.getKey().startsWith("vector"))
-						((StackInstruction)entry.getValue())._stack = _vectorStack;
-					if(entry.getKey().startsWith("float"))
-						((StackInstruction)entry.getValue())._stack = _floatStack;
-					if(entry.getKey().startsWith("int"))
-						((StackInstruction)entry.getValue())._stack = _intStack;
-					if(entry.getKey().startsWith("bool"))
-						((StackInstruction)entry.getValue())._stack = _boolStack;
-					if(entry.getKey().startsWith("code"))
-						((StackInstruction)entry.getValue())._stack = _codeStack;
-					if(entry.getKey().startsWith("name"))
-						((StackInstruction)entry.getValue())._stack = _nameStack;
-					if(entry.getKey().startsWith("exec"))
-						((StackInstruction)entry.getValue())._stack = _execStack;
-				}
+			// stack instructions look their stacks up in the active frame
+			ip._activeFrame = this;
+		}
+		
+		/**
+		 * Makes this frame refer to the interpreter's current stacks.
+		 */
+		public void capture(Interpreter ip) {
+			_intStack = ip._intStack;
+			_floatStack = ip._floatStack;
+			_boolStack = ip._boolStack;
+			_vectorStack = ip._vectorStack;
+			_codeStack = ip._codeStack;
+			_nameStack = ip._nameStack;
+			_execStack = ip._execStack;
+		}
+		
+		Stack getStack(int inType) {
+			switch (inType) {
+			case INTEGER:
+				return _intStack;
+			case FLOAT:
+				return _floatStack;
+			case BOOLEAN:
+				return _boolStack;
+			case VECTOR:
+				return _vectorStack;
+			case CODE:
+				return _codeStack;
+			case NAME:
+				return _nameStack;
+			default:
+				return _execStack;
 			}
 		}
 	}
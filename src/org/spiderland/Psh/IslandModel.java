@@ -0,0 +1,326 @@
+/*
+ * Copyright 2009-2010 Jon Klein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spiderland.Psh;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Runs several GAs, or islands, side by side on threads of their own, with
+ * the fittest individuals of each migrating to another island every so many
+ * generations.
+ *
+ * Each island is made by the problem class from the same parameters, and has
+ * a population of population-size individuals. The islands run for
+ * migration-interval generations at a time, and then migration-size copies of
+ * each island's fittest individuals move to the next island in a ring, or to
+ * a randomly chosen island if migration-topology is random. The islands'
+ * reports are collected into one report, and the islands are checkpointed
+ * together.
+ */
+
+public class IslandModel implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	protected GA _islands[];
+
+	protected int _migrationInterval;
+	protected int _migrationSize;
+	protected boolean _randomMigration;
+
+	protected Random _RNG;
+
+	// The length of each island's report which has already been copied into
+	// the merged report
+	protected int _reported[];
+
+	protected StringBuffer _report;
+	protected int _checkpointNumber;
+	protected String _checkpointPrefix;
+	protected String _outputfile;
+
+	protected transient OutputStream _outputStream;
+	protected transient ExecutorService _pool;
+
+	/**
+	 * Makes an island model with the islands given by the parameters.
+	 */
+
+	public static IslandModel WithParameters(HashMap<String, String> inParams)
+			throws Exception {
+		IslandModel model = new IslandModel();
+		model.InitFromParameters(inParams);
+		return model;
+	}
+
+	/**
+	 * Carries on an island model run from a checkpoint file.
+	 */
+
+	public static IslandModel WithCheckpoint(String inCheckpoint)
+			throws Exception {
+		ObjectInputStream in = new ObjectInputStream(new GZIPInputStream(
+				new FileInputStream(new File(inCheckpoint))));
+		IslandModel model = (IslandModel) in.readObject();
+		in.close();
+
+		model._checkpointNumber++;
+
+		System.out.println(model._report.toString());
+
+		if (model._outputfile != null)
+			model._outputStream = new FileOutputStream(new File(model._outputfile));
+		else
+			model._outputStream = System.out;
+
+		return model;
+	}
+
+	protected IslandModel() {
+		_report = new StringBuffer();
+		_outputStream = System.out;
+	}
+
+	protected void InitFromParameters(HashMap<String, String> inParams)
+			throws Exception {
+		int islands = Integer.parseInt(Param(inParams, "islands", "2"));
+		_migrationInterval = Integer.parseInt(Param(inParams, "migration-interval", "10"));
+		_migrationSize = Integer.parseInt(Param(inParams, "migration-size", "1"));
+		_randomMigration = Param(inParams, "migration-topology", "ring").equals("random");
+
+		if (islands < 1 || _migrationInterval < 1)
+			throw new Exception("islands and migration-interval must be at least 1");
+
+		// The island model writes the output and checkpoints, not the islands
+		_outputfile = inParams.get("output-file");
+		_checkpointPrefix = inParams.get("checkpoint-prefix");
+
+		String seed = Param(inParams, "use-random-seed", "false").equals("true")
+				? inParams.get("random-seed") : null;
+		String generator = Randoms.Generator(inParams);
+		_RNG = (seed == null) ? Randoms.Make(generator) : Randoms.Make(generator, Long.parseLong(seed));
+
+		_islands = new GA[islands];
+		_reported = new int[islands];
+
+		for (int i = 0; i < islands; i++) {
+			HashMap<String, String> params = new HashMap<String, String>(inParams);
+			params.remove("output-file");
+			params.remove("checkpoint-prefix");
+
+			// Each island has random numbers of its own
+			if (seed != null)
+				params.put("random-seed", String.valueOf(Randoms.Derive(Long.parseLong(seed), i)));
+
+			GA island = (GA) Class.forName(params.get("problem-class")).newInstance();
+			island._outputStream = null;
+			island.SetParams(params);
+			island.InitFromParameters();
+			_islands[i] = island;
+
+			// The islands' parameters are all the same, so only report them
+			// once
+			if (i > 0)
+				_reported[i] = island._checkpoint.report.length();
+		}
+
+		if (_outputfile != null)
+			_outputStream = new FileOutputStream(new File(_outputfile));
+
+		Print(IslandReports());
+	}
+
+	private static String Param(HashMap<String, String> inParams, String inName,
+			String inDefault) {
+		String value = inParams.get(inName);
+		return (value == null) ? inDefault : value;
+	}
+
+	/**
+	 * Runs the islands until one of them succeeds, or they have all reached
+	 * their generation limit.
+	 */
+
+	public void Run() throws Exception {
+		while (!Terminate()) {
+			RunIslands();
+
+			Print(IslandReports() + Report());
+
+			if (Terminate())
+				break;
+
+			Migrate();
+
+			Checkpoint();
+		}
+	}
+
+	/**
+	 * Returns true if one of the islands has succeeded, or they have all
+	 * reached their generation limit.
+	 */
+
+	public boolean Terminate() {
+		boolean finished = true;
+
+		for (GA island : _islands) {
+			if (island.Success())
+				return true;
+			finished &= island.Terminate();
+		}
+
+		return finished;
+	}
+
+	/**
+	 * Runs each island for migration-interval generations, on threads of
+	 * their own, and waits for them all to finish.
+	 */
+
+	protected void RunIslands() throws Exception {
+		if (_pool == null)
+			_pool = Executors.newFixedThreadPool(_islands.length,
+					new ThreadFactory() {
+						public Thread newThread(Runnable inRunnable) {
+							Thread thread = new Thread(inRunnable, "island");
+							thread.setDaemon(true);
+							return thread;
+						}
+					});
+
+		ArrayList<Future<Boolean>> runs = new ArrayList<Future<Boolean>>();
+
+		for (final GA island : _islands) {
+			runs.add(_pool.submit(new Callable<Boolean>() {
+				public Boolean call() throws Exception {
+					return island.Run(_migrationInterval);
+				}
+			}));
+		}
+
+		try {
+			for (Future<Boolean> run : runs)
+				run.get();
+		} catch (ExecutionException e) {
+			throw new Exception("Island failed", e.getCause());
+		}
+	}
+
+	/**
+	 * Sends copies of the fittest individuals of each island to the next
+	 * island, or to a random other island.
+	 */
+
+	protected void Migrate() {
+		int islands = _islands.length;
+
+		if (islands < 2 || _migrationSize < 1)
+			return;
+
+		ArrayList<ArrayList<GAIndividual>> arrivals = new ArrayList<ArrayList<GAIndividual>>();
+
+		for (int i = 0; i < islands; i++)
+			arrivals.add(new ArrayList<GAIndividual>());
+
+		for (int i = 0; i < islands; i++) {
+			int to = _randomMigration ? (i + 1 + _RNG.nextInt(islands - 1)) % islands
+					: (i + 1) % islands;
+
+			arrivals.get(to).addAll(Arrays.asList(_islands[i].Emigrants(_migrationSize)));
+		}
+
+		// Each island takes all its immigrants at once, so that they don't
+		// replace each other
+		for (int i = 0; i < islands; i++)
+			_islands[i].Immigrate(arrivals.get(i).toArray(new GAIndividual[0]));
+	}
+
+	/**
+	 * Returns what the islands have reported since they were last asked, one
+	 * island after another.
+	 */
+
+	protected String IslandReports() {
+		String report = "";
+
+		for (int i = 0; i < _islands.length; i++) {
+			StringBuffer islandReport = _islands[i]._checkpoint.report;
+
+			if (islandReport.length() > _reported[i]) {
+				report += "\n;;======================== Island " + i + " ========================;;\n";
+				report += islandReport.substring(_reported[i]);
+				_reported[i] = islandReport.length();
+			}
+		}
+
+		return report;
+	}
+
+	/**
+	 * Returns a summary of how the islands are doing.
+	 */
+
+	protected String Report() {
+		String report = "\n";
+		int best = 0;
+
+		report += ";;--------------------------------------------------------;;\n";
+
+		for (int i = 0; i < _islands.length; i++) {
+			GA island = _islands[i];
+
+			report += ";; Island " + i + " at Generation " + (island._generationCount - 1)
+					+ ": Best Fitness " + island._bestMeanFitness
+					+ ", Mean Fitness " + island._populationMeanFitness + "\n";
+
+			if (island._bestMeanFitness < _islands[best]._bestMeanFitness)
+				best = i;
+		}
+
+		report += ";; Best Island: " + best + "\n";
+		report += ";;--------------------------------------------------------;;\n";
+
+		return report;
+	}
+
+	protected void Print(String inStr) throws Exception {
+		if (_outputStream != null) {
+			_outputStream.write(inStr.getBytes());
+			_outputStream.flush();
+		}
+		_report.append(inStr);
+	}
+
+	protected void Checkpoint() throws Exception {
+		if (_checkpointPrefix == null)
+			return;
+
+		File file = new File(_checkpointPrefix + _checkpointNumber + ".gz");
+		ObjectOutputStream out = new ObjectOutputStream(new GZIPOutputStream(
+				new FileOutputStream(file)));
+
+		out.writeObject(this);
+		out.flush();
+		out.close();
+		System.out.println("Wrote checkpoint file " + file.getAbsolutePath());
+		_checkpointNumber++;
+	}
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2009-2010 Jon Klein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spiderland.Psh;
+
+import java.io.Serializable;
+
+/**
+ * The rest of a do*range loop, as an entry in the exec stack.
+ *
+ * A loop stands for the program which exec.do*range and code.do*range push for
+ * the next iteration, ( start stop exec.do*range body ) or ( start stop
+ * code.quote body code.do*range ), but holds start and stop as ints. When a
+ * loop reaches the top of the exec stack, the interpreter runs the steps of
+ * that program in one go and pushes the same loop back with start moved on,
+ * so an iteration allocates nothing.
+ *
+ * The exec stack turns a loop into its program whenever the loop is looked at
+ * or moved by anything else, so a loop is only ever in one entry and can be
+ * changed in place once popped.
+ */
+
+final class LoopFrame implements Serializable {
+	private static final long serialVersionUID = 1L;
+
+	private final Interpreter _interpreter;
+	private final boolean _code;
+	private final ObjectStackInstruction _range;
+
+	private int _start;
+	private final int _stop;
+	private final Object _body;
+
+	/**
+	 * @param inCode
+	 *            Whether this is a code.do*range loop rather than an
+	 *            exec.do*range one.
+	 */
+
+	LoopFrame(Interpreter inI, boolean inCode, int inStart, int inStop, Object inBody) {
+		_interpreter = inI;
+		_code = inCode;
+		_start = inStart;
+		_stop = inStop;
+		_body = inBody;
+
+		// The iterations can only be run directly while the names in the
+		// program mean the usual instructions
+		Instruction range = inI._instructions.get(inCode ? "code.do*range" : "exec.do*range");
+
+		if (inCode ? (range instanceof CodeDoRange && inI._instructions.get("code.quote") instanceof Quote)
+				: range instanceof ExecDoRange)
+			_range = (ObjectStackInstruction) range;
+		else
+			_range = null;
+	}
+
+	/**
+	 * Returns the number of steps the program takes to get to the next
+	 * iteration.
+	 */
+
+	int Steps() {
+		return _code ? 5 : 4;
+	}
+
+	/**
+	 * Returns whether Iterate() does exactly what running the program would.
+	 * That depends on the loop instruction taking the body from the stack
+	 * which the body is on.
+	 */
+
+	boolean CanIterate(Interpreter inI) {
+		return _range != null && _range.targetStack(inI) == (_code ? inI._codeStack : inI._execStack);
+	}
+
+	/**
+	 * Does what the steps of the program do, for a loop which has been popped
+	 * from the exec stack: pushes start, and then the loop with start moved one
+	 * towards stop, unless start has reached stop, and the body.
+	 */
+
+	void Iterate(Interpreter inI) {
+		ExecStack estack = inI._execStack;
+
+		inI._intStack.push(_start);
+
+		if (_start != _stop) {
+			_start = (_start < _stop) ? (_start + 1) : (_start - 1);
+			estack.PushLoop(this);
+		}
+
+		estack.push(_body);
+	}
+
+	/**
+	 * Returns the program which the loop stands for.
+	 */
+
+	Program ToProgram() {
+		Program program = new Program(_interpreter);
+		program.push(Integer.valueOf(_start));
+		program.push(Integer.valueOf(_stop));
+
+		if (_code) {
+			program.push("code.quote");
+			program.push(_body);
+			program.push("code.do*range");
+		} else {
+			program.push("exec.do*range");
+			program.push(_body);
+		}
+
+		return program;
+	}
+}
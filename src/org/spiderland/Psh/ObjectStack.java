@@ -18,6 +18,9 @@ package org.spiderland.Psh;
 
 /**
  * The Push stack type for object-based data (Strings, Programs, etc.)
+ * 
+ * Programs are pushed by reference, not copied, so a program must not be
+ * edited once it has been pushed onto a stack.
  */
 
 public class ObjectStack extends Stack {
@@ -46,7 +49,7 @@ public class ObjectStack extends Stack {
 			return false;
 
 		for (int n = 0; n < _size; n++) {
-			if (!_stack[n].equals(inOther[n]))
+			if (!Program.AtomEquals(_stack[n], inOther[n]))
 				return false;
 		}
 
@@ -63,6 +66,11 @@ public class ObjectStack extends Stack {
 		_maxsize = inSize;
 	}
 
+	@Override
+	public void setBound(int inBound) {
+		throw new UnsupportedOperationException("ObjectStack cannot be bounded");
+	}
+
 	public Object peek(int inIndex) {
 		if (inIndex >= 0 && inIndex < _size)
 			return _stack[inIndex];
@@ -86,9 +94,6 @@ public class ObjectStack extends Stack {
 	}
 
 	public void push(Object inValue) {
-		if (inValue instanceof Program)
-			inValue = new Program((Program) inValue);
-
 		_stack[_size] = inValue;
 		_size++;
 
@@ -194,9 +199,9 @@ public class ObjectStack extends Stack {
 		for (int n = _size - 1; n >= 0; n--) {
 
 			if (n == _size - 1)
-				result += _stack[n];
+				result += Program.AtomString(_stack[n]);
 			else
-				result += " " + _stack[n];
+				result += " " + Program.AtomString(_stack[n]);
 		}
 		result += "]";
 
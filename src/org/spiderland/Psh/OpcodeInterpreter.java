@@ -0,0 +1,307 @@
+/*
+ * Copyright 2009-2010 Jon Klein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spiderland.Psh;
+
+/**
+ * A Push interpreter which runs programs as opcodes.
+ *
+ * Programs are compiled to OpcodePrograms. When the next atom to run is part of
+ * one, the interpreter runs the program's opcodes in a single loop, dispatching
+ * on a switch and working on the stacks directly, for as long as they are
+ * literals or simple instructions. Atoms which need the exec stack, or are not
+ * known to the loop, are executed by the Interpreter as usual. The results,
+ * including step counts, are the same as for the Interpreter.
+ *
+ * Select it for PushGP runs with
+ *
+ * interpreter-class = org.spiderland.Psh.OpcodeInterpreter
+ */
+
+public class OpcodeInterpreter extends Interpreter {
+	private static final long serialVersionUID = 1L;
+
+	public CompiledProgram Compile(Program inProgram) {
+		return new OpcodeProgram(inProgram, this);
+	}
+
+	public int Step(int inMaxSteps, boolean verbose) {
+		if (verbose || haltExecution)
+			return super.Step(inMaxSteps, verbose);
+
+		int executed = 0;
+
+		while (inMaxSteps != 0 && _execStack.size() > 0) {
+			int cursor = _execStack.TopCursor();
+
+			if (cursor == 0 && _useTraces) {
+				int traced = RunTrace(inMaxSteps);
+
+				if (traced > 0) {
+					inMaxSteps -= traced;
+					executed += traced;
+					if (haltExecution)
+						break;
+					continue;
+				}
+			}
+
+			if (cursor == ExecStack.LOOP) {
+				int looped = RunLoop(inMaxSteps);
+
+				if (looped > 0) {
+					inMaxSteps -= looped;
+					executed += looped;
+					continue;
+				}
+			}
+
+			if (cursor < 0) {
+				ExecuteInstruction(_execStack.pop());
+			} else {
+				Program p = _execStack.TopProgram();
+
+				if (p instanceof OpcodeProgram && p._interpreter == this) {
+					OpcodeProgram op = (OpcodeProgram) p;
+
+					int end = op._size;
+					if (inMaxSteps > 0 && inMaxSteps < end - cursor)
+						end = cursor + inMaxSteps;
+
+					int run = Run(op, cursor, end) - cursor;
+
+					if (run > 0) {
+						_execStack.AdvanceTop(run);
+						inMaxSteps -= run;
+						executed += run;
+						continue;
+					}
+
+					// the atom at the cursor is a CALL
+					_execStack.popdiscard();
+					ExecuteAtom(op, cursor);
+				} else {
+					_execStack.popdiscard();
+					if (p instanceof CompiledProgram && p._interpreter == this)
+						ExecuteAtom((CompiledProgram) p, cursor);
+					else
+						ExecuteInstruction(p._stack[cursor]);
+				}
+			}
+
+			if (haltExecution)
+				break;
+			inMaxSteps--;
+			executed++;
+		}
+
+		_totalStepsTaken += executed;
+
+		return executed;
+	}
+
+	protected void RunAtoms(CompiledProgram inProgram, int inStart, int inEnd) {
+		if (!(inProgram instanceof OpcodeProgram)) {
+			super.RunAtoms(inProgram, inStart, inEnd);
+			return;
+		}
+
+		OpcodeProgram op = (OpcodeProgram) inProgram;
+		int n = inStart;
+
+		while (n < inEnd) {
+			n = Run(op, n, inEnd);
+
+			if (n < inEnd) {
+				// a CALL
+				ExecuteAtom(op, n);
+				n++;
+			}
+		}
+	}
+
+	/**
+	 * Runs the opcodes of a program from inStart, up to inEnd or the first
+	 * CALL.
+	 *
+	 * @return The index of the first atom not run.
+	 */
+
+	protected int Run(OpcodeProgram inProgram, int inStart, int inEnd) {
+		int ops[] = inProgram._ops;
+		int operands[] = inProgram._operands;
+
+		int n;
+
+		for (n = inStart; n < inEnd; n++) {
+			switch (ops[n]) {
+			case OpcodeProgram.INT:
+				OpcodeOps.PushInt(this, inProgram._ints[n]);
+				break;
+			case OpcodeProgram.FLOAT:
+				OpcodeOps.PushFloat(this, inProgram._floats[n]);
+				break;
+			case OpcodeProgram.BOOL:
+				OpcodeOps.PushBool(this, inProgram._ints[n] != 0);
+				break;
+			case OpcodeProgram.VECTOR:
+				OpcodeOps.PushVector(this, inProgram, n);
+				break;
+			case OpcodeProgram.NAME:
+				OpcodeOps.PushName(this, inProgram, n);
+				break;
+
+			case OpcodeProgram.POP:
+				OpcodeOps.Pop(this, operands[n]);
+				break;
+			case OpcodeProgram.DUP:
+				OpcodeOps.Dup(this, operands[n]);
+				break;
+			case OpcodeProgram.SWAP:
+				OpcodeOps.Swap(this, operands[n]);
+				break;
+			case OpcodeProgram.ROT:
+				OpcodeOps.Rot(this, operands[n]);
+				break;
+			case OpcodeProgram.FLUSH:
+				OpcodeOps.Flush(this, operands[n]);
+				break;
+			case OpcodeProgram.DEPTH:
+				OpcodeOps.Depth(this, operands[n]);
+				break;
+
+			case OpcodeProgram.INT_ADD:
+				OpcodeOps.IntAdd(this);
+				break;
+			case OpcodeProgram.INT_SUB:
+				OpcodeOps.IntSub(this);
+				break;
+			case OpcodeProgram.INT_MUL:
+				OpcodeOps.IntMul(this);
+				break;
+			case OpcodeProgram.INT_DIV:
+				OpcodeOps.IntDiv(this);
+				break;
+			case OpcodeProgram.INT_MOD:
+				OpcodeOps.IntMod(this);
+				break;
+			case OpcodeProgram.INT_MIN:
+				OpcodeOps.IntMin(this);
+				break;
+			case OpcodeProgram.INT_MAX:
+				OpcodeOps.IntMax(this);
+				break;
+			case OpcodeProgram.INT_ABS:
+				OpcodeOps.IntAbs(this);
+				break;
+			case OpcodeProgram.INT_NEG:
+				OpcodeOps.IntNeg(this);
+				break;
+			case OpcodeProgram.INT_LT:
+				OpcodeOps.IntLessThan(this);
+				break;
+			case OpcodeProgram.INT_GT:
+				OpcodeOps.IntGreaterThan(this);
+				break;
+			case OpcodeProgram.INT_EQ:
+				OpcodeOps.IntEquals(this);
+				break;
+			case OpcodeProgram.INT_FROMFLOAT:
+				OpcodeOps.IntFromFloat(this);
+				break;
+			case OpcodeProgram.INT_FROMBOOL:
+				OpcodeOps.IntFromBool(this);
+				break;
+
+			case OpcodeProgram.FLOAT_ADD:
+				OpcodeOps.FloatAdd(this);
+				break;
+			case OpcodeProgram.FLOAT_SUB:
+				OpcodeOps.FloatSub(this);
+				break;
+			case OpcodeProgram.FLOAT_MUL:
+				OpcodeOps.FloatMul(this);
+				break;
+			case OpcodeProgram.FLOAT_DIV:
+				OpcodeOps.FloatDiv(this);
+				break;
+			case OpcodeProgram.FLOAT_MOD:
+				OpcodeOps.FloatMod(this);
+				break;
+			case OpcodeProgram.FLOAT_MIN:
+				OpcodeOps.FloatMin(this);
+				break;
+			case OpcodeProgram.FLOAT_MAX:
+				OpcodeOps.FloatMax(this);
+				break;
+			case OpcodeProgram.FLOAT_ABS:
+				OpcodeOps.FloatAbs(this);
+				break;
+			case OpcodeProgram.FLOAT_NEG:
+				OpcodeOps.FloatNeg(this);
+				break;
+			case OpcodeProgram.FLOAT_SIN:
+				OpcodeOps.FloatSin(this);
+				break;
+			case OpcodeProgram.FLOAT_COS:
+				OpcodeOps.FloatCos(this);
+				break;
+			case OpcodeProgram.FLOAT_LT:
+				OpcodeOps.FloatLessThan(this);
+				break;
+			case OpcodeProgram.FLOAT_GT:
+				OpcodeOps.FloatGreaterThan(this);
+				break;
+			case OpcodeProgram.FLOAT_EQ:
+				OpcodeOps.FloatEquals(this);
+				break;
+			case OpcodeProgram.FLOAT_FROMINT:
+				OpcodeOps.FloatFromInt(this);
+				break;
+			case OpcodeProgram.FLOAT_FROMBOOL:
+				OpcodeOps.FloatFromBool(this);
+				break;
+
+			case OpcodeProgram.BOOL_AND:
+				OpcodeOps.BoolAnd(this);
+				break;
+			case OpcodeProgram.BOOL_OR:
+				OpcodeOps.BoolOr(this);
+				break;
+			case OpcodeProgram.BOOL_XOR:
+				OpcodeOps.BoolXor(this);
+				break;
+			case OpcodeProgram.BOOL_EQ:
+				OpcodeOps.BoolEquals(this);
+				break;
+			case OpcodeProgram.BOOL_NOT:
+				OpcodeOps.BoolNot(this);
+				break;
+			case OpcodeProgram.BOOL_FROMINT:
+				OpcodeOps.BoolFromInt(this);
+				break;
+			case OpcodeProgram.BOOL_FROMFLOAT:
+				OpcodeOps.BoolFromFloat(this);
+				break;
+
+			default:
+				return n;
+			}
+		}
+
+		return n;
+	}
+}
@@ -0,0 +1,394 @@
+/*
+ * Copyright 2009-2010 Jon Klein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spiderland.Psh;
+
+/**
+ * The operations behind the opcodes of OpcodeProgram, one method per opcode.
+ * Each has the same effect as executing the corresponding instruction.
+ *
+ * They are called by OpcodeInterpreter, and by the CompiledSegment classes
+ * which SegmentCompiler generates. Those are hidden classes of this package,
+ * so the methods here needn't be public.
+ */
+
+final class OpcodeOps {
+
+	private OpcodeOps() {
+	}
+
+	//
+	// Literals
+	//
+
+	static void PushInt(Interpreter inI, int inValue) {
+		inI._intStack.push(inValue);
+	}
+
+	static void PushFloat(Interpreter inI, float inValue) {
+		inI._floatStack.push(inValue);
+	}
+
+	static void PushBool(Interpreter inI, boolean inValue) {
+		inI._boolStack.push(inValue);
+	}
+
+	static void PushVector(Interpreter inI, CompiledProgram inProgram, int inIndex) {
+		inI._vectorStack.push(inProgram._vectors[inIndex]);
+	}
+
+	static void PushName(Interpreter inI, CompiledProgram inProgram, int inIndex) {
+		inI._nameStack.push(inProgram._stack[inIndex]);
+	}
+
+	//
+	// Stack instructions on the stacks of the active frame
+	//
+
+	static void Pop(Interpreter inI, int inStackType) {
+		Stack s = inI._activeFrame.getStack(inStackType);
+		if (s.size() > 0)
+			s.popdiscard();
+	}
+
+	static void Dup(Interpreter inI, int inStackType) {
+		inI._activeFrame.getStack(inStackType).dup();
+	}
+
+	static void Swap(Interpreter inI, int inStackType) {
+		inI._activeFrame.getStack(inStackType).swap();
+	}
+
+	static void Rot(Interpreter inI, int inStackType) {
+		inI._activeFrame.getStack(inStackType).rot();
+	}
+
+	static void Flush(Interpreter inI, int inStackType) {
+		inI._activeFrame.getStack(inStackType).clear();
+	}
+
+	static void Depth(Interpreter inI, int inStackType) {
+		inI._intStack.push(inI._activeFrame.getStack(inStackType).size());
+	}
+
+	//
+	// Integer instructions
+	//
+
+	static void IntAdd(Interpreter inI) {
+		intStack s = inI._intStack;
+		if (s._size > 1) {
+			int a = s.pop();
+			int b = s.pop();
+			s.push(IntegerAdd.Apply(b, a));
+		}
+	}
+
+	static void IntSub(Interpreter inI) {
+		intStack s = inI._intStack;
+		if (s._size > 1) {
+			int a = s.pop();
+			int b = s.pop();
+			s.push(IntegerSub.Apply(b, a));
+		}
+	}
+
+	static void IntMul(Interpreter inI) {
+		intStack s = inI._intStack;
+		if (s._size > 1) {
+			int a = s.pop();
+			int b = s.pop();
+			s.push(IntegerMul.Apply(b, a));
+		}
+	}
+
+	static void IntDiv(Interpreter inI) {
+		intStack s = inI._intStack;
+		if (s._size > 1) {
+			int a = s.pop();
+			int b = s.pop();
+			s.push(a != 0 ? (b / a) : 0);
+		}
+	}
+
+	static void IntMod(Interpreter inI) {
+		intStack s = inI._intStack;
+		if (s._size > 1) {
+			int a = s.pop();
+			int b = s.pop();
+			s.push(a != 0 ? (b % a) : 0);
+		}
+	}
+
+	static void IntMin(Interpreter inI) {
+		intStack s = inI._intStack;
+		if (s._size > 1) {
+			int a = s.pop();
+			int b = s.pop();
+			s.push(Math.min(b, a));
+		}
+	}
+
+	static void IntMax(Interpreter inI) {
+		intStack s = inI._intStack;
+		if (s._size > 1) {
+			int a = s.pop();
+			int b = s.pop();
+			s.push(Math.max(b, a));
+		}
+	}
+
+	static void IntAbs(Interpreter inI) {
+		intStack s = inI._intStack;
+		if (s._size > 0)
+			s.push(Math.abs(s.pop()));
+	}
+
+	static void IntNeg(Interpreter inI) {
+		intStack s = inI._intStack;
+		if (s._size > 0) {
+			int a = s.pop();
+			s.push(a == Integer.MIN_VALUE ? Integer.MAX_VALUE : -a);
+		}
+	}
+
+	static void IntLessThan(Interpreter inI) {
+		intStack s = inI._intStack;
+		if (s._size > 1) {
+			int a = s.pop();
+			int b = s.pop();
+			inI._boolStack.push(b < a);
+		}
+	}
+
+	static void IntGreaterThan(Interpreter inI) {
+		intStack s = inI._intStack;
+		if (s._size > 1) {
+			int a = s.pop();
+			int b = s.pop();
+			inI._boolStack.push(b > a);
+		}
+	}
+
+	static void IntEquals(Interpreter inI) {
+		intStack s = inI._intStack;
+		if (s._size > 1) {
+			int a = s.pop();
+			int b = s.pop();
+			inI._boolStack.push(b == a);
+		}
+	}
+
+	static void IntFromFloat(Interpreter inI) {
+		floatStack f = inI._floatStack;
+		if (f._size > 0)
+			inI._intStack.push((int) f.pop());
+	}
+
+	static void IntFromBool(Interpreter inI) {
+		booleanStack b = inI._boolStack;
+		if (b._size > 0)
+			inI._intStack.push(b.pop() ? 1 : 0);
+	}
+
+	//
+	// Float instructions
+	//
+
+	static void FloatAdd(Interpreter inI) {
+		floatStack s = inI._floatStack;
+		if (s._size > 1) {
+			float a = s.pop();
+			float b = s.pop();
+			s.push(org.spiderland.Psh.FloatAdd.Apply(b, a));
+		}
+	}
+
+	static void FloatSub(Interpreter inI) {
+		floatStack s = inI._floatStack;
+		if (s._size > 1) {
+			float a = s.pop();
+			float b = s.pop();
+			s.push(org.spiderland.Psh.FloatSub.Apply(b, a));
+		}
+	}
+
+	static void FloatMul(Interpreter inI) {
+		floatStack s = inI._floatStack;
+		if (s._size > 1) {
+			float a = s.pop();
+			float b = s.pop();
+			s.push(org.spiderland.Psh.FloatMul.Apply(b, a));
+		}
+	}
+
+	static void FloatDiv(Interpreter inI) {
+		floatStack s = inI._floatStack;
+		if (s._size > 1) {
+			float a = s.pop();
+			float b = s.pop();
+			s.push(org.spiderland.Psh.FloatDiv.Apply(b, a));
+		}
+	}
+
+	static void FloatMod(Interpreter inI) {
+		floatStack s = inI._floatStack;
+		if (s._size > 1) {
+			float a = s.pop();
+			float b = s.pop();
+			s.push(a != 0.0f ? (b % a) : 0.0f);
+		}
+	}
+
+	static void FloatMin(Interpreter inI) {
+		floatStack s = inI._floatStack;
+		if (s._size > 1) {
+			float a = s.pop();
+			float b = s.pop();
+			s.push(Math.min(b, a));
+		}
+	}
+
+	static void FloatMax(Interpreter inI) {
+		floatStack s = inI._floatStack;
+		if (s._size > 1) {
+			float a = s.pop();
+			float b = s.pop();
+			s.push(Math.max(b, a));
+		}
+	}
+
+	static void FloatAbs(Interpreter inI) {
+		floatStack s = inI._floatStack;
+		if (s._size > 0)
+			s.push(Math.abs(s.pop()));
+	}
+
+	static void FloatNeg(Interpreter inI) {
+		floatStack s = inI._floatStack;
+		if (s._size > 0)
+			s.push(-s.pop());
+	}
+
+	static void FloatSin(Interpreter inI) {
+		floatStack s = inI._floatStack;
+		if (s._size > 0)
+			s.push((float) Math.sin(s.pop()));
+	}
+
+	static void FloatCos(Interpreter inI) {
+		floatStack s = inI._floatStack;
+		if (s._size > 0)
+			s.push((float) Math.cos(s.pop()));
+	}
+
+	static void FloatLessThan(Interpreter inI) {
+		floatStack s = inI._floatStack;
+		if (s._size > 1) {
+			float a = s.pop();
+			float b = s.pop();
+			inI._boolStack.push(b < a);
+		}
+	}
+
+	static void FloatGreaterThan(Interpreter inI) {
+		floatStack s = inI._floatStack;
+		if (s._size > 1) {
+			float a = s.pop();
+			float b = s.pop();
+			inI._boolStack.push(b > a);
+		}
+	}
+
+	static void FloatEquals(Interpreter inI) {
+		floatStack s = inI._floatStack;
+		if (s._size > 1) {
+			float a = s.pop();
+			float b = s.pop();
+			inI._boolStack.push(b == a);
+		}
+	}
+
+	static void FloatFromInt(Interpreter inI) {
+		intStack i = inI._intStack;
+		if (i._size > 0)
+			inI._floatStack.push(i.pop());
+	}
+
+	static void FloatFromBool(Interpreter inI) {
+		booleanStack b = inI._boolStack;
+		if (b._size > 0)
+			inI._floatStack.push(b.pop() ? 1 : 0);
+	}
+
+	//
+	// Boolean instructions
+	//
+
+	static void BoolAnd(Interpreter inI) {
+		booleanStack s = inI._boolStack;
+		if (s._size > 1) {
+			boolean a = s.pop();
+			boolean b = s.pop();
+			s.push(b & a);
+		}
+	}
+
+	static void BoolOr(Interpreter inI) {
+		booleanStack s = inI._boolStack;
+		if (s._size > 1) {
+			boolean a = s.pop();
+			boolean b = s.pop();
+			s.push(b | a);
+		}
+	}
+
+	static void BoolXor(Interpreter inI) {
+		booleanStack s = inI._boolStack;
+		if (s._size > 1) {
+			boolean a = s.pop();
+			boolean b = s.pop();
+			s.push(b ^ a);
+		}
+	}
+
+	static void BoolEquals(Interpreter inI) {
+		booleanStack s = inI._boolStack;
+		if (s._size > 1) {
+			boolean a = s.pop();
+			boolean b = s.pop();
+			s.push(b == a);
+		}
+	}
+
+	static void BoolNot(Interpreter inI) {
+		booleanStack s = inI._boolStack;
+		if (s._size > 0)
+			s.push(!s.pop());
+	}
+
+	static void BoolFromInt(Interpreter inI) {
+		intStack i = inI._intStack;
+		if (i._size > 0)
+			inI._boolStack.push(i.pop() != 0);
+	}
+
+	static void BoolFromFloat(Interpreter inI) {
+		floatStack f = inI._floatStack;
+		if (f._size > 0)
+			inI._boolStack.push(f.pop() != 0.0);
+	}
+}
@@ -0,0 +1,215 @@
+/*
+ * Copyright 2009-2010 Jon Klein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spiderland.Psh;
+
+import java.util.HashMap;
+
+/**
+ * A compiled Push program with an opcode for each atom, as run by
+ * OpcodeInterpreter.
+ *
+ * Literals, and the built-in instructions which only use the integer, float,
+ * boolean, vector, name and code stacks, get an opcode which the
+ * OpcodeInterpreter carries out itself. Every other atom gets CALL, and is
+ * executed by the Interpreter as usual. The constants for literals are kept in
+ * the pools of the CompiledProgram, at the index of the atom.
+ */
+
+class OpcodeProgram extends CompiledProgram {
+	private static final long serialVersionUID = 1L;
+
+	static final int CALL = 0;
+
+	// Literals
+	static final int INT = 1;
+	static final int FLOAT = 2;
+	static final int BOOL = 3;
+	static final int VECTOR = 4;
+	static final int NAME = 5;
+
+	// Stack instructions, with the stack type as the operand
+	static final int POP = 10;
+	static final int DUP = 11;
+	static final int SWAP = 12;
+	static final int ROT = 13;
+	static final int FLUSH = 14;
+	static final int DEPTH = 15;
+
+	static final int INT_ADD = 20;
+	static final int INT_SUB = 21;
+	static final int INT_MUL = 22;
+	static final int INT_DIV = 23;
+	static final int INT_MOD = 24;
+	static final int INT_MIN = 25;
+	static final int INT_MAX = 26;
+	static final int INT_ABS = 27;
+	static final int INT_NEG = 28;
+	static final int INT_LT = 29;
+	static final int INT_GT = 30;
+	static final int INT_EQ = 31;
+	static final int INT_FROMFLOAT = 32;
+	static final int INT_FROMBOOL = 33;
+
+	static final int FLOAT_ADD = 40;
+	static final int FLOAT_SUB = 41;
+	static final int FLOAT_MUL = 42;
+	static final int FLOAT_DIV = 43;
+	static final int FLOAT_MOD = 44;
+	static final int FLOAT_MIN = 45;
+	static final int FLOAT_MAX = 46;
+	static final int FLOAT_ABS = 47;
+	static final int FLOAT_NEG = 48;
+	static final int FLOAT_SIN = 49;
+	static final int FLOAT_COS = 50;
+	static final int FLOAT_LT = 51;
+	static final int FLOAT_GT = 52;
+	static final int FLOAT_EQ = 53;
+	static final int FLOAT_FROMINT = 54;
+	static final int FLOAT_FROMBOOL = 55;
+
+	static final int BOOL_AND = 60;
+	static final int BOOL_OR = 61;
+	static final int BOOL_XOR = 62;
+	static final int BOOL_EQ = 63;
+	static final int BOOL_NOT = 64;
+	static final int BOOL_FROMINT = 65;
+	static final int BOOL_FROMFLOAT = 66;
+
+	// Opcodes of the instruction classes which are carried out inline. Only
+	// these exact classes qualify, not subclasses, which may behave
+	// differently.
+	private static final HashMap<Class<?>, Integer> _opcodes = new HashMap<Class<?>, Integer>();
+
+	static {
+		_opcodes.put(Pop.class, POP);
+		_opcodes.put(Dup.class, DUP);
+		_opcodes.put(Swap.class, SWAP);
+		_opcodes.put(Rot.class, ROT);
+		_opcodes.put(Flush.class, FLUSH);
+		_opcodes.put(Depth.class, DEPTH);
+
+		_opcodes.put(IntegerAdd.class, INT_ADD);
+		_opcodes.put(IntegerSub.class, INT_SUB);
+		_opcodes.put(IntegerMul.class, INT_MUL);
+		_opcodes.put(IntegerDiv.class, INT_DIV);
+		_opcodes.put(IntegerMod.class, INT_MOD);
+		_opcodes.put(IntegerMin.class, INT_MIN);
+		_opcodes.put(IntegerMax.class, INT_MAX);
+		_opcodes.put(IntegerAbs.class, INT_ABS);
+		_opcodes.put(IntegerNeg.class, INT_NEG);
+		_opcodes.put(IntegerLessThan.class, INT_LT);
+		_opcodes.put(IntegerGreaterThan.class, INT_GT);
+		_opcodes.put(IntegerEquals.class, INT_EQ);
+		_opcodes.put(IntegerFromFloat.class, INT_FROMFLOAT);
+		_opcodes.put(IntegerFromBoolean.class, INT_FROMBOOL);
+
+		_opcodes.put(FloatAdd.class, FLOAT_ADD);
+		_opcodes.put(FloatSub.class, FLOAT_SUB);
+		_opcodes.put(FloatMul.class, FLOAT_MUL);
+		_opcodes.put(FloatDiv.class, FLOAT_DIV);
+		_opcodes.put(FloatMod.class, FLOAT_MOD);
+		_opcodes.put(FloatMin.class, FLOAT_MIN);
+		_opcodes.put(FloatMax.class, FLOAT_MAX);
+		_opcodes.put(FloatAbs.class, FLOAT_ABS);
+		_opcodes.put(FloatNeg.class, FLOAT_NEG);
+		_opcodes.put(FloatSin.class, FLOAT_SIN);
+		_opcodes.put(FloatCos.class, FLOAT_COS);
+		_opcodes.put(FloatLessThan.class, FLOAT_LT);
+		_opcodes.put(FloatGreaterThan.class, FLOAT_GT);
+		_opcodes.put(FloatEquals.class, FLOAT_EQ);
+		_opcodes.put(FloatFromInteger.class, FLOAT_FROMINT);
+		_opcodes.put(FloatFromBoolean.class, FLOAT_FROMBOOL);
+
+		_opcodes.put(BoolAnd.class, BOOL_AND);
+		_opcodes.put(BoolOr.class, BOOL_OR);
+		_opcodes.put(BoolXor.class, BOOL_XOR);
+		_opcodes.put(BoolEquals.class, BOOL_EQ);
+		_opcodes.put(BoolNot.class, BOOL_NOT);
+		_opcodes.put(BooleanFromInteger.class, BOOL_FROMINT);
+		_opcodes.put(BooleanFromFloat.class, BOOL_FROMFLOAT);
+	}
+
+	int _ops[];
+	int _operands[];
+
+	OpcodeProgram(Program inSource, Interpreter inInterpreter) {
+		super(inSource, inInterpreter);
+
+		_ops = new int[_size];
+		_operands = new int[_size];
+
+		for (int n = 0; n < _size; n++) {
+			switch (_kinds[n]) {
+			case CompiledProgram.INTEGER:
+				_ops[n] = INT;
+				break;
+			case CompiledProgram.FLOAT:
+				_ops[n] = FLOAT;
+				break;
+			case CompiledProgram.VECTOR:
+				_ops[n] = VECTOR;
+				break;
+			case CompiledProgram.NAME:
+				_ops[n] = NAME;
+				break;
+			case CompiledProgram.INSTRUCTION:
+				_ops[n] = Opcode(n, _instructions[n]);
+				break;
+			default:
+				_ops[n] = CALL;
+			}
+		}
+	}
+
+	private int Opcode(int inIndex, Instruction inInstruction) {
+		Class<?> c = inInstruction.getClass();
+
+		if (c == IntegerConstant.class) {
+			_ints[inIndex] = ((IntegerConstant) inInstruction)._value;
+			return INT;
+		}
+
+		if (c == FloatConstant.class) {
+			_floats[inIndex] = ((FloatConstant) inInstruction)._value;
+			return FLOAT;
+		}
+
+		if (c == BooleanConstant.class) {
+			_ints[inIndex] = ((BooleanConstant) inInstruction)._value ? 1 : 0;
+			return BOOL;
+		}
+
+		Integer op = _opcodes.get(c);
+
+		if (op == null)
+			return CALL;
+
+		if (inInstruction instanceof StackInstruction) {
+			StackInstruction s = (StackInstruction) inInstruction;
+
+			// Instructions on the exec stack, or bound to a particular
+			// stack, are left to the Interpreter
+			if (s._stack != null
+					|| s._stackType == Interpreter.StackFrame.EXEC)
+				return CALL;
+
+			_operands[inIndex] = s._stackType;
+		}
+
+		return op;
+	}
+}
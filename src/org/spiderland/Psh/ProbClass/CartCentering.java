@@ -100,7 +100,8 @@ public class CartCentering extends PushGP {
 			iStack.push(position);
 			iStack.push(velocity);
 			
-			_interpreter.Execute(((PushGPIndividual) inIndividual)._program,
+			_interpreter.Execute(
+					((PushGPIndividual) inIndividual).GetCompiledProgram(_interpreter),
 					_executionLimit);
 			
 			// If there is no boolean on the stack, the program has failed to
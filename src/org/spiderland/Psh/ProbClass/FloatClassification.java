@@ -73,7 +73,8 @@ public class FloatClassification extends PushGP {
 
 		stack.push(_currentInput);
 
-		_interpreter.Execute(((PushGPIndividual) inIndividual)._program,
+		_interpreter.Execute(
+				((PushGPIndividual) inIndividual).GetCompiledProgram(_interpreter),
 				_executionLimit);
 
 		float result = stack.top();
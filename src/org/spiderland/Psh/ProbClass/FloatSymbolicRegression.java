@@ -107,7 +107,8 @@ public class FloatSymbolicRegression extends PushGP {
 		// Must be included in order to use the input stack.
 		_interpreter.inputStack().push(currentInput);
 
-		_interpreter.Execute(((PushGPIndividual) inIndividual)._program,
+		_interpreter.Execute(
+				((PushGPIndividual) inIndividual).GetCompiledProgram(_interpreter),
 				_executionLimit);
 
 		float result = stack.top();
@@ -132,7 +133,8 @@ public class FloatSymbolicRegression extends PushGP {
 		// Must be included in order to use the input stack.
 		_interpreter.inputStack().push(currentInput);
 
-		_interpreter.Execute(((PushGPIndividual) inIndividual)._program,
+		_interpreter.Execute(
+				((PushGPIndividual) inIndividual).GetCompiledProgram(_interpreter),
 				_executionLimit);
 
 		float result = stack.top();
@@ -106,7 +106,8 @@ public class IntSymbolicRegression extends PushGP {
 		// Must be included in order to use the input stack.
 		_interpreter.inputStack().push(currentInput);
 
-		_interpreter.Execute(((PushGPIndividual) inIndividual)._program,
+		_interpreter.Execute(
+				((PushGPIndividual) inIndividual).GetCompiledProgram(_interpreter),
 				_executionLimit);
 
 		int result = stack.top();
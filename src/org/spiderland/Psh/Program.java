@@ -17,6 +17,7 @@
 package org.spiderland.Psh;
 
 import java.io.Serializable;
+import java.util.Arrays;
 
 /**
  * A Push program.
@@ -27,6 +28,13 @@ public class Program extends ObjectStack implements Serializable {
 
 	Interpreter _interpreter = null;
 
+	/**
+	 * Incremented by the methods which edit a program in place (Parse,
+	 * ReplaceSubtree and Flatten), so that a cached CompiledProgram can tell
+	 * whether it is out of date.
+	 */
+	int _version = 0;
+
 	public Interpreter getInterpreter() {
 		return _interpreter;
 	}
@@ -53,7 +61,8 @@ public class Program extends ObjectStack implements Serializable {
 	}
 
 	/**
-	 * Constructs a copy of an existing Program.
+	 * Constructs a copy of an existing Program. Subprograms are copied too, so
+	 * the copy can be edited without affecting the original.
 	 * 
 	 * @param inOther
 	 *            The Push program to copy.
@@ -97,6 +106,7 @@ public class Program extends ObjectStack implements Serializable {
 	 */
 
 	public int Parse(String inString) throws Exception {
+		_version++;
 		clear();
 
 		inString = inString.replace("(", " ( ");
@@ -137,8 +147,14 @@ public class Program extends ObjectStack implements Serializable {
 					return n;
 					
 				} else if (token.startsWith("<")) {
-					// a vector
-					push(token);
+					// a vector -- parsed here, so that it is not parsed again
+					// each time it is executed. A malformed vector is kept as
+					// it was written.
+					try {
+						push(ParseVector(token));
+					} catch (RuntimeException e) {
+						push(token);
+					}
 					
 				} else if (Character.isLetter(token.charAt(0))) {
 
@@ -254,6 +270,8 @@ public class Program extends ObjectStack implements Serializable {
 	 */
 
 	public boolean ReplaceSubtree(int inIndex, Object inReplacement) {
+		_version++;
+
 		if (inIndex < _size) {
 			_stack[inIndex] = cloneforprogram(inReplacement);
 			return true;
@@ -280,6 +298,8 @@ public class Program extends ObjectStack implements Serializable {
 	}
 
 	public void Flatten(int inIndex) {
+		_version++;
+
 		if (inIndex < _size) {
 			// If here, the index to be flattened is in this program. So, push
 			// the rest of the program onto a new program, and replace this with
@@ -324,15 +344,79 @@ public class Program extends ObjectStack implements Serializable {
 	}
 
 	/**
-	 * Copies this program to another.
+	 * Copies this program to another. Subprograms are copied, rather than
+	 * shared with the other program.
 	 * 
 	 * @param inOther
 	 *            The program to receive the copy of this program
 	 */
 
 	public void CopyTo(Program inOther) {
-		for (int n = 0; n < _size; n++)
-			inOther.push(_stack[n]);
+		for (int n = 0; n < _size; n++) {
+			Object o = _stack[n];
+
+			if (o instanceof Program)
+				o = new Program((Program) o);
+
+			inOther.push(o);
+		}
+	}
+
+	/**
+	 * Parses a vector literal of the form <x,y,...> into its components.
+	 * 
+	 * @param inToken
+	 *            The vector literal.
+	 * @return The vector's components.
+	 */
+
+	static float[] ParseVector(String inToken) {
+		String[] cs = inToken.substring(1, inToken.length()-1).split(",");
+		float[] fs = new float[cs.length];
+		for(int f=0; f<cs.length; f++) {
+			fs[f] = Float.parseFloat(cs[f]);
+		}
+		return fs;
+	}
+
+	/**
+	 * Returns the vector literal for a vector, in the form read by ParseVector.
+	 */
+
+	static String VectorString(float[] inVector) {
+		String result = "<";
+
+		for (int i = 0; i < inVector.length; i++) {
+			result += inVector[i];
+			if (i < inVector.length - 1)
+				result += ",";
+		}
+		result += ">";
+
+		return result;
+	}
+
+	/**
+	 * Returns the string for an atom as it appears in a program or stack
+	 * listing.
+	 */
+
+	static String AtomString(Object inAtom) {
+		if (inAtom instanceof float[])
+			return VectorString((float[]) inAtom);
+
+		return String.valueOf(inAtom);
+	}
+
+	/**
+	 * Compares two atoms. Vectors are compared by value.
+	 */
+
+	static boolean AtomEquals(Object inA, Object inB) {
+		if (inA instanceof float[] && inB instanceof float[])
+			return Arrays.equals((float[]) inA, (float[]) inB);
+
+		return inA.equals(inB);
 	}
 
 	public String toString() {
@@ -340,9 +424,9 @@ public class Program extends ObjectStack implements Serializable {
 
 		for (int n = 0; n < _size; n++) {
 			if (result.charAt(result.length() - 1) == '(')
-				result += _stack[n];
+				result += AtomString(_stack[n]);
 			else
-				result += " " + _stack[n];
+				result += " " + AtomString(_stack[n]);
 		}
 
 		result += ")";
@@ -367,6 +451,9 @@ public class Program extends ObjectStack implements Serializable {
 		if (inObject instanceof Float)
 			return new Float((Float) inObject);
 
+		if (inObject instanceof float[])
+			return inObject; // vectors in programs are never modified
+
 		if (inObject instanceof Program)
 			return new Program((Program) inObject);
 
@@ -16,6 +16,7 @@
 
 package org.spiderland.Psh;
 
+import java.io.Serializable;
 import java.util.*;
 
 /**
@@ -51,8 +52,6 @@ abstract public class PushGP extends GA {
 		// given.
 		float defaultFairMutationRange = 0.3f;
 		float defaultsimplifyFlattenPercent = 20f;
-		String defaultInterpreterClass = "org.spiderland.Psh.Interpreter";
-		String defaultInputPusherClass = "org.spiderland.Psh.InputPusher";
 		String defaultTargetFunctionString = "";
 		float defaultNodeSelectionLeafProbability = 10;
 		int defaultNodeSelectionTournamentSize = 2;
@@ -109,6 +108,59 @@ abstract public class PushGP extends GA {
 		_reportSimplifications = (int) GetFloatParam("report-simplifications");
 		_finalSimplifications = (int) GetFloatParam("final-simplifications");
 
+		_interpreter = MakeInterpreter();
+
+		// Target function string
+		_targetFunctionString = GetParam("target-function-string", true);
+		if(_targetFunctionString == null){
+			_targetFunctionString = defaultTargetFunctionString;
+		}
+
+		// Init the GA
+		super.InitFromParameters();
+
+		// Print important parameters
+		Print("  Important Parameters\n");
+		Print(" ======================\n");
+
+		if(!_targetFunctionString.equals("")){
+			Print("Target Function: " + _targetFunctionString + "\n\n");
+		}
+		
+		Print("Population Size: " + (int) GetFloatParam("population-size")
+				+ "\n");
+		Print("Generations: " + _maxGenerations + "\n");
+		Print("Execution Limit: " + _executionLimit + "\n\n");
+
+		Print("Crossover Percent: " + _crossoverPercent + "\n");
+		Print("Mutation Percent: " + _mutationPercent + "\n");
+		Print("Simplification Percent: " + _simplificationPercent + "\n");
+		Print("Clone Percent: "
+				+ (100 - _crossoverPercent - _mutationPercent - _simplificationPercent)
+				+ "\n\n");
+
+		Print("Tournament Size: " + _tournamentSize + "\n");
+		if (_trivialGeographyRadius != 0) {
+			Print("Trivial Geography Radius: " + _trivialGeographyRadius + "\n");
+		}
+		Print("Node Selection Mode: " + _nodeSelectionMode);
+		Print("\n");
+
+		Print("Instructions: " + _interpreter.GetInstructionsString() + "\n");
+
+		Print("\n");
+		
+	}
+
+	/**
+	 * Makes an interpreter as set up by the parameters. This is the GA's own
+	 * interpreter, and the interpreter of each of its evaluation workers.
+	 */
+
+	protected Interpreter MakeInterpreter() throws Exception {
+		String defaultInterpreterClass = "org.spiderland.Psh.Interpreter";
+		String defaultInputPusherClass = "org.spiderland.Psh.InputPusher";
+
 		// ERC parameters
 		int minRandomInt;
 		int defaultMinRandomInt = -10;
@@ -169,10 +221,11 @@ abstract public class PushGP extends GA {
 			throw (new Exception(
 					"interpreter-class must inherit from class Interpreter"));
 
-		_interpreter = (Interpreter) iObject;
-		_interpreter.SetInstructions(new Program(_interpreter,
+		Interpreter interpreter = (Interpreter) iObject;
+		interpreter.SetRandomGenerator(_randomGenerator);
+		interpreter.SetInstructions(new Program(interpreter,
 				GetParam("instruction-set")));
-		_interpreter.SetRandomParameters(minRandomInt, maxRandomInt,
+		interpreter.SetRandomParameters(minRandomInt, maxRandomInt,
 				randomIntResolution, minRandomFloat, maxRandomFloat,
 				randomFloatResolution, _maxRandomCodeSize, _maxPointsInProgram);
 
@@ -192,54 +245,19 @@ abstract public class PushGP extends GA {
 			throw new Exception(
 					"inputpusher-class must inherit from class InputPusher");
 
-		_interpreter.setInputPusher((InputPusher) iObject);
+		interpreter.setInputPusher((InputPusher) iObject);
 
 		// Initialize the interpreter
-		InitInterpreter(_interpreter);
+		InitInterpreter(interpreter);
 
 		if (framemode != null && framemode.equals("pushstacks"))
-			_interpreter.SetUseFrames(true);
+			interpreter.SetUseFrames(true);
 
-		// Target function string
-		_targetFunctionString = GetParam("target-function-string", true);
-		if(_targetFunctionString == null){
-			_targetFunctionString = defaultTargetFunctionString;
-		}
-
-		// Init the GA
-		super.InitFromParameters();
-
-		// Print important parameters
-		Print("  Important Parameters\n");
-		Print(" ======================\n");
+		float lazyVectorDepth = GetFloatParam("vector-lazy-depth", true);
+		if (!Float.isNaN(lazyVectorDepth))
+			interpreter.SetLazyVectorDepth((int) lazyVectorDepth);
 
-		if(!_targetFunctionString.equals("")){
-			Print("Target Function: " + _targetFunctionString + "\n\n");
-		}
-		
-		Print("Population Size: " + (int) GetFloatParam("population-size")
-				+ "\n");
-		Print("Generations: " + _maxGenerations + "\n");
-		Print("Execution Limit: " + _executionLimit + "\n\n");
-
-		Print("Crossover Percent: " + _crossoverPercent + "\n");
-		Print("Mutation Percent: " + _mutationPercent + "\n");
-		Print("Simplification Percent: " + _simplificationPercent + "\n");
-		Print("Clone Percent: "
-				+ (100 - _crossoverPercent - _mutationPercent - _simplificationPercent)
-				+ "\n\n");
-
-		Print("Tournament Size: " + _tournamentSize + "\n");
-		if (_trivialGeographyRadius != 0) {
-			Print("Trivial Geography Radius: " + _trivialGeographyRadius + "\n");
-		}
-		Print("Node Selection Mode: " + _nodeSelectionMode);
-		Print("\n");
-
-		Print("Instructions: " + _interpreter.GetInstructionsString() + "\n");
-
-		Print("\n");
-		
+		return interpreter;
 	}
 
 	public void InitIndividual(GAIndividual inIndividual) {
@@ -263,11 +281,11 @@ abstract public class PushGP extends GA {
 		float totalFitness = 0;
 		_bestMeanFitness = Float.MAX_VALUE;
 
+		EvaluatePopulation();
+
 		for (int n = 0; n < _populations[_currentPopulation].length; n++) {
 			GAIndividual i = _populations[_currentPopulation][n];
 
-			EvaluateIndividual(i);
-
 			totalFitness += i.GetFitness();
 
 			if (i.GetFitness() < _bestMeanFitness) {
@@ -282,6 +300,45 @@ abstract public class PushGP extends GA {
 				/ _populations[_currentPopulation].length;
 	}
 
+	/**
+	 * Gives the worker an interpreter of its own.
+	 */
+	protected GA EvaluationWorker() throws Exception {
+		PushGP worker = (PushGP) super.EvaluationWorker();
+		worker._interpreter = MakeInterpreter();
+		worker._averageSize = 0;
+		return worker;
+	}
+
+	protected void MergeEvaluation(GA inWorker) {
+		PushGP worker = (PushGP) inWorker;
+		_averageSize += worker._averageSize;
+		worker._averageSize = 0;
+		_interpreter.MergeStatistics(worker._interpreter);
+	}
+
+	protected Serializable TakeEvaluationCounts() {
+		double counts[] = { _averageSize, _interpreter._totalStepsTaken,
+				_interpreter._evaluationExecutions };
+
+		_averageSize = 0;
+		_interpreter._totalStepsTaken = 0;
+		_interpreter._evaluationExecutions = 0;
+		return counts;
+	}
+
+	protected void MergeEvaluationCounts(Serializable inCounts) {
+		double counts[] = (double[]) inCounts;
+
+		_averageSize += counts[0];
+		_interpreter._totalStepsTaken += (int) counts[1];
+		_interpreter._evaluationExecutions += (long) counts[2];
+	}
+
+	protected void SeedRandom(long inSeed) {
+		_interpreter.setSeed(inSeed);
+	}
+
 	public void EvaluateIndividual(GAIndividual inIndividual) {
 		EvaluateIndividual(inIndividual, false);
 	}
@@ -26,6 +26,9 @@ public class PushGPIndividual extends GAIndividual {
 	
 	public Program _program;
 
+	// _program compiled for the interpreter that last ran it
+	protected transient CompiledProgram _compiledProgram;
+
 	public PushGPIndividual() {
 	}
 
@@ -37,6 +40,25 @@ public class PushGPIndividual extends GAIndividual {
 	void SetProgram(Program inProgram) {
 		if (inProgram != null)
 			_program = new Program(inProgram);
+		_compiledProgram = null;
+	}
+
+	/**
+	 * Returns this individual's program compiled for an interpreter. The
+	 * compiled program is kept until the program is edited or replaced, or
+	 * until it is run by a different interpreter.
+	 */
+	public CompiledProgram GetCompiledProgram(Interpreter inInterpreter) {
+		// Read the field once, as interpreters on other threads may be
+		// compiling the program at the same time
+		CompiledProgram compiled = _compiledProgram;
+
+		if (compiled == null || !compiled.IsCompiledFrom(_program, inInterpreter)) {
+			compiled = inInterpreter.Compile(_program);
+			_compiledProgram = compiled;
+		}
+
+		return compiled;
 	}
 
 	public String toString() {
@@ -0,0 +1,184 @@
+/*
+ * Copyright 2009-2010 Jon Klein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spiderland.Psh;
+
+import java.util.HashMap;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Makes the random number generators used by GAs and interpreters, of the
+ * kind chosen by the random-generator parameter: "java" (the default), for
+ * java.util.Random, or "xoshiro", for XoshiroRandom. Each GA and interpreter
+ * keeps the kind it was given, so GAs with different parameters can run side
+ * by side.
+ *
+ * Work which is carried out in parallel, such as evaluating an individual
+ * or an optimisation run, is given a generator of its own, seeded with
+ * Derive() from a seed and the indices which identify the work, so that it
+ * gets the same numbers on whichever thread it runs.
+ */
+
+public final class Randoms {
+	public static final String XOSHIRO = "xoshiro";
+	public static final String JAVA = "java";
+
+	static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+	private static final AtomicLong _seedUniquifier = new AtomicLong(System.nanoTime());
+
+	private Randoms() {
+	}
+
+	/**
+	 * Returns the kind of generator given by the random-generator parameter.
+	 */
+	public static String Generator(HashMap<String, String> inParams) throws Exception {
+		String generator = inParams.get("random-generator");
+
+		if (generator == null)
+			return JAVA;
+		if (!generator.equals(XOSHIRO) && !generator.equals(JAVA))
+			throw new Exception("Unknown random-generator " + generator);
+		return generator;
+	}
+
+	/**
+	 * Returns a generator of the given kind, seeded with the given seed.
+	 */
+	public static Random Make(String inGenerator, long inSeed) {
+		return inGenerator.equals(XOSHIRO) ? new XoshiroRandom(inSeed) : new Random(inSeed);
+	}
+
+	/**
+	 * Returns a generator of the given kind with a seed unlike that of any
+	 * other.
+	 */
+	public static Random Make(String inGenerator) {
+		return Make(inGenerator, FreshSeed());
+	}
+
+	/**
+	 * Returns the seed of the stream numbered inKey among those derived from
+	 * inSeed. Streams of streams, such as one for each run of each problem,
+	 * are derived by deriving again from a derived seed. The seed is mixed
+	 * first, so that derived seeds don't coincide with the SplitMix64
+	 * sequence which XoshiroRandom fills its state from.
+	 */
+	public static long Derive(long inSeed, long inKey) {
+		return Mix(Mix(inSeed) + (inKey + 1) * GOLDEN_GAMMA);
+	}
+
+	/**
+	 * Returns a seed which no other call has returned.
+	 */
+	static long FreshSeed() {
+		return Mix(_seedUniquifier.addAndGet(GOLDEN_GAMMA) ^ System.nanoTime());
+	}
+
+	/**
+	 * The SplitMix64 finaliser, which scrambles the bits of its argument.
+	 */
+	static long Mix(long inValue) {
+		inValue = (inValue ^ (inValue >>> 30)) * 0xBF58476D1CE4E5B9L;
+		inValue = (inValue ^ (inValue >>> 27)) * 0x94D049BB133111EBL;
+		return inValue ^ (inValue >>> 31);
+	}
+
+	/**
+	 * Returns a generator which gives each thread that uses it numbers from
+	 * a generator of the thread's own, for code which draws its numbers from
+	 * a shared generator. Seeding it seeds the calling thread's generator.
+	 */
+	public static PerThreadRandom PerThread() {
+		return new PerThreadRandom();
+	}
+
+	public static final class PerThreadRandom extends Random {
+		private static final long serialVersionUID = 1L;
+
+		private transient ThreadLocal<Random> _generators;
+
+		PerThreadRandom() {
+			_generators = new ThreadLocal<Random>() {
+				protected Random initialValue() {
+					return Make(JAVA);
+				}
+			};
+		}
+
+		private Random Generator() {
+			return _generators.get();
+		}
+
+		/**
+		 * Makes the calling thread draw its numbers from the given
+		 * generator.
+		 */
+		public void Use(Random inGenerator) {
+			_generators.set(inGenerator);
+		}
+
+		@Override
+		public void setSeed(long inSeed) {
+			// Random's constructor seeds the generator before there are any
+			// threads' generators to seed
+			if (_generators != null)
+				Generator().setSeed(inSeed);
+		}
+
+		@Override
+		protected int next(int inBits) {
+			return Generator().nextInt() >>> (32 - inBits);
+		}
+
+		@Override
+		public int nextInt() {
+			return Generator().nextInt();
+		}
+
+		@Override
+		public int nextInt(int inBound) {
+			return Generator().nextInt(inBound);
+		}
+
+		@Override
+		public long nextLong() {
+			return Generator().nextLong();
+		}
+
+		@Override
+		public float nextFloat() {
+			return Generator().nextFloat();
+		}
+
+		@Override
+		public double nextDouble() {
+			return Generator().nextDouble();
+		}
+
+		@Override
+		public boolean nextBoolean() {
+			return Generator().nextBoolean();
+		}
+
+		@Override
+		public double nextGaussian() {
+			return Generator().nextGaussian();
+		}
+	}
+}
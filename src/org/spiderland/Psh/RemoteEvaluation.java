@@ -0,0 +1,421 @@
+/*
+ * Copyright 2009-2010 Jon Klein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spiderland.Psh;
+
+import java.io.*;
+import java.net.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Evaluates a GA's populations on worker JVMs, which connect to the GA's
+ * evaluation-port and are sent batches of evaluation-batch-size individuals
+ * to evaluate (see RemoteWorker).
+ *
+ * Each worker makes a GA of its own from the master GA's parameters, and
+ * sends back each batch with the individuals' fitness and errors, along with
+ * what its GA counted while evaluating them. A batch which a worker doesn't
+ * send back within evaluation-timeout seconds per individual, or which was
+ * sent to a worker that has gone away, is sent to another worker. Workers started by the
+ * master are restarted when they exit, and while no workers are connected
+ * the master evaluates individuals itself, so a population is always
+ * evaluated in the end.
+ *
+ * The port is on evaluation-bind-address, or on the loopback address if it
+ * isn't given, so only workers on the same machine can connect unless an
+ * address is given, such as 0.0.0.0 for every interface. Whatever connects
+ * is trusted no further than to send individuals: the streams refuse to make
+ * objects of any class but those which tasks and results are made of.
+ */
+
+class RemoteEvaluation {
+
+	/**
+	 * A batch of individuals for a worker to evaluate, starting with
+	 * individual first of the population, and the seeds for their random
+	 * numbers.
+	 */
+	static class Task implements Serializable {
+		private static final long serialVersionUID = 1L;
+
+		final int evaluation;
+		final int first;
+		final boolean seeded;
+		final long seeds[];
+		final GAIndividual individuals[];
+
+		Task(int inEvaluation, int inFirst, boolean inSeeded, long inSeeds[],
+				GAIndividual inIndividuals[]) {
+			evaluation = inEvaluation;
+			first = inFirst;
+			seeded = inSeeded;
+			seeds = inSeeds;
+			individuals = inIndividuals;
+		}
+
+		/**
+		 * Evaluates the batch with the given GA.
+		 */
+		void Evaluate(GA inGA) {
+			for (int n = 0; n < individuals.length; n++) {
+				if (seeded)
+					inGA.SeedRandom(seeds[n]);
+
+				inGA.EvaluateIndividual(individuals[n]);
+			}
+		}
+	}
+
+	/**
+	 * An evaluated batch, and what the worker's GA counted while evaluating
+	 * it.
+	 */
+	static class Result implements Serializable {
+		private static final long serialVersionUID = 1L;
+
+		final GAIndividual individuals[];
+		final Serializable counts;
+
+		Result(GAIndividual inIndividuals[], Serializable inCounts) {
+			individuals = inIndividuals;
+			counts = inCounts;
+		}
+	}
+
+	/**
+	 * Writes objects, sending the interpreter which the writer's programs
+	 * belong to as a reference to the reader's interpreter, rather than as a
+	 * copy of all its instructions and stacks.
+	 */
+	static class Output extends ObjectOutputStream {
+		private final Interpreter _interpreter;
+
+		Output(OutputStream inStream, GA inGA) throws IOException {
+			super(new BufferedOutputStream(inStream));
+			_interpreter = LocalInterpreter(inGA);
+			enableReplaceObject(_interpreter != null);
+			flush();
+		}
+
+		protected Object replaceObject(Object inObject) {
+			return (inObject == _interpreter) ? new InterpreterReference() : inObject;
+		}
+	}
+
+	/**
+	 * Reads objects written by Output, putting programs into the interpreter
+	 * of the reader's GA, which can be given once the stream has been read
+	 * from to make the GA. Only the classes in ALLOWED, individuals, and
+	 * arrays of these, are read. This is checked in resolveClass, since
+	 * ObjectInputFilter needs Java 9, and the tree only needs Java 8.
+	 */
+	static class Input extends ObjectInputStream {
+		private Interpreter _interpreter;
+
+		Input(InputStream inStream, GA inGA) throws IOException {
+			super(new BufferedInputStream(inStream));
+			SetGA(inGA);
+			enableResolveObject(true);
+		}
+
+		void SetGA(GA inGA) {
+			_interpreter = LocalInterpreter(inGA);
+		}
+
+		protected Class<?> resolveClass(ObjectStreamClass inClass)
+				throws IOException, ClassNotFoundException {
+			// The class is loaded, but not initialised, before it is checked
+			Class<?> cls = super.resolveClass(inClass);
+			Class<?> element = cls;
+
+			while (element.isArray())
+				element = element.getComponentType();
+
+			if (!element.isPrimitive() && !ALLOWED.contains(element)
+					&& !GAIndividual.class.isAssignableFrom(element))
+				throw new InvalidClassException(inClass.getName(),
+						"not allowed in an evaluation stream");
+
+			return cls;
+		}
+
+		protected Object resolveObject(Object inObject) {
+			return (inObject instanceof InterpreterReference) ? _interpreter : inObject;
+		}
+	}
+
+	// The classes, other than individuals, which tasks, results and the
+	// parameters are made of
+	private static final List<Class<?>> ALLOWED = Arrays.<Class<?>>asList(
+			Task.class, Result.class, InterpreterReference.class,
+			Program.class, ObjectStack.class, Stack.class, HashMap.class,
+			ArrayList.class, Object.class, String.class, Number.class,
+			Integer.class, Long.class, Float.class, Double.class,
+			Boolean.class);
+
+	private static class InterpreterReference implements Serializable {
+		private static final long serialVersionUID = 1L;
+	}
+
+	private static Interpreter LocalInterpreter(GA inGA) {
+		return (inGA instanceof PushGP) ? ((PushGP) inGA)._interpreter : null;
+	}
+
+	private final GA _ga;
+	private final HashMap<String, String> _workerParameters;
+	private final int _timeout;
+	private final int _batchSize;
+
+	private final ServerSocket _server;
+	private final LinkedBlockingQueue<Task> _tasks = new LinkedBlockingQueue<Task>();
+	private final AtomicInteger _workers = new AtomicInteger();
+	private final Process _localWorkers[];
+
+	// The population being evaluated, which of its individuals have been
+	// evaluated, and how many evaluations there have been, so that a late
+	// result from an earlier one is ignored
+	private GAIndividual _population[];
+	private boolean _evaluated[];
+	private int _remaining;
+	private int _evaluation;
+
+	// Evaluates individuals on the master's thread while no workers are
+	// connected
+	private GA _evaluator;
+
+	RemoteEvaluation(GA inGA, int inPort, String inAddress, int inTimeout,
+			int inBatchSize, int inLocalWorkers) throws IOException {
+		_ga = inGA;
+		_timeout = inTimeout;
+		_batchSize = Math.max(1, inBatchSize);
+
+		// Workers evaluate, rather than write output or wait for workers of
+		// their own
+		_workerParameters = new HashMap<String, String>(inGA._parameters);
+		_workerParameters.remove("output-file");
+		_workerParameters.remove("checkpoint-prefix");
+		_workerParameters.remove("evaluation-port");
+		_workerParameters.remove("evaluation-bind-address");
+		_workerParameters.remove("evaluation-local-workers");
+
+		InetAddress address = (inAddress == null) ? InetAddress.getLoopbackAddress()
+				: InetAddress.getByName(inAddress);
+		_server = new ServerSocket(inPort, 50, address);
+		System.out.println("Waiting for evaluation workers on "
+				+ address.getHostAddress() + " port " + _server.getLocalPort());
+
+		Thread acceptor = new Thread("evaluation-server") {
+			public void run() {
+				Accept();
+			}
+		};
+		acceptor.setDaemon(true);
+		acceptor.start();
+
+		_localWorkers = new Process[inLocalWorkers];
+		for (int i = 0; i < inLocalWorkers; i++)
+			_localWorkers[i] = StartLocalWorker();
+
+		Runtime.getRuntime().addShutdownHook(new Thread() {
+			public void run() {
+				for (Process worker : _localWorkers)
+					if (worker != null)
+						worker.destroy();
+			}
+		});
+	}
+
+	/**
+	 * Evaluates the population, returning once every individual has been
+	 * evaluated. Evaluated individuals replace the ones in the population.
+	 */
+	void Evaluate(GAIndividual inPopulation[], long inSeed) throws Exception {
+		int evaluation;
+
+		synchronized (this) {
+			evaluation = ++_evaluation;
+			_population = inPopulation;
+			_evaluated = new boolean[inPopulation.length];
+			_remaining = inPopulation.length;
+		}
+
+		for (int first = 0; first < inPopulation.length; first += _batchSize) {
+			int size = Math.min(_batchSize, inPopulation.length - first);
+			long seeds[] = new long[size];
+			GAIndividual individuals[] = new GAIndividual[size];
+
+			for (int n = 0; n < size; n++) {
+				seeds[n] = Randoms.Derive(inSeed, first + n);
+				individuals[n] = inPopulation[first + n];
+			}
+
+			_tasks.add(new Task(evaluation, first, _ga._seeded, seeds, individuals));
+		}
+
+		while (true) {
+			synchronized (this) {
+				if (_remaining == 0)
+					break;
+			}
+
+			RestartLocalWorkers();
+
+			Task task = (_workers.get() == 0) ? _tasks.poll() : null;
+
+			if (task != null) {
+				EvaluateLocally(task);
+			} else {
+				synchronized (this) {
+					if (_remaining > 0)
+						wait(1000);
+				}
+			}
+		}
+	}
+
+	private void EvaluateLocally(Task inTask) throws Exception {
+		if (_evaluator == null)
+			_evaluator = _ga.EvaluationWorker();
+
+		inTask.Evaluate(_evaluator);
+
+		synchronized (this) {
+			if (Complete(inTask, inTask.individuals))
+				_ga.MergeEvaluation(_evaluator);
+		}
+	}
+
+	/**
+	 * Puts an evaluated batch into the population, unless it has already
+	 * been evaluated or belongs to an earlier evaluation. Returns true if it
+	 * was put in.
+	 */
+	private synchronized boolean Complete(Task inTask, GAIndividual inIndividuals[]) {
+		if (inTask.evaluation != _evaluation || _evaluated[inTask.first])
+			return false;
+
+		for (int n = 0; n < inIndividuals.length; n++) {
+			_population[inTask.first + n] = inIndividuals[n];
+			_evaluated[inTask.first + n] = true;
+		}
+
+		_remaining -= inIndividuals.length;
+		notifyAll();
+		return true;
+	}
+
+	private void Accept() {
+		while (true) {
+			try {
+				final Socket socket = _server.accept();
+
+				Thread connection = new Thread("evaluation-connection") {
+					public void run() {
+						Serve(socket);
+					}
+				};
+				connection.setDaemon(true);
+				connection.start();
+			} catch (IOException e) {
+				System.err.println("Failed to accept an evaluation worker: " + e);
+			}
+		}
+	}
+
+	/**
+	 * Sends the worker on the other end of the socket the parameters, and
+	 * then one individual after another, until the worker goes away or takes
+	 * too long. The individual it had at the time is sent to another worker.
+	 */
+	private void Serve(Socket inSocket) {
+		Task task = null;
+		boolean connected = false;
+
+		try {
+			inSocket.setTcpNoDelay(true);
+
+			ObjectOutputStream out = new Output(inSocket.getOutputStream(), _ga);
+			out.writeObject(_workerParameters);
+			out.flush();
+			ObjectInputStream in = new Input(inSocket.getInputStream(), _ga);
+
+			_workers.incrementAndGet();
+			connected = true;
+
+			while (true) {
+				task = _tasks.take();
+
+				// Reset the stream, or an individual sent before would be sent
+				// as a reference to the worker's old copy
+				out.reset();
+				out.writeObject(task);
+				out.flush();
+
+				inSocket.setSoTimeout(_timeout * 1000 * task.individuals.length);
+				Result result = (Result) in.readObject();
+
+				synchronized (this) {
+					if (Complete(task, result.individuals))
+						_ga.MergeEvaluationCounts(result.counts);
+				}
+				task = null;
+			}
+		} catch (Exception e) {
+			System.err.println("Lost evaluation worker "
+					+ inSocket.getRemoteSocketAddress() + ": " + e);
+		} finally {
+			if (task != null)
+				_tasks.add(task);
+
+			if (connected)
+				_workers.decrementAndGet();
+
+			try {
+				inSocket.close();
+			} catch (IOException e) {
+			}
+		}
+	}
+
+	/**
+	 * Starts a worker JVM on this machine, with the same class path as this
+	 * one, which exits when it loses its connection.
+	 */
+	private Process StartLocalWorker() throws IOException {
+		String java = System.getProperty("java.home") + File.separator + "bin"
+				+ File.separator + "java";
+
+		InetAddress address = _server.getInetAddress();
+		if (address.isAnyLocalAddress())
+			address = InetAddress.getLoopbackAddress();
+
+		return new ProcessBuilder(java, "-cp",
+				System.getProperty("java.class.path"), "PshWorker",
+				address.getHostAddress(), String.valueOf(_server.getLocalPort()),
+				"0").inheritIO().start();
+	}
+
+	private void RestartLocalWorkers() throws IOException {
+		for (int i = 0; i < _localWorkers.length; i++) {
+			if (!_localWorkers[i].isAlive()) {
+				System.err.println("Restarting evaluation worker " + i);
+				_localWorkers[i] = StartLocalWorker();
+			}
+		}
+	}
+}
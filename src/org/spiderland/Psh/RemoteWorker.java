@@ -0,0 +1,107 @@
+/*
+ * Copyright 2009-2010 Jon Klein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spiderland.Psh;
+
+import java.io.*;
+import java.net.*;
+import java.util.*;
+
+/**
+ * Evaluates individuals for a GA running in another JVM, which has been
+ * given an evaluation-port to listen on (see RemoteEvaluation).
+ *
+ * The worker connects to the GA, makes a GA of its own from the parameters
+ * the GA sends, and then evaluates the batches of individuals it is sent.
+ * If the connection is lost, the worker connects again after a while, so
+ * that it carries on with the next run, or with the same one if the GA timed
+ * the worker out. As with the GA, the streams only read the classes which
+ * tasks are made of.
+ */
+
+public class RemoteWorker {
+
+	/**
+	 * Evaluates individuals for the GA listening on the given host and port.
+	 * Given a retry interval of 0, returns when the connection is lost or
+	 * can't be made, otherwise tries to connect again every inRetrySeconds
+	 * seconds.
+	 */
+	public static void Run(String inHost, int inPort, int inRetrySeconds)
+			throws Exception {
+		while (true) {
+			try {
+				Serve(new Socket(inHost, inPort));
+			} catch (IOException e) {
+				System.err.println("Lost connection to " + inHost + ":" + inPort
+						+ ": " + e);
+			}
+
+			if (inRetrySeconds <= 0)
+				return;
+
+			Thread.sleep(inRetrySeconds * 1000L);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static void Serve(Socket inSocket) throws Exception {
+		try {
+			inSocket.setTcpNoDelay(true);
+
+			// The parameters come first, since the streams need the GA which
+			// is made from them
+			RemoteEvaluation.Input in = new RemoteEvaluation.Input(
+					inSocket.getInputStream(), null);
+			HashMap<String, String> params = (HashMap<String, String>) in.readObject();
+
+			// Only a GA is made, whatever class the other end names
+			Class<?> problemClass = Class.forName(params.get("problem-class"),
+					false, RemoteWorker.class.getClassLoader());
+			if (!GA.class.isAssignableFrom(problemClass))
+				throw new IOException("problem-class must inherit from class GA");
+
+			GA ga = (GA) problemClass.newInstance();
+			ga._outputStream = null;
+			ga.SetParams(params);
+			ga.InitFromParameters();
+			ga.TakeEvaluationCounts();
+
+			in.SetGA(ga);
+			ObjectOutputStream out = new RemoteEvaluation.Output(
+					inSocket.getOutputStream(), ga);
+
+			while (true) {
+				RemoteEvaluation.Task task;
+
+				try {
+					task = (RemoteEvaluation.Task) in.readObject();
+				} catch (EOFException e) {
+					return;
+				}
+
+				task.Evaluate(ga);
+
+				out.reset();
+				out.writeObject(new RemoteEvaluation.Result(task.individuals,
+						ga.TakeEvaluationCounts()));
+				out.flush();
+			}
+		} finally {
+			inSocket.close();
+		}
+	}
+}
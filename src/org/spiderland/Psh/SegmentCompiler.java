@@ -0,0 +1,383 @@
+/*
+ * Copyright 2009-2010 Jon Klein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spiderland.Psh;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+
+/**
+ * Compiles runs of opcodes of an OpcodeProgram to JVM bytecode.
+ *
+ * Each run becomes a class extending CompiledSegment, whose Run method is a
+ * straight sequence of calls to the OpcodeOps method for each opcode, with the
+ * literals as constants. The JIT can then inline the whole run.
+ *
+ * The classes are defined as hidden classes of this package, which are
+ * unloaded along with the program they belong to. Defining hidden classes
+ * needs JDK 15 or later, so it is left to the subclass in
+ * org.spiderland.Psh.hidden, which is found by name, as the SIMD vector
+ * kernels are. Without it, nothing is compiled.
+ */
+
+public abstract class SegmentCompiler {
+
+	// Longest run to compile into one class. Longer runs make methods which
+	// the JIT is slow to compile, and no faster once it has
+	static final int MAX_LENGTH = 32;
+
+	private static final String OPS = "org/spiderland/Psh/OpcodeOps";
+	private static final String SEGMENT = "org/spiderland/Psh/CompiledSegment";
+	private static final String INTERPRETER = "Lorg/spiderland/Psh/Interpreter;";
+	private static final String PROGRAM = "Lorg/spiderland/Psh/CompiledProgram;";
+
+	// The OpcodeOps method for each opcode which takes just the interpreter
+	private static final HashMap<Integer, String> _methods = new HashMap<Integer, String>();
+
+	static {
+		_methods.put(OpcodeProgram.INT_ADD, "IntAdd");
+		_methods.put(OpcodeProgram.INT_SUB, "IntSub");
+		_methods.put(OpcodeProgram.INT_MUL, "IntMul");
+		_methods.put(OpcodeProgram.INT_DIV, "IntDiv");
+		_methods.put(OpcodeProgram.INT_MOD, "IntMod");
+		_methods.put(OpcodeProgram.INT_MIN, "IntMin");
+		_methods.put(OpcodeProgram.INT_MAX, "IntMax");
+		_methods.put(OpcodeProgram.INT_ABS, "IntAbs");
+		_methods.put(OpcodeProgram.INT_NEG, "IntNeg");
+		_methods.put(OpcodeProgram.INT_LT, "IntLessThan");
+		_methods.put(OpcodeProgram.INT_GT, "IntGreaterThan");
+		_methods.put(OpcodeProgram.INT_EQ, "IntEquals");
+		_methods.put(OpcodeProgram.INT_FROMFLOAT, "IntFromFloat");
+		_methods.put(OpcodeProgram.INT_FROMBOOL, "IntFromBool");
+
+		_methods.put(OpcodeProgram.FLOAT_ADD, "FloatAdd");
+		_methods.put(OpcodeProgram.FLOAT_SUB, "FloatSub");
+		_methods.put(OpcodeProgram.FLOAT_MUL, "FloatMul");
+		_methods.put(OpcodeProgram.FLOAT_DIV, "FloatDiv");
+		_methods.put(OpcodeProgram.FLOAT_MOD, "FloatMod");
+		_methods.put(OpcodeProgram.FLOAT_MIN, "FloatMin");
+		_methods.put(OpcodeProgram.FLOAT_MAX, "FloatMax");
+		_methods.put(OpcodeProgram.FLOAT_ABS, "FloatAbs");
+		_methods.put(OpcodeProgram.FLOAT_NEG, "FloatNeg");
+		_methods.put(OpcodeProgram.FLOAT_SIN, "FloatSin");
+		_methods.put(OpcodeProgram.FLOAT_COS, "FloatCos");
+		_methods.put(OpcodeProgram.FLOAT_LT, "FloatLessThan");
+		_methods.put(OpcodeProgram.FLOAT_GT, "FloatGreaterThan");
+		_methods.put(OpcodeProgram.FLOAT_EQ, "FloatEquals");
+		_methods.put(OpcodeProgram.FLOAT_FROMINT, "FloatFromInt");
+		_methods.put(OpcodeProgram.FLOAT_FROMBOOL, "FloatFromBool");
+
+		_methods.put(OpcodeProgram.BOOL_AND, "BoolAnd");
+		_methods.put(OpcodeProgram.BOOL_OR, "BoolOr");
+		_methods.put(OpcodeProgram.BOOL_XOR, "BoolXor");
+		_methods.put(OpcodeProgram.BOOL_EQ, "BoolEquals");
+		_methods.put(OpcodeProgram.BOOL_NOT, "BoolNot");
+		_methods.put(OpcodeProgram.BOOL_FROMINT, "BoolFromInt");
+		_methods.put(OpcodeProgram.BOOL_FROMFLOAT, "BoolFromFloat");
+	}
+
+	/**
+	 * The compiler, or null if classes can't be compiled here.
+	 */
+	static final SegmentCompiler COMPILER = Select();
+
+	private static SegmentCompiler Select() {
+		try {
+			return (SegmentCompiler) Class.forName("org.spiderland.Psh.hidden.HiddenSegmentCompiler").newInstance();
+		} catch (Throwable e) {
+			// An older JDK, or the package wasn't compiled
+			return null;
+		}
+	}
+
+	/**
+	 * Defines a hidden class of this package from a class file.
+	 */
+	protected abstract Class<?> DefineClass(byte inClassFile[]) throws Exception;
+
+	/**
+	 * Returns true if an opcode can be part of a compiled run.
+	 */
+
+	static boolean IsCompilable(int inOp) {
+		switch (inOp) {
+		case OpcodeProgram.INT:
+		case OpcodeProgram.FLOAT:
+		case OpcodeProgram.BOOL:
+		case OpcodeProgram.VECTOR:
+		case OpcodeProgram.NAME:
+		case OpcodeProgram.POP:
+		case OpcodeProgram.DUP:
+		case OpcodeProgram.SWAP:
+		case OpcodeProgram.ROT:
+		case OpcodeProgram.FLUSH:
+		case OpcodeProgram.DEPTH:
+			return true;
+		default:
+			return _methods.containsKey(inOp);
+		}
+	}
+
+	/**
+	 * Compiles the atoms inStart to inEnd - 1 of a program, all of which must
+	 * be compilable.
+	 */
+
+	CompiledSegment Compile(OpcodeProgram inProgram, int inStart, int inEnd) {
+		// hidden classes are told apart by a suffix the JVM adds to the name
+		String name = "org/spiderland/Psh/GeneratedSegment";
+
+		try {
+			byte classFile[] = new ClassFile(name).Write(inProgram, inStart, inEnd);
+			Class<?> c = DefineClass(classFile);
+
+			return (CompiledSegment) c.getDeclaredConstructor().newInstance();
+		} catch (Exception e) {
+			throw new RuntimeException("Failed to compile program segment", e);
+		}
+	}
+
+	/**
+	 * Writes a class file for one segment.
+	 */
+
+	private static class ClassFile {
+		private final String _name;
+
+		private final ByteArrayOutputStream _pool = new ByteArrayOutputStream();
+		private final DataOutputStream _poolOut = new DataOutputStream(_pool);
+		private final HashMap<String, Integer> _entries = new HashMap<String, Integer>();
+		private int _poolCount = 1;
+
+		ClassFile(String inName) {
+			_name = inName;
+		}
+
+		byte[] Write(OpcodeProgram inProgram, int inStart, int inEnd) throws IOException {
+			ByteArrayOutputStream code = new ByteArrayOutputStream();
+			DataOutputStream c = new DataOutputStream(code);
+
+			for (int n = inStart; n < inEnd; n++) {
+				int op = inProgram._ops[n];
+
+				c.writeByte(0x2b); // aload_1
+
+				switch (op) {
+				case OpcodeProgram.INT:
+					Int(c, inProgram._ints[n]);
+					Call(c, "PushInt", "(" + INTERPRETER + "I)V");
+					break;
+				case OpcodeProgram.FLOAT:
+					c.writeByte(0x13); // ldc_w
+					c.writeShort(Constant(4, Float.floatToRawIntBits(inProgram._floats[n])));
+					Call(c, "PushFloat", "(" + INTERPRETER + "F)V");
+					break;
+				case OpcodeProgram.BOOL:
+					Int(c, inProgram._ints[n]);
+					Call(c, "PushBool", "(" + INTERPRETER + "Z)V");
+					break;
+				case OpcodeProgram.VECTOR:
+					c.writeByte(0x2c); // aload_2
+					Int(c, n);
+					Call(c, "PushVector", "(" + INTERPRETER + PROGRAM + "I)V");
+					break;
+				case OpcodeProgram.NAME:
+					c.writeByte(0x2c); // aload_2
+					Int(c, n);
+					Call(c, "PushName", "(" + INTERPRETER + PROGRAM + "I)V");
+					break;
+				case OpcodeProgram.POP:
+				case OpcodeProgram.DUP:
+				case OpcodeProgram.SWAP:
+				case OpcodeProgram.ROT:
+				case OpcodeProgram.FLUSH:
+				case OpcodeProgram.DEPTH:
+					Int(c, inProgram._operands[n]);
+					Call(c, StackMethod(op), "(" + INTERPRETER + "I)V");
+					break;
+				default:
+					Call(c, _methods.get(op), "(" + INTERPRETER + ")V");
+				}
+			}
+			c.writeByte(0xb1); // return
+
+			int thisClass = ClassRef(_name);
+			int superClass = ClassRef(SEGMENT);
+			int superInit = MethodRef(SEGMENT, "<init>", "()V");
+			int codeName = Utf8("Code");
+			int initName = Utf8("<init>");
+			int initType = Utf8("()V");
+			int runName = Utf8("Run");
+			int runType = Utf8("(" + INTERPRETER + PROGRAM + ")V");
+
+			ByteArrayOutputStream result = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(result);
+
+			out.writeInt(0xcafebabe);
+			out.writeShort(0);
+			out.writeShort(50); // Java 6, so that no stack map is needed
+			out.writeShort(_poolCount);
+			_poolOut.flush();
+			_pool.writeTo(out);
+
+			out.writeShort(0x0010 | 0x0020); // final super
+			out.writeShort(thisClass);
+			out.writeShort(superClass);
+			out.writeShort(0); // interfaces
+			out.writeShort(0); // fields
+			out.writeShort(2); // methods
+
+			// The constructor
+			out.writeShort(0x0001);
+			out.writeShort(initName);
+			out.writeShort(initType);
+			out.writeShort(1);
+			byte init[] = { 0x2a, (byte) 0xb7, (byte) (superInit >> 8), (byte) superInit, (byte) 0xb1 };
+			WriteCode(out, codeName, 1, 1, init);
+
+			// Run
+			out.writeShort(0x0001);
+			out.writeShort(runName);
+			out.writeShort(runType);
+			out.writeShort(1);
+			WriteCode(out, codeName, 3, 3, code.toByteArray());
+
+			out.writeShort(0); // class attributes
+
+			return result.toByteArray();
+		}
+
+		private static String StackMethod(int inOp) {
+			switch (inOp) {
+			case OpcodeProgram.POP:
+				return "Pop";
+			case OpcodeProgram.DUP:
+				return "Dup";
+			case OpcodeProgram.SWAP:
+				return "Swap";
+			case OpcodeProgram.ROT:
+				return "Rot";
+			case OpcodeProgram.FLUSH:
+				return "Flush";
+			default:
+				return "Depth";
+			}
+		}
+
+		private void WriteCode(DataOutputStream out, int inCodeName, int inMaxStack,
+				int inMaxLocals, byte inCode[]) throws IOException {
+			out.writeShort(inCodeName);
+			out.writeInt(12 + inCode.length);
+			out.writeShort(inMaxStack);
+			out.writeShort(inMaxLocals);
+			out.writeInt(inCode.length);
+			out.write(inCode);
+			out.writeShort(0); // exception table
+			out.writeShort(0); // attributes
+		}
+
+		private void Int(DataOutputStream c, int inValue) throws IOException {
+			if (inValue >= -1 && inValue <= 5) {
+				c.writeByte(0x03 + inValue); // iconst_<n>
+			} else if (inValue >= Byte.MIN_VALUE && inValue <= Byte.MAX_VALUE) {
+				c.writeByte(0x10); // bipush
+				c.writeByte(inValue);
+			} else if (inValue >= Short.MIN_VALUE && inValue <= Short.MAX_VALUE) {
+				c.writeByte(0x11); // sipush
+				c.writeShort(inValue);
+			} else {
+				c.writeByte(0x13); // ldc_w
+				c.writeShort(Constant(3, inValue));
+			}
+		}
+
+		private void Call(DataOutputStream c, String inMethod, String inType) throws IOException {
+			c.writeByte(0xb8); // invokestatic
+			c.writeShort(MethodRef(OPS, inMethod, inType));
+		}
+
+		//
+		// The constant pool
+		//
+
+		private int Entry(String inKey) throws IOException {
+			Integer index = _entries.get(inKey);
+
+			if (index != null)
+				return index;
+
+			_entries.put(inKey, _poolCount);
+			return -1;
+		}
+
+		private int Utf8(String inValue) throws IOException {
+			int index = Entry("Utf8 " + inValue);
+			if (index > 0)
+				return index;
+
+			_poolOut.writeByte(1);
+			_poolOut.writeUTF(inValue);
+			return _poolCount++;
+		}
+
+		private int Constant(int inTag, int inBits) throws IOException {
+			int index = Entry(inTag + " " + inBits);
+			if (index > 0)
+				return index;
+
+			_poolOut.writeByte(inTag);
+			_poolOut.writeInt(inBits);
+			return _poolCount++;
+		}
+
+		private int ClassRef(String inName) throws IOException {
+			int name = Utf8(inName);
+
+			int index = Entry("Class " + inName);
+			if (index > 0)
+				return index;
+
+			_poolOut.writeByte(7);
+			_poolOut.writeShort(name);
+			return _poolCount++;
+		}
+
+		private int MethodRef(String inClass, String inName, String inType) throws IOException {
+			int owner = ClassRef(inClass);
+			int name = Utf8(inName);
+			int type = Utf8(inType);
+
+			int nameAndType = Entry("NameAndType " + inName + " " + inType);
+			if (nameAndType < 0) {
+				_poolOut.writeByte(12);
+				_poolOut.writeShort(name);
+				_poolOut.writeShort(type);
+				nameAndType = _poolCount++;
+			}
+
+			int index = Entry("Method " + inClass + "." + inName + inType);
+			if (index > 0)
+				return index;
+
+			_poolOut.writeByte(10);
+			_poolOut.writeShort(owner);
+			_poolOut.writeShort(nameAndType);
+			return _poolCount++;
+		}
+	}
+}
@@ -20,6 +20,10 @@ import java.io.Serializable;
 
 /**
  * Abstract class for implementing stacks.
+ *
+ * A stack can be bounded, so that it keeps only the top entries, dropping
+ * the bottom one when another is pushed onto it full. The entries are then
+ * kept in a ring, from _bottom, and entry n of the stack is at at(n).
  */
 abstract class Stack implements Serializable {
 	private static final long serialVersionUID = 1L;
@@ -27,13 +31,73 @@ abstract class Stack implements Serializable {
 	protected int _size;
 	protected int _maxsize;
 
+	// the most entries a bounded stack keeps, or 0, and where its
+	// bottom entry is
+	protected int _bound;
+	protected int _bottom;
+
 	Stack() {
 		_size = 0;
 		resize(8);
 	}
 
+	/**
+	 * Makes room for inSize entries, with the bottom entry first, and sets
+	 * _bottom to 0 (see unwind()).
+	 */
 	abstract void resize(int inSize);
 
+	/**
+	 * Copies the entries, inWidth elements each, from one array to the start
+	 * of another, for resize().
+	 */
+	void unwind(Object inFrom, Object inTo, int inWidth) {
+		int first = Math.min(_size, _maxsize - _bottom);
+		System.arraycopy(inFrom, _bottom * inWidth, inTo, 0, first * inWidth);
+		System.arraycopy(inFrom, 0, inTo, first * inWidth, (_size - first) * inWidth);
+	}
+
+	/**
+	 * Returns where the entry at the given index is.
+	 */
+	final int at(int inIndex) {
+		int i = _bottom + inIndex;
+		return i < _maxsize ? i : i - _maxsize;
+	}
+
+	/**
+	 * Makes the stack keep at most the given number of entries, dropping
+	 * those at the bottom to do so, or any number if it is 0.
+	 */
+	public void setBound(int inBound) {
+		_bound = Math.max(0, inBound);
+		if (_bound > 0 && _size > _bound) {
+			_bottom = at(_size - _bound);
+			_size = _bound;
+		}
+
+		// there's always a free entry above the top
+		resize(_bound > 0 ? _bound + 1 : Math.max(_maxsize, 8));
+	}
+
+	public int getBound() {
+		return _bound;
+	}
+
+	/**
+	 * Called by a push which has filled the stack, to make room for the
+	 * next: by dropping the bottom entry, if the stack is bounded, or by
+	 * resizing to inSize.
+	 */
+	void overflow(int inSize) {
+		if (_bound > 0) {
+			_bottom = at(1);
+			_size--;
+		}
+		else
+			resize(inSize);
+	}
+
 	abstract void dup();
 
 	abstract void rot();
@@ -48,6 +112,7 @@ abstract class Stack implements Serializable {
 
 	public void clear() {
 		_size = 0;
+		_bottom = 0;
 	}
 
 	public int size() {
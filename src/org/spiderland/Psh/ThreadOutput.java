@@ -0,0 +1,82 @@
+/*
+ * Copyright 2009-2010 Jon Klein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spiderland.Psh;
+
+import java.io.*;
+
+/**
+ * Once installed, sends what each thread prints to System.out to an output
+ * of the thread's own, if it has been given one, so that work carried out at
+ * the same time in one JVM, such as the runs of a batch, each has its own
+ * printed output. Threads which a thread starts, such as a GA's evaluation
+ * threads, print to the same output as it does. Other threads print to the
+ * original System.out.
+ */
+
+public class ThreadOutput extends OutputStream {
+	private static PrintStream _original;
+
+	private static final InheritableThreadLocal<OutputStream> _outputs = new InheritableThreadLocal<OutputStream>();
+
+	private ThreadOutput() {
+	}
+
+	/**
+	 * Replaces System.out, unless it has been already.
+	 */
+	public static synchronized void Install() {
+		if (_original == null) {
+			_original = System.out;
+			System.setOut(new PrintStream(new ThreadOutput(), true));
+		}
+	}
+
+	/**
+	 * Returns the System.out which was replaced.
+	 */
+	public static synchronized PrintStream Original() {
+		return (_original == null) ? System.out : _original;
+	}
+
+	/**
+	 * Sends what the calling thread prints to the given output, or to the
+	 * original System.out if it is null.
+	 */
+	public static void Set(OutputStream inOutput) {
+		if (inOutput == null)
+			_outputs.remove();
+		else
+			_outputs.set(inOutput);
+	}
+
+	private static OutputStream Output() {
+		OutputStream output = _outputs.get();
+		return (output == null) ? _original : output;
+	}
+
+	public void write(int inByte) throws IOException {
+		Output().write(inByte);
+	}
+
+	public void write(byte inBytes[], int inOffset, int inLength) throws IOException {
+		Output().write(inBytes, inOffset, inLength);
+	}
+
+	public void flush() throws IOException {
+		Output().flush();
+	}
+}
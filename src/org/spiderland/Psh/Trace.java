@@ -0,0 +1,445 @@
+/*
+ * Copyright 2009-2010 Jon Klein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spiderland.Psh;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+/**
+ * A recording of the atoms executed from the start of a compiled program, which
+ * can be replayed without going through the exec stack.
+ *
+ * The interpreter records a trace the first few times a program is entered, and
+ * replays it on later entries. A trace follows execution into subprograms and
+ * through exec.if and exec.iflt, until it reaches an atom whose effect on the
+ * exec stack depends on more than the program: the exec stack instructions,
+ * the code.do* loops, vector.zip and vector.apply, and the like. Replaying
+ * runs the recorded atoms one after another, as pre-resolved runs of the
+ * programs they came from, and only writes the exec stack once, at the end.
+ *
+ * Branches are guarded: if a branch goes the other way from when the trace was
+ * recorded, or the step limit would be reached before the next guard, the
+ * exec stack is rebuilt as it was at the last guard, and the interpreter
+ * carries on from there in the usual way. The results, including step counts,
+ * are the same as without the trace.
+ */
+
+final class Trace {
+
+	// Times a program is entered before its trace is recorded
+	static final int RECORD_AFTER = 2;
+
+	// Shortest trace worth replaying, and longest to record
+	static final int MIN_STEPS = 8;
+	static final int MAX_STEPS = 10000;
+
+	// Operations
+	static final byte RUN = 0; // atoms of a compiled program, in order
+	static final byte SKIP = 1; // entering a subprogram, which only uses exec
+	static final byte EXECUTE = 2; // an instruction named by a string
+	static final byte ATOM = 3; // anything else, passed to ExecuteInstruction
+	static final byte BRANCH = 4;
+
+	// Instructions which use the exec stack other than through a field
+	private static final HashSet<Class<?>> _execClasses = new HashSet<Class<?>>();
+
+	static {
+		_execClasses.add(Quote.class);
+		_execClasses.add(CodeDoRange.class);
+		_execClasses.add(CodeDoTimes.class);
+		_execClasses.add(CodeDoCount.class);
+		_execClasses.add(EvaluateSolution.class);
+		_execClasses.add(PushFrame.class);
+		_execClasses.add(PopFrame.class);
+		_execClasses.add(VectorZip.class);
+		_execClasses.add(VectorApply.class);
+	}
+
+	private final CompiledProgram _program;
+
+	private int _length;
+	private byte _ops[] = new byte[16];
+	private CompiledProgram _programs[] = new CompiledProgram[16];
+	private Object _objects[] = new Object[16];
+	private int _starts[] = new int[16];
+	private int _lengths[] = new int[16];
+
+	// For branches, the branch taken, whether the instruction branched on the
+	// exec stack, and if so the number of exec stack items above the
+	// program's after the branch atom was popped
+	private int _branches[] = new int[16];
+	private boolean _bound[] = new boolean[16];
+	private int _branchSizes[] = new int[16];
+
+	// Checkpoints, before each branch and each instruction which can halt,
+	// and at the end: the operation and step they come before, and the exec
+	// stack above the program's entry at that point
+	private int _checkpoints;
+	private int _checkpointOps[] = new int[4];
+	private int _checkpointSteps[] = new int[4];
+	private Object _entries[][] = new Object[4][];
+	private int _cursors[][] = new int[4][];
+	private int _items[] = new int[4];
+
+	// The step of the first checkpoint before an instruction which halts
+	// execution once the move limit has been reached, or -1
+	private int _haltStep = -1;
+
+	// Times replayed, and times a guard failed
+	private int _replays;
+	private int _failures;
+
+	Trace(CompiledProgram inProgram) {
+		_program = inProgram;
+	}
+
+	/**
+	 * Returns true if an instruction only uses the stacks of the interpreter
+	 * other than the exec stack, so that its effect on the exec stack is just
+	 * that of being popped.
+	 */
+
+	static boolean IsDataOnly(Instruction inInstruction) {
+		Class<?> c = inInstruction.getClass();
+
+		if (!c.getName().startsWith("org.spiderland.Psh.")
+				|| _execClasses.contains(c))
+			return false;
+
+		if (inInstruction instanceof ObjectStackInstruction) {
+			ObjectStackInstruction s = (ObjectStackInstruction) inInstruction;
+
+			if (s._stack == null)
+				return s._stackType != Interpreter.StackFrame.EXEC;
+
+			return !(s._stack instanceof ExecStack);
+		}
+
+		if (inInstruction instanceof StackInstruction) {
+			StackInstruction s = (StackInstruction) inInstruction;
+
+			if (s._stack == null)
+				return s._stackType != Interpreter.StackFrame.EXEC;
+
+			return !(s._stack instanceof ExecStack);
+		}
+
+		return true;
+	}
+
+	/**
+	 * Executes the interpreter's program from the start, as Interpreter.Step
+	 * does, and records a trace of it. The program must be on top of the exec
+	 * stack, with its cursor at its first atom.
+	 *
+	 * @return The number of steps executed.
+	 */
+
+	int Record(Interpreter inI, int inMaxSteps) {
+		ExecStack estack = inI._execStack;
+		int baseEntries = estack.Entries() - 1;
+		int baseSize = estack.size() - _program._size;
+		int steps = 0;
+
+		while (steps != inMaxSteps && steps < MAX_STEPS
+				&& estack.Entries() > baseEntries) {
+			int cursor = estack.TopCursor();
+			CompiledProgram q = null;
+			Object atom;
+
+			if (cursor >= 0) {
+				Program p = estack.TopProgram();
+				if (p instanceof CompiledProgram && p._interpreter == inI)
+					q = (CompiledProgram) p;
+				atom = p._stack[cursor];
+			} else {
+				atom = estack.top();
+			}
+
+			// What executing the atom does
+			byte op;
+			Object object = atom;
+
+			if (q != null) {
+				switch (q._kinds[cursor]) {
+				case CompiledProgram.INSTRUCTION:
+					object = q._instructions[cursor];
+					op = RUN;
+					break;
+				case CompiledProgram.INTEGER:
+				case CompiledProgram.FLOAT:
+				case CompiledProgram.VECTOR:
+				case CompiledProgram.NAME:
+					op = RUN;
+					break;
+				case CompiledProgram.PROGRAM:
+					op = SKIP;
+					break;
+				default:
+					return End(inI, baseEntries, baseSize, steps);
+				}
+			} else if (atom instanceof Program) {
+				op = SKIP;
+			} else if (atom instanceof Instruction) {
+				op = ATOM;
+			} else if (atom instanceof String) {
+				object = inI._instructions.get(atom);
+
+				if (object != null)
+					op = EXECUTE;
+				else if (((String) atom).startsWith("<"))
+					return End(inI, baseEntries, baseSize, steps);
+				else {
+					object = atom;
+					op = ATOM;
+				}
+			} else if (atom instanceof Number || atom instanceof float[]) {
+				op = ATOM;
+			} else {
+				return End(inI, baseEntries, baseSize, steps);
+			}
+
+			if (object instanceof BranchInstruction && op != SKIP) {
+				// A branch popped as an ordinary item may halt execution
+				if (op == ATOM)
+					return End(inI, baseEntries, baseSize, steps);
+
+				BranchInstruction b = (BranchInstruction) object;
+
+				Checkpoint(inI, baseEntries, baseSize, steps);
+
+				// Execute the branch in its two halves
+				estack.popdiscard();
+
+				ObjectStack stack = b.targetStack(inI);
+				boolean bound = (stack == estack);
+				int size = stack.size();
+				int branch = b.Test(inI, size);
+
+				// Whether the item pushed is one of the program's
+				boolean known = branch < 0
+						|| (bound && estack.size() - baseSize >= 2);
+
+				b.Branch(inI, branch);
+				steps++;
+
+				if (!known) {
+					// End the trace at the checkpoint before the branch
+					if (steps - 1 < MIN_STEPS)
+						Clear();
+					return steps;
+				}
+
+				Add(BRANCH, null, b, 0);
+				_branches[_length - 1] = branch;
+				_bound[_length - 1] = bound;
+				_branchSizes[_length - 1] = size - baseSize;
+				continue;
+			}
+
+			if (object instanceof Instruction
+					&& !IsDataOnly((Instruction) object))
+				return End(inI, baseEntries, baseSize, steps);
+
+			if (op == ATOM && object instanceof Instruction) {
+				Checkpoint(inI, baseEntries, baseSize, steps);
+				if (_haltStep < 0)
+					_haltStep = steps;
+			}
+
+			// Execute the atom as Interpreter.Step would
+			if (q != null) {
+				estack.popdiscard();
+				inI.ExecuteAtom(q, cursor);
+			} else {
+				inI.ExecuteInstruction(estack.pop());
+			}
+
+			if (inI.haltExecution) {
+				// The interpreter won't run again, nor count the step
+				Clear();
+				return steps;
+			}
+
+			steps++;
+
+			if (op == RUN && _length > 0 && _ops[_length - 1] == RUN
+					&& _programs[_length - 1] == q
+					&& _starts[_length - 1] + _lengths[_length - 1] == cursor)
+				_lengths[_length - 1]++;
+			else
+				Add(op, q, object, cursor);
+		}
+
+		return End(inI, baseEntries, baseSize, steps);
+	}
+
+	private void Add(byte inOp, CompiledProgram inProgram, Object inObject,
+			int inStart) {
+		if (_length == _ops.length) {
+			int size = _length * 2;
+
+			_ops = Arrays.copyOf(_ops, size);
+			_programs = Arrays.copyOf(_programs, size);
+			_objects = Arrays.copyOf(_objects, size);
+			_starts = Arrays.copyOf(_starts, size);
+			_lengths = Arrays.copyOf(_lengths, size);
+			_branches = Arrays.copyOf(_branches, size);
+			_bound = Arrays.copyOf(_bound, size);
+			_branchSizes = Arrays.copyOf(_branchSizes, size);
+		}
+
+		_ops[_length] = inOp;
+		_programs[_length] = inProgram;
+		_objects[_length] = inObject;
+		_starts[_length] = inStart;
+		_lengths[_length] = 1;
+		_length++;
+	}
+
+	private void Checkpoint(Interpreter inI, int inBaseEntries, int inBaseSize,
+			int inSteps) {
+		if (_checkpoints == _items.length) {
+			int size = _checkpoints * 2;
+
+			_checkpointOps = Arrays.copyOf(_checkpointOps, size);
+			_checkpointSteps = Arrays.copyOf(_checkpointSteps, size);
+			_entries = Arrays.copyOf(_entries, size);
+			_cursors = Arrays.copyOf(_cursors, size);
+			_items = Arrays.copyOf(_items, size);
+		}
+
+		ExecStack estack = inI._execStack;
+
+		_checkpointOps[_checkpoints] = _length;
+		_checkpointSteps[_checkpoints] = inSteps;
+		_entries[_checkpoints] = estack.CopyEntries(inBaseEntries);
+		_cursors[_checkpoints] = estack.CopyCursors(inBaseEntries);
+		_items[_checkpoints] = estack.size() - inBaseSize;
+		_checkpoints++;
+	}
+
+	private int End(Interpreter inI, int inBaseEntries, int inBaseSize,
+			int inSteps) {
+		if (inSteps < MIN_STEPS)
+			Clear();
+		else
+			Checkpoint(inI, inBaseEntries, inBaseSize, inSteps);
+
+		return inSteps;
+	}
+
+	// Leaves nothing to replay
+	private void Clear() {
+		_length = 0;
+		_checkpoints = 0;
+		_haltStep = -1;
+	}
+
+	/**
+	 * Replays the trace, with the program on top of the interpreter's exec
+	 * stack with its cursor at its first atom.
+	 *
+	 * @return The number of steps executed, which may be 0.
+	 */
+
+	int Replay(Interpreter inI, int inMaxSteps) {
+		if (_checkpoints == 0)
+			return 0;
+
+		_replays++;
+
+		int limit = inMaxSteps;
+
+		if (_haltStep >= 0
+				&& inI._context.MovesUsed()
+				&& (limit < 0 || limit > _haltStep))
+			limit = _haltStep;
+
+		if (limit >= 0 && _checkpointSteps[0] > limit)
+			return 0;
+
+		ExecStack estack = inI._execStack;
+		int baseEntries = estack.Entries() - 1;
+		int baseSize = estack.size() - _program._size;
+		int op = 0;
+
+		for (int c = 0;; c++) {
+			int end = _checkpointOps[c];
+
+			for (; op < end; op++) {
+				switch (_ops[op]) {
+				case RUN:
+					inI.RunAtoms(_programs[op], _starts[op], _starts[op] + _lengths[op]);
+					break;
+				case EXECUTE:
+					((Instruction) _objects[op]).Execute(inI);
+					break;
+				case ATOM:
+					inI.ExecuteInstruction(_objects[op]);
+					break;
+				}
+			}
+
+			if (c == _checkpoints - 1
+					|| (limit >= 0 && _checkpointSteps[c + 1] > limit))
+				return Restore(estack, c, baseEntries, baseSize);
+
+			if (_ops[op] != BRANCH)
+				continue;
+
+			BranchInstruction b = (BranchInstruction) _objects[op];
+			ObjectStack stack = b.targetStack(inI);
+			boolean bound = (stack == estack);
+
+			if (bound != _bound[op]) {
+				_failures++;
+				return Restore(estack, c, baseEntries, baseSize);
+			}
+
+			int branch = b.Test(inI, bound ? baseSize + _branchSizes[op] : stack.size());
+
+			if (branch != _branches[op]) {
+				// Leave the exec stack as the branch going this way would
+				_failures++;
+				int steps = Restore(estack, c, baseEntries, baseSize);
+				estack.popdiscard();
+				b.Branch(inI, branch);
+				return steps + 1;
+			}
+
+			op++;
+		}
+	}
+
+	/**
+	 * Returns true if the trace's guards fail so often that it should be
+	 * recorded again.
+	 */
+
+	boolean IsStale() {
+		return _failures > 16 && _failures * 2 > _replays;
+	}
+
+	private int Restore(ExecStack inStack, int inCheckpoint, int inBaseEntries,
+			int inBaseSize) {
+		inStack.RestoreEntries(inBaseEntries, inBaseSize, _entries[inCheckpoint],
+				_cursors[inCheckpoint], _items[inCheckpoint]);
+
+		return _checkpointSteps[inCheckpoint];
+	}
+}
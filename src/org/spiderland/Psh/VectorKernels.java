@@ -0,0 +1,320 @@
+/*
+ * Copyright 2009-2010 Jon Klein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spiderland.Psh;
+
+/**
+ * The arithmetic which the vector instructions carry out on the vectors of
+ * a vector stack's data(), element by element, limiting infinite results to
+ * the largest floats, as the instructions always have.
+ *
+ * These are the scalar kernels. When the jdk.incubator.vector module is
+ * available, the SIMD kernels in org.spiderland.Psh.simd are used instead,
+ * unless the system property psh.simd is false. They give the same results,
+ * except that the dot product and magnitude may differ in the last bits,
+ * since they add up the components in a different order.
+ */
+
+public class VectorKernels {
+
+	/**
+	 * The operations of a vector and a scalar, which a vector stack can
+	 * defer (see scalarOps()).
+	 */
+	public static final int ADD_SCALAR = 0;
+	public static final int SUB_SCALAR = 1;
+	public static final int MUL_SCALAR = 2;
+	public static final int DIV_SCALAR = 3;
+
+	/**
+	 * The kernels the vector instructions use.
+	 */
+	public static final VectorKernels KERNELS = Select();
+
+	private static VectorKernels Select() {
+		if (!Boolean.parseBoolean(System.getProperty("psh.simd", "true")))
+			return new VectorKernels();
+
+		try {
+			return (VectorKernels) Class.forName("org.spiderland.Psh.simd.SimdVectorKernels").newInstance();
+		} catch (Throwable e) {
+			// The module isn't there, or the SIMD kernels weren't compiled
+			return new VectorKernels();
+		}
+	}
+
+	/**
+	 * Adds the vector at inB to that at inA.
+	 */
+	public void add(float[] inData, int inA, int inB, int inLength) {
+		float temp;
+		for (int i = 0; i < inLength; i++) {
+			temp = inData[inA + i] + inData[inB + i];
+			if (Float.isInfinite(temp) && temp > 0) {
+				temp = Float.MAX_VALUE;
+			}
+			if (Float.isInfinite(temp) && temp < 0) {
+				temp = (1.0f - Float.MAX_VALUE);
+			}
+			inData[inA + i] = temp;
+		}
+	}
+
+	/**
+	 * Subtracts the vector at inB from that at inA.
+	 */
+	public void sub(float[] inData, int inA, int inB, int inLength) {
+		float temp;
+		for (int i = 0; i < inLength; i++) {
+			temp = inData[inA + i] - inData[inB + i];
+			if (Float.isInfinite(temp) && temp > 0) {
+				temp = Float.MAX_VALUE;
+			}
+			if (Float.isInfinite(temp) && temp < 0) {
+				temp = (1.0f - Float.MAX_VALUE);
+			}
+			inData[inA + i] = temp;
+		}
+	}
+
+	/**
+	 * Multiplies the vector at inA by that at inB. NaNs become 0.
+	 */
+	public void mul(float[] inData, int inA, int inB, int inLength) {
+		float temp;
+		for (int i = 0; i < inLength; i++) {
+			temp = inData[inA + i] * inData[inB + i];
+			if (Float.isInfinite(temp) && temp > 0) {
+				temp = Float.MAX_VALUE;
+			}
+			if (Float.isInfinite(temp) && temp < 0) {
+				temp = (1.0f - Float.MAX_VALUE);
+			}
+			if (Float.isNaN(temp)) {
+				temp = 0.0f;
+			}
+			inData[inA + i] = temp;
+		}
+	}
+
+	/**
+	 * Divides the vector at inA by that at inB. NaNs become 0.
+	 */
+	public void div(float[] inData, int inA, int inB, int inLength) {
+		float temp;
+		for (int i = 0; i < inLength; i++) {
+			temp = inData[inA + i] / inData[inB + i];
+			if (Float.isInfinite(temp) && temp > 0) {
+				temp = Float.MAX_VALUE;
+			}
+			if (Float.isInfinite(temp) && temp < 0) {
+				temp = (1.0f - Float.MAX_VALUE);
+			}
+			if (Float.isNaN(temp)) {
+				temp = 0.0f;
+			}
+			inData[inA + i] = temp;
+		}
+	}
+
+	/**
+	 * Adds inB to each component of the vector at inA.
+	 */
+	public void addScalar(float[] inData, int inA, int inLength, float inB) {
+		float temp;
+		for (int i = 0; i < inLength; i++) {
+			temp = inData[inA + i] + inB;
+			if (Float.isInfinite(temp) && temp > 0) {
+				temp = Float.MAX_VALUE;
+			}
+			if (Float.isInfinite(temp) && temp < 0) {
+				temp = (1.0f - Float.MAX_VALUE);
+			}
+			inData[inA + i] = temp;
+		}
+	}
+
+	/**
+	 * Subtracts inB from each component of the vector at inA.
+	 */
+	public void subScalar(float[] inData, int inA, int inLength, float inB) {
+		float temp;
+		for (int i = 0; i < inLength; i++) {
+			temp = inData[inA + i] - inB;
+			if (Float.isInfinite(temp) && temp > 0) {
+				temp = Float.MAX_VALUE;
+			}
+			if (Float.isInfinite(temp) && temp < 0) {
+				temp = (1.0f - Float.MAX_VALUE);
+			}
+			inData[inA + i] = temp;
+		}
+	}
+
+	/**
+	 * Multiplies each component of the vector at inA by inB. NaNs become 0.
+	 */
+	public void mulScalar(float[] inData, int inA, int inLength, float inB) {
+		float temp;
+		for (int i = 0; i < inLength; i++) {
+			temp = inData[inA + i] * inB;
+			if (Float.isInfinite(temp) && temp > 0) {
+				temp = Float.MAX_VALUE;
+			}
+			if (Float.isInfinite(temp) && temp < 0) {
+				temp = (1.0f - Float.MAX_VALUE);
+			}
+			if (Float.isNaN(temp)) {
+				temp = 0.0f;
+			}
+			inData[inA + i] = temp;
+		}
+	}
+
+	/**
+	 * Divides each component of the vector at inA by inB. NaNs become 0.
+	 */
+	public void divScalar(float[] inData, int inA, int inLength, float inB) {
+		float temp;
+		for (int i = 0; i < inLength; i++) {
+			temp = inData[inA + i] / inB;
+			if (Float.isInfinite(temp) && temp > 0) {
+				temp = Float.MAX_VALUE;
+			}
+			if (Float.isInfinite(temp) && temp < 0) {
+				temp = (1.0f - Float.MAX_VALUE);
+			}
+			if (Float.isNaN(temp)) {
+				temp = 0.0f;
+			}
+			inData[inA + i] = temp;
+		}
+	}
+
+	/**
+	 * Carries out inCount operations of the vector at inA and a scalar, the
+	 * operations and scalars being those in inOps and inScalars from inFirst,
+	 * in one pass over the vector. The result is the same as that of the
+	 * kernels for the operations, one after another.
+	 */
+	public void scalarOps(float[] inData, int inA, int inLength, int[] inOps, float[] inScalars,
+			int inFirst, int inCount) {
+		float temp;
+		for (int i = 0; i < inLength; i++) {
+			temp = inData[inA + i];
+			for (int op = inFirst; op < inFirst + inCount; op++) {
+				switch (inOps[op]) {
+				case ADD_SCALAR:
+					temp = Limit(temp + inScalars[op]);
+					break;
+				case SUB_SCALAR:
+					temp = Limit(temp - inScalars[op]);
+					break;
+				case MUL_SCALAR:
+					temp = LimitNaN(temp * inScalars[op]);
+					break;
+				case DIV_SCALAR:
+					temp = LimitNaN(temp / inScalars[op]);
+					break;
+				}
+			}
+			inData[inA + i] = temp;
+		}
+	}
+
+	/**
+	 * Limits an infinite value to the largest float.
+	 */
+	protected static float Limit(float inValue) {
+		float result = inValue;
+		if (Float.isInfinite(result) && result > 0) {
+			result = Float.MAX_VALUE;
+		}
+		if (Float.isInfinite(result) && result < 0) {
+			result = (1.0f - Float.MAX_VALUE);
+		}
+		return result;
+	}
+
+	/**
+	 * Limits an infinite value to the largest float, and makes NaN 0.
+	 */
+	protected static float LimitNaN(float inValue) {
+		float result = Limit(inValue);
+		if (Float.isNaN(result)) {
+			result = 0.0f;
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the dot product of the vectors at inA and inB.
+	 */
+	public float dot(float[] inData, int inA, int inB, int inLength) {
+		float result = 0;
+		for (int i = 0; i < inLength; i++) {
+			result += inData[inA + i] * inData[inB + i];
+		}
+		return Limit(result);
+	}
+
+	/**
+	 * Returns the magnitude of the vector at inA.
+	 */
+	public float mag(float[] inData, int inA, int inLength) {
+		double result = 0;
+		for (int i = 0; i < inLength; i++) {
+			result += inData[inA + i] * inData[inA + i];
+		}
+		return Magnitude(result);
+	}
+
+	/**
+	 * Returns the magnitude of a vector, given the sum of the squares of its
+	 * components.
+	 */
+	protected static float Magnitude(double inSumOfSquares) {
+		double result = Math.sqrt(inSumOfSquares);
+		if (Double.isInfinite(result) && result > 0) {
+			result = Float.MAX_VALUE;
+		}
+		if (Double.isInfinite(result) && result < 0) {
+			result = (1.0f - Float.MAX_VALUE);
+		}
+		return (float) result;
+	}
+
+	/**
+	 * Moves the vector at inA by inF of the way to that at inB. Components
+	 * which would be NaN are left as they are.
+	 */
+	public void between(float[] inData, int inA, int inB, int inLength, float inF) {
+		float temp;
+		for (int i = 0; i < inLength; i++) {
+			temp = inData[inA + i] + (inF * (inData[inB + i] - inData[inA + i]));
+			if (Float.isInfinite(temp) && temp > 0) {
+				temp = Float.MAX_VALUE;
+			}
+			if (Float.isInfinite(temp) && temp < 0) {
+				temp = (1.0f - Float.MAX_VALUE);
+			}
+			if (Float.isNaN(temp)) {
+				temp = inData[inA + i];
+			}
+			inData[inA + i] = temp;
+		}
+	}
+}
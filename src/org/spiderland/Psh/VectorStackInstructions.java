@@ -1,13 +1,14 @@
 package org.spiderland.Psh;
 
-import java.util.Arrays;
 import java.util.Random;
 
-import optimisation.PopulationOptimisation;
-
 /**
  * Dummy class, so that I can keep all the vector stack
  * instructions together in one file.
+ *
+ * The instructions work on the vectors where they are on the
+ * vector stack, writing their results over their arguments
+ * or into new slots, so that they don't make new arrays.
  */
 public class VectorStackInstructions {
 
@@ -29,9 +30,9 @@ class VectorGetComponent extends Instruction {
 		intStack istack = inI.intStack();
 		
 		if(vstack.size() > 0 && istack.size() > 0) {
-			int dim = istack.pop() % vstack._dims;
-			if(dim>=0 && dim<vstack._dims) {
-				fstack.push(vstack.top()[dim]);
+			int dim = istack.pop() % inI._context._dims;
+			if(dim>=0 && dim<inI._context._dims) {
+				fstack.push(vstack.data()[vstack.component(vstack.size() - 1, dim)]);
 			}
 		}
 	}
@@ -54,12 +55,14 @@ class VectorSetComponent extends Instruction {
 		intStack istack = inI.intStack();
 		
 		if(fstack.size() > 0 && istack.size() > 0 && vstack.size() > 0) {
-			float[] v = vstack.pop();
-			int dim = istack.pop() % v.length;
-			if(dim>=0 && dim<v.length) {
-				float[] result = Arrays.copyOf(v, v.length);
-				result[dim] = fstack.pop();
-				vstack.push(result);
+			int top = vstack.size() - 1;
+			int length = vstack.length(top);
+			int dim = istack.pop() % length;
+			if(dim>=0 && dim<length) {
+				vstack.data()[vstack.offset(top) + dim] = fstack.pop();
+			}
+			else {
+				vstack.popdiscard();
 			}
 		}
 	}
@@ -77,13 +80,13 @@ class VectorFromFloats extends Instruction {
 		vectorStack vstack = inI.vectorStack();
 		floatStack fstack = inI.floatStack();
 		
-		if(fstack.size() >= vstack._dims) {
-			float[] v = new float[vstack._dims];
+		if(fstack.size() >= inI._context._dims) {
+			int v = vstack.pushSlot(inI._context._dims);
+			float[] data = vstack.data();
 			// fill in reverse, consistent with VectorToFloats
-			for(int i=v.length-1; i>=0; i--) {
-				v[i] = fstack.pop();
+			for(int i=inI._context._dims-1; i>=0; i--) {
+				data[v + i] = fstack.pop();
 			}
-			vstack.push(v);
 		}
 	}
 }
@@ -103,10 +106,14 @@ class VectorToFloats extends Instruction {
 		
 		// only if there are enough floats on the float stack
 		if(vstack.size() > 0) {
-			float[] v = vstack.pop();
-			for(int i=0; i<v.length; i++) {
-				fstack.push(v[i]);
+			int top = vstack.size() - 1;
+			int v = vstack.offset(top);
+			int length = vstack.length(top);
+			float[] data = vstack.data();
+			for(int i=0; i<length; i++) {
+				fstack.push(data[v + i]);
 			}
+			vstack.popdiscard();
 		}
 	}
 }
@@ -118,22 +125,21 @@ class VectorToFloats extends Instruction {
  */
 class VectorRand extends Instruction {
 	private static final long serialVersionUID = 1L;
-	
-	Random _RNG;
 
 	@Override
 	public void Execute(Interpreter inI) {
-		if(_RNG==null) _RNG=inI._RNG;
+		Random rng = inI._RNG;
 		
 		vectorStack vstack = inI.vectorStack();
-		float[] rnd = new float[vstack._dims];
+		int length = inI._context._dims;
+		int rnd = vstack.pushSlot(length);
+		float[] data = vstack.data();
 		float range = (inI._maxRandomFloat - inI._minRandomFloat)
 				/ inI._randomFloatResolution;
-		for(int i=0; i<rnd.length; i++) {
-			rnd[i] = (_RNG.nextFloat() * range * inI._randomFloatResolution)
+		for(int i=0; i<length; i++) {
+			data[rnd + i] = (rng.nextFloat() * range * inI._randomFloatResolution)
 					+ inI._minRandomFloat;
 		}
-		inI.vectorStack().push(rnd);
 	}
 }
 
@@ -144,29 +150,21 @@ class VectorRand extends Instruction {
  */
 class VectorRandWithLimits extends Instruction {
 	private static final long serialVersionUID = 1L;
-	
-	Random _RNG;
-	static float _lowerLimit;
-	static float _upperLimit;
-	
-	// TODO: find a better solution than using statics
-	public static void setLimits(float lower, float upper) {
-		_lowerLimit = lower;
-		_upperLimit = upper;
-	}
 
 	@Override
 	public void Execute(Interpreter inI) {
-		if(_RNG==null) _RNG=inI._RNG;
+		Random rng = inI._RNG;
 		
 		vectorStack vstack = inI.vectorStack();
-		float[] rnd = new float[vstack._dims];
-		float range = (_upperLimit - _lowerLimit);
-		for(int i=0; i<rnd.length; i++) {
-			rnd[i] = (_RNG.nextFloat() * range)
-					+ _lowerLimit;
+		EvaluationContext context = inI._context;
+		int length = context._dims;
+		int rnd = vstack.pushSlot(length);
+		float[] data = vstack.data();
+		float range = (context._upperLimit - context._lowerLimit);
+		for(int i=0; i<length; i++) {
+			data[rnd + i] = (rng.nextFloat() * range)
+					+ context._lowerLimit;
 		}
-		inI.vectorStack().push(rnd);
 	}
 }
 
@@ -180,31 +178,32 @@ class VectorRandWithLimits extends Instruction {
  */
 class VectorRandWithWidth extends Instruction {
 	private static final long serialVersionUID = 1L;
-	
-	Random _RNG;
 
 	@Override
 	public void Execute(Interpreter inI) {
-		if(_RNG==null) _RNG=inI._RNG;
+		Random rng = inI._RNG;
 		
 		vectorStack vstack = inI.vectorStack();
 		floatStack fstack = inI.floatStack();
-		float[] rnd = new float[vstack._dims];
 		float range = fstack.pop();
-		for(int i=0; i<rnd.length; i++) {
-			rnd[i] = (_RNG.nextFloat() * 2.0f * range)
+		int length = inI._context._dims;
+		int rnd = vstack.pushSlot(length);
+		float[] data = vstack.data();
+		float temp;
+		for(int i=0; i<length; i++) {
+			temp = (rng.nextFloat() * 2.0f * range)
 					- range;
-			if(Float.isInfinite(rnd[i]) && rnd[i] > 0){
-				rnd[i] = Float.MAX_VALUE;
+			if(Float.isInfinite(temp) && temp > 0){
+				temp = Float.MAX_VALUE;
 			}
-			if(Float.isInfinite(rnd[i]) && rnd[i] < 0){
-				rnd[i] = (1.0f - Float.MAX_VALUE);
+			if(Float.isInfinite(temp) && temp < 0){
+				temp = (1.0f - Float.MAX_VALUE);
 			}
-			if(Float.isNaN(rnd[i])){
-				rnd[i] = 0.0f;
+			if(Float.isNaN(temp)){
+				temp = 0.0f;
 			}
+			data[rnd + i] = temp;
 		}
-		inI.vectorStack().push(rnd);
 	}
 }
 
@@ -214,42 +213,48 @@ class VectorRandWithWidth extends Instruction {
  */
 class UnitVectorRand extends Instruction {
 	private static final long serialVersionUID = 1L;
-	
-	Random _RNG;
 
 	@Override
 	public void Execute(Interpreter inI) {
 		
-		if(_RNG==null) _RNG=inI._RNG;
+		Random rng = inI._RNG;
 		
 		vectorStack vstack = inI.vectorStack();
-		float[] rnd = new float[vstack._dims];
+		int length = inI._context._dims;
+		int rnd = vstack.pushSlot(length);
+		float[] data = vstack.data();
 		float range = (inI._maxRandomFloat - inI._minRandomFloat)
 				/ inI._randomFloatResolution;
-		for(int i=0; i<rnd.length; i++) {
-			rnd[i] = (_RNG.nextFloat() * range * inI._randomFloatResolution)
+		for(int i=0; i<length; i++) {
+			data[rnd + i] = (rng.nextFloat() * range * inI._randomFloatResolution)
 					+ inI._minRandomFloat;
 		}
 		double mag = 0;
-		for(int i=0; i<rnd.length; i++) {
-			mag += rnd[i] * rnd[i];
+		for(int i=0; i<length; i++) {
+			mag += data[rnd + i] * data[rnd + i];
 		}
 		mag = Math.sqrt(mag);
-		for(int i=0; i<rnd.length; i++) {
-			rnd[i] /= mag;
+		for(int i=0; i<length; i++) {
+			data[rnd + i] /= mag;
 		}
-		inI.vectorStack().push(rnd);
 	}
 }
 
 /**
  * Base class for instructions that take one vector
- * and one scalar as arguments and return a vector.
+ * and one scalar as arguments and return a vector,
+ * which is written over the vector. The vector stack
+ * may defer them (see vectorStack.defer()).
  */
 abstract class BinaryVectorScalarInstruction extends Instruction {
 	private static final long serialVersionUID = 1L;
 	
-	abstract float[] BinaryOperator(float[] inA, float inB);
+	abstract void BinaryOperator(float[] inData, int inA, int inLength, float inB);
+
+	/**
+	 * Returns the operation, as VectorKernels.scalarOps() knows it.
+	 */
+	abstract int Operation();
 
 	@Override
 	public void Execute(Interpreter inI) {
@@ -257,31 +262,35 @@ abstract class BinaryVectorScalarInstruction extends Instruction {
 		floatStack sstack = inI.floatStack();
 
 		if (astack.size() > 0 && sstack.size() > 0) {
-			float[] a = astack.pop();
+			int a = astack.size() - 1;
+			int length = astack.length(a);
 			float b = sstack.pop();
-			astack.push(BinaryOperator(a, b));
+			if (!astack.defer(a, Operation(), b))
+				BinaryOperator(astack.data(), astack.offset(a), length, b);
 		}
 	}
 }
 
 /**
  * Base class for instructions that take two vectors
- * as arguments and return a vector.
+ * as arguments and return a vector, which is written
+ * over the first.
  */
 abstract class BinaryVectorInstruction extends Instruction {
 	private static final long serialVersionUID = 1L;
 	
-	abstract float[] BinaryOperator(float[] inA, float[] inB);
+	abstract void BinaryOperator(float[] inData, int inA, int inB, int inLength);
 
 	@Override
 	public void Execute(Interpreter inI) {
 		vectorStack stack = inI.vectorStack();
 
 		if (stack.size() > 1) {
-			float[] a, b;
-			a = stack.pop();
-			b = stack.pop();
-			stack.push(BinaryOperator(b, a));
+			int a, b;
+			a = stack.size() - 1;
+			b = a - 1;
+			BinaryOperator(stack.data(), stack.offset(b), stack.offset(a), stack.length(b, a));
+			stack.popdiscard();
 		}
 	}
 }
@@ -293,7 +302,7 @@ abstract class BinaryVectorInstruction extends Instruction {
 abstract class BinaryVectorToScalarInstruction extends Instruction {
 	private static final long serialVersionUID = 1L;
 	
-	abstract float BinaryOperator(float[] inA, float[] inB);
+	abstract float BinaryOperator(float[] inData, int inA, int inB, int inLength);
 
 	@Override
 	public void Execute(Interpreter inI) {
@@ -301,10 +310,13 @@ abstract class BinaryVectorToScalarInstruction extends Instruction {
 		floatStack fstack = inI.floatStack();
 
 		if (vstack.size() > 1) {
-			float[] a, b;
-			a = vstack.pop();
-			b = vstack.pop();
-			fstack.push(BinaryOperator(b, a));
+			int a, b;
+			a = vstack.size() - 1;
+			b = a - 1;
+			float result = BinaryOperator(vstack.data(), vstack.offset(b), vstack.offset(a), vstack.length(b, a));
+			vstack.popdiscard();
+			vstack.popdiscard();
+			fstack.push(result);
 		}
 	}
 }
@@ -316,26 +328,32 @@ abstract class BinaryVectorToScalarInstruction extends Instruction {
 abstract class UnaryVectorScalarInstruction extends Instruction {
 	private static final long serialVersionUID = 1L;
 	
-	abstract float UnaryOperator(float[] inValue);
+	abstract float UnaryOperator(float[] inData, int inOffset, int inLength);
 
 	@Override
 	public void Execute(Interpreter inI) {
 		vectorStack astack = inI.vectorStack();
 		floatStack sstack = inI.floatStack();
 
-		if (astack.size() > 0)
-			sstack.push(UnaryOperator(astack.pop()));
+		if (astack.size() > 0) {
+			int a = astack.size() - 1;
+			float result = UnaryOperator(astack.data(), astack.offset(a), astack.length(a));
+			astack.popdiscard();
+			sstack.push(result);
+		}
 	}
 }
 
 /**
  * Base class for instructions that take a vector,
  * and two scalars as arguments and return a vector.
+ * The result is written over a copy of the vector,
+ * which is left on the stack.
  */
 abstract class TernaryVectorInstruction extends Instruction {
 	private static final long serialVersionUID = 1L;
 	
-	abstract float[] TernaryOperator(float[] inA, int inB, float inC);
+	abstract void TernaryOperator(float[] inData, int inA, int inLength, int inB, float inC);
 
 	@Override
 	public void Execute(Interpreter inI) {
@@ -344,10 +362,11 @@ abstract class TernaryVectorInstruction extends Instruction {
 		intStack istack = inI.intStack();
 
 		if (vstack.size() > 0 && fstack.size() > 0 && istack.size() > 0) {
-			float[] a = vstack.top();
 			float b = fstack.pop();
 			int c = istack.pop();
-			vstack.push(TernaryOperator(a, c, b));
+			vstack.dup();
+			int a = vstack.size() - 1;
+			TernaryOperator(vstack.data(), vstack.offset(a), vstack.length(a), c, b);
 		}
 	}
 }
@@ -360,20 +379,8 @@ class VectorAdd extends BinaryVectorInstruction {
 	private static final long serialVersionUID = 1L;
 	
 	@Override
-	float[] BinaryOperator(float[] inA, float[] inB) {
-		float[] result = new float[inA.length];
-		float temp;
-		for(int i=0; i<inA.length; i++) {
-			temp = inA[i]+inB[i];
-			if(Float.isInfinite(temp) && temp > 0){
-				temp = Float.MAX_VALUE;
-			}
-			if(Float.isInfinite(temp) && temp < 0){
-				temp = (1.0f - Float.MAX_VALUE);
-			}
-			result[i] = temp;
-		}
-		return result;
+	void BinaryOperator(float[] inData, int inA, int inB, int inLength) {
+		VectorKernels.KERNELS.add(inData, inA, inB, inLength);
 	}
 }
 
@@ -384,20 +391,8 @@ class VectorSub extends BinaryVectorInstruction {
 	private static final long serialVersionUID = 1L;
 	
 	@Override
-	float[] BinaryOperator(float[] inA, float[] inB) {
-		float[] result = new float[inA.length];
-		float temp;
-		for(int i=0; i<inA.length; i++) {
-			temp = inA[i]-inB[i];
-			if(Float.isInfinite(temp) && temp > 0){
-				temp = Float.MAX_VALUE;
-			}
-			if(Float.isInfinite(temp) && temp < 0){
-				temp = (1.0f - Float.MAX_VALUE);
-			}
-			result[i] = temp;
-		}
-		return result;
+	void BinaryOperator(float[] inData, int inA, int inB, int inLength) {
+		VectorKernels.KERNELS.sub(inData, inA, inB, inLength);
 	}
 }
 
@@ -408,23 +403,8 @@ class VectorMul extends BinaryVectorInstruction {
 	private static final long serialVersionUID = 1L;
 	
 	@Override
-	float[] BinaryOperator(float[] inA, float[] inB) {
-		float[] result = new float[inA.length];
-		float temp;
-		for(int i=0; i<inA.length; i++) {
-			temp = inA[i]*inB[i];
-			if(Float.isInfinite(temp) && temp > 0){
-				temp = Float.MAX_VALUE;
-			}
-			if(Float.isInfinite(temp) && temp < 0){
-				temp = (1.0f - Float.MAX_VALUE);
-			}
-			if(Float.isNaN(temp)){
-				temp = 0.0f;
-			}
-			result[i] = temp;
-		}
-		return result;
+	void BinaryOperator(float[] inData, int inA, int inB, int inLength) {
+		VectorKernels.KERNELS.mul(inData, inA, inB, inLength);
 	}
 }
 
@@ -435,23 +415,8 @@ class VectorDiv extends BinaryVectorInstruction {
 	private static final long serialVersionUID = 1L;
 	
 	@Override
-	float[] BinaryOperator(float[] inA, float[] inB) {
-		float[] result = new float[inA.length];
-		float temp;
-		for(int i=0; i<inA.length; i++) {
-			temp = inA[i]/inB[i];
-			if(Float.isInfinite(temp) && temp > 0){
-				temp = Float.MAX_VALUE;
-			}
-			if(Float.isInfinite(temp) && temp < 0){
-				temp = (1.0f - Float.MAX_VALUE);
-			}
-			if(Float.isNaN(temp)){
-				temp = 0.0f;
-			}
-			result[i] = temp;
-		}
-		return result;
+	void BinaryOperator(float[] inData, int inA, int inB, int inLength) {
+		VectorKernels.KERNELS.div(inData, inA, inB, inLength);
 	}
 }
 
@@ -462,18 +427,8 @@ class VectorDotProduct extends BinaryVectorToScalarInstruction {
 	private static final long serialVersionUID = 1L;
 	
 	@Override
-	float BinaryOperator(float[] inA, float[] inB) {
-		float result = 0;
-		for(int i=0; i<inA.length; i++) {
-			result += inA[i]*inB[i];
-		}
-		if(Float.isInfinite(result) && result > 0){
-			result = Float.MAX_VALUE;
-		}
-		if(Float.isInfinite(result) && result < 0){
-			result = (1.0f - Float.MAX_VALUE);
-		}
-		return result;
+	float BinaryOperator(float[] inData, int inA, int inB, int inLength) {
+		return VectorKernels.KERNELS.dot(inData, inA, inB, inLength);
 	}
 }
 
@@ -484,20 +439,13 @@ class VectorAddScalar extends BinaryVectorScalarInstruction {
 	private static final long serialVersionUID = 1L;
 	
 	@Override
-	float[] BinaryOperator(float[] inA, float inB) {
-		float[] result = new float[inA.length];
-		float temp;
-		for(int i=0; i<inA.length; i++) {
-			temp = inA[i]+inB;
-			if(Float.isInfinite(temp) && temp > 0){
-				temp = Float.MAX_VALUE;
-			}
-			if(Float.isInfinite(temp) && temp < 0){
-				temp = (1.0f - Float.MAX_VALUE);
-			}
-			result[i] = temp;
-		}
-		return result;
+	void BinaryOperator(float[] inData, int inA, int inLength, float inB) {
+		VectorKernels.KERNELS.addScalar(inData, inA, inLength, inB);
+	}
+
+	@Override
+	int Operation() {
+		return VectorKernels.ADD_SCALAR;
 	}
 }
 
@@ -508,20 +456,13 @@ class VectorSubScalar extends BinaryVectorScalarInstruction {
 	private static final long serialVersionUID = 1L;
 	
 	@Override
-	float[] BinaryOperator(float[] inA, float inB) {
-		float[] result = new float[inA.length];
-		float temp;
-		for(int i=0; i<inA.length; i++) {
-			temp = inA[i]-inB;
-			if(Float.isInfinite(temp) && temp > 0){
-				temp = Float.MAX_VALUE;
-			}
-			if(Float.isInfinite(temp) && temp < 0){
-				temp = (1.0f - Float.MAX_VALUE);
-			}
-			result[i] = temp;
-		}
-		return result;
+	void BinaryOperator(float[] inData, int inA, int inLength, float inB) {
+		VectorKernels.KERNELS.subScalar(inData, inA, inLength, inB);
+	}
+
+	@Override
+	int Operation() {
+		return VectorKernels.SUB_SCALAR;
 	}
 }
 
@@ -532,23 +473,13 @@ class VectorMulScalar extends BinaryVectorScalarInstruction {
 	private static final long serialVersionUID = 1L;
 	
 	@Override
-	float[] BinaryOperator(float[] inA, float inB) {
-		float[] result = new float[inA.length];
-		float temp;
-		for(int i=0; i<inA.length; i++) {
-			temp = inA[i]*inB;
-			if(Float.isInfinite(temp) && temp > 0){
-				temp = Float.MAX_VALUE;
-			}
-			if(Float.isInfinite(temp) && temp < 0){
-				temp = (1.0f - Float.MAX_VALUE);
-			}
-			if(Float.isNaN(temp)){
-				temp = 0.0f;
-			}
-			result[i] = temp;
-		}
-		return result;
+	void BinaryOperator(float[] inData, int inA, int inLength, float inB) {
+		VectorKernels.KERNELS.mulScalar(inData, inA, inLength, inB);
+	}
+
+	@Override
+	int Operation() {
+		return VectorKernels.MUL_SCALAR;
 	}
 }
 
@@ -559,23 +490,13 @@ class VectorDivScalar extends BinaryVectorScalarInstruction {
 	private static final long serialVersionUID = 1L;
 	
 	@Override
-	float[] BinaryOperator(float[] inA, float inB) {
-		float[] result = new float[inA.length];
-		float temp;
-		for(int i=0; i<inA.length; i++) {
-			temp = inA[i]/inB;
-			if(Float.isInfinite(temp) && temp > 0){
-				temp = Float.MAX_VALUE;
-			}
-			if(Float.isInfinite(temp) && temp < 0){
-				temp = (1.0f - Float.MAX_VALUE);
-			}
-			if(Float.isNaN(temp)){
-				temp = 0.0f;
-			}
-			result[i] = temp;
-		}
-		return result;
+	void BinaryOperator(float[] inData, int inA, int inLength, float inB) {
+		VectorKernels.KERNELS.divScalar(inData, inA, inLength, inB);
+	}
+
+	@Override
+	int Operation() {
+		return VectorKernels.DIV_SCALAR;
 	}
 }
 
@@ -586,19 +507,8 @@ class VectorMag extends UnaryVectorScalarInstruction {
 	private static final long serialVersionUID = 1L;
 	
 	@Override
-	float UnaryOperator(float[] inValue) {
-		double result = 0;
-		for(int i=0; i<inValue.length; i++) {
-			result += inValue[i] * inValue[i];
-		}
-		result = Math.sqrt(result);
-		if(Double.isInfinite(result) && result > 0){
-			result = Float.MAX_VALUE;
-		}
-		if(Double.isInfinite(result) && result < 0){
-			result = (1.0f - Float.MAX_VALUE);
-		}
-		return (float)result;
+	float UnaryOperator(float[] inData, int inOffset, int inLength) {
+		return VectorKernels.KERNELS.mag(inData, inOffset, inLength);
 	}
 }
 
@@ -609,21 +519,19 @@ class VectorDimAdd extends TernaryVectorInstruction {
 	private static final long serialVersionUID = 1L;
 	
 	@Override
-	float[] TernaryOperator(float[] inA, int inB, float inC) {
+	void TernaryOperator(float[] inData, int inA, int inLength, int inB, float inC) {
 		if(inB<0) inB = -inB;
-		int dim = inB % inA.length;
-		float[] result = Arrays.copyOf(inA, inA.length);
-		if(dim>=0 && dim<inA.length) { // may not be the case with extreme values
-			float temp = inA[inB % inA.length] + inC;
+		int dim = inB % inLength;
+		if(dim>=0 && dim<inLength) { // may not be the case with extreme values
+			float temp = inData[inA + dim] + inC;
 			if(Float.isInfinite(temp) && temp > 0){
 				temp = Float.MAX_VALUE;
 			}
 			if(Float.isInfinite(temp) && temp < 0){
 				temp = (1.0f - Float.MAX_VALUE);
 			}
-			result[dim] = temp;
+			inData[inA + dim] = temp;
 		}
-		return result;
 	}
 }
 
@@ -634,59 +542,125 @@ class VectorDimMul extends TernaryVectorInstruction {
 	private static final long serialVersionUID = 1L;
 	
 	@Override
-	float[] TernaryOperator(float[] inA, int inB, float inC) {
+	void TernaryOperator(float[] inData, int inA, int inLength, int inB, float inC) {
 		if(inB<0) inB = -inB;
-		int dim = inB % inA.length;
-		float[] result = Arrays.copyOf(inA, inA.length);
-		if(dim>=0 && dim<inA.length) { // may not be the case with extreme values
-			float temp = inA[inB % inA.length] * inC;
+		int dim = inB % inLength;
+		if(dim>=0 && dim<inLength) { // may not be the case with extreme values
+			float temp = inData[inA + dim] * inC;
 			if(Float.isInfinite(temp) && temp > 0){
 				temp = Float.MAX_VALUE;
 			}
 			if(Float.isInfinite(temp) && temp < 0){
 				temp = (1.0f - Float.MAX_VALUE);
 			}
-			result[dim] = temp;
+			inData[inA + dim] = temp;
+		}
+	}
+}
+
+/**
+ * Base class for instructions which apply code from the exec stack to each
+ * component of vectors. The code is run on the side, with its own exec and
+ * code stacks, except when it is a single float instruction, which is applied
+ * to the components directly.
+ */
+abstract class ComponentwiseInstruction extends Instruction {
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Returns the instruction which running inCode on a component comes down
+	 * to, or null if the code has to be run.
+	 */
+	static Instruction SingleInstruction(Interpreter inI, Object inCode) {
+		if (inI.haltExecution)
+			return null;
+
+		if (inCode instanceof Program) {
+			// Execute() takes two steps over a program of one atom
+			Program p = (Program) inCode;
+			if (inI._useFrames || p._size != 1 || !(p._stack[0] instanceof String))
+				return null;
+			return inI._instructions.get(p._stack[0]);
 		}
-		return result;
+
+		// and an instruction which doesn't halt execution
+		if (inCode instanceof Instruction
+				&& !inI._context.MovesUsed())
+			return (Instruction) inCode;
+
+		return null;
+	}
+
+	/**
+	 * Counts inCount runs of inCode, which SingleInstruction() has been
+	 * applied for instead.
+	 */
+	static void CountRuns(Interpreter inI, Object inCode, int inCount) {
+		if (inCode instanceof Program) {
+			inI._evaluationExecutions += inCount;
+			inI._totalStepsTaken += 2 * inCount;
+		}
+	}
+
+	/**
+	 * Runs inCode on the float stack, with the exec and code stacks of
+	 * BeginSideExecution().
+	 */
+	static void Run(Interpreter inI, Object inCode) {
+		if(inCode instanceof Program)
+			inI.Execute((Program)inCode, 100);
+		if(inCode instanceof Instruction)
+			inI.ExecuteInstruction(inCode);
 	}
 }
 
 /**
  * Applies code to pairwise components of two vectors.
  */
-class VectorZip extends Instruction {
+class VectorZip extends ComponentwiseInstruction {
 	private static final long serialVersionUID = 1L;
 
 	@Override
 	public void Execute(Interpreter inI) {
 		floatStack fstack = inI.floatStack();
 		vectorStack vstack = inI.vectorStack();
-		ObjectStack estack = inI.execStack();
+		ExecStack estack = inI.execStack();
 		ObjectStack cstack = inI.codeStack();
 		
 		if (vstack.size() > 1 && estack.size() > 0) {
+			Object ins = estack.pop();
+			Instruction single = SingleInstruction(inI, ins);
+			if (single instanceof BinaryFloatInstruction) {
+				// the result is written over the second vector
+				BinaryFloatInstruction op = (BinaryFloatInstruction) single;
+				int top = vstack.size() - 1;
+				int length = vstack.length(top, top - 1);
+				int v1 = vstack.offset(top);
+				int v2 = vstack.offset(top - 1);
+				float[] data = vstack.data();
+				for(int i=0; i<length; i++)
+					data[v2 + i] = op.BinaryOperator(data[v1 + i], data[v2 + i]);
+				CountRuns(inI, ins, length);
+				vstack.setLength(top - 1, length);
+				vstack.popdiscard();
+				return;
+			}
+			// the code may change the vector stack
 			float[] v1 = vstack.pop();
 			float[] v2 = vstack.pop();
 			float[] v3 = new float[v1.length];
-			Object ins = estack.pop();
-			inI._execStack = new ObjectStack();
-			inI._codeStack = new ObjectStack();
+			inI.BeginSideExecution();
 			for(int i=0; i<v1.length; i++) {
 				fstack.push(v1[i]);
 				fstack.push(v2[i]);
-				if(ins instanceof Program)
-					inI.Execute((Program)ins, 100);
-				if(ins instanceof Instruction)
-					inI.ExecuteInstruction(ins);
+				Run(inI, ins);
 				if(fstack.size() > 0) {
 					v3[i] = fstack.pop();
 				}
 				inI._execStack.clear();
 				inI._codeStack.clear();
 			}
-			inI._execStack = estack;
-			inI._codeStack = cstack;
+			inI.EndSideExecution(estack, cstack);
 			vstack.push(v3);
 		}
 	}
@@ -695,36 +669,44 @@ class VectorZip extends Instruction {
 /**
  * Applies code to each component of a vector.
  */
-class VectorApply extends Instruction {
+class VectorApply extends ComponentwiseInstruction {
 	private static final long serialVersionUID = 1L;
 
 	@Override
 	public void Execute(Interpreter inI) {
 		floatStack fstack = inI.floatStack();
 		vectorStack vstack = inI.vectorStack();
-		ObjectStack estack = inI.execStack();
+		ExecStack estack = inI.execStack();
 		ObjectStack cstack = inI.codeStack();
 		
 		if (vstack.size() > 1 && estack.size() > 0) {
+			Object ins = estack.pop();
+			Instruction single = SingleInstruction(inI, ins);
+			if (single instanceof UnaryFloatInstruction) {
+				UnaryFloatInstruction op = (UnaryFloatInstruction) single;
+				int top = vstack.size() - 1;
+				int length = vstack.length(top);
+				int v1 = vstack.offset(top);
+				float[] data = vstack.data();
+				for(int i=0; i<length; i++)
+					data[v1 + i] = op.UnaryOperator(data[v1 + i]);
+				CountRuns(inI, ins, length);
+				return;
+			}
+			// the code may change the vector stack
 			float[] v1 = vstack.pop();
 			float[] v3 = new float[v1.length];
-			Object ins = estack.pop();
-			inI._execStack = new ObjectStack();
-			inI._codeStack = new ObjectStack();
+			inI.BeginSideExecution();
 			for(int i=0; i<v1.length; i++) {
 				fstack.push(v1[i]);
-				if(ins instanceof Program)
-					inI.Execute((Program)ins, 100);
-				if(ins instanceof Instruction)
-					inI.ExecuteInstruction(ins);
+				Run(inI, ins);
 				if(fstack.size() > 0) {
 					v3[i] = fstack.pop();
 				}
 				inI._execStack.clear();
 				inI._codeStack.clear();
 			}
-			inI._execStack = estack;
-			inI._codeStack = cstack;
+			inI.EndSideExecution(estack, cstack);
 			vstack.push(v3);
 		}
 	}
@@ -743,25 +725,16 @@ class VectorBetween extends Instruction {
 		vectorStack vstack = inI.vectorStack();
 		
 		if (vstack.size() > 1 && fstack.size() > 0) {
-			float[] v2 = vstack.pop();
-			float[] v1 = vstack.pop();
-			float[] v3 = new float[v1.length];
+			// the result is written over the first vector
+			int top = vstack.size() - 1;
+			int length = vstack.length(top - 1, top);
+			int v2 = vstack.offset(top);
+			int v1 = vstack.offset(top - 1);
+			float[] data = vstack.data();
 			float f = fstack.pop();
+			VectorKernels.KERNELS.between(data, v1, v2, length, f);
 			
-			for(int i=0; i<v1.length; i++) {
-				v3[i] = v1[i] + (f * (v2[i] - v1[i]));
-				if(Float.isInfinite(v3[i]) && v3[i] > 0){
-					v3[i] = Float.MAX_VALUE;
-				}
-				if(Float.isInfinite(v3[i]) && v3[i] < 0){
-					v3[i] = (1.0f - Float.MAX_VALUE);
-				}
-				if(Float.isNaN(v3[i])){
-					v3[i] = v1[i];
-				}
-			}
-			
-			vstack.push(v3);
+			vstack.popdiscard();
 		}
 	}
 }
@@ -772,24 +745,18 @@ class VectorBetween extends Instruction {
  */
 class VectorBest extends Instruction {
 	private static final long serialVersionUID = 1L;
-	private static PopulationOptimisation _pop;
-	
-	public static void setPopulation(PopulationOptimisation pop) {
-		_pop = pop;
-	}
 		
 	@Override
 	public void Execute(Interpreter inI) {
 		intStack istack = inI.intStack();
 		int i;
 		if(istack.size()<1)
-			i = inI.current; // current population member
+			i = inI._context._current; // current population member
 		else
 			i = istack.pop();
 		if(i<0)
-			i = inI.current;
-		float[] best = _pop.getPosition(i, true);
-		inI.vectorStack().push(Arrays.copyOf(best, best.length));
+			i = inI._context._current;
+		inI.vectorStack().pushPoint(inI._context._population.getPosition(i, true));
 	}
 }
 
@@ -799,23 +766,17 @@ class VectorBest extends Instruction {
  */
 class VectorCurrent extends Instruction {
 	private static final long serialVersionUID = 1L;
-	private static PopulationOptimisation _pop;
-	
-	public static void setPopulation(PopulationOptimisation pop) {
-		_pop = pop;
-	}
 		
 	@Override
 	public void Execute(Interpreter inI) {
 		intStack istack = inI.intStack();
 		int i;
 		if(istack.size()<1)
-			i = inI.current; // current population member
+			i = inI._context._current; // current population member
 		else
 			i = istack.pop();
 		if(i<0)
-			i = inI.current;
-		float[] current = _pop.getPosition(i, false);
-		inI.vectorStack().push(Arrays.copyOf(current, current.length));
+			i = inI._context._current;
+		inI.vectorStack().pushPoint(inI._context._population.getPosition(i, false));
 	}
 }
\ No newline at end of file
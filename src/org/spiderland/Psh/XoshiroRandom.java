@@ -0,0 +1,115 @@
+/*
+ * Copyright 2009-2010 Jon Klein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spiderland.Psh;
+
+import java.util.Random;
+
+/**
+ * A xoshiro256** generator, which can be used wherever a java.util.Random
+ * is. Unlike java.util.Random, it isn't synchronised, so each thread should
+ * have a generator of its own, and its numbers are of better quality. The
+ * state is filled from the seed by SplitMix64, so generators seeded with
+ * nearby seeds, such as those from Randoms.Derive(), are unrelated.
+ */
+
+public class XoshiroRandom extends Random {
+	private static final long serialVersionUID = 1L;
+
+	// Random's constructor seeds the generator before this class's fields
+	// would be initialised, so they mustn't have initialisers
+	private long _s0, _s1, _s2, _s3;
+
+	private double _nextGaussian;
+	private boolean _haveNextGaussian;
+
+	public XoshiroRandom() {
+		this(Randoms.FreshSeed());
+	}
+
+	public XoshiroRandom(long inSeed) {
+		super(inSeed);
+	}
+
+	@Override
+	public void setSeed(long inSeed) {
+		_s0 = Randoms.Mix(inSeed += Randoms.GOLDEN_GAMMA);
+		_s1 = Randoms.Mix(inSeed += Randoms.GOLDEN_GAMMA);
+		_s2 = Randoms.Mix(inSeed += Randoms.GOLDEN_GAMMA);
+		_s3 = Randoms.Mix(inSeed + Randoms.GOLDEN_GAMMA);
+		_haveNextGaussian = false;
+	}
+
+	@Override
+	public long nextLong() {
+		long result = Long.rotateLeft(_s1 * 5, 7) * 9;
+		long t = _s1 << 17;
+
+		_s2 ^= _s0;
+		_s3 ^= _s1;
+		_s1 ^= _s2;
+		_s0 ^= _s3;
+		_s2 ^= t;
+		_s3 = Long.rotateLeft(_s3, 45);
+
+		return result;
+	}
+
+	@Override
+	protected int next(int inBits) {
+		return (int) (nextLong() >>> (64 - inBits));
+	}
+
+	@Override
+	public int nextInt() {
+		return (int) (nextLong() >>> 32);
+	}
+
+	@Override
+	public float nextFloat() {
+		return (nextLong() >>> 40) * 0x1.0p-24f;
+	}
+
+	@Override
+	public double nextDouble() {
+		return (nextLong() >>> 11) * 0x1.0p-53;
+	}
+
+	@Override
+	public boolean nextBoolean() {
+		return nextLong() < 0;
+	}
+
+	@Override
+	public double nextGaussian() {
+		if (_haveNextGaussian) {
+			_haveNextGaussian = false;
+			return _nextGaussian;
+		}
+
+		double v1, v2, s;
+		do {
+			v1 = 2 * nextDouble() - 1;
+			v2 = 2 * nextDouble() - 1;
+			s = v1 * v1 + v2 * v2;
+		} while (s >= 1 || s == 0);
+
+		double multiplier = StrictMath.sqrt(-2 * StrictMath.log(s) / s);
+		_nextGaussian = v2 * multiplier;
+		_haveNextGaussian = true;
+		return v1 * multiplier;
+	}
+}
@@ -35,7 +35,7 @@ public class booleanStack extends Stack {
 		if (_size != other._size)
 			return false;
 		for (int i = 0; i < _size; i++)
-			if (_stack[i] != other._stack[i])
+			if (_stack[at(i)] != other._stack[other.at(i)])
 				return false;
 		return true;
 	}
@@ -44,7 +44,7 @@ public class booleanStack extends Stack {
 	public int hashCode() {
 		int hash = 7;
 		for (int i = 0; i < _size; i++)
-			hash = 41 * hash + Boolean.valueOf(_stack[i]).hashCode();
+			hash = 41 * hash + Boolean.valueOf(_stack[at(i)]).hashCode();
 		return hash;
 	}
 
@@ -52,10 +52,11 @@ public class booleanStack extends Stack {
 		boolean newstack[] = new boolean[inSize];
 
 		if (_stack != null)
-			System.arraycopy(_stack, 0, newstack, 0, _size);
+			unwind(_stack, newstack, 1);
 
 		_stack = newstack;
 		_maxsize = inSize;
+		_bottom = 0;
 	}
 
 	public boolean top() {
@@ -67,7 +68,7 @@ public class booleanStack extends Stack {
 
 	public boolean peek(int inIndex) {
 		if (inIndex >= 0 && inIndex < _size)
-			return _stack[inIndex];
+			return _stack[at(inIndex)];
 
 		return false;
 	}
@@ -76,7 +77,7 @@ public class booleanStack extends Stack {
 		boolean result = false;
 
 		if (_size > 0) {
-			result = _stack[_size - 1];
+			result = _stack[at(_size - 1)];
 			_size--;
 		}
 
@@ -84,16 +85,16 @@ public class booleanStack extends Stack {
 	}
 
 	public void push(boolean inValue) {
-		_stack[_size] = inValue;
+		_stack[at(_size)] = inValue;
 		_size++;
 
 		if (_size >= _maxsize)
-			resize(_maxsize * 2);
+			overflow(_maxsize * 2);
 	}
 
 	public void dup() {
 		if (_size > 0)
-			push(_stack[_size - 1]);
+			push(_stack[at(_size - 1)]);
 	}
 	
 	public void shove(int inIndex) {
@@ -109,26 +110,26 @@ public class booleanStack extends Stack {
 			int shovedIndex = _size - inIndex - 1;
 
 			for (int i = _size - 1; i > shovedIndex; i--) {
-				_stack[i] = _stack[i - 1];
+				_stack[at(i)] = _stack[at(i - 1)];
 			}
-			_stack[shovedIndex] = toShove;
+			_stack[at(shovedIndex)] = toShove;
 		}
 	}
 
 	public void swap() {
 		if (_size > 1) {
-			boolean tmp = _stack[_size - 1];
-			_stack[_size - 1] = _stack[_size - 2];
-			_stack[_size - 2] = tmp;
+			boolean tmp = _stack[at(_size - 1)];
+			_stack[at(_size - 1)] = _stack[at(_size - 2)];
+			_stack[at(_size - 2)] = tmp;
 		}
 	}
 
 	public void rot() {
 		if (_size > 2) {
-			boolean tmp = _stack[_size - 3];
-			_stack[_size - 3] = _stack[_size - 2];
-			_stack[_size - 2] = _stack[_size - 1];
-			_stack[_size - 1] = tmp;
+			boolean tmp = _stack[at(_size - 3)];
+			_stack[at(_size - 3)] = _stack[at(_size - 2)];
+			_stack[at(_size - 2)] = _stack[at(_size - 1)];
+			_stack[at(_size - 1)] = tmp;
 		}
 	}
 
@@ -145,9 +146,9 @@ public class booleanStack extends Stack {
 			boolean toYank = peek(yankedIndex);
 
 			for (int i = yankedIndex; i < _size - 1; i++) {
-				_stack[i] = _stack[i + 1];
+				_stack[at(i)] = _stack[at(i + 1)];
 			}
-			_stack[_size - 1] = toYank;
+			_stack[at(_size - 1)] = toYank;
 		}
 	}
 
@@ -170,9 +171,9 @@ public class booleanStack extends Stack {
 
 		for (int n = _size - 1; n >= 0; n--) {
 			if (n == _size - 1)
-				result += _stack[n];
+				result += _stack[at(n)];
 			else
-				result += " " + _stack[n];
+				result += " " + _stack[at(n)];
 		}
 		result += "]";
 
@@ -34,7 +34,7 @@ public class floatStack extends Stack {
 		if (_size != other._size)
 			return false;
 		for (int i = 0; i < _size; i++)
-			if (_stack[i] != other._stack[i])
+			if (_stack[at(i)] != other._stack[other.at(i)])
 				return false;
 		return true;
 	}
@@ -43,7 +43,7 @@ public class floatStack extends Stack {
 	public int hashCode() {
 		int hash = 7;
 		for (int i = 0; i < _size; i++)
-			hash = 41 * hash + Float.valueOf(_stack[i]).hashCode();
+			hash = 41 * hash + Float.valueOf(_stack[at(i)]).hashCode();
 		return hash;
 	}
 
@@ -51,17 +51,18 @@ public class floatStack extends Stack {
 		float newstack[] = new float[inSize];
 
 		if (_stack != null)
-			System.arraycopy(_stack, 0, newstack, 0, _size);
+			unwind(_stack, newstack, 1);
 
 		_stack = newstack;
 		_maxsize = inSize;
+		_bottom = 0;
 	}
 
 	public float accumulate() {
 		float f = 0;
 
 		for (int n = 0; n < _size; n++) {
-			f += _stack[n];
+			f += _stack[at(n)];
 		}
 
 		return f;
@@ -73,7 +74,7 @@ public class floatStack extends Stack {
 
 	public float peek(int inIndex) {
 		if (inIndex >= 0 && inIndex < _size)
-			return _stack[inIndex];
+			return _stack[at(inIndex)];
 
 		return 0.0f;
 	}
@@ -82,7 +83,7 @@ public class floatStack extends Stack {
 		float result = 0.0f;
 
 		if (_size > 0) {
-			result = _stack[_size - 1];
+			result = _stack[at(_size - 1)];
 			_size--;
 		}
 
@@ -90,16 +91,16 @@ public class floatStack extends Stack {
 	}
 
 	public void push(float inValue) {
-		_stack[_size] = inValue;
+		_stack[at(_size)] = inValue;
 		_size++;
 
 		if (_size >= _maxsize)
-			resize(_maxsize * 2);
+			overflow(_maxsize * 2);
 	}
 
 	public void dup() {
 		if (_size > 0)
-			push(_stack[_size - 1]);
+			push(_stack[at(_size - 1)]);
 	}
 	
 	public void shove(int inIndex) {
@@ -115,26 +116,26 @@ public class floatStack extends Stack {
 			int shovedIndex = _size - inIndex - 1;
 
 			for (int i = _size - 1; i > shovedIndex; i--) {
-				_stack[i] = _stack[i - 1];
+				_stack[at(i)] = _stack[at(i - 1)];
 			}
-			_stack[shovedIndex] = toShove;
+			_stack[at(shovedIndex)] = toShove;
 		}
 	}
 
 	public void swap() {
 		if (_size > 1) {
-			float tmp = _stack[_size - 1];
-			_stack[_size - 1] = _stack[_size - 2];
-			_stack[_size - 2] = tmp;
+			float tmp = _stack[at(_size - 1)];
+			_stack[at(_size - 1)] = _stack[at(_size - 2)];
+			_stack[at(_size - 2)] = tmp;
 		}
 	}
 
 	public void rot() {
 		if (_size > 2) {
-			float tmp = _stack[_size - 3];
-			_stack[_size - 3] = _stack[_size - 2];
-			_stack[_size - 2] = _stack[_size - 1];
-			_stack[_size - 1] = tmp;
+			float tmp = _stack[at(_size - 3)];
+			_stack[at(_size - 3)] = _stack[at(_size - 2)];
+			_stack[at(_size - 2)] = _stack[at(_size - 1)];
+			_stack[at(_size - 1)] = tmp;
 		}
 	}
 
@@ -151,9 +152,9 @@ public class floatStack extends Stack {
 			float toYank = peek(yankedIndex);
 
 			for (int i = yankedIndex; i < _size - 1; i++) {
-				_stack[i] = _stack[i + 1];
+				_stack[at(i)] = _stack[at(i + 1)];
 			}
-			_stack[_size - 1] = toYank;
+			_stack[at(_size - 1)] = toYank;
 		}
 	}
 
@@ -173,7 +174,7 @@ public class floatStack extends Stack {
 
 	public void set(int inIndex, float inValue){
 		if (inIndex >= 0 && inIndex < _size)
-			_stack[inIndex] = inValue;
+			_stack[at(inIndex)] = inValue;
 	}
 
 	public String toString() {
@@ -181,9 +182,9 @@ public class floatStack extends Stack {
 
 		for (int n = _size - 1; n >= 0; n--) {
 			if (n == _size - 1)
-				result += _stack[n];
+				result += _stack[at(n)];
 			else
-				result += " " + _stack[n];
+				result += " " + _stack[at(n)];
 		}
 		result += "]";
 
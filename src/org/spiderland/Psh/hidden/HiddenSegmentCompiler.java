@@ -0,0 +1,42 @@
+/*
+ * Copyright 2009-2010 Jon Klein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spiderland.Psh.hidden;
+
+import java.lang.invoke.MethodHandles;
+
+import org.spiderland.Psh.SegmentCompiler;
+
+/**
+ * Defines the classes SegmentCompiler generates as hidden classes of the
+ * org.spiderland.Psh package, so that they can call its package's methods,
+ * and are unloaded once nothing refers to them.
+ *
+ * This package needs JDK 15 or later. SegmentCompiler uses it when it can.
+ */
+
+public class HiddenSegmentCompiler extends SegmentCompiler {
+	private final MethodHandles.Lookup _lookup;
+
+	public HiddenSegmentCompiler() throws IllegalAccessException {
+		_lookup = MethodHandles.privateLookupIn(SegmentCompiler.class, MethodHandles.lookup());
+	}
+
+	@Override
+	protected Class<?> DefineClass(byte inClassFile[]) throws Exception {
+		return _lookup.defineHiddenClass(inClassFile, true).lookupClass();
+	}
+}
@@ -35,7 +35,7 @@ public class intStack extends Stack {
 		if (_size != other._size)
 			return false;
 		for (int i = 0; i < _size; i++)
-			if (_stack[i] != other._stack[i])
+			if (_stack[at(i)] != other._stack[other.at(i)])
 				return false;
 		return true;
 	}
@@ -44,7 +44,7 @@ public class intStack extends Stack {
 	public int hashCode() {
 		int hash = 7;
 		for (int i = 0; i < _size; i++)
-			hash = 41 * hash + _stack[i];
+			hash = 41 * hash + _stack[at(i)];
 		return hash;
 	}
 
@@ -52,10 +52,11 @@ public class intStack extends Stack {
 		int newstack[] = new int[inSize];
 
 		if (_stack != null)
-			System.arraycopy(_stack, 0, newstack, 0, _size);
+			unwind(_stack, newstack, 1);
 
 		_stack = newstack;
 		_maxsize = inSize;
+		_bottom = 0;
 	}
 
 	public int top() {
@@ -64,7 +65,7 @@ public class intStack extends Stack {
 
 	public int peek(int inIndex) {
 		if (inIndex >= 0 && inIndex < _size)
-			return _stack[inIndex];
+			return _stack[at(inIndex)];
 
 		return 0;
 	}
@@ -73,7 +74,7 @@ public class intStack extends Stack {
 		int result = 0;
 
 		if (_size > 0) {
-			result = _stack[_size - 1];
+			result = _stack[at(_size - 1)];
 			_size--;
 		}
 
@@ -81,16 +82,16 @@ public class intStack extends Stack {
 	}
 
 	public void push(int inValue) {
-		_stack[_size] = inValue;
+		_stack[at(_size)] = inValue;
 		_size++;
 
 		if (_size >= _maxsize)
-			resize(_maxsize * 2);
+			overflow(_maxsize * 2);
 	}
 
 	public void dup() {
 		if (_size > 0)
-			push(_stack[_size - 1]);
+			push(_stack[at(_size - 1)]);
 	}
 	
 	public void shove(int inIndex) {
@@ -106,26 +107,26 @@ public class intStack extends Stack {
 			int shovedIndex = _size - inIndex - 1;
 
 			for (int i = _size - 1; i > shovedIndex; i--) {
-				_stack[i] = _stack[i - 1];
+				_stack[at(i)] = _stack[at(i - 1)];
 			}
-			_stack[shovedIndex] = toShove;
+			_stack[at(shovedIndex)] = toShove;
 		}
 	}
 
 	public void swap() {
 		if (_size > 1) {
-			int tmp = _stack[_size - 1];
-			_stack[_size - 1] = _stack[_size - 2];
-			_stack[_size - 2] = tmp;
+			int tmp = _stack[at(_size - 1)];
+			_stack[at(_size - 1)] = _stack[at(_size - 2)];
+			_stack[at(_size - 2)] = tmp;
 		}
 	}
 
 	public void rot() {
 		if (_size > 2) {
-			int tmp = _stack[_size - 3];
-			_stack[_size - 3] = _stack[_size - 2];
-			_stack[_size - 2] = _stack[_size - 1];
-			_stack[_size - 1] = tmp;
+			int tmp = _stack[at(_size - 3)];
+			_stack[at(_size - 3)] = _stack[at(_size - 2)];
+			_stack[at(_size - 2)] = _stack[at(_size - 1)];
+			_stack[at(_size - 1)] = tmp;
 		}
 	}
 
@@ -142,9 +143,9 @@ public class intStack extends Stack {
 			int toYank = peek(yankedIndex);
 
 			for (int i = yankedIndex; i < _size - 1; i++) {
-				_stack[i] = _stack[i + 1];
+				_stack[at(i)] = _stack[at(i + 1)];
 			}
-			_stack[_size - 1] = toYank;
+			_stack[at(_size - 1)] = toYank;
 		}
 	}
 
@@ -164,7 +165,7 @@ public class intStack extends Stack {
 	
 	public void set(int inIndex, int inValue){
 		if (inIndex >= 0 && inIndex < _size)
-			_stack[inIndex] = inValue;
+			_stack[at(inIndex)] = inValue;
 	}
 
 	public String toString() {
@@ -172,9 +173,9 @@ public class intStack extends Stack {
 
 		for (int n = _size - 1; n >= 0; n--) {
 			if (n == _size - 1)
-				result += _stack[n];
+				result += _stack[at(n)];
 			else
-				result += " " + _stack[n];
+				result += " " + _stack[at(n)];
 		}
 		result += "]";
 
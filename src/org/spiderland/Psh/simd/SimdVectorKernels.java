@@ -0,0 +1,219 @@
+/*
+ * Copyright 2009-2010 Jon Klein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spiderland.Psh.simd;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import org.spiderland.Psh.VectorKernels;
+
+/**
+ * The vector instructions' kernels, using the SIMD instructions of the
+ * machine through the jdk.incubator.vector module. Whatever doesn't fill a
+ * SIMD register is left to the scalar kernels.
+ *
+ * This package has to be compiled and run with
+ * --add-modules jdk.incubator.vector. VectorKernels uses it when it can.
+ */
+
+public class SimdVectorKernels extends VectorKernels {
+	private static final VectorSpecies<Float> FLOATS = FloatVector.SPECIES_PREFERRED;
+
+	// a register of floats converts to two of these
+	private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+
+	private static final float MAX = Float.MAX_VALUE;
+	private static final float MIN = (1.0f - Float.MAX_VALUE);
+
+	/**
+	 * Limits infinite components to the largest floats.
+	 */
+	private static FloatVector Limit(FloatVector inV) {
+		return inV.max(MIN).min(MAX);
+	}
+
+	/**
+	 * Limits infinite components, and makes NaNs 0.
+	 */
+	private static FloatVector LimitNaN(FloatVector inV) {
+		inV = Limit(inV);
+		return inV.blend(0.0f, inV.test(VectorOperators.IS_NAN));
+	}
+
+	@Override
+	public void add(float[] inData, int inA, int inB, int inLength) {
+		int i = 0;
+		for (int upper = FLOATS.loopBound(inLength); i < upper; i += FLOATS.length()) {
+			FloatVector a = FloatVector.fromArray(FLOATS, inData, inA + i);
+			FloatVector b = FloatVector.fromArray(FLOATS, inData, inB + i);
+			Limit(a.add(b)).intoArray(inData, inA + i);
+		}
+		super.add(inData, inA + i, inB + i, inLength - i);
+	}
+
+	@Override
+	public void sub(float[] inData, int inA, int inB, int inLength) {
+		int i = 0;
+		for (int upper = FLOATS.loopBound(inLength); i < upper; i += FLOATS.length()) {
+			FloatVector a = FloatVector.fromArray(FLOATS, inData, inA + i);
+			FloatVector b = FloatVector.fromArray(FLOATS, inData, inB + i);
+			Limit(a.sub(b)).intoArray(inData, inA + i);
+		}
+		super.sub(inData, inA + i, inB + i, inLength - i);
+	}
+
+	@Override
+	public void mul(float[] inData, int inA, int inB, int inLength) {
+		int i = 0;
+		for (int upper = FLOATS.loopBound(inLength); i < upper; i += FLOATS.length()) {
+			FloatVector a = FloatVector.fromArray(FLOATS, inData, inA + i);
+			FloatVector b = FloatVector.fromArray(FLOATS, inData, inB + i);
+			LimitNaN(a.mul(b)).intoArray(inData, inA + i);
+		}
+		super.mul(inData, inA + i, inB + i, inLength - i);
+	}
+
+	@Override
+	public void div(float[] inData, int inA, int inB, int inLength) {
+		int i = 0;
+		for (int upper = FLOATS.loopBound(inLength); i < upper; i += FLOATS.length()) {
+			FloatVector a = FloatVector.fromArray(FLOATS, inData, inA + i);
+			FloatVector b = FloatVector.fromArray(FLOATS, inData, inB + i);
+			LimitNaN(a.div(b)).intoArray(inData, inA + i);
+		}
+		super.div(inData, inA + i, inB + i, inLength - i);
+	}
+
+	@Override
+	public void addScalar(float[] inData, int inA, int inLength, float inB) {
+		int i = 0;
+		for (int upper = FLOATS.loopBound(inLength); i < upper; i += FLOATS.length()) {
+			FloatVector a = FloatVector.fromArray(FLOATS, inData, inA + i);
+			Limit(a.add(inB)).intoArray(inData, inA + i);
+		}
+		super.addScalar(inData, inA + i, inLength - i, inB);
+	}
+
+	@Override
+	public void subScalar(float[] inData, int inA, int inLength, float inB) {
+		int i = 0;
+		for (int upper = FLOATS.loopBound(inLength); i < upper; i += FLOATS.length()) {
+			FloatVector a = FloatVector.fromArray(FLOATS, inData, inA + i);
+			Limit(a.sub(inB)).intoArray(inData, inA + i);
+		}
+		super.subScalar(inData, inA + i, inLength - i, inB);
+	}
+
+	@Override
+	public void mulScalar(float[] inData, int inA, int inLength, float inB) {
+		int i = 0;
+		for (int upper = FLOATS.loopBound(inLength); i < upper; i += FLOATS.length()) {
+			FloatVector a = FloatVector.fromArray(FLOATS, inData, inA + i);
+			LimitNaN(a.mul(inB)).intoArray(inData, inA + i);
+		}
+		super.mulScalar(inData, inA + i, inLength - i, inB);
+	}
+
+	@Override
+	public void divScalar(float[] inData, int inA, int inLength, float inB) {
+		int i = 0;
+		for (int upper = FLOATS.loopBound(inLength); i < upper; i += FLOATS.length()) {
+			FloatVector a = FloatVector.fromArray(FLOATS, inData, inA + i);
+			LimitNaN(a.div(inB)).intoArray(inData, inA + i);
+		}
+		super.divScalar(inData, inA + i, inLength - i, inB);
+	}
+
+	@Override
+	public void scalarOps(float[] inData, int inA, int inLength, int[] inOps, float[] inScalars,
+			int inFirst, int inCount) {
+		int i = 0;
+		for (int upper = FLOATS.loopBound(inLength); i < upper; i += FLOATS.length()) {
+			FloatVector a = FloatVector.fromArray(FLOATS, inData, inA + i);
+			for (int op = inFirst; op < inFirst + inCount; op++) {
+				switch (inOps[op]) {
+				case ADD_SCALAR:
+					a = Limit(a.add(inScalars[op]));
+					break;
+				case SUB_SCALAR:
+					a = Limit(a.sub(inScalars[op]));
+					break;
+				case MUL_SCALAR:
+					a = LimitNaN(a.mul(inScalars[op]));
+					break;
+				case DIV_SCALAR:
+					a = LimitNaN(a.div(inScalars[op]));
+					break;
+				}
+			}
+			a.intoArray(inData, inA + i);
+		}
+		super.scalarOps(inData, inA + i, inLength - i, inOps, inScalars, inFirst, inCount);
+	}
+
+	@Override
+	public float dot(float[] inData, int inA, int inB, int inLength) {
+		FloatVector sum = FloatVector.zero(FLOATS);
+		int i = 0;
+		for (int upper = FLOATS.loopBound(inLength); i < upper; i += FLOATS.length()) {
+			FloatVector a = FloatVector.fromArray(FLOATS, inData, inA + i);
+			FloatVector b = FloatVector.fromArray(FLOATS, inData, inB + i);
+			sum = sum.add(a.mul(b));
+		}
+
+		float result = sum.reduceLanes(VectorOperators.ADD);
+		for (; i < inLength; i++) {
+			result += inData[inA + i] * inData[inB + i];
+		}
+		return Limit(result);
+	}
+
+	@Override
+	public float mag(float[] inData, int inA, int inLength) {
+		// the squares are floats, as in the scalar kernel, and are added up
+		// as doubles, half a register at a time
+		DoubleVector low = DoubleVector.zero(DOUBLES);
+		DoubleVector high = DoubleVector.zero(DOUBLES);
+		int i = 0;
+		for (int upper = FLOATS.loopBound(inLength); i < upper; i += FLOATS.length()) {
+			FloatVector a = FloatVector.fromArray(FLOATS, inData, inA + i);
+			FloatVector squares = a.mul(a);
+			low = low.add((DoubleVector) squares.convertShape(VectorOperators.F2D, DOUBLES, 0));
+			high = high.add((DoubleVector) squares.convertShape(VectorOperators.F2D, DOUBLES, 1));
+		}
+
+		double result = low.add(high).reduceLanes(VectorOperators.ADD);
+		for (; i < inLength; i++) {
+			result += inData[inA + i] * inData[inA + i];
+		}
+		return Magnitude(result);
+	}
+
+	@Override
+	public void between(float[] inData, int inA, int inB, int inLength, float inF) {
+		int i = 0;
+		for (int upper = FLOATS.loopBound(inLength); i < upper; i += FLOATS.length()) {
+			FloatVector a = FloatVector.fromArray(FLOATS, inData, inA + i);
+			FloatVector b = FloatVector.fromArray(FLOATS, inData, inB + i);
+			FloatVector result = Limit(a.add(b.sub(a).mul(inF)));
+			result.blend(a, result.test(VectorOperators.IS_NAN)).intoArray(inData, inA + i);
+		}
+		super.between(inData, inA + i, inB + i, inLength - i, inF);
+	}
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright 2009-2010 Jon Klein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spiderland.Psh.test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import junit.framework.TestCase;
+import optimisation.problems.SearchPoint;
+import org.spiderland.Psh.ObjectStack;
+import org.spiderland.Psh.booleanStack;
+import org.spiderland.Psh.floatStack;
+import org.spiderland.Psh.intStack;
+import org.spiderland.Psh.vectorStack;
+
+public class BoundedStackTest extends TestCase
+{
+    private static final int BOUND = 5;
+
+    public void testFloatStack() throws Exception
+    {
+        floatStack stack = new floatStack();
+        stack.setBound(3);
+
+        for (int i = 1; i <= 5; i++)
+            stack.push(i);
+        assertEquals(3, stack.size());
+        assertEquals("[5.0 4.0 3.0]", stack.toString());
+        assertEquals(12.0f, stack.accumulate());
+
+        stack.dup();
+        assertEquals("[5.0 5.0 4.0]", stack.toString());
+        stack.yankdup(2);
+        assertEquals("[4.0 5.0 5.0]", stack.toString());
+        stack.shove(2);
+        assertEquals("[5.0 5.0 4.0]", stack.toString());
+        assertEquals(5.0f, stack.pop());
+        stack.set(0, 7.0f);
+        assertEquals("[5.0 7.0]", stack.toString());
+
+        // unbounded again, and keeping what it has
+        stack.setBound(0);
+        for (int i = 0; i < 20; i++)
+            stack.push(i);
+        assertEquals(22, stack.size());
+        assertEquals(7.0f, stack.peek(0));
+        assertEquals(5.0f, stack.peek(1));
+
+        // bounded below what it has
+        stack.setBound(2);
+        assertEquals("[19.0 18.0]", stack.toString());
+    }
+
+    /**
+     * Carries out random operations on int, boolean and vector stacks, and
+     * on lists of what they should hold, dropping the oldest entry when
+     * they have more than BOUND.
+     */
+    public void testAgainstLists() throws Exception
+    {
+        Random rng = new Random(7);
+        intStack ints = new intStack();
+        booleanStack bools = new booleanStack();
+        vectorStack vectors = new vectorStack(2);
+        ints.setBound(BOUND);
+        bools.setBound(BOUND);
+        vectors.setBound(BOUND);
+
+        ArrayList<Integer> expected = new ArrayList<Integer>();
+
+        for (int step = 0; step < 2000; step++) {
+            int n = rng.nextInt(BOUND + 2) - 1;
+            int size = expected.size();
+
+            switch (rng.nextInt(9)) {
+            case 0:
+            case 1:
+                ints.push(step);
+                bools.push(step % 2 == 0);
+                // vectors of different lengths, so the slots widen
+                float v[] = new float[1 + step % 7];
+                Arrays.fill(v, step);
+                if (step % 3 == 0)
+                    vectors.pushPoint(SearchPoint.Wrap(v));
+                else
+                    vectors.push(v);
+                expected.add(step);
+                break;
+            case 2:
+                ints.popdiscard();
+                bools.popdiscard();
+                vectors.popdiscard();
+                if (size > 0)
+                    expected.remove(size - 1);
+                break;
+            case 3:
+                ints.dup();
+                bools.dup();
+                vectors.dup();
+                if (size > 0)
+                    expected.add(expected.get(size - 1));
+                break;
+            case 4:
+                ints.swap();
+                bools.swap();
+                vectors.swap();
+                if (size > 1)
+                    expected.add(size - 2, expected.remove(size - 1));
+                break;
+            case 5:
+                ints.rot();
+                bools.rot();
+                vectors.rot();
+                if (size > 2)
+                    expected.add(expected.remove(size - 3));
+                break;
+            case 6:
+                ints.shove(n);
+                bools.shove(n);
+                vectors.shove(n);
+                if (size > 0)
+                    expected.add(size - 1 - Math.max(0, Math.min(n, size - 1)), expected.remove(size - 1));
+                break;
+            case 7:
+                ints.yank(n);
+                bools.yank(n);
+                vectors.yank(n);
+                if (size > 0)
+                    expected.add(expected.remove(size - 1 - Math.max(0, Math.min(n, size - 1))));
+                break;
+            case 8:
+                ints.yankdup(n);
+                bools.yankdup(n);
+                vectors.yankdup(n);
+                if (size > 0)
+                    expected.add(expected.get(size - 1 - Math.max(0, Math.min(n, size - 1))));
+                break;
+            }
+
+            if (expected.size() > BOUND)
+                expected.remove(0);
+
+            assertEquals(expected.size(), ints.size());
+            assertEquals(expected.size(), bools.size());
+            assertEquals(expected.size(), vectors.size());
+            for (int i = 0; i < expected.size(); i++) {
+                int value = expected.get(i);
+                assertEquals(value, ints.peek(i));
+                assertEquals(value % 2 == 0, bools.peek(i));
+
+                float v[] = new float[1 + value % 7];
+                Arrays.fill(v, value);
+                assertTrue(Arrays.equals(v, vectors.peek(i)));
+            }
+        }
+    }
+
+    public void testVectorStackInPlace() throws Exception
+    {
+        vectorStack stack = new vectorStack(2);
+        stack.setBound(2);
+
+        stack.push(new float[] { 1.0f });
+        stack.push(new float[] { 2.0f });
+        stack.push(new float[] { 3.0f, 3.0f });
+        assertEquals(2, stack.size());
+
+        // the slots go round, and the vectors are changed where they are
+        int offset = stack.offset(1);
+        stack.data()[offset + 1] = 4.0f;
+        assertTrue(stack.defer(0, 2, 10.0f));
+        assertTrue(Arrays.equals(new float[] { 3.0f, 4.0f }, stack.peek(1)));
+        assertTrue(Arrays.equals(new float[] { 20.0f }, stack.peek(0)));
+        assertEquals(stack.offset(1) + 1, stack.component(1, 1));
+    }
+
+    public void testObjectStacksAreUnbounded() throws Exception
+    {
+        try {
+            new ObjectStack().setBound(BOUND);
+            fail();
+        } catch (UnsupportedOperationException e) {
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2009-2010 Jon Klein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spiderland.Psh.test;
+
+import org.spiderland.Psh.*;
+
+/**
+ * Checks that BytecodeInterpreter gives exactly the same results as
+ * Interpreter. Programs are only compiled where hidden classes can be defined,
+ * that is on JDK 15 or later with org.spiderland.Psh.hidden built.
+ */
+public class BytecodeInterpreterTest extends OpcodeInterpreterTest
+{
+    @Override
+    protected Interpreter createInterpreter()
+    {
+        // Compile every program on its first run
+        BytecodeInterpreter in = new BytecodeInterpreter();
+        in.SetCompileThreshold(0);
+        return in;
+    }
+
+    public void testLongSegment() throws Exception
+    {
+        String program = "( 1 2 integer.+ 2.5 float.dup float.* -1000 integer.* 100000 integer.- "
+                + "true boolean.not x <1.0,2.0,3.0> vector.dup 3 integer.stackdepth )";
+
+        Program p = new Program(opcodeInterpreter, program);
+        opcodeInterpreter.Execute(p, 100);
+        String bytecodeResult = opcodeInterpreter.toString();
+
+        p = new Program(interpreter, program);
+        interpreter.Execute(p, 100);
+
+        assertEquals(interpreter.toString(), bytecodeResult);
+
+        if (CanCompile())
+            assertTrue(((BytecodeInterpreter) opcodeInterpreter).GetCompiledSegmentCount() > 0);
+    }
+
+    private static boolean CanCompile()
+    {
+        try {
+            Class.forName("org.spiderland.Psh.hidden.HiddenSegmentCompiler").newInstance();
+            return true;
+        } catch (Throwable e) {
+            return false;
+        }
+    }
+}
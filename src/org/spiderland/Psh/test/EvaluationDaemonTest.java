@@ -0,0 +1,172 @@
+/*
+ * Copyright 2009-2010 Jon Klein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spiderland.Psh.test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.HashSet;
+import junit.framework.TestCase;
+import optimisation.EvaluationDaemon;
+import org.spiderland.Psh.ThreadOutput;
+
+/**
+ * Sends a request to EvaluationDaemon over a loopback connection, while
+ * another thread prints, and checks what comes back.
+ */
+public class EvaluationDaemonTest extends TestCase
+{
+    private File _directory;
+
+    // What was in the working directory, where the reevaluations write the
+    // trajectories of their runs
+    private HashSet<String> _existing;
+
+    protected void setUp() throws Exception
+    {
+        _directory = File.createTempFile("evaluationdaemontest", "");
+        _directory.delete();
+        _directory.mkdir();
+        _existing = new HashSet<String>(Arrays.asList(new File(".").list()));
+    }
+
+    protected void tearDown() throws Exception
+    {
+        for (File file : _directory.listFiles())
+            file.delete();
+        _directory.delete();
+
+        for (File file : new File(".").listFiles())
+            if (!_existing.contains(file.getName()) && file.getName().matches(".*_run[0-9]+\\.txt"))
+                file.delete();
+    }
+
+    private void Write(String inName, String... inLines) throws Exception
+    {
+        PrintWriter writer = new PrintWriter(new File(_directory, inName));
+        for (String line : inLines)
+            writer.println(line);
+        writer.close();
+    }
+
+    /**
+     * Serves one request sent with the given lines, and returns the reply.
+     */
+    private String Request(String... inLines) throws Exception
+    {
+        final ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        Thread daemon = new Thread("evaluation-request") {
+            public void run() {
+                try {
+                    EvaluationDaemon.serve(server.accept());
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+        };
+        daemon.start();
+
+        Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getLocalPort());
+        Writer out = new PrintWriter(socket.getOutputStream());
+        for (String line : inLines)
+            out.write(line + "\n");
+        out.flush();
+
+        ByteArrayOutputStream reply = new ByteArrayOutputStream();
+        InputStream in = socket.getInputStream();
+        byte buffer[] = new byte[4096];
+        int read;
+        while ((read = in.read(buffer)) >= 0)
+            reply.write(buffer, 0, read);
+
+        socket.close();
+        daemon.join();
+        server.close();
+        return reply.toString();
+    }
+
+    public void testRequest() throws Exception
+    {
+        Write("params.txt",
+              "problem-class = optimisation.PopulationOptimisation",
+              "optimisation.problems = 1,9",
+              "optimisation.dimensions = 2",
+              "optimisation.popsize = 3",
+              "optimisation.moves = 20",
+              "optimisation.runs = 2",
+              "optimisation.fixedstarts = false",
+              "optimisation.modifyproblems = false",
+              "optimisation.threads = 2",
+              "instruction-set = (float.+ float.* vector.+ vector.scale float.erc)",
+              "population-size = 12",
+              "max-generations = 5",
+              "min-random-float = 0.0",
+              "max-random-float = 1.0");
+        Write("program.txt", "(0.41 0.65 float.+ vector.scale)", "100");
+
+        ThreadOutput.Install();
+
+        // a thread of the test's, printing all the while, to its own output
+        final ByteArrayOutputStream noise = new ByteArrayOutputStream();
+        Thread printer = new Thread() {
+            public void run() {
+                ThreadOutput.Set(noise);
+                try {
+                    // and a thread it starts prints there too
+                    Thread child = new Thread() {
+                        public void run() {
+                            System.out.println("inherited");
+                        }
+                    };
+                    child.start();
+                    child.join();
+
+                    while (true) {
+                        System.out.println("noise");
+                        Thread.sleep(1);
+                    }
+                } catch (InterruptedException e) {
+                }
+            }
+        };
+        printer.start();
+
+        String reply;
+        try {
+            // relative to the directory sent
+            reply = Request(_directory.getPath(), "params.txt", "program.txt", "");
+        } finally {
+            printer.interrupt();
+            printer.join();
+        }
+
+        assertTrue(reply, reply.startsWith("Fitness: "));
+        assertFalse(reply, reply.contains("noise"));
+        assertFalse(noise.toString().contains("Fitness"));
+        assertTrue(noise.toString().startsWith("inherited\nnoise"));
+
+        // too few arguments
+        reply = Request(_directory.getPath(), "params.txt", "");
+        assertTrue(reply, reply.startsWith("Usage: "));
+    }
+}
@@ -0,0 +1,265 @@
+/*
+ * Copyright 2009-2010 Jon Klein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spiderland.Psh.test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.concurrent.ExecutorService;
+import junit.framework.TestCase;
+import optimisation.PopulationOptimisation;
+import org.spiderland.Psh.GA;
+import org.spiderland.Psh.GAIndividual;
+
+/**
+ * Runs small seeded GAs, checking that they give the same results however
+ * they are run.
+ */
+public class GATest extends TestCase
+{
+    /**
+     * A GA which checks, each time the steady-state EA chooses an individual
+     * to replace, that the best individual is the fittest and isn't the one
+     * chosen.
+     */
+    public static class CheckedSteadyState extends PopulationOptimisation
+    {
+        int _replacements;
+
+        protected int ReplacementIndex()
+        {
+            GAIndividual population[] = _populations[_currentPopulation];
+            float best = population[_bestIndividual].GetFitness();
+
+            for (GAIndividual individual : population)
+                assertFalse(individual.GetFitness() < best);
+
+            int replaced = super.ReplacementIndex();
+            assertTrue(replaced != _bestIndividual);
+            _replacements++;
+            return replaced;
+        }
+
+        ExecutorService EvaluationPool()
+        {
+            return _evaluationPool;
+        }
+    }
+
+    private File _output;
+
+    // What was in the working directory, where PopulationOptimisation's
+    // reports write the trajectories of the runs
+    private HashSet<String> _existing;
+
+    protected void setUp() throws Exception
+    {
+        _output = File.createTempFile("gatest", ".txt");
+        _existing = new HashSet<String>(Arrays.asList(new File(".").list()));
+    }
+
+    protected void tearDown() throws Exception
+    {
+        _output.delete();
+
+        for (File file : new File(".").listFiles())
+            if (!_existing.contains(file.getName()) && file.getName().matches(".*_run[0-9]+\\.txt"))
+                file.delete();
+    }
+
+    /**
+     * The parameters of a small seeded integer regression run, with
+     * integer.rand so that evaluating the programs draws random numbers.
+     */
+    private HashMap<String, String> RegressionParams()
+    {
+        HashMap<String, String> params = new HashMap<String, String>();
+        params.put("problem-class", "org.spiderland.Psh.ProbClass.IntSymbolicRegression");
+        params.put("test-cases", "( ( 1 17 ) ( 2 53 ) ( 3 113 ) ( 4 197 ) ( 5 305 ) )");
+        params.put("instruction-set", "(integer.+ integer.* integer.- integer.dup integer.rand input.makeinputs1)");
+        params.put("population-size", "40");
+        params.put("max-generations", "5");
+        params.put("tournament-size", "5");
+        params.put("mutation-percent", "20");
+        params.put("crossover-percent", "70");
+        params.put("simplification-percent", "5");
+        params.put("max-points-in-program", "50");
+        params.put("max-random-code-size", "20");
+        params.put("execution-limit", "80");
+        params.put("reproduction-simplifications", "10");
+        params.put("report-simplifications", "10");
+        params.put("final-simplifications", "10");
+        params.put("use-random-seed", "true");
+        params.put("random-seed", "5");
+        params.put("output-file", _output.getPath());
+        return params;
+    }
+
+    /**
+     * The parameters of a small seeded run evolving optimisers, on a noisy
+     * CEC 2005 function among others.
+     */
+    private HashMap<String, String> OptimisationParams()
+    {
+        HashMap<String, String> params = new HashMap<String, String>();
+        params.put("problem-class", "optimisation.PopulationOptimisation");
+        params.put("optimisation.problems", "1,4,9");
+        params.put("optimisation.dimensions", "2");
+        params.put("optimisation.popsize", "3");
+        params.put("optimisation.moves", "40");
+        params.put("optimisation.runs", "3");
+        params.put("optimisation.fixedstarts", "false");
+        params.put("optimisation.modifyproblems", "false");
+        params.put("instruction-set", "(float.+ float.* float.rand vector.+ vector.scale float.erc)");
+        params.put("population-size", "12");
+        params.put("max-generations", "5");
+        params.put("tournament-size", "5");
+        params.put("mutation-percent", "20");
+        params.put("crossover-percent", "70");
+        params.put("simplification-percent", "5");
+        params.put("max-points-in-program", "50");
+        params.put("max-random-code-size", "30");
+        params.put("execution-limit", "100");
+        params.put("reproduction-simplifications", "10");
+        params.put("report-simplifications", "10");
+        params.put("final-simplifications", "10");
+        params.put("min-random-float", "0.0");
+        params.put("max-random-float", "1.0");
+        params.put("use-random-seed", "true");
+        params.put("random-seed", "5");
+        params.put("output-file", _output.getPath());
+        return params;
+    }
+
+    /**
+     * Runs the GA a generation at a time, returning the best fitness and
+     * the programs of the population bred in each generation.
+     */
+    private ArrayList<String> History(GA inGA, int inGenerations) throws Exception
+    {
+        ArrayList<String> history = new ArrayList<String>();
+
+        for (int g = 0; g < inGenerations; g++) {
+            inGA.Run(1);
+            history.add(String.valueOf(inGA.GetBestIndividual().GetFitness()));
+            for (int i = 0; i < inGA.GetPopulationSize(); i++)
+                history.add(inGA.GetIndividualFromPopulation(i).toString());
+        }
+
+        return history;
+    }
+
+    public void testEvaluationThreads() throws Exception
+    {
+        HashMap<String, String> params = RegressionParams();
+        params.put("evaluation-threads", "1");
+        ArrayList<String> expected = History(GA.GAWithParameters(params), 3);
+
+        params.put("evaluation-threads", "4");
+        assertEquals(expected, History(GA.GAWithParameters(params), 3));
+
+        // and the seed matters
+        params.put("random-seed", "6");
+        assertFalse(expected.equals(History(GA.GAWithParameters(params), 3)));
+    }
+
+    public void testOptimisationThreads() throws Exception
+    {
+        HashMap<String, String> params = OptimisationParams();
+        params.put("optimisation.threads", "1");
+        ArrayList<String> expected = History(GA.GAWithParameters(params), 2);
+
+        params.put("optimisation.threads", "3");
+        assertEquals(expected, History(GA.GAWithParameters(params), 2));
+
+        params.put("random-seed", "6");
+        assertFalse(expected.equals(History(GA.GAWithParameters(params), 2)));
+    }
+
+    /**
+     * The parameters of a CheckedSteadyState run on three threads.
+     */
+    private HashMap<String, String> SteadyStateParams()
+    {
+        HashMap<String, String> params = OptimisationParams();
+        params.put("problem-class", CheckedSteadyState.class.getName());
+        params.put("reproduction", "steadystate");
+        params.put("evaluation-threads", "3");
+        // the reports evaluate the best individual again, so its fitness
+        // mustn't depend on the random numbers it's given
+        params.put("optimisation.problems", "1,9");
+        params.put("optimisation.fixedstarts", "true");
+        params.put("instruction-set", "(float.+ float.* vector.+ vector.scale float.erc)");
+        return params;
+    }
+
+    public void testSteadyStateKeepsBest() throws Exception
+    {
+        HashMap<String, String> params = SteadyStateParams();
+        // a tournament of one would replace the best individual as often
+        // as any other, if it were allowed to
+        params.put("tournament-size", "1");
+
+        CheckedSteadyState ga = (CheckedSteadyState) GA.GAWithParameters(params);
+        float previous = Float.MAX_VALUE;
+
+        for (int g = 0; g < 4; g++) {
+            ga.Run(1);
+
+            float best = ga.GetBestIndividual().GetFitness();
+            assertFalse(best > previous);
+            for (int i = 0; i < ga.GetPopulationSize(); i++)
+                assertFalse(ga.GetIndividualFromPopulation(i).GetFitness() < best);
+            previous = best;
+        }
+
+        assertEquals(3 * ga.GetPopulationSize(), ga._replacements);
+    }
+
+    public void testSteadyStateStopsEvaluation() throws Exception
+    {
+        HashMap<String, String> params = SteadyStateParams();
+        params.put("max-generations", "3");
+
+        CheckedSteadyState ga = (CheckedSteadyState) GA.GAWithParameters(params);
+        ga.Run(2);
+        ExecutorService pool = ga.EvaluationPool();
+        assertFalse(pool.isShutdown());
+
+        // the last generation, after which the threads aren't needed
+        ga.Run();
+        assertTrue(ga.Terminate());
+        assertTrue(pool.isShutdown());
+        assertNull(ga.EvaluationPool());
+    }
+
+    public void testSteadyStateWithRemoteEvaluation() throws Exception
+    {
+        HashMap<String, String> params = OptimisationParams();
+        params.put("reproduction", "steadystate");
+        params.put("evaluation-port", "0");
+
+        try {
+            GA.GAWithParameters(params);
+            fail("steadystate with evaluation-port should be rejected");
+        } catch (Exception e) {
+            assertTrue(e.getMessage().contains("evaluation-port"));
+        }
+    }
+}
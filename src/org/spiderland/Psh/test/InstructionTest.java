@@ -16,6 +16,7 @@
 
 package org.spiderland.Psh.test;
 
+import java.util.Arrays;
 import junit.framework.TestCase;
 import org.spiderland.Psh.*;
 
@@ -30,6 +31,19 @@ public class InstructionTest extends TestCase
     protected floatStack fstack = null;
     protected booleanStack bstack = null;
 
+    /**
+     * An interpreter whose step count the tests can see.
+     */
+    public static class CountingInterpreter extends Interpreter
+    {
+        private static final long serialVersionUID = 1L;
+
+        public int GetTotalSteps()
+        {
+            return _totalStepsTaken;
+        }
+    }
+
     // Sets things up before each and every test in the test case
     
     @Override
@@ -606,6 +620,61 @@ public class InstructionTest extends TestCase
         assertEquals(bstack, interpreter.boolStack());
     }
 
+    public void testDoRangeExecStack() throws Exception
+    {
+        Program p = new Program(interpreter, "( 1 3 " +
+                "exec.do*range 2.0 )");
+        interpreter.Execute(p, 5);
+
+        // The rest of the loop looks like the program which runs it
+        assertEquals("[(2 3 exec.do*range 2.0)]", interpreter.execStack().toString());
+        assertEquals(new Program(interpreter, "( 2 3 exec.do*range 2.0 )"), interpreter.execStack().top());
+
+        interpreter.execStack().dup();
+        assertEquals(20, interpreter.Step(-1));
+        istack.push(1);
+        istack.push(2);
+        istack.push(3);
+        istack.push(2);
+        istack.push(3);
+        assertEquals(istack, interpreter.intStack());
+    }
+
+    public void testExecStackHashCode() throws Exception
+    {
+        Program p = new Program(interpreter, "( 1 ( 2 3 ) float.+ 2.0 )");
+
+        // a program pushed as a cursor, and the same atoms pushed one by one
+        ExecStack cursor = new ExecStack();
+        cursor.PushCursor(p);
+        ExecStack items = new ExecStack();
+        for (int n = p.size() - 1; n >= 0; n--)
+            items.push(p.peek(n));
+
+        assertEquals(cursor, items);
+        assertEquals(cursor.hashCode(), items.hashCode());
+    }
+
+    public void testDoRangeSteps() throws Exception
+    {
+        Program p = new Program(interpreter, "( 0 5 exec.do*range ( 1 integer.+ ) " +
+                "4 code.quote float.neg code.do*count 2 exec.do*times 3.0 )");
+
+        interpreter.ClearStacks();
+        int steps = interpreter.Execute(p, 1000);
+        String stacks = interpreter.toString();
+
+        // One step at a time, the loops run as programs
+        interpreter.ClearStacks();
+        interpreter.LoadProgram(p);
+        int n = 0;
+        while (interpreter.Step(1) == 1)
+            n++;
+
+        assertEquals(steps, n);
+        assertEquals(stacks, interpreter.toString());
+    }
+
     public void testCodeDoCount() throws Exception
     {
         Program p = new Program(interpreter, "( 1 3 " +
@@ -625,4 +694,174 @@ public class InstructionTest extends TestCase
         assertEquals(fstack, interpreter.floatStack());
         assertEquals(bstack, interpreter.boolStack());
     }
+
+    public void testSharedInstructionSet() throws Exception
+    {
+        Interpreter other = new Interpreter();
+        String list = "( registered.integer registered.exec )";
+        interpreter.SetInstructions(new Program(interpreter, list));
+        other.SetInstructions(new Program(other, list));
+
+        assertSame(interpreter.GetInstructionSet(), other.GetInstructionSet());
+
+        // Adding an instruction only affects the interpreter it is added to
+        interpreter.AddInstruction("integer.twice", interpreter.GetInstruction("integer.dup"));
+        assertNotSame(interpreter.GetInstructionSet(), other.GetInstructionSet());
+        assertNull(other.GetInstruction("integer.twice"));
+
+        // The shared exec instructions use each interpreter's own stacks
+        other.Execute(new Program(other, "( 2 exec.dup ( integer.dup integer.+ ) )"));
+        interpreter.Execute(new Program(interpreter, "( 3 exec.dup ( integer.twice integer.* ) )"));
+
+        istack.push(8);
+        assertEquals(istack, other.intStack());
+
+        istack.clear();
+        istack.push(81);
+        assertEquals(istack, interpreter.intStack());
+    }
+
+    public void testDupProgram() throws Exception
+    {
+        // Both entries are the one program, which running the first of them
+        // leaves as it was
+        Program sum = new Program(interpreter, "( 1 2 integer.+ )");
+
+        interpreter.Execute(new Program(interpreter, "( exec.dup ( 1 2 integer.+ ) )"));
+        istack.push(3);
+        istack.push(3);
+        assertEquals(istack, interpreter.intStack());
+
+        // code.do*times runs the one twice, and then the other once
+        interpreter.ClearStacks();
+        interpreter.Execute(new Program(interpreter, "( code.quote ( 1 2 integer.+ ) code.dup 2 code.do*times )"));
+        assertEquals(istack, interpreter.intStack());
+        assertEquals(sum, interpreter.codeStack().top());
+
+        interpreter.intStack().push(1);
+        interpreter.ExecuteInstruction("code.do*times");
+        interpreter.Step(100);
+        istack.push(3);
+        assertEquals(istack, interpreter.intStack());
+    }
+
+    public void testEvaluationContext() throws Exception
+    {
+        Interpreter other = new Interpreter();
+        other.SetInstructions(new Program(other, "( )"));
+
+        interpreter.setVectorDimensionality(2);
+        interpreter.setVectorLimits(5.0f, 6.0f);
+        other.setVectorDimensionality(4);
+        other.setVectorLimits(-2.0f, -1.0f);
+
+        // Each interpreter makes vectors from its own context
+        interpreter.Execute(new Program(interpreter, "( vector.lrand )"));
+        other.Execute(new Program(other, "( vector.lrand )"));
+
+        float v[] = interpreter.vectorStack().top();
+        float w[] = other.vectorStack().top();
+
+        assertEquals(2, v.length);
+        assertEquals(4, w.length);
+        for (float f : v)
+            assertTrue(f >= 5.0f && f <= 6.0f);
+        for (float f : w)
+            assertTrue(f >= -2.0f && f <= -1.0f);
+    }
+
+    private static final String COMPONENTWISE = "( float.+ float.- float.max float.sin vector.zip vector.apply )";
+
+    /**
+     * Runs vector.zip, or vector.apply, with some code on the vectors inA and
+     * inB, and checks the vectors and the counts of steps and evaluation
+     * executions against running the code on each component on the side, as
+     * the instructions do when they can't apply a float instruction directly.
+     * The code is a program, or else the name of an instruction, which is put
+     * on the exec stack as it is.
+     */
+    private void assertComponentwise(String inInstruction, String inCode, float inA[], float inB[]) throws Exception
+    {
+        boolean zip = inInstruction.equals("vector.zip");
+
+        // the code on each component in turn, on an interpreter of its own
+        CountingInterpreter side = new CountingInterpreter();
+        side.SetInstructions(new Program(side, COMPONENTWISE));
+        // without moves left, running an instruction halts the interpreter
+        side.setProblem(null, 1);
+        float expected[] = new float[inB.length];
+
+        for (int i = 0; i < inB.length; i++) {
+            side.ClearStacks();
+            side.floatStack().push(inB[i]);
+            if (zip)
+                side.floatStack().push(inA[i]);
+
+            if (inCode.startsWith("("))
+                side.Execute(new Program(side, inCode), 100);
+            else
+                side.ExecuteInstruction(side.GetInstruction(inCode));
+
+            if (side.floatStack().size() > 0)
+                expected[i] = side.floatStack().pop();
+        }
+
+        CountingInterpreter in = new CountingInterpreter();
+        in.SetInstructions(new Program(in, COMPONENTWISE));
+        in.setProblem(null, 1);
+        String program = "( " + Vector(inA) + " " + Vector(inB) + " " + inInstruction;
+
+        if (inCode.startsWith("(")) {
+            program += " " + inCode;
+        } else {
+            // under the program, so that it is next once the program has run
+            in.execStack().push(in.GetInstruction(inCode));
+        }
+
+        in.Execute(new Program(in, program + " )"));
+
+        // zip leaves the one vector, apply changes the top one
+        assertEquals(zip ? 1 : 2, in.vectorStack().size());
+        if (!zip)
+            assertEquals(Arrays.toString(inA), Arrays.toString(in.vectorStack().peek(0)));
+        assertEquals(Arrays.toString(expected), Arrays.toString(in.vectorStack().top()));
+
+        // the program, the two vectors and the instruction, and then the code
+        assertEquals(4 + side.GetTotalSteps(), in.GetTotalSteps());
+        assertEquals(1 + side.GetEvaluationExecutions(), in.GetEvaluationExecutions());
+    }
+
+    private static String Vector(float inV[])
+    {
+        String s = "<";
+        for (int i = 0; i < inV.length; i++)
+            s += (i > 0 ? "," : "") + inV[i];
+        return s + ">";
+    }
+
+    public void testVectorZip() throws Exception
+    {
+        float a[] = { 1.5f, -2.0f, 3e38f, 0.0f };
+        float b[] = { 0.25f, 4.0f, 3e38f, -7.5f };
+
+        assertComponentwise("vector.zip", "( float.+ )", a, b);
+        assertComponentwise("vector.zip", "( float.- )", a, b);
+
+        // an instruction rather than a program, which isn't counted
+        assertComponentwise("vector.zip", "float.+", a, b);
+        assertComponentwise("vector.zip", "float.-", a, b);
+
+        // code which has to be run, with the same result as ( float.- )
+        assertComponentwise("vector.zip", "( float.- float.max )", a, b);
+    }
+
+    public void testVectorApply() throws Exception
+    {
+        float a[] = { 1.5f, -2.0f, 3e38f };
+        float b[] = { 0.25f, 4.0f, -7.5f };
+
+        assertComponentwise("vector.apply", "( float.sin )", a, b);
+        assertComponentwise("vector.apply", "float.sin", a, b);
+        assertComponentwise("vector.apply", "( float.sin float.max )", a, b);
+    }
 }
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2009-2010 Jon Klein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spiderland.Psh.test;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import junit.framework.TestCase;
+import org.spiderland.Psh.GA;
+import org.spiderland.Psh.GAIndividual;
+import org.spiderland.Psh.IslandModel;
+import org.spiderland.Psh.ProbClass.IntSymbolicRegression;
+
+public class IslandModelTest extends TestCase
+{
+    /**
+     * Integer regression, giving the test the population it evaluated last.
+     */
+    public static class Regression extends IntSymbolicRegression
+    {
+        private static final long serialVersionUID = 1L;
+
+        public GAIndividual[] Evaluated()
+        {
+            return _populations[EvaluatedPopulation()];
+        }
+    }
+
+    /**
+     * An island model whose islands and migration the test can get at.
+     */
+    public static class Islands extends IslandModel
+    {
+        private static final long serialVersionUID = 1L;
+
+        public Islands(HashMap<String, String> inParams) throws Exception
+        {
+            InitFromParameters(inParams);
+        }
+
+        public GA Island(int inIndex)
+        {
+            return _islands[inIndex];
+        }
+
+        public void RunAndMigrate() throws Exception
+        {
+            RunIslands();
+            Migrate();
+        }
+    }
+
+    private File _output;
+    private File _checkpoints;
+
+    protected void setUp() throws Exception
+    {
+        _output = File.createTempFile("islandtest", ".txt");
+        _checkpoints = File.createTempFile("islandtest", "");
+        _checkpoints.delete();
+        _checkpoints.mkdir();
+    }
+
+    protected void tearDown() throws Exception
+    {
+        _output.delete();
+        for (File file : _checkpoints.listFiles())
+            file.delete();
+        _checkpoints.delete();
+    }
+
+    private HashMap<String, String> Params()
+    {
+        HashMap<String, String> params = new HashMap<String, String>();
+        params.put("problem-class", Regression.class.getName());
+        params.put("test-cases", "( ( 1 17 ) ( 2 53 ) ( 3 113 ) ( 4 197 ) ( 5 305 ) )");
+        params.put("instruction-set", "(integer.+ integer.* integer.- integer.dup integer.rand input.makeinputs1)");
+        params.put("islands", "3");
+        params.put("migration-interval", "2");
+        params.put("migration-size", "3");
+        params.put("population-size", "20");
+        params.put("max-generations", "6");
+        params.put("tournament-size", "5");
+        params.put("mutation-percent", "20");
+        params.put("crossover-percent", "70");
+        params.put("simplification-percent", "5");
+        params.put("max-points-in-program", "50");
+        params.put("max-random-code-size", "20");
+        params.put("execution-limit", "80");
+        params.put("reproduction-simplifications", "10");
+        params.put("report-simplifications", "10");
+        params.put("final-simplifications", "10");
+        params.put("use-random-seed", "true");
+        params.put("random-seed", "5");
+        params.put("output-file", _output.getPath());
+        return params;
+    }
+
+    /**
+     * Returns the programs and fitnesses of an island's current population.
+     */
+    private ArrayList<String> Population(GA inIsland)
+    {
+        ArrayList<String> population = new ArrayList<String>();
+
+        for (int i = 0; i < inIsland.GetPopulationSize(); i++) {
+            GAIndividual individual = inIsland.GetIndividualFromPopulation(i);
+            population.add(individual + " " + individual.GetFitness());
+        }
+
+        return population;
+    }
+
+    public void testRingMigration() throws Exception
+    {
+        Islands model = new Islands(Params());
+        model.RunAndMigrate();
+
+        for (int i = 0; i < 3; i++) {
+            GAIndividual evaluated[] = ((Regression) model.Island(i)).Evaluated();
+            GA next = model.Island((i + 1) % 3);
+            int size = next.GetPopulationSize();
+
+            float fitnesses[] = new float[evaluated.length];
+            for (int n = 0; n < evaluated.length; n++)
+                fitnesses[n] = evaluated[n].GetFitness();
+            Arrays.sort(fitnesses);
+
+            // the fittest three, fittest first, in place of the last three
+            // of the next island's population
+            for (int n = 0; n < 3; n++) {
+                GAIndividual immigrant = next.GetIndividualFromPopulation(size - 1 - n);
+                assertEquals(fitnesses[n], immigrant.GetFitness());
+
+                boolean found = false;
+                for (GAIndividual individual : evaluated)
+                    found |= individual.toString().equals(immigrant.toString())
+                            && individual.GetFitness() == immigrant.GetFitness();
+                assertTrue(found);
+            }
+        }
+    }
+
+    public void testCheckpoint() throws Exception
+    {
+        HashMap<String, String> params = Params();
+        params.put("checkpoint-prefix", new File(_checkpoints, "ckpt").getPath());
+
+        Islands model = new Islands(params);
+        model.Run();
+
+        // carry on from the first checkpoint, after the first migration
+        Islands resumed = (Islands) IslandModel.WithCheckpoint(
+                new File(_checkpoints, "ckpt0.gz").getPath());
+        assertEquals(2, resumed.Island(0).GetGenerationCount());
+        resumed.Run();
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(6, resumed.Island(i).GetGenerationCount());
+            assertEquals(Population(model.Island(i)), Population(resumed.Island(i)));
+        }
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2009-2010 Jon Klein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spiderland.Psh.test;
+
+import org.spiderland.Psh.*;
+
+/**
+ * Checks that an Interpreter whose vector stacks defer operations gives
+ * exactly the same results as one whose don't.
+ */
+public class LazyVectorTest extends OpcodeInterpreterTest
+{
+    @Override
+    protected Interpreter createInterpreter()
+    {
+        // Few enough that chains of operations go over the limit
+        Interpreter in = new Interpreter();
+        in.SetLazyVectorDepth(2);
+        return in;
+    }
+
+    private void assertSameResult(String inProgram) throws Exception
+    {
+        Program p = new Program(opcodeInterpreter, inProgram);
+        opcodeInterpreter.Execute(p, 100);
+        String lazyResult = opcodeInterpreter.toString();
+
+        p = new Program(interpreter, inProgram);
+        interpreter.Execute(p, 100);
+
+        assertEquals(inProgram, interpreter.toString(), lazyResult);
+    }
+
+    public void testChains() throws Exception
+    {
+        assertSameResult("( <1.0,2.0,3.0> 2.0 vector.scale 0.5 vector.scale 1.0E38 vector.scale "
+                + "10.0 vector.scale vector.dup -1.0 vector.scale vector.+ )");
+        assertSameResult("( <1.0,-2.0,3.0> 3.0 vector.scale vector.dup 1.0E38 vector.scale "
+                + "<4.0,5.0,6.0> 0.0 vector.scale vector.swap 1.0E38 vector.scale vector.rot "
+                + "0 vector.yankdup 2 vector.shove vector.mag 1 vector.getcomponent )");
+    }
+
+    public void testTopVector() throws Exception
+    {
+        Program p = new Program(opcodeInterpreter, "( <1.0,2.0,3.0> 2.0 vector.scale 3.0 vector.scale )");
+        opcodeInterpreter.Execute(p, 100);
+
+        float v[] = opcodeInterpreter.vectorStack().top();
+        assertEquals(6.0f, v[0]);
+        assertEquals(12.0f, v[1]);
+        assertEquals(18.0f, v[2]);
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2009-2010 Jon Klein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spiderland.Psh.test;
+
+import java.io.File;
+
+import junit.framework.TestCase;
+import org.spiderland.Psh.*;
+
+/**
+ * Checks that OpcodeInterpreter gives exactly the same results as Interpreter.
+ */
+public class OpcodeInterpreterTest extends TestCase
+{
+    protected Interpreter interpreter = null;
+    protected Interpreter opcodeInterpreter = null;
+
+    // The instruction set of optimisation/sample/params.pushgp, less the
+    // instructions which need a population
+    protected static final String OPTIMISER_INSTRUCTIONS = "( boolean.= boolean.and "
+            + "boolean.dup boolean.flush boolean.fromfloat boolean.frominteger boolean.not "
+            + "boolean.or boolean.pop boolean.rand boolean.rot boolean.shove boolean.stackdepth "
+            + "boolean.swap boolean.xor boolean.yank boolean.yankdup vector.dim+ vector.dim* "
+            + "exec.= exec.do*count exec.do*range exec.do*times exec.dup exec.flush exec.if "
+            + "exec.iflt exec.noop false float.% float.* float.+ float.- float./ float.< float.= "
+            + "float.> float.abs float.cos float.dup float.exp float.flush float.fromboolean "
+            + "float.frominteger float.ln float.log float.max float.min float.neg float.pop "
+            + "float.pow float.rand float.rot float.shove float.sin float.stackdepth float.swap "
+            + "float.tan float.yank float.yankdup input.inall input.inallrev input.index "
+            + "input.stackdepth integer.% integer.* integer.+ integer.- integer./ integer.< "
+            + "integer.= integer.> integer.abs integer.dup integer.flush integer.fromboolean "
+            + "integer.fromfloat integer.ln integer.log integer.max integer.min integer.neg "
+            + "integer.pop integer.pow integer.rand integer.rot integer.shove integer.stackdepth "
+            + "integer.swap integer.yank integer.yankdup true vector.* vector./ vector.+ vector.- "
+            + "vector.dprod vector.dup vector.flush vector.mag vector.pop vector.rot vector.scale "
+            + "vector.shove vector.stackdepth vector.swap vector.wrand vector.yank vector.yankdup "
+            + "vector.between vector.apply vector.zip float.erc integer.erc )";
+
+    @Override
+    protected void setUp() throws Exception
+    {
+        interpreter = new Interpreter();
+        opcodeInterpreter = createInterpreter();
+
+        // Everything but the instructions whose results depend on more than
+        // the interpreter's state and seed
+        String instructions = "( ";
+        for (String s : interpreter.GetRegisteredInstructionsString().trim().split(" ")) {
+            if (s.equals("code.rand") || s.equals("exec.rand") || s.equals("evaluate")
+                    || s.equals("vector.best") || s.equals("vector.current"))
+                continue;
+            instructions += s + " ";
+        }
+        instructions += "integer.erc float.erc vector.erc )";
+
+        setInstructions(instructions);
+    }
+
+    // The interpreter to check against Interpreter
+    protected Interpreter createInterpreter()
+    {
+        return new OpcodeInterpreter();
+    }
+
+    private void setInstructions(String inInstructions) throws Exception
+    {
+        setUp(interpreter, inInstructions);
+        setUp(opcodeInterpreter, inInstructions);
+    }
+
+    private void setUp(Interpreter inInterpreter, String inInstructions) throws Exception
+    {
+        inInterpreter.SetInstructions(new Program(inInterpreter, inInstructions));
+        inInterpreter.SetRandomParameters(-10, 10, 1, -10.0f, 10.0f, 0.01f, 50, 100);
+        inInterpreter.setVectorDimensionality(3);
+        inInterpreter.setVectorLimits(-5.0f, 5.0f);
+    }
+
+    /**
+     * Runs a program on both interpreters, and checks that they take the same
+     * number of steps and finish with the same stacks.
+     */
+    private void assertSameResult(String inProgram, String inInputs, int inMaxSteps, boolean inSwitchFrame) throws Exception
+    {
+        String results[] = new String[2];
+        Interpreter interpreters[] = { interpreter, opcodeInterpreter };
+
+        for (int i = 0; i < 2; i++) {
+            Interpreter in = interpreters[i];
+            in.ClearStacks();
+            in.setSeed(42);
+
+            if (inSwitchFrame) {
+                Interpreter.StackFrame frame = in.new StackFrame();
+                frame.init(in);
+                frame.switchIn(in);
+            }
+
+            for (String token : inInputs.trim().split("\\s+")) {
+                if (token.equals("")) {
+                    continue;
+                } else if (token.equals("true") || token.equals("false")) {
+                    in.boolStack().push(token.equals("true"));
+                    in.inputStack().push(token.equals("true"));
+                } else if (token.indexOf('.') != -1) {
+                    in.floatStack().push(Float.parseFloat(token));
+                    in.inputStack().push(Float.parseFloat(token));
+                } else {
+                    in.intStack().push(Integer.parseInt(token));
+                    in.inputStack().push(Integer.parseInt(token));
+                }
+            }
+            in.vectorStack().push(new float[] { 1.0f, 2.0f, 3.0f });
+
+            int steps = in.Execute(new Program(in, inProgram), inMaxSteps);
+            results[i] = "steps: " + steps + "\n" + in;
+        }
+
+        assertEquals(inProgram, results[0], results[1]);
+    }
+
+    public void testSamples() throws Exception
+    {
+        assertSameSamples("pushsamples");
+    }
+
+    public void testEvolvedPrograms() throws Exception
+    {
+        assertSameSamples("pushevolved");
+    }
+
+    /**
+     * Runs each program in a directory of .push files, which give the
+     * program, the step limit and the inputs on their first three lines.
+     */
+    private void assertSameSamples(String inDirectory) throws Exception
+    {
+        File dir = new File(inDirectory);
+        if (!dir.isDirectory())
+            dir = new File("src/" + inDirectory);
+        assertTrue(inDirectory + " not found", dir.isDirectory());
+
+        for (File f : dir.listFiles()) {
+            String lines[] = Params.ReadFileString(f).split("\n");
+            int limit = Integer.parseInt(lines[1].trim());
+            String inputs = lines.length > 2 ? lines[2] : "";
+
+            assertSameResult(lines[0], inputs, limit, false);
+            assertSameResult(lines[0], inputs, limit, true);
+        }
+    }
+
+    public void testRandomPrograms() throws Exception
+    {
+        for (int n = 0; n < 500; n++) {
+            String program = interpreter.RandomCode(100).toString();
+
+            assertSameResult(program, "3 1 2 1.5 true", 500, false);
+            assertSameResult(program, "3 1 2 1.5 true", 500, true);
+            assertSameResult(program, "", 17, true);
+        }
+    }
+
+    public void testRandomOptimiserPrograms() throws Exception
+    {
+        setInstructions(OPTIMISER_INSTRUCTIONS);
+
+        for (int n = 0; n < 500; n++) {
+            String program = interpreter.RandomCode(100).toString();
+
+            assertSameResult(program, "3 1 2 -4 1.5 -2.5 0.25 true false true", 1000, true);
+
+            // Long runs of atoms without subprograms
+            Program flat = new Program(interpreter);
+            for (int i = 0; i < 50; i++)
+                flat.push(interpreter.RandomAtom());
+
+            assertSameResult(flat.toString(), "3 1 2 -4 1.5 -2.5 0.25 true false true", 1000, true);
+        }
+    }
+}
@@ -74,4 +74,41 @@ public class ProgramTest extends TestCase {
 		assertTrue( q.equals( p ) );
 	}
 
+	@SuppressWarnings("deprecation")
+	public void testSubtreeReplaceInCopy() throws Exception {
+		// Editing a copy leaves the original, and its subprograms, as they were
+		Program p = new Program();
+		Program q = new Program();
+
+		p.Parse( "( 2.0 ( TEST 2 ( 3 ) ) )" );
+		q.Parse( "( 2.0 ( TEST 2 ( 3 ) ) )" );
+		Program sub = (Program) p.Subtree( 1 );
+
+		Program copy = new Program( p );
+		copy.ReplaceSubtree( 2, "TEST2" );
+		copy.ReplaceSubtree( 4, new Program( "( X )" ) );
+
+		assertTrue( q.equals( p ) );
+		assertSame( sub, p.Subtree( 1 ) );
+		assertTrue( new Program( "( TEST 2 ( 3 ) )" ).equals( sub ) );
+		assertTrue( new Program( "( 2.0 ( TEST2 2 ( X ) ) )" ).equals( copy ) );
+	}
+
+	@SuppressWarnings("deprecation")
+	public void testParseVector() throws Exception {
+		Program p = new Program(), q = new Program();
+
+		p.Parse( "( <1.5,-2.0,3.25> ( TEST <45> ) )" );
+
+		// every component is kept, the last one included
+		assertTrue( java.util.Arrays.equals( new float[] { 1.5f, -2.0f, 3.25f },
+				(float[]) p.Subtree( 0 ) ) );
+		assertTrue( java.util.Arrays.equals( new float[] { 45.0f },
+				(float[]) p.Subtree( 3 ) ) );
+
+		q.Parse( p.toString() );
+
+		assertTrue( p.equals( q ) );
+	}
+
 }
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2009-2010 Jon Klein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spiderland.Psh.test;
+
+import java.io.*;
+import java.util.HashMap;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import org.spiderland.Psh.*;
+
+/**
+ * Checks that the generators made by Randoms are reproducible from their
+ * seeds, and that derived streams differ.
+ */
+public class RandomsTest extends TestCase
+{
+    public void testSameSeedSameNumbers() throws Exception
+    {
+        Random a = new XoshiroRandom(42);
+        Random b = new XoshiroRandom(42);
+
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(a.nextLong(), b.nextLong());
+            assertEquals(a.nextFloat(), b.nextFloat());
+            assertEquals(a.nextInt(17), b.nextInt(17));
+            assertEquals(a.nextGaussian(), b.nextGaussian());
+        }
+
+        a.setSeed(7);
+        b.setSeed(7);
+        assertEquals(a.nextLong(), b.nextLong());
+    }
+
+    public void testRanges() throws Exception
+    {
+        Random r = new XoshiroRandom(1);
+
+        for (int i = 0; i < 10000; i++) {
+            float f = r.nextFloat();
+            assertTrue(f >= 0.0f && f < 1.0f);
+
+            double d = r.nextDouble();
+            assertTrue(d >= 0.0 && d < 1.0);
+
+            int n = r.nextInt(10);
+            assertTrue(n >= 0 && n < 10);
+        }
+    }
+
+    public void testDerivedStreamsDiffer() throws Exception
+    {
+        long seed = 1234;
+
+        assertEquals(Randoms.Derive(seed, 3), Randoms.Derive(seed, 3));
+        assertFalse(Randoms.Derive(seed, 0) == Randoms.Derive(seed, 1));
+        assertFalse(Randoms.Derive(seed, 0) == Randoms.Derive(seed + 1, 0));
+        assertFalse(Randoms.Derive(Randoms.Derive(seed, 0), 1) == Randoms.Derive(Randoms.Derive(seed, 1), 0));
+
+        Random a = Randoms.Make(Randoms.XOSHIRO, Randoms.Derive(seed, 0));
+        Random b = Randoms.Make(Randoms.XOSHIRO, Randoms.Derive(seed, 1));
+        int same = 0;
+
+        for (int i = 0; i < 100; i++)
+            if (a.nextInt(2) == b.nextInt(2))
+                same++;
+
+        assertTrue(same > 20 && same < 80);
+    }
+
+    public void testSerialisedGeneratorCarriesOn() throws Exception
+    {
+        Random r = new XoshiroRandom(99);
+        r.nextLong();
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(r);
+        out.close();
+
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        Random copy = (Random) in.readObject();
+
+        for (int i = 0; i < 100; i++)
+            assertEquals(r.nextLong(), copy.nextLong());
+    }
+
+    public void testGenerators() throws Exception
+    {
+        HashMap<String, String> params = new HashMap<String, String>();
+        assertEquals(Randoms.JAVA, Randoms.Generator(params));
+
+        Random r = Randoms.Make(Randoms.Generator(params), 5);
+        assertEquals(Random.class, r.getClass());
+        assertEquals(new Random(5).nextLong(), r.nextLong());
+
+        params.put("random-generator", "xoshiro");
+        assertEquals(XoshiroRandom.class, Randoms.Make(Randoms.Generator(params), 5).getClass());
+
+        params.put("random-generator", "mersenne");
+        try {
+            Randoms.Generator(params);
+            fail();
+        } catch (Exception e) {
+        }
+    }
+
+    public void testPerThread() throws Exception
+    {
+        Randoms.PerThreadRandom r = Randoms.PerThread();
+        Random expected = new XoshiroRandom(3);
+
+        r.Use(new XoshiroRandom(3));
+        assertEquals(expected.nextLong(), r.nextLong());
+
+        // seeding keeps the kind of generator the thread is using
+        r.setSeed(4);
+        expected.setSeed(4);
+        assertEquals(expected.nextGaussian(), r.nextGaussian());
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2009-2010 Jon Klein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spiderland.Psh.test;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import junit.framework.TestCase;
+import optimisation.Reevaluation;
+
+public class ReevaluationTest extends TestCase
+{
+    private File _output;
+
+    // What was in the working directory, where the reevaluations write the
+    // trajectories of their runs
+    private HashSet<String> _existing;
+
+    protected void setUp() throws Exception
+    {
+        _output = File.createTempFile("reevaluationtest", ".txt");
+        _existing = new HashSet<String>(Arrays.asList(new File(".").list()));
+    }
+
+    protected void tearDown() throws Exception
+    {
+        _output.delete();
+
+        for (File file : new File(".").listFiles())
+            if (!_existing.contains(file.getName()) && file.getName().matches(".*_run[0-9]+\\.txt"))
+                file.delete();
+    }
+
+    private void WriteOutput(String... inLines) throws Exception
+    {
+        PrintWriter writer = new PrintWriter(_output);
+        for (String line : inLines)
+            writer.println(line);
+        writer.close();
+    }
+
+    public void testBestProgram() throws Exception
+    {
+        WriteOutput(">> Generation 0",
+                    ">> Best Program: (float.+ (vector.+ 0.5) float.*) {p=0}",
+                    ">> Generation 1",
+                    ">> Best Program:   (0.41 0.65 float.+ vector.scale)  ",
+                    "Best program fitness: 12.5");
+
+        // the last one reported, which has been simplified
+        assertEquals("(0.41 0.65 float.+ vector.scale)", Reevaluation.bestProgram(_output));
+
+        // a run which didn't finish
+        WriteOutput(">> Generation 0", ">> Generation 1");
+        assertNull(Reevaluation.bestProgram(_output));
+    }
+
+    public void testTaskRows() throws Exception
+    {
+        HashMap<String, String> params = new HashMap<String, String>();
+        params.put("problem-class", "optimisation.PopulationOptimisation");
+        params.put("optimisation.problems", "1,9");
+        params.put("optimisation.dimensions", "2");
+        params.put("optimisation.popsize", "3");
+        params.put("optimisation.moves", "20");
+        params.put("optimisation.runs", "3");
+        params.put("optimisation.fixedstarts", "false");
+        params.put("optimisation.modifyproblems", "false");
+        params.put("optimisation.threads", "1");
+        params.put("instruction-set", "(float.+ float.* vector.+ vector.scale float.erc)");
+        params.put("population-size", "12");
+        params.put("max-generations", "5");
+        params.put("min-random-float", "0.0");
+        params.put("max-random-float", "1.0");
+        params.put("use-random-seed", "true");
+        params.put("random-seed", "5");
+
+        String rows = new Reevaluation.Task("batch", "output1.txt",
+                "(0.41 0.65 float.+ vector.scale)", params).call();
+
+        // directory file dimensions problem mean stddev errors, for each
+        // problem in turn
+        String lines[] = rows.split("\n");
+        String problems[] = { "cecF1", "cecF9" };
+        assertEquals(2, lines.length);
+
+        for (int n = 0; n < 2; n++) {
+            String fields[] = lines[n].split("\t");
+            assertEquals(7, fields.length);
+            assertEquals("batch", fields[0]);
+            assertEquals("output1.txt", fields[1]);
+            assertEquals("2", fields[2]);
+            assertEquals(problems[n], fields[3]);
+
+            String errors[] = fields[6].split(" ");
+            assertEquals(3, errors.length);
+
+            float mean = 0;
+            for (String error : errors)
+                mean += Float.parseFloat(error);
+            mean /= errors.length;
+            assertEquals(mean, Float.parseFloat(fields[4]), Math.abs(mean) * 1e-5f);
+            assertTrue(Float.parseFloat(fields[5]) >= 0);
+        }
+    }
+}
@@ -0,0 +1,311 @@
+/*
+ * Copyright 2009-2010 Jon Klein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spiderland.Psh.test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import junit.framework.TestCase;
+import org.spiderland.Psh.GA;
+import org.spiderland.Psh.GAIndividual;
+import org.spiderland.Psh.RemoteWorker;
+import org.spiderland.Psh.ProbClass.IntSymbolicRegression;
+
+/**
+ * Runs seeded GAs which evaluate their populations on workers in this JVM,
+ * some of which misbehave, checking that the results are those of a GA which
+ * evaluates them itself.
+ */
+public class RemoteEvaluationTest extends TestCase
+{
+    /**
+     * Integer regression, counting the individuals workers evaluate. Given
+     * an evaluation-port, the GA waits until a worker has connected before
+     * evaluating individuals itself, so that it doesn't evaluate them all
+     * before the worker is ready.
+     */
+    public static class Regression extends IntSymbolicRegression
+    {
+        private static final long serialVersionUID = 1L;
+
+        static final AtomicInteger _remote = new AtomicInteger();
+        static volatile CountDownLatch _workerReady;
+
+        protected void InitFromParameters() throws Exception
+        {
+            super.InitFromParameters();
+            if (IsWorker())
+                _workerReady.countDown();
+        }
+
+        public void EvaluateIndividual(GAIndividual inIndividual)
+        {
+            if (IsWorker()) {
+                _remote.incrementAndGet();
+            } else if (_evaluationPort >= 0) {
+                try {
+                    _workerReady.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                }
+            }
+            super.EvaluateIndividual(inIndividual);
+        }
+
+        private static boolean IsWorker()
+        {
+            return Thread.currentThread().getName().equals("worker");
+        }
+    }
+
+    /**
+     * A class whose objects a worker mustn't be able to make the GA read.
+     */
+    static class Forbidden implements Serializable
+    {
+        private static final long serialVersionUID = 1L;
+
+        static volatile boolean _read;
+
+        private void readObject(ObjectInputStream inStream)
+        {
+            _read = true;
+        }
+    }
+
+    /**
+     * A worker which connects as a RemoteWorker does, and waits for a task,
+     * but then does something other than evaluate it.
+     */
+    private abstract class FakeWorker extends Thread
+    {
+        volatile boolean _gotTask;
+        volatile boolean _dropped;
+
+        FakeWorker()
+        {
+            super("fake-worker");
+            setDaemon(true);
+        }
+
+        public void run()
+        {
+            try {
+                Socket socket = Connect();
+                ObjectOutputStream out = new ObjectOutputStream(socket.getOutputStream());
+                out.flush();
+                Regression._workerReady.countDown();
+                InputStream in = socket.getInputStream();
+
+                // the parameters, and then the start of a task
+                new ObjectInputStream(in).readObject();
+                if (in.read() < 0)
+                    return;
+                _gotTask = true;
+
+                Misbehave(socket, out);
+
+                // the GA closes the connection
+                while (in.read() >= 0)
+                    ;
+                _dropped = true;
+            } catch (Exception e) {
+                _dropped = true;
+            }
+        }
+
+        abstract void Misbehave(Socket inSocket, ObjectOutputStream inOut) throws Exception;
+    }
+
+    private File _output;
+    private int _port;
+    private volatile boolean _finished;
+
+    protected void setUp() throws Exception
+    {
+        _output = File.createTempFile("remotetest", ".txt");
+        Regression._workerReady = new CountDownLatch(1);
+
+        ServerSocket free = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        _port = free.getLocalPort();
+        free.close();
+    }
+
+    protected void tearDown() throws Exception
+    {
+        _finished = true;
+        _output.delete();
+    }
+
+    private HashMap<String, String> Params()
+    {
+        HashMap<String, String> params = new HashMap<String, String>();
+        params.put("problem-class", Regression.class.getName());
+        params.put("test-cases", "( ( 1 17 ) ( 2 53 ) ( 3 113 ) ( 4 197 ) ( 5 305 ) )");
+        params.put("instruction-set", "(integer.+ integer.* integer.- integer.dup integer.rand input.makeinputs1)");
+        params.put("population-size", "20");
+        params.put("max-generations", "5");
+        params.put("tournament-size", "5");
+        params.put("mutation-percent", "20");
+        params.put("crossover-percent", "70");
+        params.put("simplification-percent", "5");
+        params.put("max-points-in-program", "50");
+        params.put("max-random-code-size", "20");
+        params.put("execution-limit", "80");
+        params.put("reproduction-simplifications", "10");
+        params.put("report-simplifications", "10");
+        params.put("final-simplifications", "10");
+        params.put("use-random-seed", "true");
+        params.put("random-seed", "5");
+        params.put("output-file", _output.getPath());
+        return params;
+    }
+
+    private HashMap<String, String> RemoteParams()
+    {
+        HashMap<String, String> params = Params();
+        params.put("evaluation-port", String.valueOf(_port));
+        params.put("evaluation-batch-size", "2");
+        params.put("evaluation-timeout", "1");
+        return params;
+    }
+
+    /**
+     * Runs the GA a generation at a time, returning the best fitness and
+     * the programs of the population bred in each generation.
+     */
+    private ArrayList<String> History(GA inGA) throws Exception
+    {
+        ArrayList<String> history = new ArrayList<String>();
+
+        for (int g = 0; g < 3; g++) {
+            inGA.Run(1);
+            history.add(String.valueOf(inGA.GetBestIndividual().GetFitness()));
+            for (int i = 0; i < inGA.GetPopulationSize(); i++)
+                history.add(inGA.GetIndividualFromPopulation(i).toString());
+        }
+
+        return history;
+    }
+
+    /**
+     * Connects to the GA's port, once it is listening.
+     */
+    private Socket Connect() throws Exception
+    {
+        while (true) {
+            try {
+                return new Socket(InetAddress.getLoopbackAddress(), _port);
+            } catch (IOException e) {
+                if (_finished)
+                    throw e;
+                Thread.sleep(10);
+            }
+        }
+    }
+
+    /**
+     * Starts a worker which connects to the GA until the test is over.
+     */
+    private void StartWorker()
+    {
+        Thread worker = new Thread("worker") {
+            public void run() {
+                try {
+                    while (!_finished) {
+                        Connect().close();
+                        RemoteWorker.Run("127.0.0.1", _port, 0);
+                    }
+                } catch (Exception e) {
+                }
+            }
+        };
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    public void testWorkers() throws Exception
+    {
+        ArrayList<String> expected = History(GA.GAWithParameters(Params()));
+
+        Regression._remote.set(0);
+        StartWorker();
+        StartWorker();
+        assertEquals(expected, History(GA.GAWithParameters(RemoteParams())));
+        assertTrue(Regression._remote.get() > 0);
+    }
+
+    public void testDisconnectedWorker() throws Exception
+    {
+        ArrayList<String> expected = History(GA.GAWithParameters(Params()));
+
+        FakeWorker worker = new FakeWorker() {
+            void Misbehave(Socket inSocket, ObjectOutputStream inOut) throws Exception {
+                inSocket.close();
+            }
+        };
+        worker.start();
+
+        assertEquals(expected, History(GA.GAWithParameters(RemoteParams())));
+        assertTrue(worker._gotTask);
+    }
+
+    public void testTimedOutWorker() throws Exception
+    {
+        ArrayList<String> expected = History(GA.GAWithParameters(Params()));
+
+        FakeWorker worker = new FakeWorker() {
+            void Misbehave(Socket inSocket, ObjectOutputStream inOut) {
+            }
+        };
+        worker.start();
+
+        assertEquals(expected, History(GA.GAWithParameters(RemoteParams())));
+        assertTrue(worker._gotTask);
+        worker.join(5000);
+        assertTrue(worker._dropped);
+    }
+
+    public void testForbiddenClass() throws Exception
+    {
+        ArrayList<String> expected = History(GA.GAWithParameters(Params()));
+
+        FakeWorker worker = new FakeWorker() {
+            void Misbehave(Socket inSocket, ObjectOutputStream inOut) throws Exception {
+                inOut.writeObject(new Forbidden());
+                inOut.flush();
+            }
+        };
+        worker.start();
+
+        assertEquals(expected, History(GA.GAWithParameters(RemoteParams())));
+        assertTrue(worker._gotTask);
+        worker.join(5000);
+        assertTrue(worker._dropped);
+        assertFalse(Forbidden._read);
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2009-2010 Jon Klein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spiderland.Psh.test;
+
+import java.util.Arrays;
+import junit.framework.TestCase;
+import optimisation.problems.Problem;
+import optimisation.problems.SearchPoint;
+import org.spiderland.Psh.vectorStack;
+
+public class SearchPointTest extends TestCase
+{
+    /**
+     * The sum of the components, counting the evaluations.
+     */
+    private static class SumProblem implements Problem
+    {
+        private final boolean _cacheable;
+        int _evaluations;
+
+        SumProblem(boolean inCacheable)
+        {
+            _cacheable = inCacheable;
+        }
+
+        public String getName() { return "sum"; }
+        public int getDimensionality() { return 2; }
+        public float getLowerBound(int dim) { return -1.0f; }
+        public float getUpperBound(int dim) { return 1.0f; }
+        public float getOptimum() { return -2.0f; }
+        public boolean isCacheable() { return _cacheable; }
+        public Problem copy() { return new SumProblem(_cacheable); }
+
+        public float evaluate(float[] inputs, boolean rescale)
+        {
+            _evaluations++;
+            float sum = 0;
+            for (float f : inputs)
+                sum += f;
+            return sum;
+        }
+
+        public boolean isWithinBounds(float[] inputs)
+        {
+            for (float f : inputs)
+                if (f < -1.0f || f > 1.0f)
+                    return false;
+            return true;
+        }
+
+        public float getError(float[] inputs, boolean rescale)
+        {
+            return evaluate(inputs, rescale) - getOptimum();
+        }
+    }
+
+    public void testCopyAndWrap() throws Exception
+    {
+        float v[] = { 1.0f, 2.0f };
+
+        SearchPoint copy = SearchPoint.Copy(v);
+        SearchPoint wrapped = SearchPoint.Wrap(v);
+        v[0] = 5.0f;
+
+        assertEquals(1.0f, copy.get(0));
+        assertEquals(5.0f, wrapped.get(0));
+
+        float out[] = copy.toArray();
+        out[1] = 5.0f;
+        assertTrue(Arrays.equals(new float[] { 1.0f, 2.0f }, copy.toArray()));
+    }
+
+    public void testCachedValue() throws Exception
+    {
+        SumProblem problem = new SumProblem(true);
+        SearchPoint point = SearchPoint.Copy(new float[] { 0.5f, 0.25f });
+
+        assertEquals(0.75f, point.evaluate(problem, false));
+        assertEquals(2.75f, point.getError(problem, false));
+        assertEquals(0.75f, point.evaluate(problem, false));
+        assertEquals(1, problem._evaluations);
+
+        // a different problem, or scaling, is evaluated again
+        SumProblem other = new SumProblem(true);
+        assertEquals(0.75f, point.evaluate(other, false));
+        assertEquals(0.75f, point.evaluate(other, true));
+        assertEquals(2, other._evaluations);
+        assertEquals(0.75f, point.evaluate(problem, false));
+        assertEquals(2, problem._evaluations);
+
+        assertTrue(point.isWithinBounds(problem));
+        assertFalse(SearchPoint.Copy(new float[] { 0.5f, 2.0f }).isWithinBounds(problem));
+    }
+
+    public void testUncachedValue() throws Exception
+    {
+        SumProblem problem = new SumProblem(false);
+        SearchPoint point = SearchPoint.Copy(new float[] { 0.5f, 0.25f });
+
+        point.evaluate(problem, false);
+        point.evaluate(problem, false);
+        assertEquals(2.75f, point.getError(problem, false));
+        assertEquals(3, problem._evaluations);
+    }
+
+    public void testVectorStack() throws Exception
+    {
+        vectorStack stack = new vectorStack(2);
+        SearchPoint point = SearchPoint.Copy(new float[] { 1.0f, 2.0f });
+
+        // the point pushed comes back while it is unchanged
+        stack.pushPoint(point);
+        stack.push(new float[] { 3.0f });
+        stack.swap();
+        assertSame(point, stack.topPoint());
+        stack.dup();
+        assertSame(point, stack.topPoint());
+        stack.popdiscard();
+        stack.swap();
+        stack.popdiscard();
+        assertSame(point, stack.topPoint());
+
+        // but not once it might have been changed
+        stack.data()[stack.offset(0)] = 5.0f;
+        SearchPoint changed = stack.topPoint();
+        assertNotSame(point, changed);
+        assertTrue(Arrays.equals(new float[] { 5.0f, 2.0f }, changed.toArray()));
+        assertSame(changed, stack.topPoint());
+        assertEquals(1.0f, point.get(0));
+
+        assertTrue(stack.defer(0, 0, 1.0f));
+        assertTrue(Arrays.equals(new float[] { 6.0f, 3.0f }, stack.topPoint().toArray()));
+
+        stack.push((float[]) null);
+        assertNull(stack.topPoint());
+    }
+}
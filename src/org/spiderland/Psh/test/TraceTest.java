@@ -0,0 +1,141 @@
+/*
+ * Copyright 2009-2010 Jon Klein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spiderland.Psh.test;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+import org.spiderland.Psh.*;
+
+/**
+ * Checks that running programs repeatedly with traces gives exactly the same
+ * results as without them.
+ */
+public class TraceTest extends TestCase
+{
+    private Interpreter untraced = null;
+    private Interpreter traced = null;
+
+    // The interpreters' own stacks
+    private Interpreter.StackFrame frames[] = null;
+
+    private void setUp(Interpreter inUntraced, Interpreter inTraced, String inInstructions) throws Exception
+    {
+        untraced = inUntraced;
+        untraced.SetUseTraces(false);
+        traced = inTraced;
+        frames = new Interpreter.StackFrame[2];
+
+        for (int i = 0; i < 2; i++) {
+            Interpreter in = (i == 0) ? untraced : traced;
+            frames[i] = in.new StackFrame();
+            frames[i].capture(in);
+
+            in.SetInstructions(new Program(in, inInstructions));
+            in.SetRandomParameters(-10, 10, 1, -10.0f, 10.0f, 0.01f, 50, 100);
+            in.setVectorDimensionality(3);
+            in.setVectorLimits(-5.0f, 5.0f);
+        }
+    }
+
+    /**
+     * Runs a program several times on both interpreters, with the stacks
+     * cleared and different inputs each time, and checks that they take the
+     * same number of steps and finish with the same stacks every time.
+     */
+    private void assertSameResults(Program inProgram, long inSeed) throws Exception
+    {
+        assertSameResults(new Program[] { untraced.Compile(inProgram), traced.Compile(inProgram) }, inSeed);
+    }
+
+    private void assertSameResults(Program inPrograms[], long inSeed) throws Exception
+    {
+        Program programs[] = inPrograms;
+        Interpreter interpreters[] = { untraced, traced };
+        Random inputs[] = { new Random(inSeed), new Random(inSeed) };
+
+        for (int run = 0; run < 12; run++) {
+            String results[] = new String[2];
+
+            for (int i = 0; i < 2; i++) {
+                Interpreter in = interpreters[i];
+                Random r = inputs[i];
+                in.setSeed(inSeed + run);
+
+                if (run % 3 == 2) {
+                    Interpreter.StackFrame frame = in.new StackFrame();
+                    frame.init(in);
+                    frame.switchIn(in);
+                } else {
+                    frames[i].switchIn(in);
+                }
+                in.ClearStacks();
+
+                for (int n = 0; n < 3; n++) {
+                    in.intStack().push(r.nextInt(7) - 3);
+                    in.floatStack().push(r.nextFloat() * 2.0f - 0.5f);
+                    in.boolStack().push(r.nextBoolean());
+                }
+                in.vectorStack().push(new float[] { 1.0f, 2.0f, 3.0f });
+
+                // Leave something under the program on the exec stack
+                if (run % 2 == 1)
+                    in.execStack().push(Integer.valueOf(run));
+
+                int limit = (run % 5 == 4) ? r.nextInt(30) : 1000;
+                int steps = in.Execute(programs[i], limit);
+                results[i] = "steps: " + steps + "\n" + in;
+            }
+
+            assertEquals(programs[0] + " run " + run, results[0], results[1]);
+        }
+    }
+
+    public void testBranches() throws Exception
+    {
+        setUp(new Interpreter(), new Interpreter(), OpcodeInterpreterTest.OPTIMISER_INSTRUCTIONS);
+
+        String programs[] = {
+            "( exec.if ( 1 integer.+ ) ( 2 integer.* ) boolean.not exec.if 3 4 integer.+ )",
+            "( ( boolean.dup exec.if ( 1.5 float.* ) float.neg ) exec.iflt ( integer.dup exec.if 7 8 ) boolean.and 9 )",
+            "( 1 2 exec.if ( exec.if ( 3 exec.if 4 5 ) 6 ) ( 7 exec.iflt 8 ) float.+ integer.- )",
+            "( exec.if exec.if exec.if )",
+            "( exec.iflt )",
+            "( 5 exec.if 6 )",
+            "( exec.if integer.+ integer.- exec.iflt float.* float.+ )",
+        };
+
+        for (int n = 0; n < programs.length; n++)
+            assertSameResults(new Program(traced, programs[n]), n);
+    }
+
+    public void testRandomPrograms() throws Exception
+    {
+        setUp(new Interpreter(), new Interpreter(), OpcodeInterpreterTest.OPTIMISER_INSTRUCTIONS);
+
+        for (int n = 0; n < 300; n++)
+            assertSameResults(traced.RandomCode(100), n);
+    }
+
+    public void testRandomOpcodePrograms() throws Exception
+    {
+        setUp(new Interpreter(), new OpcodeInterpreter(), OpcodeInterpreterTest.OPTIMISER_INSTRUCTIONS);
+
+        for (int n = 0; n < 300; n++)
+            assertSameResults(traced.RandomCode(100), n);
+    }
+}
@@ -0,0 +1,219 @@
+/*
+ * Copyright 2009-2010 Jon Klein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spiderland.Psh.test;
+
+import java.util.Arrays;
+import java.util.Random;
+import junit.framework.TestCase;
+import org.spiderland.Psh.VectorKernels;
+
+/**
+ * Checks the kernels in use, which are the SIMD kernels when the tests are
+ * run with --add-modules jdk.incubator.vector, against the scalar kernels.
+ */
+public class VectorKernelsTest extends TestCase
+{
+    private static final VectorKernels SCALAR = new VectorKernels();
+    private static final VectorKernels KERNELS = VectorKernels.KERNELS;
+
+    // lengths either side of whole numbers of SIMD registers
+    private static final int LENGTHS[] = { 0, 1, 3, 4, 5, 7, 8, 9, 15, 16, 17, 30, 31, 32, 33, 50, 64, 65, 100 };
+
+    private static final float SPECIAL[] = { 0.0f, -0.0f, 1.0f, -1.0f, Float.MAX_VALUE, -Float.MAX_VALUE,
+            Float.MIN_VALUE, Float.POSITIVE_INFINITY, Float.NEGATIVE_INFINITY, Float.NaN, 1e20f, -1e20f, 1e-20f };
+
+    private final Random _rng = new Random(1);
+
+    /**
+     * Returns a slab with two vectors of the given length in it, a stride
+     * apart and not at the start, with some special values.
+     */
+    private float[] slab(int inLength, boolean inSpecial)
+    {
+        float data[] = new float[3 + 2 * (inLength + 5)];
+        for (int i = 0; i < data.length; i++) {
+            if (inSpecial && _rng.nextInt(4) == 0)
+                data[i] = SPECIAL[_rng.nextInt(SPECIAL.length)];
+            else
+                data[i] = (_rng.nextFloat() - 0.5f) * 200.0f;
+        }
+        return data;
+    }
+
+    private static int second(int inLength)
+    {
+        return 3 + inLength + 5;
+    }
+
+    private static void assertSame(float inExpected[], float inActual[])
+    {
+        assertEquals(Arrays.toString(inExpected), Arrays.toString(inActual));
+        for (int i = 0; i < inExpected.length; i++)
+            assertEquals(Float.floatToIntBits(inExpected[i]), Float.floatToIntBits(inActual[i]));
+    }
+
+    private interface Kernel
+    {
+        void apply(VectorKernels inKernels, float inData[], int inA, int inB, int inLength);
+    }
+
+    private void check(Kernel inKernel)
+    {
+        for (int length : LENGTHS) {
+            for (int repeat = 0; repeat < 20; repeat++) {
+                float expected[] = slab(length, true);
+                float actual[] = expected.clone();
+
+                inKernel.apply(SCALAR, expected, 3, second(length), length);
+                inKernel.apply(KERNELS, actual, 3, second(length), length);
+                assertSame(expected, actual);
+            }
+        }
+    }
+
+    public void testAdd() throws Exception
+    {
+        check(new Kernel() {
+            public void apply(VectorKernels inK, float inData[], int inA, int inB, int inLength) {
+                inK.add(inData, inA, inB, inLength);
+            }
+        });
+    }
+
+    public void testSub() throws Exception
+    {
+        check(new Kernel() {
+            public void apply(VectorKernels inK, float inData[], int inA, int inB, int inLength) {
+                inK.sub(inData, inA, inB, inLength);
+            }
+        });
+    }
+
+    public void testMul() throws Exception
+    {
+        check(new Kernel() {
+            public void apply(VectorKernels inK, float inData[], int inA, int inB, int inLength) {
+                inK.mul(inData, inA, inB, inLength);
+            }
+        });
+    }
+
+    public void testDiv() throws Exception
+    {
+        check(new Kernel() {
+            public void apply(VectorKernels inK, float inData[], int inA, int inB, int inLength) {
+                inK.div(inData, inA, inB, inLength);
+            }
+        });
+    }
+
+    public void testScalarOps() throws Exception
+    {
+        for (final float b : SPECIAL) {
+            check(new Kernel() {
+                public void apply(VectorKernels inK, float inData[], int inA, int inB, int inLength) {
+                    inK.addScalar(inData, inA, inLength, b);
+                    inK.subScalar(inData, inB, inLength, b);
+                }
+            });
+            check(new Kernel() {
+                public void apply(VectorKernels inK, float inData[], int inA, int inB, int inLength) {
+                    inK.mulScalar(inData, inA, inLength, b);
+                    inK.divScalar(inData, inB, inLength, b);
+                }
+            });
+        }
+    }
+
+    public void testScalarOpsTogether() throws Exception
+    {
+        final int ops[] = { VectorKernels.MUL_SCALAR, VectorKernels.ADD_SCALAR, VectorKernels.DIV_SCALAR,
+                VectorKernels.SUB_SCALAR, VectorKernels.MUL_SCALAR };
+        final float scalars[] = new float[ops.length];
+
+        for (int repeat = 0; repeat < 20; repeat++) {
+            for (int i = 0; i < scalars.length; i++)
+                scalars[i] = SPECIAL[_rng.nextInt(SPECIAL.length)];
+
+            check(new Kernel() {
+                public void apply(VectorKernels inK, float inData[], int inA, int inB, int inLength) {
+                    if (inK == SCALAR) {
+                        // one after another
+                        inK.mulScalar(inData, inA, inLength, scalars[0]);
+                        inK.addScalar(inData, inA, inLength, scalars[1]);
+                        inK.divScalar(inData, inA, inLength, scalars[2]);
+                        inK.subScalar(inData, inA, inLength, scalars[3]);
+                        inK.mulScalar(inData, inA, inLength, scalars[4]);
+                    } else {
+                        inK.scalarOps(inData, inA, inLength, ops, scalars, 0, ops.length);
+                    }
+                }
+            });
+        }
+    }
+
+    public void testBetween() throws Exception
+    {
+        for (final float f : new float[] { 0.0f, 0.5f, 1.0f, -2.5f, 1e30f, Float.NaN }) {
+            check(new Kernel() {
+                public void apply(VectorKernels inK, float inData[], int inA, int inB, int inLength) {
+                    inK.between(inData, inA, inB, inLength, f);
+                }
+            });
+        }
+    }
+
+    public void testDotProduct() throws Exception
+    {
+        for (int length : LENGTHS) {
+            for (int repeat = 0; repeat < 20; repeat++) {
+                float data[] = slab(length, false);
+
+                float expected = SCALAR.dot(data, 3, second(length), length);
+                float actual = KERNELS.dot(data, 3, second(length), length);
+
+                // the products are added up in a different order
+                float bound = 0;
+                for (int i = 0; i < length; i++)
+                    bound += Math.abs(data[3 + i] * data[second(length) + i]);
+                assertEquals(expected, actual, bound * 1e-6f);
+            }
+        }
+
+        float big[] = { Float.MAX_VALUE, Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE };
+        float data[] = new float[16 + 16];
+        System.arraycopy(big, 0, data, 0, 4);
+        Arrays.fill(data, 16, 32, 2.0f);
+        assertEquals(Float.MAX_VALUE, KERNELS.dot(data, 0, 16, 2));
+        assertEquals(1.0f - Float.MAX_VALUE, KERNELS.dot(data, 2, 16, 2));
+    }
+
+    public void testMagnitude() throws Exception
+    {
+        for (int length : LENGTHS) {
+            for (int repeat = 0; repeat < 20; repeat++) {
+                float data[] = slab(length, false);
+
+                float expected = SCALAR.mag(data, 3, length);
+                float actual = KERNELS.mag(data, 3, length);
+
+                // the squares are added up as doubles, in a different order
+                assertEquals(expected, actual, Math.ulp(expected));
+            }
+        }
+    }
+}
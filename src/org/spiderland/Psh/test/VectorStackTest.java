@@ -0,0 +1,124 @@
+/*
+ * Copyright 2009-2010 Jon Klein
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.spiderland.Psh.test;
+
+import java.util.Arrays;
+import junit.framework.TestCase;
+import org.spiderland.Psh.vectorStack;
+
+public class VectorStackTest extends TestCase
+{
+    private static String contents(vectorStack inStack)
+    {
+        String result = "";
+        for (int i = 0; i < inStack.size(); i++)
+            result += Arrays.toString(inStack.peek(i));
+        return result;
+    }
+
+    public void testPushPopCopies() throws Exception
+    {
+        vectorStack stack = new vectorStack();
+        float v[] = { 1.0f, 2.0f };
+
+        stack.push(v);
+        v[0] = 5.0f;
+        assertTrue(Arrays.equals(new float[] { 1.0f, 2.0f }, stack.top()));
+
+        stack.top()[1] = 5.0f;
+        assertTrue(Arrays.equals(new float[] { 1.0f, 2.0f }, stack.pop()));
+        assertEquals(0, stack.size());
+        assertNull(stack.pop());
+    }
+
+    public void testGrowth() throws Exception
+    {
+        vectorStack stack = new vectorStack();
+
+        // more vectors than the stack starts with room for, getting longer
+        for (int i = 0; i < 20; i++) {
+            float v[] = new float[i];
+            Arrays.fill(v, i);
+            stack.push(v);
+        }
+        stack.push(null);
+
+        assertEquals(21, stack.size());
+        assertNull(stack.pop());
+        for (int i = 19; i >= 0; i--) {
+            float v[] = new float[i];
+            Arrays.fill(v, i);
+            assertTrue(Arrays.equals(v, stack.pop()));
+        }
+    }
+
+    public void testStackOperations() throws Exception
+    {
+        vectorStack stack = new vectorStack();
+        stack.push(new float[] { 1.0f });
+        stack.push(new float[] { 2.0f, 2.0f });
+        stack.push(new float[] { 3.0f });
+
+        stack.rot();
+        assertEquals("[2.0, 2.0][3.0][1.0]", contents(stack));
+        stack.swap();
+        assertEquals("[2.0, 2.0][1.0][3.0]", contents(stack));
+        stack.shove(2);
+        assertEquals("[3.0][2.0, 2.0][1.0]", contents(stack));
+        stack.yank(1);
+        assertEquals("[3.0][1.0][2.0, 2.0]", contents(stack));
+        stack.yankdup(2);
+        assertEquals("[3.0][1.0][2.0, 2.0][3.0]", contents(stack));
+        stack.dup();
+        assertEquals("[3.0][1.0][2.0, 2.0][3.0][3.0]", contents(stack));
+    }
+
+    public void testSlots() throws Exception
+    {
+        vectorStack stack = new vectorStack();
+        stack.push(new float[] { 1.0f, 2.0f, 3.0f });
+
+        int offset = stack.pushSlot(2);
+        stack.data()[offset] = 4.0f;
+        stack.data()[offset + 1] = 5.0f;
+        assertEquals(offset, stack.offset(1));
+        assertEquals(2, stack.length(1));
+        assertEquals(offset + 1, stack.component(1, 1));
+        assertTrue(Arrays.equals(new float[] { 4.0f, 5.0f }, stack.top()));
+
+        try {
+            stack.component(1, 2);
+            fail();
+        } catch (ArrayIndexOutOfBoundsException e) {
+        }
+
+        // the second vector is shorter than the first
+        try {
+            stack.length(0, 1);
+            fail();
+        } catch (ArrayIndexOutOfBoundsException e) {
+        }
+        assertEquals(2, stack.length(1, 0));
+
+        stack.push(null);
+        try {
+            stack.length(2);
+            fail();
+        } catch (NullPointerException e) {
+        }
+    }
+}
@@ -1,79 +1,350 @@
 package org.spiderland.Psh;
 
+import optimisation.problems.SearchPoint;
+
 /**
  * Fixed-length vector stack for storing and manipulating search points.
- * 
+ *
+ * The vectors are kept in one float array, each in a slot as wide as the
+ * longest vector pushed, so that vector instructions can work on them where
+ * they are, through data(), offset() and length(), rather than making new
+ * arrays. Vectors are copied in when they are pushed, and copied out when
+ * they are popped or peeked at, so a vector on the stack is never shared.
+ *
+ * Optionally, operations of a vector and a scalar, such as vector.scale, can
+ * be deferred, up to a number for each vector, and then carried out together
+ * in one pass over the vector when it is next used. A vector's deferred
+ * operations are carried out by offset(), component() and peek(), so the
+ * vector instructions and the rest of the system see them as done.
+ *
+ * A search point pushed onto the stack is remembered until its vector might
+ * be changed, through offset() or component(), so that topPoint() can return
+ * the same point, with its cached objective value, rather than a new one.
+ *
  * @author michaellones
  */
 public class vectorStack extends Stack {
 	private static final long serialVersionUID = 1L;
 
-	protected float _stack[][];
-	
-	protected static int _dims = 3; // made static due to ordering of initialisation
-	
-	public static void setDimensionality(int dimensions) {
-		_dims = dimensions;
+	protected float _data[];
+
+	// the width of each slot, and the length of the vector in it,
+	// or -1 for a null vector
+	protected int _width;
+	protected int _lengths[];
+
+	// the number of operations which can be deferred for each vector, the
+	// number which are, and the operations and scalars, in slots of
+	// _lazyDepth
+	protected int _lazyDepth;
+	protected int _deferred[];
+	protected int _deferredOps[];
+	protected float _deferredScalars[];
+
+	// the search point each vector is, if it is one and is unchanged
+	protected SearchPoint _points[];
+
+	public vectorStack() {
+	}
+
+	/**
+	 * Makes a stack which defers up to the given number of operations for
+	 * each vector.
+	 */
+	public vectorStack(int inLazyDepth) {
+		setLazyDepth(inLazyDepth);
+	}
+
+	/**
+	 * Sets the number of operations which can be deferred for each vector,
+	 * carrying out those which have been.
+	 */
+	public void setLazyDepth(int inLazyDepth) {
+		for (int i = 0; i < _size; i++)
+			force(i);
+
+		_lazyDepth = Math.max(0, inLazyDepth);
+		_deferred = new int[_maxsize];
+		_deferredOps = new int[_maxsize * _lazyDepth];
+		_deferredScalars = new float[_maxsize * _lazyDepth];
 	}
-	
+
 	@Override
 	void resize(int inSize) {
-		float newstack[][] = new float[inSize][];
+		int newlengths[] = new int[inSize];
+		float newdata[] = new float[inSize * _width];
 
-		if (_stack != null) {
-			for(int i=0; i<_size; i++) {
-				newstack[i] = _stack[i];
-			}
+		int newdeferred[] = new int[inSize];
+		int newops[] = new int[inSize * _lazyDepth];
+		float newscalars[] = new float[inSize * _lazyDepth];
+		SearchPoint newpoints[] = new SearchPoint[inSize];
+
+		if (_lengths != null) {
+			unwind(_lengths, newlengths, 1);
+			unwind(_data, newdata, _width);
+			unwind(_deferred, newdeferred, 1);
+			unwind(_deferredOps, newops, _lazyDepth);
+			unwind(_deferredScalars, newscalars, _lazyDepth);
+			unwind(_points, newpoints, 1);
 		}
 
-		_stack = newstack;
+		_lengths = newlengths;
+		_data = newdata;
+		_deferred = newdeferred;
+		_deferredOps = newops;
+		_deferredScalars = newscalars;
+		_points = newpoints;
 		_maxsize = inSize;
+		_bottom = 0;
 	}
-	
-	public void push(float[] inValue) {
-		_stack[_size] = inValue;
+
+	/**
+	 * Makes the slots wide enough for a vector of the given length.
+	 */
+	private void widen(int inLength) {
+		if (inLength <= _width)
+			return;
+
+		int width = Math.max(inLength, _width * 2);
+		float newdata[] = new float[_maxsize * width];
+		for (int i = 0; i < _size; i++)
+			System.arraycopy(_data, at(i) * _width, newdata, at(i) * width, _width);
+
+		_data = newdata;
+		_width = width;
+	}
+
+	/**
+	 * Pushes a vector of the given length, whose components are to be
+	 * filled in, returning where it is in data().
+	 */
+	public int pushSlot(int inLength) {
+		widen(inLength);
+
+		int slot = at(_size);
+		_lengths[slot] = inLength;
+		_deferred[slot] = 0;
+		_points[slot] = null;
 		_size++;
 
 		if (_size >= _maxsize)
-			resize(_maxsize * 2);
+			overflow(_maxsize * 2);
+
+		return slot * _width;
+	}
+
+	public void push(float[] inValue) {
+		if (inValue == null) {
+			pushSlot(0);
+			_lengths[at(_size - 1)] = -1;
+		}
+		else {
+			int offset = pushSlot(inValue.length);
+			System.arraycopy(inValue, 0, _data, offset, inValue.length);
+		}
 	}
-	
+
+	/**
+	 * Pushes a search point, which topPoint() returns while it is on top
+	 * and unchanged.
+	 */
+	public void pushPoint(SearchPoint inPoint) {
+		int offset = pushSlot(inPoint.length());
+		inPoint.copyTo(_data, offset);
+		_points[at(_size - 1)] = inPoint;
+	}
+
 	public float[] pop() {
 		float[] result = null;
 
 		if (_size > 0) {
-			result = _stack[_size - 1];
+			result = peek(_size - 1);
 			_size--;
 		}
 
 		return result;
 	}
-	
+
 	public float[] peek(int inIndex) {
-		if (inIndex >= 0 && inIndex < _size)
-			return _stack[inIndex];
+		if (inIndex >= 0 && inIndex < _size && _lengths[at(inIndex)] >= 0) {
+			force(inIndex);
+			float result[] = new float[_lengths[at(inIndex)]];
+			System.arraycopy(_data, at(inIndex) * _width, result, 0, result.length);
+			return result;
+		}
 
 		return null;
 	}
-	
+
 	public float[] top() {
 		return peek(_size - 1);
 	}
 
+	/**
+	 * Returns the top vector as a search point, which is the one pushed if
+	 * it hasn't been changed, and is otherwise made once for the vector.
+	 */
+	public SearchPoint topPoint() {
+		if (_size == 0 || _lengths[at(_size - 1)] < 0)
+			return null;
+
+		int top = at(_size - 1);
+		if (_points[top] == null)
+			_points[top] = SearchPoint.Wrap(peek(_size - 1));
+		return _points[top];
+	}
+
+	/**
+	 * Returns the array the vectors are kept in. A push may replace it.
+	 */
+	public float[] data() {
+		return _data;
+	}
+
+	/**
+	 * Returns where the vector at the given index is in data(), having
+	 * carried out any operations deferred for it. The vector may be changed
+	 * there, so it is no longer a search point which was pushed.
+	 */
+	public int offset(int inIndex) {
+		force(inIndex);
+		_points[at(inIndex)] = null;
+		return at(inIndex) * _width;
+	}
+
+	/**
+	 * Defers an operation of the vector at the given index and a scalar, one
+	 * of those of VectorKernels.scalarOps(), returning false if it can't be.
+	 */
+	public boolean defer(int inIndex, int inOp, float inScalar) {
+		if (_lazyDepth == 0)
+			return false;
+
+		int slot = at(inIndex);
+		if (_deferred[slot] == _lazyDepth)
+			force(inIndex);
+
+		_points[slot] = null;
+		int op = slot * _lazyDepth + _deferred[slot]++;
+		_deferredOps[op] = inOp;
+		_deferredScalars[op] = inScalar;
+		return true;
+	}
+
+	/**
+	 * Carries out the operations deferred for the vector at the given index.
+	 */
+	private void force(int inIndex) {
+		int slot = at(inIndex);
+		if (_lazyDepth > 0 && _deferred[slot] > 0) {
+			VectorKernels.KERNELS.scalarOps(_data, slot * _width, _lengths[slot],
+					_deferredOps, _deferredScalars, slot * _lazyDepth, _deferred[slot]);
+			_deferred[slot] = 0;
+		}
+	}
+
+	/**
+	 * Returns the length of the vector at the given index, throwing
+	 * NullPointerException, as taking the length of the vector would,
+	 * if it is null.
+	 */
+	public int length(int inIndex) {
+		if (_lengths[at(inIndex)] < 0)
+			throw new NullPointerException();
+		return _lengths[at(inIndex)];
+	}
+
+	/**
+	 * Returns the length of the vector at the first index, throwing
+	 * ArrayIndexOutOfBoundsException, as going along both vectors would,
+	 * if the vector at the second index is shorter.
+	 */
+	public int length(int inIndex, int inOther) {
+		int length = length(inIndex);
+		if (length(inOther) < length)
+			throw new ArrayIndexOutOfBoundsException(length(inOther));
+		return length;
+	}
+
+	/**
+	 * Shortens the vector at the given index.
+	 */
+	public void setLength(int inIndex, int inLength) {
+		_lengths[at(inIndex)] = inLength;
+		_points[at(inIndex)] = null;
+	}
+
+	/**
+	 * Returns where a component of the vector at the given index is in
+	 * data(), throwing ArrayIndexOutOfBoundsException, as indexing the
+	 * vector would, if it has no such component.
+	 */
+	public int component(int inIndex, int inComponent) {
+		if (inComponent < 0 || inComponent >= length(inIndex))
+			throw new ArrayIndexOutOfBoundsException(inComponent);
+		return offset(inIndex) + inComponent;
+	}
+
+	/**
+	 * Copies the vector at one index over that at another.
+	 */
+	private void copy(int inFrom, int inTo) {
+		int from = at(inFrom);
+		int to = at(inTo);
+
+		System.arraycopy(_data, from * _width, _data, to * _width, _width);
+		_lengths[to] = _lengths[from];
+
+		System.arraycopy(_deferredOps, from * _lazyDepth, _deferredOps, to * _lazyDepth, _deferred[from]);
+		System.arraycopy(_deferredScalars, from * _lazyDepth, _deferredScalars, to * _lazyDepth, _deferred[from]);
+		_deferred[to] = _deferred[from];
+		_points[to] = _points[from];
+	}
+
+	/**
+	 * Pushes a copy of the vector at the given index. The copy is made
+	 * first, in case pushing drops the vector from a bounded stack.
+	 */
+	private void pushCopy(int inIndex) {
+		copy(inIndex, _size);
+		_size++;
+
+		if (_size >= _maxsize)
+			overflow(_maxsize * 2);
+	}
+
+	/**
+	 * Moves the vector at one index to another, moving those in between
+	 * along by one.
+	 */
+	private void move(int inFrom, int inTo) {
+		if (inFrom == inTo)
+			return;
+
+		// the vector waits in the free slot above the top, and the others
+		// are moved one at a time, since a bounded stack's slots are a ring
+		copy(inFrom, _size);
+		if (inFrom < inTo) {
+			for (int i = inFrom; i < inTo; i++)
+				copy(i + 1, i);
+		}
+		else {
+			for (int i = inFrom; i > inTo; i--)
+				copy(i - 1, i);
+		}
+		copy(_size, inTo);
+	}
+
 	@Override
 	public void dup() {
 		if (_size > 0)
-			push(_stack[_size - 1]);
+			pushCopy(_size - 1);
 	}
 
 	@Override
 	public void rot() {
-		if (_size > 2) {
-			float tmp[] = _stack[_size - 3];
-			_stack[_size - 3] = _stack[_size - 2];
-			_stack[_size - 2] = _stack[_size - 1];
-			_stack[_size - 1] = tmp;
-		}
+		if (_size > 2)
+			move(_size - 3, _size - 1);
 	}
 
 	@Override
@@ -85,24 +356,15 @@ public class vectorStack extends Stack {
 			if(inIndex > _size - 1){
 				inIndex = _size - 1;
 			}
-			
-			float toShove[] = top();
-			int shovedIndex = _size - inIndex - 1;
 
-			for (int i = _size - 1; i > shovedIndex; i--) {
-				_stack[i] = _stack[i - 1];
-			}
-			_stack[shovedIndex] = toShove;
+			move(_size - 1, _size - inIndex - 1);
 		}
 	}
 
 	@Override
 	public void swap() {
-		if (_size > 1) {
-			float tmp[] = _stack[_size - 1];
-			_stack[_size - 1] = _stack[_size - 2];
-			_stack[_size - 2] = tmp;
-		}
+		if (_size > 1)
+			move(_size - 1, _size - 2);
 	}
 
 	@Override
@@ -115,13 +377,7 @@ public class vectorStack extends Stack {
 				inIndex = _size - 1;
 			}
 
-			int yankedIndex = _size - inIndex - 1;
-			float toYank[] = peek(yankedIndex);
-
-			for (int i = yankedIndex; i < _size - 1; i++) {
-				_stack[i] = _stack[i + 1];
-			}
-			_stack[_size - 1] = toYank;
+			move(_size - inIndex - 1, _size - 1);
 		}
 	}
 
@@ -136,22 +392,16 @@ public class vectorStack extends Stack {
 			}
 
 			int yankedIndex = _size - inIndex - 1;
-			push(peek(yankedIndex));
+			pushCopy(yankedIndex);
 		}
 	}
 
 	public String toString() {
 		String result = "[";
 		String element;
-		
+
 		for (int n = _size - 1; n >= 0; n--) {
-			element = "<";
-			for(int i=0; i<_stack[n].length; i++) {
-				element += _stack[n][i];
-				if(i<_stack[n].length-1)
-					element += ",";
-			}
-			element += ">";
+			element = Program.VectorString(peek(n));
 			if (n == _size - 1)
 				result += element;
 			else
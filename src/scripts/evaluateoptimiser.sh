@@ -41,5 +41,5 @@ else
   fi
 fi
 
-java optimisation.PopulationOptimisation $tmppfile program > output.txt
+psheval.sh $tmppfile program > output.txt
 grep "Fitness" output.txt
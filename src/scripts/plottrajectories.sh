@@ -53,7 +53,7 @@ for f in *.txt; do
         echo "optimisation.popsize=$5" >> $tmppfile
       fi
     fi
-    java optimisation.PopulationOptimisation $tmppfile program
+    psheval.sh $tmppfile program
   else
     java optimisation.Optimisation $tmppfile program
   fi
@@ -48,7 +48,7 @@ do
     echo 100 >> "program"
 
     # reevaluate it
-    java optimisation.PopulationOptimisation $tmppfile program > temp.txt
+    psheval.sh $tmppfile program > temp.txt
     mean=`grep "Fitness" temp.txt | tr -d "(" | cut -d " " -f2`
     echo -n -e $mean "\t" >> $dirresults
     output=`tail -1 temp.txt`
@@ -0,0 +1,20 @@
+#!/bin/bash
+
+# Reevaluates a program as "java optimisation.PopulationOptimisation" does,
+# using an evaluation daemon if one is running, so that no JVM needs to be
+# started. Start the daemon with:
+#   java optimisation.EvaluationDaemon [port]
+# If there is no daemon, starts java as usual.
+# The port is taken from PSH_DAEMON_PORT, or is 7341.
+# Command line arguments: params_file program_file [coco_name]
+
+port=${PSH_DAEMON_PORT:-7341}
+
+if { exec 3<>/dev/tcp/127.0.0.1/$port; } 2>/dev/null; then
+  # send the working directory and the arguments, a line each
+  printf '%s\n' "$PWD" "$@" "" >&3
+  cat <&3
+  exec 3<&-
+else
+  java optimisation.PopulationOptimisation "$@"
+fi
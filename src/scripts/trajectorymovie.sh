@@ -52,7 +52,7 @@ if [ $5 == "pop" ]; then
       echo "optimisation.popsize=$6" >> $tmppfile
     fi
   fi
-  java optimisation.PopulationOptimisation $tmppfile program
+  psheval.sh $tmppfile program
 else
   java optimisation.Optimisation $tmppfile program
 fi